@@ -0,0 +1,34 @@
+package com.drivenow.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.jpa.support.OpenEntityManagerInViewInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Open-entity-manager-in-view for regular requests, replacing Spring Boot's global one
+ * (spring.jpa.open-in-view=false). Long-lived streaming endpoints are excluded: the view
+ * entity manager holds its JDBC connection until the request completes, so every open
+ * stream would pin a pooled connection.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    static final String[] STREAMING_PATHS = {
+            "/api/bookings/*/track",
+            "/api/notifications/user/*/stream",
+            "/api/admin/notifications/archive"
+    };
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        OpenEntityManagerInViewInterceptor interceptor = new OpenEntityManagerInViewInterceptor();
+        interceptor.setEntityManagerFactory(entityManagerFactory);
+        registry.addWebRequestInterceptor(interceptor).excludePathPatterns(STREAMING_PATHS);
+    }
+}
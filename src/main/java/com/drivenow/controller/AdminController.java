@@ -1,19 +1,38 @@
 package com.drivenow.controller;
 
+import com.drivenow.dto.NearbyDriver;
+import com.drivenow.dto.UserSummary;
 import com.drivenow.entity.Booking;
+import com.drivenow.entity.CommissionRate;
+import com.drivenow.entity.DeletionJob;
 import com.drivenow.entity.User;
 import com.drivenow.entity.Vehicle;
 import com.drivenow.service.BookingService;
+import com.drivenow.service.DeletionJobService;
+import com.drivenow.service.DispatchService;
+import com.drivenow.service.DriverLocationService;
+import com.drivenow.service.EarningsLedgerService;
+import com.drivenow.service.NotificationArchiveService;
+import com.drivenow.service.StatsRollupService;
+import com.drivenow.service.UserDirectoryService;
 import com.drivenow.service.UserService;
 import com.drivenow.service.VehicleService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.math.BigDecimal;
+import java.net.URI;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api/admin")
@@ -24,6 +43,13 @@ public class AdminController {
     private final UserService userService;
     private final VehicleService vehicleService;
     private final BookingService bookingService;
+    private final DriverLocationService driverLocationService;
+    private final DispatchService dispatchService;
+    private final StatsRollupService statsRollupService;
+    private final EarningsLedgerService earningsLedgerService;
+    private final UserDirectoryService userDirectoryService;
+    private final DeletionJobService deletionJobService;
+    private final NotificationArchiveService notificationArchiveService;
     
     @GetMapping("/users")
     public ResponseEntity<List<User>> getAllUsers(@RequestParam(required = false) String role) {
@@ -40,6 +66,39 @@ public class AdminController {
         }
     }
     
+    /**
+     * Keyset-paginated user summaries in id order: {users, hasMore, nextCursor}
+     */
+    @GetMapping("/users/page")
+    public ResponseEntity<?> getUsersPage(@RequestParam(required = false) String role,
+                                          @RequestParam(required = false) Long after,
+                                          @RequestParam(defaultValue = "50") int limit) {
+        try {
+            return ResponseEntity.ok(userDirectoryService.getUsers(parseRole(role), after, limit));
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
+    /**
+     * Prefix search over name, each word of the name, and email
+     */
+    @GetMapping("/users/search")
+    public ResponseEntity<?> searchUsers(@RequestParam String q,
+                                         @RequestParam(required = false) String role,
+                                         @RequestParam(defaultValue = "20") int limit) {
+        try {
+            List<UserSummary> users = userDirectoryService.search(q, parseRole(role), limit);
+            return ResponseEntity.ok(users);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
     @GetMapping("/drivers")
     public ResponseEntity<List<User>> getAllDrivers() {
         try {
@@ -50,6 +109,44 @@ public class AdminController {
         }
     }
     
+    /**
+     * Keyset-paginated driver summaries in id order: {users, hasMore, nextCursor}
+     */
+    @GetMapping("/drivers/page")
+    public ResponseEntity<?> getDriversPage(@RequestParam(required = false) Long after,
+                                            @RequestParam(defaultValue = "50") int limit) {
+        try {
+            return ResponseEntity.ok(userDirectoryService.getUsers(User.Role.DRIVER, after, limit));
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
+    private static User.Role parseRole(String role) {
+        if (role == null || role.isEmpty()) {
+            return null;
+        }
+        try {
+            return User.Role.valueOf(role.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Unknown role: " + role);
+        }
+    }
+    
+    @GetMapping("/drivers/nearest")
+    public ResponseEntity<List<NearbyDriver>> getNearestDrivers(@RequestParam Double lat,
+                                                                @RequestParam Double lon,
+                                                                @RequestParam(defaultValue = "5") int limit) {
+        try {
+            List<NearbyDriver> drivers = driverLocationService.findNearestAvailableDrivers(lat, lon, Math.min(limit, 50));
+            return ResponseEntity.ok(drivers);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
     @GetMapping("/bookings")
     public ResponseEntity<List<Booking>> getAllBookings() {
         try {
@@ -60,44 +157,58 @@ public class AdminController {
         }
     }
     
+    /**
+     * Deletion runs in the background; the response is the job to poll
+     */
     @DeleteMapping("/users/{userId}")
-    public ResponseEntity<Map<String, String>> deleteUser(@PathVariable Long userId) {
+    public ResponseEntity<?> deleteUser(@PathVariable Long userId) {
+        return acceptDeletion(() -> deletionJobService.deleteUser(userId), "Failed to delete user");
+    }
+    
+    @DeleteMapping("/drivers/{driverId}")
+    public ResponseEntity<?> deleteDriver(@PathVariable Long driverId) {
+        return acceptDeletion(() -> deletionJobService.deleteUser(driverId), "Failed to delete driver");
+    }
+    
+    @DeleteMapping("/vehicles/{vehicleId}")
+    public ResponseEntity<?> deleteVehicle(@PathVariable Long vehicleId) {
+        return acceptDeletion(() -> deletionJobService.deleteVehicle(vehicleId), "Failed to delete vehicle");
+    }
+    
+    private ResponseEntity<?> acceptDeletion(Supplier<DeletionJob> deletion, String failureMessage) {
         try {
-            userService.deleteUser(userId);
-            Map<String, String> response = new HashMap<>();
-            response.put("message", "User deleted successfully");
-            return ResponseEntity.ok(response);
+            DeletionJob job = deletion.get();
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/admin/deletion-jobs/" + job.getId()))
+                    .body(job);
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
-            error.put("message", e.getMessage() != null ? e.getMessage() : "Failed to delete user");
+            error.put("message", e.getMessage() != null ? e.getMessage() : failureMessage);
             return ResponseEntity.badRequest().body(error);
         }
     }
     
-    @DeleteMapping("/drivers/{driverId}")
-    public ResponseEntity<Map<String, String>> deleteDriver(@PathVariable Long driverId) {
+    @GetMapping("/deletion-jobs")
+    public ResponseEntity<List<DeletionJob>> getDeletionJobs() {
+        return ResponseEntity.ok(deletionJobService.getRecentJobs());
+    }
+    
+    @GetMapping("/deletion-jobs/{jobId}")
+    public ResponseEntity<DeletionJob> getDeletionJob(@PathVariable Long jobId) {
         try {
-            userService.deleteUser(driverId);
-            Map<String, String> response = new HashMap<>();
-            response.put("message", "Driver deleted successfully");
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(deletionJobService.getJob(jobId));
         } catch (Exception e) {
-            Map<String, String> error = new HashMap<>();
-            error.put("message", e.getMessage() != null ? e.getMessage() : "Failed to delete driver");
-            return ResponseEntity.badRequest().body(error);
+            return ResponseEntity.notFound().build();
         }
     }
     
-    @DeleteMapping("/vehicles/{vehicleId}")
-    public ResponseEntity<Map<String, String>> deleteVehicle(@PathVariable Long vehicleId) {
+    @PostMapping("/deletion-jobs/{jobId}/retry")
+    public ResponseEntity<?> retryDeletionJob(@PathVariable Long jobId) {
         try {
-            vehicleService.deleteVehicle(vehicleId);
-            Map<String, String> response = new HashMap<>();
-            response.put("message", "Vehicle deleted successfully");
-            return ResponseEntity.ok(response);
+            return ResponseEntity.accepted().body(deletionJobService.retry(jobId));
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
-            error.put("message", e.getMessage() != null ? e.getMessage() : "Failed to delete vehicle");
+            error.put("message", e.getMessage());
             return ResponseEntity.badRequest().body(error);
         }
     }
@@ -137,6 +248,151 @@ public class AdminController {
         }
     }
     
+    @GetMapping("/bookings/{bookingId}/nearest-drivers")
+    public ResponseEntity<?> getNearestDriversForBooking(@PathVariable Long bookingId,
+                                                         @RequestParam(defaultValue = "5") int limit) {
+        try {
+            List<NearbyDriver> drivers = bookingService.findNearestDriversForBooking(bookingId, Math.min(limit, 50));
+            return ResponseEntity.ok(drivers);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("message", e.getMessage() != null ? e.getMessage() : "Failed to find nearby drivers");
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
+    @PostMapping("/bookings/{bookingId}/assign-nearest-driver")
+    public ResponseEntity<?> assignNearestDriver(@PathVariable Long bookingId) {
+        try {
+            Booking booking = bookingService.assignNearestDriver(bookingId);
+            return ResponseEntity.ok(booking);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("message", e.getMessage() != null ? e.getMessage() : "Failed to assign driver");
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
+    @PostMapping("/dispatch/run")
+    public ResponseEntity<?> runDispatch() {
+        try {
+            return ResponseEntity.ok(dispatchService.runDispatch());
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("message", e.getMessage() != null ? e.getMessage() : "Dispatch failed");
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
+    @PostMapping("/stats/rebuild")
+    public ResponseEntity<?> rebuildStats() {
+        try {
+            return ResponseEntity.ok(statsRollupService.rebuild());
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("message", e.getMessage() != null ? e.getMessage() : "Stats rebuild failed");
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
+    @GetMapping("/notifications/retention")
+    public ResponseEntity<Map<String, Integer>> getNotificationRetention() {
+        return ResponseEntity.ok(notificationArchiveService.getRetentionDays());
+    }
+    
+    @PostMapping("/notifications/compact")
+    public ResponseEntity<?> compactNotifications() {
+        try {
+            return ResponseEntity.ok(notificationArchiveService.compact());
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("message", e.getMessage() != null ? e.getMessage() : "Notification compaction failed");
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
+    /**
+     * Archived notifications as newline-delimited JSON, oldest day first; at most a year of days
+     */
+    @GetMapping("/notifications/archive")
+    public ResponseEntity<StreamingResponseBody> getArchivedNotifications(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Long userId) {
+        try {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                    .body(notificationArchiveService.readArchive(from, to, userId));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    @GetMapping("/drivers/{driverId}/earnings")
+    public ResponseEntity<Map<String, Object>> getDriverEarnings(@PathVariable Long driverId) {
+        try {
+            return ResponseEntity.ok(earningsLedgerService.getBalance(driverId));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    @GetMapping("/drivers/{driverId}/earnings/ledger")
+    public ResponseEntity<?> getDriverEarningsLedger(@PathVariable Long driverId,
+                                                     @RequestParam(required = false) Long cursor,
+                                                     @RequestParam(defaultValue = "20") int limit) {
+        try {
+            return ResponseEntity.ok(earningsLedgerService.getLedger(driverId, cursor, limit));
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("message", e.getMessage() != null ? e.getMessage() : "Failed to load ledger");
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
+    @PostMapping("/drivers/{driverId}/payouts")
+    public ResponseEntity<?> createPayout(@PathVariable Long driverId, @RequestBody Map<String, Object> request) {
+        try {
+            User driver = userService.getUserById(driverId);
+            if (driver.getRole() != User.Role.DRIVER) {
+                throw new RuntimeException("User is not a driver");
+            }
+            Object amount = request.get("amount");
+            if (amount == null) {
+                throw new RuntimeException("amount is required");
+            }
+            Object reference = request.get("reference");
+            return ResponseEntity.ok(earningsLedgerService.recordPayout(driverId, new BigDecimal(amount.toString()),
+                    reference != null ? reference.toString() : null));
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("message", e.getMessage() != null ? e.getMessage() : "Payout failed");
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
+    @GetMapping("/commission-rates")
+    public ResponseEntity<List<CommissionRate>> getCommissionRates() {
+        return ResponseEntity.ok(earningsLedgerService.getRateHistory());
+    }
+    
+    @PostMapping("/commission-rates")
+    public ResponseEntity<?> addCommissionRate(@RequestBody Map<String, Object> request) {
+        try {
+            Object rate = request.get("rate");
+            if (rate == null) {
+                throw new RuntimeException("rate is required");
+            }
+            Object effectiveFrom = request.get("effectiveFrom");
+            return ResponseEntity.ok(earningsLedgerService.addRate(new BigDecimal(rate.toString()),
+                    effectiveFrom != null ? LocalDateTime.parse(effectiveFrom.toString()) : null));
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("message", e.getMessage() != null ? e.getMessage() : "Failed to add commission rate");
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
     @DeleteMapping("/bookings/{bookingId}/remove-driver")
     public ResponseEntity<Booking> removeDriver(@PathVariable Long bookingId) {
         try {
@@ -3,17 +3,21 @@ package com.drivenow.controller;
 import com.drivenow.dto.AuthResponse;
 import com.drivenow.dto.LoginRequest;
 import com.drivenow.dto.RegisterRequest;
+import com.drivenow.entity.DriverDocument;
 import com.drivenow.entity.User;
 import com.drivenow.service.AuthService;
 import com.drivenow.service.NotificationService;
 import com.drivenow.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -30,17 +34,38 @@ public class AuthController {
     public ResponseEntity<?> register(@RequestBody RegisterRequest request) {
         try {
             AuthResponse response = authService.register(request);
-            
-            // Send welcome notification to new user
-            try {
-                User newUser = userRepository.findByEmail(request.getEmail()).orElse(null);
-                if (newUser != null) {
-                    notificationService.notifyAccountCreated(newUser);
-                }
-            } catch (Exception e) {
-                System.err.println("Failed to send welcome notification: " + e.getMessage());
+            sendWelcomeNotification(request);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("message", e.getMessage() != null ? e.getMessage() : "Registration failed");
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
+    /**
+     * Driver sign-up with documents: the registration JSON in the "user" part and each
+     * document as its own file part
+     */
+    @PostMapping(value = "/register", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> registerWithDocuments(
+            @RequestPart("user") RegisterRequest request,
+            @RequestPart(value = "driversLicense", required = false) MultipartFile driversLicense,
+            @RequestPart(value = "vehicleRegistration", required = false) MultipartFile vehicleRegistration,
+            @RequestPart(value = "insuranceCertificate", required = false) MultipartFile insuranceCertificate) {
+        try {
+            Map<DriverDocument.DocumentType, MultipartFile> documents = new EnumMap<>(DriverDocument.DocumentType.class);
+            if (driversLicense != null) {
+                documents.put(DriverDocument.DocumentType.DRIVERS_LICENSE, driversLicense);
             }
-            
+            if (vehicleRegistration != null) {
+                documents.put(DriverDocument.DocumentType.VEHICLE_REGISTRATION, vehicleRegistration);
+            }
+            if (insuranceCertificate != null) {
+                documents.put(DriverDocument.DocumentType.INSURANCE_CERTIFICATE, insuranceCertificate);
+            }
+            AuthResponse response = authService.register(request, documents);
+            sendWelcomeNotification(request);
             return ResponseEntity.ok(response);
         } catch (Exception e) {
             Map<String, String> error = new HashMap<>();
@@ -49,6 +74,17 @@ public class AuthController {
         }
     }
     
+    private void sendWelcomeNotification(RegisterRequest request) {
+        try {
+            User newUser = userRepository.findByEmail(request.getEmail()).orElse(null);
+            if (newUser != null) {
+                notificationService.notifyAccountCreated(newUser);
+            }
+        } catch (Exception e) {
+            System.err.println("Failed to send welcome notification: " + e.getMessage());
+        }
+    }
+    
     @PostMapping("/login")
     public ResponseEntity<?> login(@RequestBody LoginRequest request) {
         try {
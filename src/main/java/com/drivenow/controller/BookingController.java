@@ -1,13 +1,21 @@
 package com.drivenow.controller;
 
 import com.drivenow.dto.BookingRequest;
+import com.drivenow.dto.NearbyDriver;
 import com.drivenow.entity.Booking;
+import com.drivenow.entity.User;
 import com.drivenow.service.BookingService;
+import com.drivenow.service.DriverLocationService;
 import com.drivenow.service.NotificationService;
+import com.drivenow.service.TripTrackingService;
+import com.drivenow.service.UserService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 import java.util.Map;
@@ -18,6 +26,9 @@ import java.util.Map;
 public class BookingController {
     
     private final BookingService bookingService;
+    private final UserService userService;
+    private final DriverLocationService driverLocationService;
+    private final TripTrackingService tripTrackingService;
     private final NotificationService notificationService;
     
     @GetMapping("/{id}")
@@ -166,6 +177,33 @@ public class BookingController {
         }
     }
     
+    /**
+     * Live tracking stream (server-sent events): a snapshot, then "status" and "position" events
+     */
+    @GetMapping("/{id}/track")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN', 'DRIVER')")
+    public ResponseEntity<SseEmitter> trackBooking(@PathVariable Long id, Authentication authentication) {
+        try {
+            User user = userService.findByEmail(authentication.getName());
+            Booking booking = bookingService.getBookingById(id);
+            
+            // Only the customer, the assigned driver or an admin may follow a trip
+            boolean isCustomer = booking.getUser() != null && booking.getUser().getId().equals(user.getId());
+            boolean isDriver = booking.getDriver() != null && booking.getDriver().getId().equals(user.getId());
+            if (!isCustomer && !isDriver && user.getRole() != User.Role.ADMIN) {
+                return ResponseEntity.status(403).build();
+            }
+            
+            // The driver's position is only shared while the trip is live
+            NearbyDriver driverPosition = TripTrackingService.isLive(booking)
+                    ? driverLocationService.getLocation(booking.getDriver().getId()) : null;
+            SseEmitter emitter = tripTrackingService.subscribe(booking, driverPosition);
+            return ResponseEntity.ok().contentType(MediaType.TEXT_EVENT_STREAM).body(emitter);
+        } catch (Exception e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
     @DeleteMapping("/{id}")
     @PreAuthorize("hasAnyRole('ADMIN', 'USER')")
     public ResponseEntity<Void> deleteBooking(@PathVariable Long id) {
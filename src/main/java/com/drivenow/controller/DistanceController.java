@@ -1,87 +1,132 @@
 package com.drivenow.controller;
 
+import com.drivenow.dto.DistanceMatrixRequest;
+import com.drivenow.dto.DistanceMatrixResponse;
+import com.drivenow.dto.GeoPoint;
 import com.drivenow.service.DistanceCalculationService;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/distance")
 @RequiredArgsConstructor
+@Slf4j
 @CrossOrigin(origins = "*", methods = {RequestMethod.GET, RequestMethod.POST, RequestMethod.OPTIONS})
 public class DistanceController {
     
     private final DistanceCalculationService distanceService;
     
+    @Value("${routing.matrix.max-pairs:2500}")
+    private int maxMatrixPairs;
+    
+    /**
+     * Asynchronous: the servlet thread is released while the routing backend responds and
+     * the response is written when the returned future completes.
+     */
     @PostMapping("/calculate")
-    public ResponseEntity<Map<String, Object>> calculateDistance(@RequestBody Map<String, Double> request) {
-        System.out.println("🔵 ===== Distance Calculation Request =====");
-        System.out.println("📥 Request payload: " + request);
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> calculateDistance(@RequestBody Map<String, Double> request) {
+        Double lat1 = request.get("lat1");
+        Double lon1 = request.get("lon1");
+        Double lat2 = request.get("lat2");
+        Double lon2 = request.get("lon2");
         
-        try {
-            Double lat1 = request.get("lat1");
-            Double lon1 = request.get("lon1");
-            Double lat2 = request.get("lat2");
-            Double lon2 = request.get("lon2");
-            
-            System.out.println("📍 Coordinates:");
-            System.out.println("   lat1=" + lat1 + ", lon1=" + lon1);
-            System.out.println("   lat2=" + lat2 + ", lon2=" + lon2);
-            
-            if (lat1 == null || lon1 == null || lat2 == null || lon2 == null) {
-                System.err.println("❌ Missing coordinates in request");
-                return ResponseEntity.badRequest()
-                    .body(Map.of("error", "Missing coordinates", "received", request));
-            }
-            
-            // Validate coordinate ranges
-            if (lat1 < -90 || lat1 > 90 || lat2 < -90 || lat2 > 90) {
-                System.err.println("❌ Invalid latitude values");
-                return ResponseEntity.badRequest()
-                    .body(Map.of("error", "Latitude must be between -90 and 90"));
-            }
-            
-            if (lon1 < -180 || lon1 > 180 || lon2 < -180 || lon2 > 180) {
-                System.err.println("❌ Invalid longitude values");
-                return ResponseEntity.badRequest()
-                    .body(Map.of("error", "Longitude must be between -180 and 180"));
-            }
-            
-            double distance = distanceService.calculateDistance(lat1, lon1, lat2, lon2);
-            
-            if (distance <= 0) {
-                System.err.println("⚠️ Calculated distance is zero or negative: " + distance);
-                return ResponseEntity.ok(Map.of(
-                    "distanceKm", 0.0,
-                    "distanceMiles", 0.0,
-                    "warning", "Could not calculate valid distance"
+        if (lat1 == null || lon1 == null || lat2 == null || lon2 == null) {
+            log.debug("Distance request without coordinates: {}", request);
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest()
+                .body(Map.of("error", "Missing coordinates", "received", request)));
+        }
+        
+        // Validate coordinate ranges
+        if (lat1 < -90 || lat1 > 90 || lat2 < -90 || lat2 > 90) {
+            log.debug("Distance request with invalid latitude: {}", request);
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest()
+                .body(Map.of("error", "Latitude must be between -90 and 90")));
+        }
+        
+        if (lon1 < -180 || lon1 > 180 || lon2 < -180 || lon2 > 180) {
+            log.debug("Distance request with invalid longitude: {}", request);
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest()
+                .body(Map.of("error", "Longitude must be between -180 and 180")));
+        }
+        
+        return distanceService.calculateDistanceAsync(lat1, lon1, lat2, lon2)
+            .thenApply(distance -> {
+                if (distance <= 0) {
+                    log.warn("Calculated distance is zero or negative: {}", distance);
+                    return ResponseEntity.ok(Map.<String, Object>of(
+                        "distanceKm", 0.0,
+                        "distanceMiles", 0.0,
+                        "warning", "Could not calculate valid distance"
+                    ));
+                }
+                
+                return ResponseEntity.ok(Map.<String, Object>of(
+                    "distanceKm", distance,
+                    "distanceMiles", Math.round(distance * 0.621371 * 100.0) / 100.0
                 ));
-            }
-            
-            Map<String, Object> response = Map.of(
-                "distanceKm", distance,
-                "distanceMiles", Math.round(distance * 0.621371 * 100.0) / 100.0
-            );
-            
-            System.out.println("📤 Success! Returning: " + response);
-            System.out.println("🔵 ==========================================");
-            
+            })
+            .exceptionally(e -> {
+                log.error("Error calculating distance: ", e);
+                return ResponseEntity.status(500)
+                    .body(Map.of(
+                        "error", "Internal server error: " + e.getMessage(),
+                        "type", e.getClass().getSimpleName()
+                    ));
+            });
+    }
+    
+    @PostMapping("/matrix")
+    public ResponseEntity<?> calculateMatrix(@RequestBody DistanceMatrixRequest request) {
+        List<GeoPoint> origins = request.getOrigins();
+        List<GeoPoint> destinations = request.getDestinations();
+        
+        if (origins == null || origins.isEmpty() || destinations == null || destinations.isEmpty()) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("error", "origins and destinations must not be empty"));
+        }
+        
+        if ((long) origins.size() * destinations.size() > maxMatrixPairs) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("error", "Too many pairs (max " + maxMatrixPairs + ")"));
+        }
+        
+        String invalid = validatePoints(origins, "origins");
+        if (invalid == null) {
+            invalid = validatePoints(destinations, "destinations");
+        }
+        if (invalid != null) {
+            return ResponseEntity.badRequest().body(Map.of("error", invalid));
+        }
+        
+        try {
+            DistanceMatrixResponse response = distanceService.calculateMatrix(origins, destinations);
             return ResponseEntity.ok(response);
-            
         } catch (Exception e) {
-            System.err.println("❌ FATAL ERROR in distance calculation:");
-            System.err.println("   Message: " + e.getMessage());
-            System.err.println("   Type: " + e.getClass().getName());
-            e.printStackTrace();
-            System.out.println("🔵 ==========================================");
-            
             return ResponseEntity.status(500)
-                .body(Map.of(
-                    "error", "Internal server error: " + e.getMessage(),
-                    "type", e.getClass().getSimpleName()
-                ));
+                .body(Map.of("error", "Internal server error: " + e.getMessage()));
+        }
+    }
+    
+    private String validatePoints(List<GeoPoint> points, String field) {
+        for (int i = 0; i < points.size(); i++) {
+            GeoPoint point = points.get(i);
+            if (point == null || point.getLat() == null || point.getLon() == null) {
+                return "Missing coordinates in " + field + "[" + i + "]";
+            }
+            if (point.getLat() < -90 || point.getLat() > 90) {
+                return "Latitude must be between -90 and 90 in " + field + "[" + i + "]";
+            }
+            if (point.getLon() < -180 || point.getLon() > 180) {
+                return "Longitude must be between -180 and 180 in " + field + "[" + i + "]";
+            }
         }
+        return null;
     }
 }
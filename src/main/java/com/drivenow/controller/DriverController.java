@@ -2,14 +2,24 @@ package com.drivenow.controller;
 
 import com.drivenow.entity.Booking;
 import com.drivenow.entity.User;
+import com.drivenow.dto.NearbyDriver;
+import com.drivenow.dto.TelemetryBatchRequest;
+import com.drivenow.dto.TelemetryPoint;
 import com.drivenow.service.BookingService;
+import com.drivenow.service.DriverLocationService;
+import com.drivenow.service.EarningsLedgerService;
+import com.drivenow.service.TripTelemetryService;
+import com.drivenow.service.TripTrackingService;
 import com.drivenow.service.UserService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -22,6 +32,13 @@ public class DriverController {
     
     private final BookingService bookingService;
     private final UserService userService;
+    private final DriverLocationService driverLocationService;
+    private final TripTelemetryService tripTelemetryService;
+    private final TripTrackingService tripTrackingService;
+    private final EarningsLedgerService earningsLedgerService;
+    
+    @Value("${telemetry.max-batch-points:1000}")
+    private int maxTelemetryBatch;
     
     @GetMapping("/trips")
     public ResponseEntity<List<Booking>> getDriverTrips(Authentication authentication) {
@@ -43,6 +60,45 @@ public class DriverController {
         }
     }
     
+    /**
+     * Paginated, filterable variant of /trips: {trips, hasMore, nextCursor}
+     */
+    @GetMapping("/trips/page")
+    public ResponseEntity<?> getDriverTripsPage(@RequestParam(required = false) List<String> status,
+                                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+                                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate,
+                                                @RequestParam(required = false) String cursor,
+                                                @RequestParam(defaultValue = "20") int limit,
+                                                Authentication authentication) {
+        try {
+            User driver = userService.findByEmail(authentication.getName());
+            if (driver == null) {
+                return ResponseEntity.notFound().build();
+            }
+            
+            // One page of trips assigned to this driver
+            Map<String, Object> page = bookingService.getDriverTrips(driver.getId(), status, fromDate, toDate, cursor, limit);
+            return ResponseEntity.ok(page);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("message", e.getMessage() != null ? e.getMessage() : "Failed to load trips");
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
+    @GetMapping("/trips/active")
+    public ResponseEntity<List<Booking>> getActiveTrips(Authentication authentication) {
+        try {
+            User driver = userService.findByEmail(authentication.getName());
+            if (driver == null) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok(bookingService.getActiveTripsByDriverId(driver.getId()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
     @PutMapping("/trips/{tripId}/start")
     public ResponseEntity<?> startTrip(@PathVariable Long tripId, Authentication authentication) {
         try {
@@ -93,6 +149,43 @@ public class DriverController {
         }
     }
     
+    @PostMapping("/trips/{tripId}/telemetry")
+    public ResponseEntity<?> postTelemetry(@PathVariable Long tripId, @RequestBody TelemetryBatchRequest request,
+                                           Authentication authentication) {
+        try {
+            User driver = userService.findByEmail(authentication.getName());
+            Booking booking = bookingService.getBookingById(tripId);
+            
+            // Verify this trip belongs to the authenticated driver
+            if (booking.getDriver() == null || !booking.getDriver().getId().equals(driver.getId())) {
+                Map<String, String> error = new HashMap<>();
+                error.put("message", "Unauthorized: This trip is not assigned to you");
+                return ResponseEntity.status(403).body(error);
+            }
+            
+            List<TelemetryPoint> points = request.getPoints();
+            if (points == null || points.isEmpty()) {
+                throw new RuntimeException("points are required");
+            }
+            if (points.size() > maxTelemetryBatch) {
+                throw new RuntimeException("At most " + maxTelemetryBatch + " points per batch");
+            }
+            
+            int accepted = tripTelemetryService.ingest(booking, points);
+            if (accepted > 0) {
+                TelemetryPoint latest = points.get(points.size() - 1);
+                tripTrackingService.publishDriverPosition(driver.getId(), latest.getLatitude(), latest.getLongitude());
+            }
+            Map<String, Object> response = new HashMap<>(tripTelemetryService.getTripSummary(tripId));
+            response.put("accepted", accepted);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("message", e.getMessage() != null ? e.getMessage() : "Failed to record telemetry");
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
     @PutMapping("/trips/{tripId}/cancel")
     public ResponseEntity<?> cancelTrip(@PathVariable Long tripId, Authentication authentication) {
         try {
@@ -136,4 +229,65 @@ public class DriverController {
             return ResponseEntity.badRequest().build();
         }
     }
+    
+    @GetMapping("/earnings")
+    public ResponseEntity<Map<String, Object>> getEarnings(Authentication authentication) {
+        try {
+            User driver = userService.findByEmail(authentication.getName());
+            return ResponseEntity.ok(earningsLedgerService.getBalance(driver.getId()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    @GetMapping("/earnings/ledger")
+    public ResponseEntity<?> getEarningsLedger(@RequestParam(required = false) Long cursor,
+                                               @RequestParam(defaultValue = "20") int limit,
+                                               Authentication authentication) {
+        try {
+            User driver = userService.findByEmail(authentication.getName());
+            return ResponseEntity.ok(earningsLedgerService.getLedger(driver.getId(), cursor, limit));
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("message", e.getMessage() != null ? e.getMessage() : "Failed to load ledger");
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
+    @PutMapping("/location")
+    public ResponseEntity<?> updateLocation(@RequestBody Map<String, Double> request, Authentication authentication) {
+        try {
+            Double latitude = request.get("latitude");
+            Double longitude = request.get("longitude");
+            if (latitude == null || longitude == null
+                    || latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180) {
+                Map<String, String> error = new HashMap<>();
+                error.put("message", "Valid latitude and longitude are required");
+                return ResponseEntity.badRequest().body(error);
+            }
+            
+            User driver = userService.findByEmail(authentication.getName());
+            driverLocationService.updateLocation(driver, latitude, longitude);
+            tripTrackingService.publishDriverPosition(driver.getId(), latitude, longitude);
+            return ResponseEntity.noContent().build();
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("message", e.getMessage() != null ? e.getMessage() : "Failed to update location");
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
+    @GetMapping("/location")
+    public ResponseEntity<NearbyDriver> getLocation(Authentication authentication) {
+        try {
+            User driver = userService.findByEmail(authentication.getName());
+            NearbyDriver location = driverLocationService.getLocation(driver.getId());
+            if (location == null) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok(location);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
 }
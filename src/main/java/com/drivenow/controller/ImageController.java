@@ -0,0 +1,37 @@
+package com.drivenow.controller;
+
+import com.drivenow.service.ProfileImageService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Duration;
+
+@RestController
+@RequestMapping("/api/images")
+@RequiredArgsConstructor
+public class ImageController {
+    
+    private final ProfileImageService profileImageService;
+    
+    /**
+     * A profile image thumbnail. The URL names the content, so it is cacheable for a year.
+     */
+    @GetMapping("/{hash}/{size}")
+    public ResponseEntity<Resource> getImage(@PathVariable String hash, @PathVariable int size) {
+        try {
+            Resource image = new FileSystemResource(profileImageService.getVariant(hash, size));
+            return ResponseEntity.ok()
+                    .contentType(MediaType.IMAGE_JPEG)
+                    .eTag(hash + "-" + size)
+                    .cacheControl(CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable())
+                    .body(image);
+        } catch (Exception e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+}
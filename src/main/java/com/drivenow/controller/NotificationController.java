@@ -1,15 +1,24 @@
 package com.drivenow.controller;
 
+import com.drivenow.dto.NotificationIdsRequest;
+import com.drivenow.entity.BroadcastNotification;
 import com.drivenow.entity.Notification;
+import com.drivenow.entity.User;
 import com.drivenow.service.NotificationService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/notifications")
@@ -55,20 +64,75 @@ public class NotificationController {
         }
     }
     
+    /**
+     * Paginated notifications: ?cursor= for older pages, ?since= for what is new since the
+     * latestCursor of an earlier response; optional isRead and category filters
+     */
+    @GetMapping("/user/{userId}/feed")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN', 'DRIVER')")
+    public ResponseEntity<?> getFeed(
+            @PathVariable Long userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) String since,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) Boolean isRead,
+            @RequestParam(required = false) String category,
+            Authentication authentication) {
+        try {
+            String email = authentication.getName();
+            Notification.NotificationCategory notificationCategory = null;
+            if (category != null) {
+                try {
+                    notificationCategory = Notification.NotificationCategory.valueOf(category.toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    return badRequest("Unknown category: " + category);
+                }
+            }
+            return ResponseEntity.ok(notificationService.getFeed(userId, cursor, since, limit, isRead,
+                    notificationCategory, email));
+        } catch (SecurityException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        } catch (Exception e) {
+            return badRequest(e.getMessage());
+        }
+    }
+    
     @GetMapping("/user/{userId}/unread-count")
     @PreAuthorize("hasAnyRole('USER', 'ADMIN', 'DRIVER')")
     public ResponseEntity<Long> getUnreadCount(
             @PathVariable Long userId,
             Authentication authentication) {
         try {
-            String email = authentication.getName();
-            Long count = notificationService.getUnreadCount(userId, email);
+            User authenticatedUser = (User) authentication.getPrincipal();
+            Long count = notificationService.getUnreadCount(userId, authenticatedUser);
             return ResponseEntity.ok(count);
         } catch (SecurityException e) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
         }
     }
     
+    /**
+     * Notification stream (server-sent events): "notification" events with the notification id
+     * as event id, and "unread" events with the unread count. Reconnects send Last-Event-ID
+     * (or ?lastEventId=) to receive what was missed.
+     */
+    @GetMapping("/user/{userId}/stream")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN', 'DRIVER')")
+    public ResponseEntity<SseEmitter> streamNotifications(
+            @PathVariable Long userId,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventIdHeader,
+            @RequestParam(value = "lastEventId", required = false) Long lastEventIdParam,
+            Authentication authentication) {
+        try {
+            String email = authentication.getName();
+            Long lastEventId = lastEventIdHeader != null ? lastEventIdHeader : lastEventIdParam;
+            SseEmitter emitter = notificationService.streamNotifications(userId, lastEventId, email);
+            return ResponseEntity.ok().contentType(MediaType.TEXT_EVENT_STREAM).body(emitter);
+        } catch (SecurityException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+    }
+    
     @PostMapping
     @PreAuthorize("hasAnyRole('USER', 'ADMIN', 'DRIVER')")
     public ResponseEntity<Notification> createNotification(
@@ -87,6 +151,53 @@ public class NotificationController {
         }
     }
     
+    /**
+     * Notify every user of a role, or everyone when audience is omitted, with one stored row
+     */
+    @PostMapping("/broadcasts")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> createBroadcast(@RequestBody BroadcastNotification broadcast) {
+        try {
+            return ResponseEntity.ok(notificationService.createBroadcast(broadcast));
+        } catch (Exception e) {
+            return badRequest(e.getMessage());
+        }
+    }
+    
+    @PutMapping("/user/{userId}/broadcasts/{broadcastId}/read")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN', 'DRIVER')")
+    public ResponseEntity<Void> markBroadcastAsRead(
+            @PathVariable Long userId,
+            @PathVariable Long broadcastId,
+            Authentication authentication) {
+        try {
+            String email = authentication.getName();
+            notificationService.markBroadcastAsRead(userId, broadcastId, email);
+            return ResponseEntity.ok().build();
+        } catch (SecurityException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    @DeleteMapping("/user/{userId}/broadcasts/{broadcastId}")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN', 'DRIVER')")
+    public ResponseEntity<Void> dismissBroadcast(
+            @PathVariable Long userId,
+            @PathVariable Long broadcastId,
+            Authentication authentication) {
+        try {
+            String email = authentication.getName();
+            notificationService.dismissBroadcast(userId, broadcastId, email);
+            return ResponseEntity.ok().build();
+        } catch (SecurityException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
     @PutMapping("/{id}/read")
     @PreAuthorize("hasAnyRole('USER', 'ADMIN', 'DRIVER')")
     public ResponseEntity<Notification> markAsRead(
@@ -105,13 +216,13 @@ public class NotificationController {
     
     @PutMapping("/user/{userId}/read-all")
     @PreAuthorize("hasAnyRole('USER', 'ADMIN', 'DRIVER')")
-    public ResponseEntity<Void> markAllAsRead(
+    public ResponseEntity<Map<String, Integer>> markAllAsRead(
             @PathVariable Long userId,
             Authentication authentication) {
         try {
             String email = authentication.getName();
-            notificationService.markAllAsRead(userId, email);
-            return ResponseEntity.ok().build();
+            int updated = notificationService.markAllAsRead(userId, email);
+            return ResponseEntity.ok(count("updated", updated));
         } catch (SecurityException e) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
         } catch (Exception e) {
@@ -119,6 +230,67 @@ public class NotificationController {
         }
     }
     
+    /**
+     * Mark a selection of notifications as read; body {"ids": [...]}
+     */
+    @PutMapping("/user/{userId}/read")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN', 'DRIVER')")
+    public ResponseEntity<?> markSelectedAsRead(
+            @PathVariable Long userId,
+            @RequestBody NotificationIdsRequest request,
+            Authentication authentication) {
+        try {
+            String email = authentication.getName();
+            int updated = notificationService.markAsRead(userId, request.getIds(), email);
+            return ResponseEntity.ok(count("updated", updated));
+        } catch (SecurityException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        } catch (Exception e) {
+            return badRequest(e.getMessage());
+        }
+    }
+    
+    /**
+     * Delete the user's notifications created before ?before= (ISO date-time)
+     */
+    @DeleteMapping("/user/{userId}/older-than")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN', 'DRIVER')")
+    public ResponseEntity<?> deleteOlderThan(
+            @PathVariable Long userId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime before,
+            Authentication authentication) {
+        try {
+            String email = authentication.getName();
+            int deleted = notificationService.deleteOlderThan(userId, before, email);
+            return ResponseEntity.ok(count("deleted", deleted));
+        } catch (SecurityException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        } catch (Exception e) {
+            return badRequest(e.getMessage());
+        }
+    }
+    
+    @DeleteMapping("/user/{userId}/category/{category}")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN', 'DRIVER')")
+    public ResponseEntity<?> deleteByCategory(
+            @PathVariable Long userId,
+            @PathVariable String category,
+            Authentication authentication) {
+        try {
+            String email = authentication.getName();
+            Notification.NotificationCategory notificationCategory =
+                    Notification.NotificationCategory.valueOf(category.toUpperCase());
+            int deleted = notificationService.deleteByCategory(userId, notificationCategory, email);
+            return ResponseEntity.ok(count("deleted", deleted));
+        } catch (SecurityException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        } catch (IllegalArgumentException e) {
+            return badRequest("Unknown category: " + category);
+        } catch (Exception e) {
+            return badRequest(e.getMessage());
+        }
+    }
+    
     @DeleteMapping("/{id}")
     @PreAuthorize("hasAnyRole('USER', 'ADMIN', 'DRIVER')")
     public ResponseEntity<Void> deleteNotification(
@@ -150,4 +322,16 @@ public class NotificationController {
             return ResponseEntity.badRequest().build();
         }
     }
+    
+    private static Map<String, Integer> count(String key, int value) {
+        Map<String, Integer> response = new HashMap<>();
+        response.put(key, value);
+        return response;
+    }
+    
+    private static ResponseEntity<Map<String, String>> badRequest(String message) {
+        Map<String, String> error = new HashMap<>();
+        error.put("message", message != null ? message : "Invalid request");
+        return ResponseEntity.badRequest().body(error);
+    }
 }
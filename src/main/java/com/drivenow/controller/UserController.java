@@ -1,13 +1,27 @@
 package com.drivenow.controller;
 
+import com.drivenow.entity.DeletionJob;
+import com.drivenow.entity.DriverDocument;
 import com.drivenow.entity.User;
 import com.drivenow.entity.UserSettings;
+import com.drivenow.service.DeletionJobService;
+import com.drivenow.service.DriverDocumentService;
 import com.drivenow.service.UserService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.Resource;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.InputStream;
+import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -18,6 +32,8 @@ import java.util.Map;
 public class UserController {
     
     private final UserService userService;
+    private final DriverDocumentService driverDocumentService;
+    private final DeletionJobService deletionJobService;
     
     @GetMapping("/{id}")
     @PreAuthorize("hasAnyRole('USER', 'ADMIN', 'DRIVER')")
@@ -64,9 +80,20 @@ public class UserController {
     
     @GetMapping("/drivers/available")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<List<User>> getAvailableDrivers() {
-        List<User> drivers = userService.getAvailableDrivers();
-        return ResponseEntity.ok(drivers);
+    public ResponseEntity<List<User>> getAvailableDrivers(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+        try {
+            List<User> drivers;
+            if (startDate != null) {
+                drivers = userService.getAvailableDrivers(startDate, endDate != null ? endDate : startDate);
+            } else {
+                drivers = userService.getAvailableDrivers();
+            }
+            return ResponseEntity.ok(drivers);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
     
     @PutMapping("/{id}")
@@ -104,10 +131,10 @@ public class UserController {
     
     @DeleteMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<Void> deleteUser(@PathVariable Long id) {
+    public ResponseEntity<DeletionJob> deleteUser(@PathVariable Long id) {
         try {
-            userService.deleteUser(id);
-            return ResponseEntity.ok().build();
+            DeletionJob job = deletionJobService.deleteUser(id);
+            return ResponseEntity.accepted().body(job);
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
@@ -137,7 +164,11 @@ public class UserController {
     
     @PutMapping("/{id}/profile-image")
     @PreAuthorize("hasAnyRole('USER', 'ADMIN', 'DRIVER')")
-    public ResponseEntity<User> updateProfileImage(@PathVariable Long id, @RequestBody Map<String, String> request) {
+    public ResponseEntity<User> updateProfileImage(@PathVariable Long id, @RequestBody Map<String, String> request,
+                                                   Authentication authentication) {
+        if (!isSelfOrAdmin(authentication, id)) {
+            return ResponseEntity.status(403).build();
+        }
         try {
             String imageUrl = request.get("profileImage");
             User updated = userService.updateProfileImage(id, imageUrl);
@@ -147,6 +178,26 @@ public class UserController {
         }
     }
     
+    /**
+     * Upload a profile image; the user's profileImage becomes a thumbnail URL
+     */
+    @PostMapping(value = "/{id}/profile-image", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN', 'DRIVER')")
+    public ResponseEntity<?> uploadProfileImage(@PathVariable Long id, @RequestPart("file") MultipartFile file,
+                                                Authentication authentication) {
+        if (!isSelfOrAdmin(authentication, id)) {
+            return ResponseEntity.status(403).build();
+        }
+        try (InputStream content = file.getInputStream()) {
+            User updated = userService.uploadProfileImage(id, content);
+            return ResponseEntity.ok(updated);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
     @PostMapping("/{id}/change-password")
     @PreAuthorize("hasAnyRole('USER', 'ADMIN', 'DRIVER')")
     public ResponseEntity<Map<String, String>> changePassword(@PathVariable Long id, @RequestBody Map<String, String> request) {
@@ -187,4 +238,80 @@ public class UserController {
             return ResponseEntity.notFound().build();
         }
     }
+    
+    @GetMapping("/{id}/documents")
+    @PreAuthorize("hasAnyRole('ADMIN', 'DRIVER')")
+    public ResponseEntity<List<DriverDocument>> getDocuments(@PathVariable Long id, Authentication authentication) {
+        if (!isSelfOrAdmin(authentication, id)) {
+            return ResponseEntity.status(403).build();
+        }
+        return ResponseEntity.ok(driverDocumentService.getDocuments(id));
+    }
+    
+    @PostMapping(value = "/{id}/documents/{type}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("hasAnyRole('ADMIN', 'DRIVER')")
+    public ResponseEntity<?> uploadDocument(@PathVariable Long id, @PathVariable String type,
+                                            @RequestPart("file") MultipartFile file,
+                                            Authentication authentication) {
+        if (!isSelfOrAdmin(authentication, id)) {
+            return ResponseEntity.status(403).build();
+        }
+        try (InputStream content = file.getInputStream()) {
+            DriverDocument document = driverDocumentService.upload(id, DriverDocument.DocumentType.fromPath(type),
+                    content, file.getContentType(), file.getOriginalFilename());
+            return ResponseEntity.ok(document);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
+    /**
+     * Streams the file from the blob store as a download; Range requests get partial content
+     * and the content hash is the ETag. Only known document types are served as themselves,
+     * and never inline, so an uploaded file cannot run as a page on this origin.
+     */
+    @GetMapping("/{id}/documents/{type}")
+    @PreAuthorize("hasAnyRole('ADMIN', 'DRIVER')")
+    public ResponseEntity<Resource> downloadDocument(@PathVariable Long id, @PathVariable String type,
+                                                     Authentication authentication) {
+        if (!isSelfOrAdmin(authentication, id)) {
+            return ResponseEntity.status(403).build();
+        }
+        try {
+            DriverDocument document = driverDocumentService.getDocument(id, DriverDocument.DocumentType.fromPath(type));
+            String filename = document.getFilename() != null ? document.getFilename() : document.getType().toPath();
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(DriverDocumentService.safeContentType(document.getContentType())))
+                    .eTag(document.getBlobHash())
+                    .cacheControl(CacheControl.noCache().cachePrivate())
+                    .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(filename).build().toString())
+                    .header("X-Content-Type-Options", "nosniff")
+                    .body(driverDocumentService.openDocument(document));
+        } catch (Exception e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
+    @DeleteMapping("/{id}/documents/{type}")
+    @PreAuthorize("hasAnyRole('ADMIN', 'DRIVER')")
+    public ResponseEntity<Void> deleteDocument(@PathVariable Long id, @PathVariable String type,
+                                               Authentication authentication) {
+        if (!isSelfOrAdmin(authentication, id)) {
+            return ResponseEntity.status(403).build();
+        }
+        try {
+            driverDocumentService.delete(id, DriverDocument.DocumentType.fromPath(type));
+            return ResponseEntity.ok().build();
+        } catch (Exception e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
+    // A user's documents and profile image are managed by that user and by admins
+    private boolean isSelfOrAdmin(Authentication authentication, Long userId) {
+        User user = userService.findByEmail(authentication.getName());
+        return user.getId().equals(userId) || user.getRole() == User.Role.ADMIN;
+    }
 }
@@ -1,6 +1,8 @@
 package com.drivenow.controller;
 
+import com.drivenow.entity.DeletionJob;
 import com.drivenow.entity.Vehicle;
+import com.drivenow.service.DeletionJobService;
 import com.drivenow.service.VehicleService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
@@ -16,6 +18,7 @@ import java.util.List;
 public class VehicleController {
     
     private final VehicleService vehicleService;
+    private final DeletionJobService deletionJobService;
     
     @GetMapping("/{id}")
     public ResponseEntity<Vehicle> getVehicleById(@PathVariable Long id) {
@@ -92,10 +95,10 @@ public class VehicleController {
     
     @DeleteMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<Void> deleteVehicle(@PathVariable Long id) {
+    public ResponseEntity<DeletionJob> deleteVehicle(@PathVariable Long id) {
         try {
-            vehicleService.deleteVehicle(id);
-            return ResponseEntity.ok().build();
+            DeletionJob job = deletionJobService.deleteVehicle(id);
+            return ResponseEntity.accepted().body(job);
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
@@ -0,0 +1,15 @@
+package com.drivenow.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DistanceMatrixRequest {
+    private List<GeoPoint> origins;
+    private List<GeoPoint> destinations;
+}
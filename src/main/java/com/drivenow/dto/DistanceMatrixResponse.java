@@ -0,0 +1,20 @@
+package com.drivenow.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DistanceMatrixResponse {
+    // distancesKm[i][j] is the distance from origins[i] to destinations[j]
+    private double[][] distancesKm;
+    private int cachedPairs;
+    private int routedPairs;
+    // Pairs answered with the Haversine fallback (backend failure, open circuit or deadline)
+    private int fallbackPairs;
+    private String source;
+}
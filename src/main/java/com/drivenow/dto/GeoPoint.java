@@ -0,0 +1,13 @@
+package com.drivenow.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GeoPoint {
+    private Double lat;
+    private Double lon;
+}
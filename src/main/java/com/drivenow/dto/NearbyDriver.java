@@ -0,0 +1,21 @@
+package com.drivenow.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NearbyDriver {
+    private Long driverId;
+    private String name;
+    private Double latitude;
+    private Double longitude;
+    private Double distanceKm;
+    private Instant updatedAt;
+}
@@ -0,0 +1,20 @@
+package com.drivenow.dto;
+
+import com.drivenow.entity.User;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * What decides which broadcasts a user sees: their role and when they joined
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NotificationRecipient {
+    private Long id;
+    private User.Role role;
+    private LocalDateTime joinedAt;
+}
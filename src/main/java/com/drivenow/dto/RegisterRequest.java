@@ -17,9 +17,4 @@ public class RegisterRequest {
     private String licenseNumber; // For drivers
     private Boolean available; // For drivers
     private String profileImage; // Profile image URL
-    
-    // Driver documents (base64 encoded)
-    private String driversLicense;
-    private String vehicleRegistration;
-    private String insuranceCertificate;
 }
@@ -0,0 +1,14 @@
+package com.drivenow.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TelemetryBatchRequest {
+    private List<TelemetryPoint> points;
+}
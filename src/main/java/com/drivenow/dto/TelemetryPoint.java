@@ -0,0 +1,15 @@
+package com.drivenow.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TelemetryPoint {
+    private Double latitude;
+    private Double longitude;
+    // Epoch milliseconds when the fix was taken
+    private Long timestamp;
+}
@@ -0,0 +1,21 @@
+package com.drivenow.dto;
+
+import com.drivenow.entity.User;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The columns an admin user list needs, selected directly instead of loading User entities
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserSummary {
+    private Long id;
+    private String name;
+    private String email;
+    private User.Role role;
+    private User.Status status;
+    private Boolean available;
+}
@@ -17,7 +17,10 @@ import java.util.HashMap;
 import java.util.Map;
 
 @Entity
-@Table(name = "bookings")
+@Table(name = "bookings", indexes = {
+        @Index(name = "idx_booking_driver_created", columnList = "driver_id, created_at, id"),
+        @Index(name = "idx_booking_driver_status", columnList = "driver_id, status")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -75,6 +78,9 @@ public class Booking {
     
     private Double distanceKm;
     
+    // Distance actually driven, from trip telemetry; set when the trip completes
+    private Double actualDistanceKm;
+    
     @Column(precision = 10, scale = 2)
     private BigDecimal basePricePerDay;
     
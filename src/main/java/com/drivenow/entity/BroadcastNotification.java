@@ -0,0 +1,56 @@
+package com.drivenow.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.LocalDateTime;
+
+/**
+ * A notification stored once for every user of a role, or for everyone when the audience is
+ * null. Users see broadcasts created after they joined; whether they read or dismissed one is
+ * kept in their BroadcastReadState.
+ */
+@Entity
+@Table(name = "broadcast_notifications", indexes = {
+        @Index(name = "idx_broadcast_created", columnList = "created_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@EntityListeners(AuditingEntityListener.class)
+public class BroadcastNotification {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Enumerated(EnumType.STRING)
+    private User.Role audience;
+    
+    @Column(nullable = false)
+    private String title;
+    
+    @Column(nullable = false, length = 1000)
+    private String message;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Notification.NotificationType type = Notification.NotificationType.INFO;
+    
+    @Enumerated(EnumType.STRING)
+    private Notification.NotificationCategory category;
+    
+    private String actionUrl;
+    
+    @CreatedDate
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    public boolean isFor(User.Role role, LocalDateTime joinedAt) {
+        return (audience == null || audience == role) && (joinedAt == null || !createdAt.isBefore(joinedAt));
+    }
+}
@@ -0,0 +1,42 @@
+package com.drivenow.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Which broadcasts a user has read and dismissed, one row per user who has done either.
+ *
+ * Each is a watermark plus a bitmap: every broadcast up to the watermark is covered, and bit
+ * i of the marks covers broadcast watermark + 1 + i. The watermark moves up as the gaps fill,
+ * so the bitmap stays a few bytes. Dismissed broadcasts count as read.
+ */
+@Entity
+@Table(name = "broadcast_read_states")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BroadcastReadState {
+    
+    public static final int MAX_MARK_BYTES = 1024;
+    
+    @Id
+    private Long userId;
+    
+    @Column(nullable = false)
+    private Long readUpTo = 0L;
+    
+    @Column(length = MAX_MARK_BYTES)
+    private byte[] readMarks;
+    
+    @Column(nullable = false)
+    private Long dismissedUpTo = 0L;
+    
+    @Column(length = MAX_MARK_BYTES)
+    private byte[] dismissedMarks;
+    
+    public BroadcastReadState(Long userId) {
+        this.userId = userId;
+    }
+}
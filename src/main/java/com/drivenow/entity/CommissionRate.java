@@ -0,0 +1,40 @@
+package com.drivenow.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Share of a trip's price paid to the driver. Rates are never edited: a new rate is added
+ * with the time it takes effect, and each earnings entry records the rate it was computed with.
+ */
+@Entity
+@Table(name = "commission_rates", indexes = {
+        @Index(name = "idx_commission_effective", columnList = "effective_from")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@EntityListeners(AuditingEntityListener.class)
+public class CommissionRate {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false, precision = 5, scale = 4)
+    private BigDecimal rate;
+    
+    @Column(nullable = false)
+    private LocalDateTime effectiveFrom;
+    
+    @CreatedDate
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
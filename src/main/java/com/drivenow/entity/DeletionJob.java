@@ -0,0 +1,78 @@
+package com.drivenow.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.LocalDateTime;
+
+/**
+ * Background deletion of a user or vehicle and everything that references it. The job
+ * records the step it is on, so it resumes there after a restart or a failure. One instance
+ * at a time runs it, holding a lease that another instance may take over once it expires.
+ */
+@Entity
+@Table(name = "deletion_jobs", indexes = {
+        @Index(name = "idx_deletion_job_target", columnList = "target_type, target_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@EntityListeners(AuditingEntityListener.class)
+public class DeletionJob {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private TargetType targetType;
+    
+    @Column(nullable = false)
+    private Long targetId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status = Status.PENDING;
+    
+    // Index into the target type's step list, and that step's name for display
+    @Column(nullable = false)
+    private Integer stepIndex = 0;
+    
+    private String step;
+    
+    // Rows deleted or detached so far
+    @Column(nullable = false)
+    private Long processedRows = 0L;
+    
+    @Column(length = 1000)
+    private String error;
+    
+    // Instance running the job and until when its claim holds; renewed with every chunk
+    @Column(length = 64)
+    private String owner;
+    
+    private LocalDateTime leaseUntil;
+    
+    @CreatedDate
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    @LastModifiedDate
+    private LocalDateTime updatedAt;
+    
+    private LocalDateTime finishedAt;
+    
+    public enum TargetType {
+        USER, VEHICLE
+    }
+    
+    public enum Status {
+        PENDING, RUNNING, COMPLETED, FAILED
+    }
+}
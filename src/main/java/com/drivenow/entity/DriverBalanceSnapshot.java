@@ -0,0 +1,47 @@
+package com.drivenow.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Running totals of a driver's earnings ledger for one month, with the balance after the
+ * month's last entry. Period 0 is the driver's account: lifetime totals and current balance.
+ */
+@Entity
+@Table(name = "driver_balance_snapshots", indexes = {
+        @Index(name = "idx_balance_driver_period", columnList = "driver_id, period", unique = true)
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DriverBalanceSnapshot {
+    
+    public static final int ACCOUNT = 0;
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false)
+    private Long driverId;
+    
+    // yyyyMM, or ACCOUNT
+    @Column(nullable = false)
+    private Integer period;
+    
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal earned = BigDecimal.ZERO;
+    
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal paidOut = BigDecimal.ZERO;
+    
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal closingBalance = BigDecimal.ZERO;
+    
+    private LocalDateTime updatedAt;
+}
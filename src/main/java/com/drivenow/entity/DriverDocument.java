@@ -0,0 +1,82 @@
+package com.drivenow.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.LocalDateTime;
+
+/**
+ * A driver's uploaded document. The file itself lives in the blob store under blobHash;
+ * this row is only the reference and metadata.
+ */
+@Entity
+@Table(name = "driver_documents", indexes = {
+        @Index(name = "idx_document_user_type", columnList = "user_id, type", unique = true),
+        @Index(name = "idx_document_blob", columnList = "blob_hash")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@EntityListeners(AuditingEntityListener.class)
+public class DriverDocument {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false)
+    private Long userId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private DocumentType type;
+    
+    @JsonIgnore
+    @Column(nullable = false, length = 64)
+    private String blobHash;
+    
+    @Column(nullable = false)
+    private Long size;
+    
+    private String contentType;
+    
+    private String filename;
+    
+    @CreatedDate
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    @LastModifiedDate
+    private LocalDateTime updatedAt;
+    
+    @JsonProperty("url")
+    public String getUrl() {
+        return "/api/users/" + userId + "/documents/" + type.toPath();
+    }
+    
+    public enum DocumentType {
+        DRIVERS_LICENSE, VEHICLE_REGISTRATION, INSURANCE_CERTIFICATE;
+        
+        /**
+         * Accepts the enum name or the path form used in URLs (drivers-license)
+         */
+        public static DocumentType fromPath(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase().replace('-', '_'));
+            } catch (IllegalArgumentException e) {
+                throw new RuntimeException("Unknown document type: " + value);
+            }
+        }
+        
+        public String toPath() {
+            return name().toLowerCase().replace('_', '-');
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.drivenow.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One line of a driver's earnings ledger. Entries are only ever appended: a paid trip adds
+ * its earning, a payout subtracts the amount paid, and every entry carries the balance after it.
+ */
+@Entity
+@Table(name = "driver_earnings_entries", indexes = {
+        @Index(name = "idx_earnings_driver_id", columnList = "driver_id, id"),
+        @Index(name = "idx_earnings_booking_type", columnList = "booking_id, type", unique = true)
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DriverEarningsEntry {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false)
+    private Long driverId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private EntryType type;
+    
+    // Trip the earning is for; null for payouts
+    private Long bookingId;
+    
+    // Positive for earnings, negative for payouts
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal amount;
+    
+    // Trip price and the commission rate applied to it (earnings only)
+    @Column(precision = 10, scale = 2)
+    private BigDecimal grossAmount;
+    
+    @Column(precision = 5, scale = 4)
+    private BigDecimal commissionRate;
+    
+    private Long commissionRateId;
+    
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal balanceAfter;
+    
+    // yyyyMM of createdAt
+    @Column(nullable = false)
+    private Integer period;
+    
+    private String reference;
+    
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    public enum EntryType {
+        EARNING, PAYOUT
+    }
+}
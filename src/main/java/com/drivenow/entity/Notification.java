@@ -12,7 +12,10 @@ import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "notifications")
+@Table(name = "notifications", indexes = {
+        @Index(name = "idx_notification_category_created", columnList = "category, created_at"),
+        @Index(name = "idx_notification_user_created", columnList = "user_id DESC, created_at DESC, id DESC")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -32,6 +35,16 @@ public class Notification {
     @JsonProperty("userId")
     private Long userId;
     
+    // Set on feed entries that stand for a BroadcastNotification. Their id is the broadcast's
+    // id negated, so it never matches a notification; broadcastId is the broadcast's own id.
+    @Transient
+    @JsonProperty("broadcast")
+    private boolean broadcast;
+    
+    @Transient
+    @JsonProperty("broadcastId")
+    private Long broadcastId;
+    
     @Column(nullable = false)
     private String title;
     
@@ -0,0 +1,51 @@
+package com.drivenow.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.LocalDateTime;
+
+/**
+ * A run of GPS breadcrumbs for one trip, encoded with BreadcrumbCodec
+ */
+@Entity
+@Table(name = "trip_telemetry_chunks", indexes = {
+        @Index(name = "idx_telemetry_booking_seq", columnList = "bookingId, sequence", unique = true)
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@EntityListeners(AuditingEntityListener.class)
+public class TripTelemetryChunk {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false)
+    private Long bookingId;
+    
+    @Column(nullable = false)
+    private Integer sequence;
+    
+    @Column(nullable = false)
+    private Integer pointCount;
+    
+    @Column(nullable = false)
+    private Long firstTimestamp;
+    
+    @Column(nullable = false)
+    private Long lastTimestamp;
+    
+    @Lob
+    @Column(nullable = false, columnDefinition = "MEDIUMBLOB")
+    private byte[] data;
+    
+    @CreatedDate
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -1,5 +1,6 @@
 package com.drivenow.entity;
 
+import com.drivenow.service.UserDirectoryListener;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
@@ -20,7 +21,7 @@ import java.util.*;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@EntityListeners(AuditingEntityListener.class)
+@EntityListeners({AuditingEntityListener.class, UserDirectoryListener.class})
 public class User implements UserDetails {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -52,15 +53,6 @@ public class User implements UserDetails {
     
     private String licenseNumber;
     
-    @Column(length = 10000000)
-    private String driversLicense;
-    
-    @Column(length = 10000000)
-    private String vehicleRegistration;
-    
-    @Column(length = 10000000)
-    private String insuranceCertificate;
-    
     @Column(nullable = false)
     private Boolean available = true;
     
@@ -0,0 +1,57 @@
+package com.drivenow.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Booking counters for one user and one month, as a customer or as a driver. Bookings are
+ * bucketed by the month they were created in; period 0 holds the user's all-time totals.
+ */
+@Entity
+@Table(name = "user_stats_rollups", indexes = {
+        @Index(name = "idx_rollup_user_side_period", columnList = "user_id, side, period", unique = true)
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserStatsRollup {
+
+    public static final int ALL_TIME = 0;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Side side;
+
+    // yyyyMM, or ALL_TIME
+    @Column(nullable = false)
+    private Integer period;
+
+    @Column(nullable = false)
+    private Long bookings = 0L;
+
+    // Customer: PENDING/CONFIRMED. Driver: CONFIRMED/DRIVER_ASSIGNED/ONGOING
+    @Column(nullable = false)
+    private Long active = 0L;
+
+    @Column(nullable = false)
+    private Long completed = 0L;
+
+    // Sum of totalPrice over bookings whose payment is completed
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal paidAmount = BigDecimal.ZERO;
+
+    public enum Side {
+        CUSTOMER, DRIVER
+    }
+}
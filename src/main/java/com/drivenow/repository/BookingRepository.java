@@ -1,11 +1,17 @@
 package com.drivenow.repository;
 
 import com.drivenow.entity.Booking;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -30,14 +36,78 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
     @Query("SELECT b FROM Booking b WHERE b.driver.id = :driverId ORDER BY b.createdAt DESC")
     List<Booking> findByDriverIdOrderByCreatedAtDesc(Long driverId);
     
+    @Query("SELECT b FROM Booking b WHERE b.driver.id = :driverId AND b.status NOT IN ('CANCELLED', 'COMPLETED')")
+    List<Booking> findActiveByDriverId(Long driverId);
+    
+    /**
+     * The driver's active bookings overlapping [start, end] (inclusive), other than the given
+     * booking. A locking read, so it sees the latest committed rows rather than the
+     * transaction's snapshot.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM Booking b WHERE b.driver.id = :driverId AND b.id <> :bookingId " +
+           "AND b.status NOT IN ('CANCELLED', 'COMPLETED') AND b.startDate <= :end AND b.endDate >= :start")
+    List<Booking> findOverlappingForDriver(Long driverId, Long bookingId, LocalDate start, LocalDate end);
+    
+    // Driver trip board, newest first. Keyset pagination: the next page starts strictly after
+    // (createdAt, id) of the last row returned, so deep pages cost the same as the first one.
+    // Settings are fetched too: the inverse one-to-one can't be lazy and would cost a query per user.
+    @Query("SELECT b FROM Booking b JOIN FETCH b.user u LEFT JOIN FETCH u.settings JOIN FETCH b.vehicle " +
+           "JOIN FETCH b.driver d LEFT JOIN FETCH d.settings " +
+           "WHERE b.driver.id = :driverId AND b.status IN :statuses " +
+           "AND (:fromDate IS NULL OR b.startDate >= :fromDate) AND (:toDate IS NULL OR b.startDate <= :toDate) " +
+           "ORDER BY b.createdAt DESC, b.id DESC")
+    List<Booking> findDriverTrips(Long driverId, Collection<Booking.BookingStatus> statuses,
+                                  LocalDate fromDate, LocalDate toDate, Pageable pageable);
+    
+    @Query("SELECT b FROM Booking b JOIN FETCH b.user u LEFT JOIN FETCH u.settings JOIN FETCH b.vehicle " +
+           "JOIN FETCH b.driver d LEFT JOIN FETCH d.settings " +
+           "WHERE b.driver.id = :driverId AND b.status IN :statuses " +
+           "AND (:fromDate IS NULL OR b.startDate >= :fromDate) AND (:toDate IS NULL OR b.startDate <= :toDate) " +
+           "AND (b.createdAt < :afterCreatedAt OR (b.createdAt = :afterCreatedAt AND b.id < :afterId)) " +
+           "ORDER BY b.createdAt DESC, b.id DESC")
+    List<Booking> findDriverTripsAfter(Long driverId, Collection<Booking.BookingStatus> statuses,
+                                       LocalDate fromDate, LocalDate toDate,
+                                       LocalDateTime afterCreatedAt, Long afterId, Pageable pageable);
+    
+    @Query("SELECT b FROM Booking b JOIN FETCH b.user u LEFT JOIN FETCH u.settings JOIN FETCH b.vehicle " +
+           "LEFT JOIN FETCH b.driver d LEFT JOIN FETCH d.settings WHERE b.id IN :ids")
+    List<Booking> findWithDetailsByIdIn(Collection<Long> ids);
+    
     @Query("SELECT b FROM Booking b WHERE b.vehicle.id = :vehicleId " +
            "AND ((b.startDate <= :endDate AND b.endDate >= :startDate)) " +
            "AND b.status NOT IN ('CANCELLED', 'COMPLETED')")
     List<Booking> findConflictingBookings(Long vehicleId, LocalDate startDate, LocalDate endDate);
     
+    @Query("SELECT b FROM Booking b WHERE b.driver IS NULL AND b.status IN ('PENDING', 'CONFIRMED') " +
+           "AND b.pickupLatitude IS NOT NULL AND b.pickupLongitude IS NOT NULL ORDER BY b.createdAt")
+    List<Booking> findDispatchableBookings(Pageable pageable);
+    
+    // Paid trips whose driver earning is not in the ledger yet
+    @Query("SELECT b FROM Booking b JOIN FETCH b.driver WHERE b.status = 'COMPLETED' AND b.paymentStatus = 'COMPLETED' " +
+           "AND NOT EXISTS (SELECT e.id FROM DriverEarningsEntry e WHERE e.bookingId = b.id AND e.type = 'EARNING') " +
+           "ORDER BY b.updatedAt, b.id")
+    List<Booking> findPaidTripsWithoutEarning();
+    
     @Query("SELECT COUNT(b) FROM Booking b WHERE b.user.id = :userId")
     Long countBookingsByUserId(Long userId);
     
     @Query("SELECT COALESCE(SUM(b.totalPrice), 0) FROM Booking b WHERE b.user.id = :userId AND b.paymentStatus = 'COMPLETED'")
     Double getTotalSpentByUserId(Long userId);
+    
+    @Query("SELECT COUNT(b) FROM Booking b WHERE b.user.id = :userId")
+    long countByUserId(Long userId);
+    
+    @Query("SELECT COUNT(b) FROM Booking b WHERE b.driver.id = :driverId AND b.status IN :statuses")
+    long countByDriverIdAndStatusIn(Long driverId, Collection<Booking.BookingStatus> statuses);
+    
+    @Query("SELECT b.id FROM Booking b WHERE b.driver.id = :driverId")
+    List<Long> findIdsByDriverId(Long driverId, Pageable pageable);
+    
+    @Query("SELECT b.id FROM Booking b WHERE b.vehicle.id = :vehicleId")
+    List<Long> findIdsByVehicleId(Long vehicleId, Pageable pageable);
+    
+    @Modifying
+    @Query("UPDATE Booking b SET b.driver = null WHERE b.id IN :ids")
+    int clearDriver(Collection<Long> ids);
 }
@@ -0,0 +1,23 @@
+package com.drivenow.repository;
+
+import com.drivenow.entity.BroadcastNotification;
+import com.drivenow.entity.Notification;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface BroadcastNotificationRepository extends JpaRepository<BroadcastNotification, Long> {
+    
+    List<BroadcastNotification> findByCreatedAtGreaterThanEqualOrderByIdAsc(LocalDateTime since);
+    
+    @Query("SELECT b FROM BroadcastNotification b WHERE b.category = :category AND b.createdAt < :before ORDER BY b.createdAt ASC, b.id ASC")
+    List<BroadcastNotification> findExpired(Notification.NotificationCategory category, LocalDateTime before, Pageable pageable);
+    
+    @Query("SELECT b FROM BroadcastNotification b WHERE b.category IS NULL AND b.createdAt < :before ORDER BY b.createdAt ASC, b.id ASC")
+    List<BroadcastNotification> findExpiredUncategorized(LocalDateTime before, Pageable pageable);
+}
@@ -0,0 +1,31 @@
+package com.drivenow.repository;
+
+import com.drivenow.entity.BroadcastReadState;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface BroadcastReadStateRepository extends JpaRepository<BroadcastReadState, Long> {
+    
+    /**
+     * Create the user's row if it doesn't exist yet; safe to race
+     */
+    @Modifying
+    @Query(value = "INSERT INTO broadcast_read_states (user_id, read_up_to, dismissed_up_to) " +
+                   "VALUES (:userId, 0, 0) ON DUPLICATE KEY UPDATE user_id = user_id",
+           nativeQuery = true)
+    void ensureState(Long userId);
+    
+    /**
+     * Lock the user's row; changes to one user's marks are serialized on it
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM BroadcastReadState s WHERE s.userId = :userId")
+    Optional<BroadcastReadState> lockByUserId(Long userId);
+}
@@ -0,0 +1,18 @@
+package com.drivenow.repository;
+
+import com.drivenow.entity.CommissionRate;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface CommissionRateRepository extends JpaRepository<CommissionRate, Long> {
+    
+    // Rate in force at a given time: the latest one that had taken effect by then
+    Optional<CommissionRate> findFirstByEffectiveFromLessThanEqualOrderByEffectiveFromDescIdDesc(LocalDateTime time);
+    
+    List<CommissionRate> findAllByOrderByEffectiveFromDescIdDesc();
+}
@@ -0,0 +1,41 @@
+package com.drivenow.repository;
+
+import com.drivenow.entity.DeletionJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface DeletionJobRepository extends JpaRepository<DeletionJob, Long> {
+    Optional<DeletionJob> findFirstByTargetTypeAndTargetIdAndStatusIn(DeletionJob.TargetType targetType, Long targetId,
+                                                                      Collection<DeletionJob.Status> statuses);
+    
+    List<DeletionJob> findByStatusInOrderByIdAsc(Collection<DeletionJob.Status> statuses);
+    
+    List<DeletionJob> findTop50ByOrderByIdDesc();
+    
+    /**
+     * Take a job that is queued, already ours, or whose runner's lease has run out; of several
+     * instances trying at once exactly one sees 1
+     */
+    @Modifying
+    @Query("UPDATE DeletionJob j SET j.status = 'RUNNING', j.owner = :owner, j.leaseUntil = :leaseUntil " +
+           "WHERE j.id = :id AND (j.status = 'PENDING' OR (j.status = 'RUNNING' " +
+           "AND (j.owner = :owner OR j.leaseUntil IS NULL OR j.leaseUntil < :now)))")
+    int claim(Long id, String owner, LocalDateTime now, LocalDateTime leaseUntil);
+    
+    /**
+     * Extend our lease on a running job; 0 if another instance has taken it over. Locks the
+     * job row until the caller's transaction ends.
+     */
+    @Modifying
+    @Query("UPDATE DeletionJob j SET j.leaseUntil = :leaseUntil " +
+           "WHERE j.id = :id AND j.owner = :owner AND j.status = 'RUNNING'")
+    int renewLease(Long id, String owner, LocalDateTime leaseUntil);
+}
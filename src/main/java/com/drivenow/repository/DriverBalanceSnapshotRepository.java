@@ -0,0 +1,37 @@
+package com.drivenow.repository;
+
+import com.drivenow.entity.DriverBalanceSnapshot;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface DriverBalanceSnapshotRepository extends JpaRepository<DriverBalanceSnapshot, Long> {
+    
+    List<DriverBalanceSnapshot> findByDriverIdAndPeriodIn(Long driverId, Collection<Integer> periods);
+    
+    Optional<DriverBalanceSnapshot> findByDriverIdAndPeriod(Long driverId, Integer period);
+    
+    /**
+     * Create the driver's account row if it doesn't exist yet; safe to race
+     */
+    @Modifying
+    @Query(value = "INSERT INTO driver_balance_snapshots (driver_id, period, earned, paid_out, closing_balance) " +
+                   "VALUES (:driverId, 0, 0, 0, 0) ON DUPLICATE KEY UPDATE driver_id = driver_id",
+           nativeQuery = true)
+    void ensureAccount(Long driverId);
+    
+    /**
+     * Lock the driver's account row; ledger appends for one driver are serialized on it
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM DriverBalanceSnapshot s WHERE s.driverId = :driverId AND s.period = 0")
+    Optional<DriverBalanceSnapshot> lockAccount(Long driverId);
+}
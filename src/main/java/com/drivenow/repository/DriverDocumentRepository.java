@@ -0,0 +1,18 @@
+package com.drivenow.repository;
+
+import com.drivenow.entity.DriverDocument;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface DriverDocumentRepository extends JpaRepository<DriverDocument, Long> {
+    
+    List<DriverDocument> findByUserId(Long userId);
+    
+    Optional<DriverDocument> findByUserIdAndType(Long userId, DriverDocument.DocumentType type);
+    
+    long countByBlobHash(String blobHash);
+}
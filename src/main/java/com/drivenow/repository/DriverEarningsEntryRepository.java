@@ -0,0 +1,19 @@
+package com.drivenow.repository;
+
+import com.drivenow.entity.DriverEarningsEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface DriverEarningsEntryRepository extends JpaRepository<DriverEarningsEntry, Long> {
+    
+    boolean existsByBookingIdAndType(Long bookingId, DriverEarningsEntry.EntryType type);
+    
+    // Ledger pages, newest first, keyed by id
+    List<DriverEarningsEntry> findByDriverIdOrderByIdDesc(Long driverId, Pageable pageable);
+    
+    List<DriverEarningsEntry> findByDriverIdAndIdLessThanOrderByIdDesc(Long driverId, Long id, Pageable pageable);
+}
@@ -2,11 +2,14 @@ package com.drivenow.repository;
 
 import com.drivenow.entity.DriverReview;
 import com.drivenow.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -30,4 +33,11 @@ public interface DriverReviewRepository extends JpaRepository<DriverReview, Long
     
     @Query("SELECT COUNT(r) FROM DriverReview r WHERE r.driver.id = :driverId")
     Long getReviewCountForDriver(@Param("driverId") Long driverId);
+    
+    @Query("SELECT r.id FROM DriverReview r WHERE r.user.id = :userId OR r.driver.id = :userId")
+    List<Long> findIdsByUserOrDriver(@Param("userId") Long userId, Pageable pageable);
+    
+    @Modifying
+    @Query("DELETE FROM DriverReview r WHERE r.booking.id IN :bookingIds")
+    int deleteByBookingIdIn(@Param("bookingIds") Collection<Long> bookingIds);
 }
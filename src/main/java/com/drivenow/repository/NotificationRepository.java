@@ -1,11 +1,14 @@
 package com.drivenow.repository;
 
 import com.drivenow.entity.Notification;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -25,4 +28,59 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
     @Modifying
     @Query("DELETE FROM Notification n WHERE n.user.id = :userId")
     void deleteByUserId(Long userId);
+    
+    @Modifying
+    @Query("UPDATE Notification n SET n.isRead = true WHERE n.user.id = :userId AND n.isRead = false")
+    int markAllReadByUserId(Long userId);
+    
+    @Modifying
+    @Query("UPDATE Notification n SET n.isRead = true WHERE n.user.id = :userId AND n.id IN :ids AND n.isRead = false")
+    int markReadByUserIdAndIdIn(Long userId, Collection<Long> ids);
+    
+    @Modifying
+    @Query("DELETE FROM Notification n WHERE n.user.id = :userId AND n.createdAt < :before")
+    int deleteByUserIdCreatedBefore(Long userId, LocalDateTime before);
+    
+    @Modifying
+    @Query("DELETE FROM Notification n WHERE n.user.id = :userId AND n.category = :category")
+    int deleteByUserIdAndCategory(Long userId, Notification.NotificationCategory category);
+    
+    @Query("SELECT n.id FROM Notification n WHERE n.user.id = :userId")
+    List<Long> findIdsByUserId(Long userId, Pageable pageable);
+    
+    @Query("SELECT n.user.id, COUNT(n) FROM Notification n WHERE n.user.id IN :userIds AND n.isRead = false GROUP BY n.user.id")
+    List<Object[]> countUnreadByUserIdIn(Collection<Long> userIds);
+    
+    @Query("SELECT n FROM Notification n WHERE n.user.id = :userId AND n.id > :afterId ORDER BY n.id DESC")
+    List<Notification> findByUserIdAfterNewestFirst(Long userId, Long afterId, Pageable pageable);
+    
+    @Query("SELECT n FROM Notification n WHERE n.category = :category AND n.createdAt < :before ORDER BY n.createdAt ASC, n.id ASC")
+    List<Notification> findExpired(Notification.NotificationCategory category, LocalDateTime before, Pageable pageable);
+    
+    @Query("SELECT n FROM Notification n WHERE n.category IS NULL AND n.createdAt < :before ORDER BY n.createdAt ASC, n.id ASC")
+    List<Notification> findExpiredUncategorized(LocalDateTime before, Pageable pageable);
+    
+    /**
+     * One feed page, newest first, strictly before the (createdAt, id) cursor. The createdAt
+     * bound is spelled out so it is an index range, and the order repeats the whole index so
+     * the rows come off it already sorted.
+     * @param isRead Only read or unread notifications, or null for both
+     * @param category Only this category, or null for all
+     */
+    @Query("SELECT n FROM Notification n WHERE n.user.id = :userId " +
+           "AND (:isRead IS NULL OR n.isRead = :isRead) AND (:category IS NULL OR n.category = :category) " +
+           "AND n.createdAt <= :createdAt AND (n.createdAt < :createdAt OR n.id < :id) " +
+           "ORDER BY n.user.id DESC, n.createdAt DESC, n.id DESC")
+    List<Notification> findFeedBefore(Long userId, Boolean isRead, Notification.NotificationCategory category,
+                                      LocalDateTime createdAt, Long id, Pageable pageable);
+    
+    /**
+     * Notifications created at or after the given time, oldest first
+     */
+    @Query("SELECT n FROM Notification n WHERE n.user.id = :userId " +
+           "AND (:isRead IS NULL OR n.isRead = :isRead) AND (:category IS NULL OR n.category = :category) " +
+           "AND n.createdAt >= :from " +
+           "ORDER BY n.createdAt ASC, n.id ASC")
+    List<Notification> findFeedSince(Long userId, Boolean isRead, Notification.NotificationCategory category,
+                                     LocalDateTime from, Pageable pageable);
 }
@@ -2,6 +2,7 @@ package com.drivenow.repository;
 
 import java.util.List;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -44,4 +45,10 @@ public interface ReviewRepository extends JpaRepository<Review, Long> {
     
     @Query("SELECT AVG(dr.rating) FROM DriverReview dr WHERE dr.driver.id = :driverId AND dr.status = 'APPROVED'")
     Double getAverageRatingForDriver(Long driverId);
+    
+    @Query("SELECT r.id FROM Review r WHERE r.user.id = :userId")
+    List<Long> findIdsByUserId(Long userId, Pageable pageable);
+    
+    @Query("SELECT r.id FROM Review r WHERE r.vehicle.id = :vehicleId")
+    List<Long> findIdsByVehicleId(Long vehicleId, Pageable pageable);
 }
@@ -0,0 +1,21 @@
+package com.drivenow.repository;
+
+import com.drivenow.entity.TripTelemetryChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface TripTelemetryChunkRepository extends JpaRepository<TripTelemetryChunk, Long> {
+    List<TripTelemetryChunk> findByBookingIdOrderBySequenceAsc(Long bookingId);
+    
+    void deleteByBookingId(Long bookingId);
+    
+    @Modifying
+    @Query("DELETE FROM TripTelemetryChunk c WHERE c.bookingId IN :bookingIds")
+    int deleteByBookingIdIn(Collection<Long> bookingIds);
+}
@@ -1,10 +1,16 @@
 package com.drivenow.repository;
 
+import com.drivenow.dto.NotificationRecipient;
+import com.drivenow.dto.UserSummary;
 import com.drivenow.entity.User;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,10 +20,43 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Boolean existsByEmail(String email);
     List<User> findByRole(User.Role role);
     List<User> findByStatus(User.Status status);
+    boolean existsByProfileImageStartingWith(String prefix);
     
     @Query("SELECT u FROM User u WHERE u.role = 'DRIVER' AND u.available = true")
     List<User> findAvailableDrivers();
     
     @Query("SELECT u FROM User u WHERE u.role = 'DRIVER' AND u.status = 'ACTIVE'")
     List<User> findAllActiveDrivers();
+    
+    /**
+     * Row lock on the user (SELECT ... FOR UPDATE); assignments of the same driver on any
+     * instance queue behind it until the holder commits
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT u FROM User u WHERE u.id = :id")
+    Optional<User> lockById(Long id);
+    
+    /**
+     * One page of summaries in id order, after the given id
+     * @param role Only users with this role, or null for all
+     */
+    @Query("SELECT new com.drivenow.dto.UserSummary(u.id, u.name, u.email, u.role, u.status, u.available) " +
+           "FROM User u WHERE (:role IS NULL OR u.role = :role) AND u.id > :afterId ORDER BY u.id")
+    List<UserSummary> findSummaries(User.Role role, Long afterId, Pageable pageable);
+    
+    @Query("SELECT new com.drivenow.dto.UserSummary(u.id, u.name, u.email, u.role, u.status, u.available) " +
+           "FROM User u WHERE u.id IN :ids")
+    List<UserSummary> findSummariesByIdIn(Collection<Long> ids);
+    
+    // Prefix search straight from the table, used until the in-memory directory is built
+    @Query("SELECT new com.drivenow.dto.UserSummary(u.id, u.name, u.email, u.role, u.status, u.available) " +
+           "FROM User u WHERE (:role IS NULL OR u.role = :role) " +
+           "AND (LOWER(u.name) LIKE CONCAT(:prefix, '%') OR LOWER(u.email) LIKE CONCAT(:prefix, '%')) ORDER BY u.name")
+    List<UserSummary> searchSummaries(String prefix, User.Role role, Pageable pageable);
+    
+    @Query("SELECT new com.drivenow.dto.NotificationRecipient(u.id, u.role, u.createdAt) FROM User u WHERE u.id = :id")
+    Optional<NotificationRecipient> findRecipient(Long id);
+    
+    @Query("SELECT new com.drivenow.dto.NotificationRecipient(u.id, u.role, u.createdAt) FROM User u WHERE u.id IN :ids")
+    List<NotificationRecipient> findRecipients(Collection<Long> ids);
 }
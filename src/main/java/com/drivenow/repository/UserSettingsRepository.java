@@ -2,11 +2,18 @@ package com.drivenow.repository;
 
 import com.drivenow.entity.UserSettings;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserSettingsRepository extends JpaRepository<UserSettings, Long> {
     Optional<UserSettings> findByUserId(Long userId);
+
+    @Query("SELECT s.user.id FROM UserSettings s WHERE s.updatedAt >= :since")
+    List<Long> findUserIdsModifiedSince(@Param("since") LocalDateTime since);
 }
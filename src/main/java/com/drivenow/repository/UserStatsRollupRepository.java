@@ -0,0 +1,72 @@
+package com.drivenow.repository;
+
+import com.drivenow.entity.UserStatsRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface UserStatsRollupRepository extends JpaRepository<UserStatsRollup, Long> {
+    
+    List<UserStatsRollup> findByUserIdAndSideAndPeriodIn(Long userId, UserStatsRollup.Side side, Collection<Integer> periods);
+    
+    /**
+     * Add deltas to a rollup row, creating it if needed. A single atomic statement, so
+     * concurrent booking transitions for the same user never lose an update.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO user_stats_rollups (user_id, side, period, bookings, active, completed, paid_amount) " +
+                   "VALUES (:userId, :side, :period, :bookings, :active, :completed, :paidAmount) " +
+                   "ON DUPLICATE KEY UPDATE bookings = bookings + VALUES(bookings), active = active + VALUES(active), " +
+                   "completed = completed + VALUES(completed), paid_amount = paid_amount + VALUES(paid_amount)",
+           nativeQuery = true)
+    void increment(Long userId, String side, int period, long bookings, long active, long completed, BigDecimal paidAmount);
+    
+    @Modifying
+    @Query("DELETE FROM UserStatsRollup r WHERE r.userId = :userId")
+    void deleteByUserId(Long userId);
+    
+    /**
+     * Set a rollup row to rebuilt totals, creating it if needed. Unlike a plain insert this cannot
+     * fail on the unique key when another rebuild or an increment creates the same row.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO user_stats_rollups (user_id, side, period, bookings, active, completed, paid_amount) " +
+                   "VALUES (:userId, :side, :period, :bookings, :active, :completed, :paidAmount) " +
+                   "ON DUPLICATE KEY UPDATE bookings = VALUES(bookings), active = VALUES(active), " +
+                   "completed = VALUES(completed), paid_amount = VALUES(paid_amount)",
+           nativeQuery = true)
+    void setTotals(Long userId, String side, int period, long bookings, long active, long completed, BigDecimal paidAmount);
+    
+    @Modifying
+    @Query("UPDATE UserStatsRollup r SET r.bookings = 0, r.active = 0, r.completed = 0, r.paidAmount = 0")
+    void zeroAllRollups();
+    
+    // Rows with nothing in them read the same as missing rows
+    @Modifying
+    @Query("DELETE FROM UserStatsRollup r WHERE r.bookings = 0 AND r.active = 0 AND r.completed = 0 AND r.paidAmount = 0")
+    void deleteEmptyRollups();
+    
+    // Rebuild sources: one row per (user, year, month) with
+    // [userId, year, month, bookings, customerActive, driverActive, completed, paidAmount]
+    @Query("SELECT b.user.id, YEAR(b.createdAt), MONTH(b.createdAt), COUNT(b), " +
+           "SUM(CASE WHEN b.status IN ('PENDING', 'CONFIRMED') THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN b.status IN ('CONFIRMED', 'DRIVER_ASSIGNED', 'ONGOING') THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN b.status = 'COMPLETED' THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN b.paymentStatus = 'COMPLETED' THEN b.totalPrice ELSE 0 END) " +
+           "FROM Booking b GROUP BY b.user.id, YEAR(b.createdAt), MONTH(b.createdAt)")
+    List<Object[]> aggregateByCustomerAndMonth();
+    
+    @Query("SELECT b.driver.id, YEAR(b.createdAt), MONTH(b.createdAt), COUNT(b), " +
+           "SUM(CASE WHEN b.status IN ('PENDING', 'CONFIRMED') THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN b.status IN ('CONFIRMED', 'DRIVER_ASSIGNED', 'ONGOING') THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN b.status = 'COMPLETED' THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN b.paymentStatus = 'COMPLETED' THEN b.totalPrice ELSE 0 END) " +
+           "FROM Booking b WHERE b.driver IS NOT NULL GROUP BY b.driver.id, YEAR(b.createdAt), MONTH(b.createdAt)")
+    List<Object[]> aggregateByDriverAndMonth();
+}
@@ -3,6 +3,7 @@ package com.drivenow.service;
 import com.drivenow.dto.AuthResponse;
 import com.drivenow.dto.LoginRequest;
 import com.drivenow.dto.RegisterRequest;
+import com.drivenow.entity.DriverDocument;
 import com.drivenow.entity.User;
 import com.drivenow.entity.UserSettings;
 import com.drivenow.repository.UserRepository;
@@ -14,6 +15,11 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
@@ -24,6 +30,29 @@ public class AuthService {
     private final PasswordEncoder passwordEncoder;
     private final JwtUtil jwtUtil;
     private final AuthenticationManager authenticationManager;
+    private final DriverDocumentService driverDocumentService;
+    private final ProfileImageService profileImageService;
+    
+    /**
+     * Register a driver together with their documents, streamed from the multipart upload
+     */
+    @Transactional
+    public AuthResponse register(RegisterRequest request, Map<DriverDocument.DocumentType, MultipartFile> documents) {
+        AuthResponse response = register(request);
+        for (Map.Entry<DriverDocument.DocumentType, MultipartFile> document : documents.entrySet()) {
+            MultipartFile file = document.getValue();
+            if (file == null || file.isEmpty()) {
+                continue;
+            }
+            try (InputStream content = file.getInputStream()) {
+                driverDocumentService.upload(response.getId(), document.getKey(), content,
+                        file.getContentType(), file.getOriginalFilename());
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to store " + document.getKey().toPath() + ": " + e.getMessage());
+            }
+        }
+        return response;
+    }
     
     @Transactional
     public AuthResponse register(RegisterRequest request) {
@@ -59,18 +88,7 @@ public class AuthService {
         
         // Set profile image
         if (request.getProfileImage() != null) {
-            user.setProfileImage(request.getProfileImage());
-        }
-        
-        // Set driver documents if provided
-        if (request.getDriversLicense() != null) {
-            user.setDriversLicense(request.getDriversLicense());
-        }
-        if (request.getVehicleRegistration() != null) {
-            user.setVehicleRegistration(request.getVehicleRegistration());
-        }
-        if (request.getInsuranceCertificate() != null) {
-            user.setInsuranceCertificate(request.getInsuranceCertificate());
+            user.setProfileImage(profileImageService.resolve(request.getProfileImage()));
         }
         
         user.setStatus(User.Status.ACTIVE);
@@ -1,16 +1,27 @@
 package com.drivenow.service;
 
 import com.drivenow.dto.BookingRequest;
+import com.drivenow.dto.NearbyDriver;
 import com.drivenow.entity.Booking;
 import com.drivenow.entity.User;
 import com.drivenow.entity.Vehicle;
 import com.drivenow.repository.BookingRepository;
 import com.drivenow.repository.UserRepository;
 import com.drivenow.repository.VehicleRepository;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -18,12 +29,23 @@ import java.util.Random;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 @SuppressWarnings("null")
 public class BookingService {
     
     private final BookingRepository bookingRepository;
     private final VehicleRepository vehicleRepository;
     private final UserRepository userRepository;
+    private final DriverLocationService driverLocationService;
+    private final DriverScheduleService driverScheduleService;
+    private final TripTelemetryService tripTelemetryService;
+    private final TripTrackingService tripTrackingService;
+    private final StatsRollupService statsRollupService;
+    private final EarningsLedgerService earningsLedgerService;
+    private final MeterRegistry meterRegistry;
+    private final TransactionTemplate transactionTemplate;
+    
+    private static final int MAX_TRIP_PAGE_SIZE = 100;
     
     public Booking getBookingById(Long id) {
         return bookingRepository.findById(id)
@@ -63,15 +85,111 @@ public class BookingService {
         return bookings;
     }
     
+    /**
+     * All of a driver's trips, newest first, with customer and vehicle fetched in the same query
+     */
     public List<Booking> getBookingsByDriverId(Long driverId) {
-        List<Booking> bookings = bookingRepository.findByDriverIdOrderByCreatedAtDesc(driverId);
-        // Eagerly load relationships
-        bookings.forEach(booking -> {
-            if (booking.getUser() != null) booking.getUser().getName();
-            if (booking.getVehicle() != null) booking.getVehicle().getName();
-            if (booking.getDriver() != null) booking.getDriver().getName();
-        });
-        return bookings;
+        return bookingRepository.findDriverTrips(driverId, List.of(Booking.BookingStatus.values()),
+                null, null, Pageable.unpaged());
+    }
+    
+    /**
+     * One page of a driver's trips, newest first
+     * @param statuses Status names to include; null or empty for all
+     * @param fromDate Earliest start date (inclusive, may be null)
+     * @param toDate Latest start date (inclusive, may be null)
+     * @param cursor nextCursor from the previous page, or null for the first page
+     * @return trips, nextCursor (null on the last page) and hasMore
+     */
+    public Map<String, Object> getDriverTrips(Long driverId, List<String> statuses, LocalDate fromDate,
+                                              LocalDate toDate, String cursor, int limit) {
+        if (limit < 1 || limit > MAX_TRIP_PAGE_SIZE) {
+            throw new RuntimeException("limit must be between 1 and " + MAX_TRIP_PAGE_SIZE);
+        }
+        List<Booking.BookingStatus> statusFilter = new ArrayList<>();
+        if (statuses == null || statuses.isEmpty()) {
+            statusFilter.addAll(List.of(Booking.BookingStatus.values()));
+        } else {
+            for (String status : statuses) {
+                try {
+                    statusFilter.add(Booking.BookingStatus.valueOf(status.trim().toUpperCase()));
+                } catch (IllegalArgumentException e) {
+                    throw new RuntimeException("Invalid status: " + status);
+                }
+            }
+        }
+        
+        // Fetch one extra row to learn whether another page exists
+        Pageable pageable = PageRequest.of(0, limit + 1);
+        List<Booking> trips;
+        if (cursor == null || cursor.isBlank()) {
+            trips = bookingRepository.findDriverTrips(driverId, statusFilter, fromDate, toDate, pageable);
+        } else {
+            TripCursor after = TripCursor.decode(cursor);
+            trips = bookingRepository.findDriverTripsAfter(driverId, statusFilter, fromDate, toDate,
+                    after.createdAt(), after.id(), pageable);
+        }
+        
+        boolean hasMore = trips.size() > limit;
+        if (hasMore) {
+            trips = trips.subList(0, limit);
+        }
+        Map<String, Object> page = new HashMap<>();
+        page.put("trips", trips);
+        page.put("hasMore", hasMore);
+        page.put("nextCursor", hasMore ? TripCursor.of(trips.get(trips.size() - 1)).encode() : null);
+        return page;
+    }
+    
+    /**
+     * The driver's current (not completed or cancelled) trips, ordered by start date. Served
+     * from the driver's schedule, so it only touches the rows of active assignments.
+     */
+    public List<Booking> getActiveTripsByDriverId(Long driverId) {
+        List<DriverScheduleService.Commitment> commitments = driverScheduleService.getCommitments(driverId);
+        if (commitments.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Booking> byId = new HashMap<>();
+        List<Long> ids = commitments.stream().map(DriverScheduleService.Commitment::bookingId).toList();
+        bookingRepository.findWithDetailsByIdIn(ids).forEach(booking -> byId.put(booking.getId(), booking));
+        
+        List<Booking> trips = new ArrayList<>();
+        for (DriverScheduleService.Commitment commitment : commitments) {
+            Booking booking = byId.get(commitment.bookingId());
+            // Re-check against the row in case another node changed it since the schedule was loaded
+            if (booking != null && booking.getDriver() != null && driverId.equals(booking.getDriver().getId())
+                    && DriverScheduleService.isActive(booking.getStatus())) {
+                trips.add(booking);
+            }
+        }
+        return trips;
+    }
+    
+    /**
+     * Opaque keyset position in a driver's trip list: (createdAt, id) of the last row returned
+     */
+    private record TripCursor(LocalDateTime createdAt, Long id) {
+        
+        static TripCursor of(Booking booking) {
+            return new TripCursor(booking.getCreatedAt(), booking.getId());
+        }
+        
+        String encode() {
+            String raw = createdAt + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+        
+        static TripCursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = raw.lastIndexOf('|');
+                return new TripCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                        Long.parseLong(raw.substring(separator + 1)));
+            } catch (RuntimeException e) {
+                throw new RuntimeException("Invalid cursor");
+            }
+        }
     }
     
     public List<Booking> getBookingsByStatus(String status) {
@@ -128,6 +246,7 @@ public class BookingService {
         booking.setPaymentStatus(Booking.PaymentStatus.PENDING);
         
         Booking savedBooking = bookingRepository.save(booking);
+        statsRollupService.record(null, savedBooking);
         
         // Update vehicle availability
         vehicle.setAvailable(false);
@@ -140,46 +259,81 @@ public class BookingService {
     public Booking updateBookingStatus(Long id, String status) {
         Booking booking = getBookingById(id);
         Booking.BookingStatus newStatus = Booking.BookingStatus.valueOf(status.toUpperCase());
-        booking.setStatus(newStatus);
+        StatsRollupService.Snapshot before = StatsRollupService.Snapshot.of(booking);
         
-        // If booking is cancelled or completed, make vehicle and driver available
+        // If booking is cancelled or completed, make vehicle available and free the driver's dates
         if (newStatus == Booking.BookingStatus.CANCELLED || 
             newStatus == Booking.BookingStatus.COMPLETED) {
+            if (booking.getDriver() != null) {
+                driverScheduleService.release(booking.getDriver().getId(), booking.getId());
+            }
+            
+            // Flush any buffered breadcrumbs; completed trips record the distance actually driven
+            Double drivenKm = tripTelemetryService.finishTrip(booking.getId());
+            if (newStatus == Booking.BookingStatus.COMPLETED && drivenKm != null) {
+                booking.setActualDistanceKm(drivenKm);
+            }
+            
             Vehicle vehicle = booking.getVehicle();
             vehicle.setAvailable(true);
             vehicleRepository.save(vehicle);
-            
-            // Make driver available again
-            if (booking.getDriver() != null) {
-                User driver = booking.getDriver();
-                driver.setAvailable(true);
-                userRepository.save(driver);
-            }
         }
         
-        return bookingRepository.save(booking);
+        booking.setStatus(newStatus);
+        Booking savedBooking = bookingRepository.save(booking);
+        statsRollupService.record(before, savedBooking);
+        tripTrackingService.publishStatus(savedBooking);
+        return savedBooking;
     }
     
     @Transactional
     public Booking assignDriver(Long bookingId, Long driverId) {
         Booking booking = getBookingById(bookingId);
+        StatsRollupService.Snapshot before = StatsRollupService.Snapshot.of(booking);
         
         // If driverId is null, remove the driver
         if (driverId == null) {
-            // Mark current driver as available if one was assigned
+            // Free the current driver's dates if one was assigned
             if (booking.getDriver() != null) {
-                User currentDriver = booking.getDriver();
-                currentDriver.setAvailable(true);
-                userRepository.save(currentDriver);
+                driverScheduleService.release(booking.getDriver().getId(), booking.getId());
             }
             
             booking.setDriver(null);
             booking.setStatus(Booking.BookingStatus.PENDING);
-            return bookingRepository.save(booking);
+            Booking savedBooking = bookingRepository.save(booking);
+            statsRollupService.record(before, savedBooking);
+            tripTrackingService.publishStatus(savedBooking);
+            return savedBooking;
+        }
+        
+        Long previousDriverId = booking.getDriver() != null ? booking.getDriver().getId() : null;
+        
+        // Claim the new driver for the booking's dates
+        User driver = claimDriver(driverId, booking);
+        
+        // Free the previous driver's dates if one was assigned
+        if (previousDriverId != null && !previousDriverId.equals(driverId)) {
+            driverScheduleService.release(previousDriverId, bookingId);
         }
         
-        // Assign new driver
-        User driver = userRepository.findById(driverId)
+        booking.setDriver(driver);
+        booking.setStatus(Booking.BookingStatus.DRIVER_ASSIGNED);
+        
+        Booking savedBooking = bookingRepository.save(booking);
+        statsRollupService.record(before, savedBooking);
+        tripTrackingService.publishStatus(savedBooking);
+        return savedBooking;
+    }
+    
+    /**
+     * Reserve the booking's dates for the driver. The driver's row is locked for the rest of the
+     * transaction, so assignments of the same driver from any instance run one at a time, and
+     * the overlap check reads the committed bookings table rather than this node's schedule
+     * cache. Of several concurrent overlapping assignments the first wins and the rest are
+     * refused once it commits; non-overlapping ones all succeed.
+     */
+    private User claimDriver(Long driverId, Booking booking) {
+        User driver = userRepository.lockById(driverId)
                 .orElseThrow(() -> new RuntimeException("Driver not found"));
         
         if (driver.getRole() != User.Role.DRIVER) {
@@ -187,24 +341,74 @@ public class BookingService {
         }
         
         if (!driver.getAvailable()) {
-            throw new RuntimeException("Driver is not available");
+            meterRegistry.counter("driver.claims", "outcome", "lost").increment();
+            throw new DriverUnavailableException("Driver is not available");
         }
         
-        // Mark previous driver as available if one was assigned
-        if (booking.getDriver() != null && !booking.getDriver().getId().equals(driverId)) {
-            User previousDriver = booking.getDriver();
-            previousDriver.setAvailable(true);
-            userRepository.save(previousDriver);
+        if (!bookingRepository.findOverlappingForDriver(driverId, booking.getId(),
+                booking.getStartDate(), booking.getEndDate()).isEmpty()) {
+            meterRegistry.counter("driver.claims", "outcome", "lost").increment();
+            throw new DriverUnavailableException("Driver is already booked for these dates");
         }
         
-        booking.setDriver(driver);
-        booking.setStatus(Booking.BookingStatus.DRIVER_ASSIGNED);
-        
-        // Mark driver as unavailable
-        driver.setAvailable(false);
-        userRepository.save(driver);
-        
-        return bookingRepository.save(booking);
+        meterRegistry.counter("driver.claims", "outcome", "won").increment();
+        driverScheduleService.reserve(driverId, booking.getId(), booking.getStartDate(), booking.getEndDate());
+        return driver;
+    }
+    
+    /**
+     * Nearest available drivers (by last-known live position) to a booking's pickup point
+     * who are free for the booking's dates
+     */
+    public List<NearbyDriver> findNearestDriversForBooking(Long bookingId, int limit) {
+        Booking booking = getBookingById(bookingId);
+        if (booking.getPickupLatitude() == null || booking.getPickupLongitude() == null) {
+            throw new RuntimeException("Booking has no pickup coordinates");
+        }
+        return driverLocationService.findNearestAvailableDrivers(
+                booking.getPickupLatitude(), booking.getPickupLongitude(), limit,
+                driverId -> driverScheduleService.isFree(driverId, booking.getStartDate(), booking.getEndDate(), bookingId));
+    }
+    
+    /**
+     * Assign the closest available driver to a booking's pickup point
+     */
+    @Transactional
+    public Booking assignNearestDriver(Long bookingId) {
+        List<NearbyDriver> nearest = findNearestDriversForBooking(bookingId, 1);
+        if (nearest.isEmpty()) {
+            throw new RuntimeException("No available driver near the pickup location");
+        }
+        return assignDriver(bookingId, nearest.get(0).getDriverId());
+    }
+    
+    /**
+     * Apply a batch of booking -> driver assignments, using the same state changes as
+     * assignDriver. Each pair commits in its own transaction, so pairs that are no longer valid
+     * (driver claimed meanwhile, booking assigned or deleted) roll back on their own and are
+     * skipped rather than failing the whole batch. Any other error is not expected and propagates.
+     */
+    public List<Booking> applyDispatchAssignments(Map<Long, Long> driverByBookingId) {
+        List<Booking> assigned = new ArrayList<>();
+        for (Map.Entry<Long, Long> entry : driverByBookingId.entrySet()) {
+            try {
+                Booking booking = transactionTemplate.execute(status -> {
+                    Booking current = bookingRepository.findById(entry.getKey()).orElse(null);
+                    if (current == null || current.getDriver() != null) {
+                        return null;
+                    }
+                    return assignDriver(entry.getKey(), entry.getValue());
+                });
+                if (booking != null) {
+                    assigned.add(booking);
+                }
+            } catch (DriverUnavailableException e) {
+                // Driver taken since the snapshot; the booking waits for the next run
+                log.debug("Dispatch skipped booking {} -> driver {}: {}",
+                        entry.getKey(), entry.getValue(), e.getMessage());
+            }
+        }
+        return assigned;
     }
     
     @Transactional
@@ -216,13 +420,14 @@ public class BookingService {
         vehicle.setAvailable(true);
         vehicleRepository.save(vehicle);
         
-        // Make driver available if assigned
+        // Free the driver's dates if assigned
         if (booking.getDriver() != null) {
-            User driver = booking.getDriver();
-            driver.setAvailable(true);
-            userRepository.save(driver);
+            driverScheduleService.release(booking.getDriver().getId(), booking.getId());
         }
         
+        tripTelemetryService.deleteTrip(booking.getId());
+        
+        statsRollupService.record(StatsRollupService.Snapshot.of(booking), null);
         bookingRepository.delete(booking);
     }
     
@@ -263,8 +468,11 @@ public class BookingService {
             throw new RuntimeException("Payment already confirmed");
         }
         
+        StatsRollupService.Snapshot before = StatsRollupService.Snapshot.of(booking);
         booking.setPaymentStatus(Booking.PaymentStatus.COMPLETED);
         Booking savedBooking = bookingRepository.save(booking);
+        statsRollupService.record(before, savedBooking);
+        earningsLedgerService.recordTripEarning(savedBooking);
         
         // Eagerly load relationships for proper JSON response
         if (savedBooking.getUser() != null) savedBooking.getUser().getName();
@@ -0,0 +1,387 @@
+package com.drivenow.service;
+
+import com.drivenow.dto.NotificationRecipient;
+import com.drivenow.entity.BroadcastNotification;
+import com.drivenow.entity.BroadcastReadState;
+import com.drivenow.entity.Notification;
+import com.drivenow.repository.BroadcastNotificationRepository;
+import com.drivenow.repository.BroadcastReadStateRepository;
+import com.drivenow.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Notifications sent to a whole role, or to everyone, with one insert.
+ *
+ * Broadcasts are few and never change, so every instance keeps the ones within their category's
+ * retention (NotificationRetention) in memory and polls the table for ones created elsewhere;
+ * older ones are pruned from memory, and archived and deleted from the table along with
+ * notifications (NotificationArchiveService). A user's feed and unread count combine their own notifications with
+ * the broadcasts meant for them, minus what their read state marks as read or dismissed.
+ * Nothing is written per user until they act on a broadcast.
+ *
+ * In a feed a broadcast's id is its own id negated, so it can never be mistaken for a
+ * notification id.
+ */
+@Service
+@Slf4j
+public class BroadcastNotificationService {
+
+    private static final int MAX_MARK_BITS = BroadcastReadState.MAX_MARK_BYTES * 8;
+
+    private final BroadcastNotificationRepository broadcastRepository;
+    private final BroadcastReadStateRepository readStateRepository;
+    private final UserRepository userRepository;
+    private final NotificationRetention retention;
+    private final NavigableMap<Long, BroadcastNotification> broadcasts = new ConcurrentSkipListMap<>();
+    private final long syncOverlapMs;
+    private volatile LocalDateTime syncedUpTo;
+
+    public BroadcastNotificationService(BroadcastNotificationRepository broadcastRepository,
+                                        BroadcastReadStateRepository readStateRepository,
+                                        UserRepository userRepository,
+                                        NotificationRetention retention,
+                                        @Value("${notifications.broadcast.sync-overlap-ms:2000}") long syncOverlapMs) {
+        this.broadcastRepository = broadcastRepository;
+        this.readStateRepository = readStateRepository;
+        this.userRepository = userRepository;
+        this.retention = retention;
+        this.syncOverlapMs = syncOverlapMs;
+    }
+
+    @PostConstruct
+    public void load() {
+        poll();
+        log.info("Loaded {} broadcast notifications", broadcasts.size());
+    }
+
+    public BroadcastNotification save(BroadcastNotification broadcast) {
+        return broadcastRepository.save(broadcast);
+    }
+
+    /**
+     * Add a committed broadcast to the in-memory set
+     * @return Whether it was new to this instance
+     */
+    public boolean register(BroadcastNotification broadcast) {
+        return broadcasts.putIfAbsent(broadcast.getId(), broadcast) == null;
+    }
+
+    /**
+     * Pick up broadcasts created since the last poll, on this instance or another. The window
+     * is widened by the overlap to cover transactions that committed late. The first poll loads
+     * the whole table, which only holds broadcasts not archived yet.
+     * @return The broadcasts not seen before
+     */
+    public List<BroadcastNotification> poll() {
+        LocalDateTime pollStart = LocalDateTime.now();
+        List<BroadcastNotification> found = broadcastRepository.findByCreatedAtGreaterThanEqualOrderByIdAsc(syncedUpTo == null
+                ? LocalDateTime.of(1970, 1, 1, 0, 0)
+                : syncedUpTo.minusNanos(syncOverlapMs * 1_000_000));
+        List<BroadcastNotification> added = new ArrayList<>();
+        for (BroadcastNotification broadcast : found) {
+            if (!isExpired(broadcast, pollStart) && register(broadcast)) {
+                added.add(broadcast);
+            }
+        }
+        syncedUpTo = pollStart;
+        return added;
+    }
+    
+    /**
+     * Drop broadcasts past their category's retention from this instance's memory. The rows are
+     * archived and deleted by the nightly notification archive job, so a broadcast leaves every
+     * feed on time even before its row is gone. Loaded unread counts catch up on their next reconcile.
+     */
+    @Scheduled(fixedDelayString = "${notifications.broadcast.prune-interval-ms:3600000}")
+    public void prune() {
+        LocalDateTime now = LocalDateTime.now();
+        int pruned = 0;
+        for (BroadcastNotification broadcast : broadcasts.values()) {
+            if (isExpired(broadcast, now) && broadcasts.remove(broadcast.getId(), broadcast)) {
+                pruned++;
+            }
+        }
+        if (pruned > 0) {
+            log.info("Pruned {} expired broadcast notifications", pruned);
+        }
+    }
+    
+    private boolean isExpired(BroadcastNotification broadcast, LocalDateTime now) {
+        return retention.isExpired(broadcast.getCategory(), broadcast.getCreatedAt(), now);
+    }
+
+    public NotificationRecipient getRecipient(Long userId) {
+        return userRepository.findRecipient(userId)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+    }
+
+    /**
+     * The user's undismissed broadcasts as feed entries, newest first
+     */
+    public List<Notification> getFeed(NotificationRecipient recipient) {
+        BroadcastReadState state = readStateRepository.findById(recipient.getId()).orElse(null);
+        Marks read = Marks.read(state);
+        Marks dismissed = Marks.dismissed(state);
+        List<Notification> feed = new ArrayList<>();
+        for (BroadcastNotification broadcast : broadcasts.descendingMap().values()) {
+            if (isFor(broadcast, recipient) && !dismissed.contains(broadcast.getId())) {
+                feed.add(toFeedEntry(broadcast, recipient.getId(), read.contains(broadcast.getId())));
+            }
+        }
+        return feed;
+    }
+
+    public long countUnread(NotificationRecipient recipient) {
+        return countUnread(recipient, readStateRepository.findById(recipient.getId()).orElse(null));
+    }
+
+    /**
+     * Unread broadcasts of several users, with two queries
+     */
+    public Map<Long, Long> countUnread(Collection<Long> userIds) {
+        Map<Long, BroadcastReadState> states = readStateRepository.findAllById(userIds).stream()
+                .collect(Collectors.toMap(BroadcastReadState::getUserId, Function.identity()));
+        Map<Long, Long> counts = new HashMap<>();
+        for (NotificationRecipient recipient : userRepository.findRecipients(userIds)) {
+            counts.put(recipient.getId(), countUnread(recipient, states.get(recipient.getId())));
+        }
+        return counts;
+    }
+
+    private long countUnread(NotificationRecipient recipient, BroadcastReadState state) {
+        Marks read = Marks.read(state);
+        long unread = 0;
+        for (BroadcastNotification broadcast : broadcasts.tailMap(read.upTo, false).values()) {
+            if (isFor(broadcast, recipient) && !read.contains(broadcast.getId())) {
+                unread++;
+            }
+        }
+        return unread;
+    }
+
+    /**
+     * Mark one broadcast read for the user. Must run in a transaction.
+     * @return Whether it was unread
+     */
+    public boolean markRead(NotificationRecipient recipient, Long broadcastId) {
+        BroadcastNotification broadcast = getVisible(recipient, broadcastId);
+        BroadcastReadState state = lockState(recipient.getId());
+        Marks read = Marks.read(state);
+        if (read.contains(broadcast.getId())) {
+            return false;
+        }
+        read.add(broadcast.getId());
+        read.compact(visibleIds(recipient), broadcasts.isEmpty() ? 0 : broadcasts.lastKey());
+        read.storeRead(state);
+        readStateRepository.save(state);
+        return true;
+    }
+
+    /**
+     * Hide one broadcast from the user's feed; it also counts as read. Must run in a transaction.
+     * @return Whether it was unread
+     */
+    public boolean dismiss(NotificationRecipient recipient, Long broadcastId) {
+        BroadcastNotification broadcast = getVisible(recipient, broadcastId);
+        BroadcastReadState state = lockState(recipient.getId());
+        List<Long> visible = visibleIds(recipient);
+        long latest = broadcasts.isEmpty() ? 0 : broadcasts.lastKey();
+        Marks read = Marks.read(state);
+        Marks dismissed = Marks.dismissed(state);
+        boolean wasUnread = !read.contains(broadcast.getId());
+        read.add(broadcast.getId());
+        read.compact(visible, latest);
+        read.storeRead(state);
+        dismissed.add(broadcast.getId());
+        dismissed.compact(visible, latest);
+        dismissed.storeDismissed(state);
+        readStateRepository.save(state);
+        return wasUnread;
+    }
+
+    /**
+     * Mark every broadcast the user can see as read. Must run in a transaction.
+     * @return How many were unread
+     */
+    public int markAllRead(NotificationRecipient recipient) {
+        if (broadcasts.isEmpty()) {
+            return 0;
+        }
+        BroadcastReadState state = lockState(recipient.getId());
+        int unread = (int) countUnread(recipient, state);
+        if (unread > 0) {
+            Marks read = Marks.read(state);
+            read.addUpTo(broadcasts.lastKey());
+            read.storeRead(state);
+            readStateRepository.save(state);
+        }
+        return unread;
+    }
+
+    /**
+     * Dismiss every broadcast the user can see. Must run in a transaction.
+     * @return How many were unread
+     */
+    public int dismissAll(NotificationRecipient recipient) {
+        if (broadcasts.isEmpty()) {
+            return 0;
+        }
+        BroadcastReadState state = lockState(recipient.getId());
+        int unread = (int) countUnread(recipient, state);
+        long latest = broadcasts.lastKey();
+        Marks read = Marks.read(state);
+        read.addUpTo(latest);
+        read.storeRead(state);
+        Marks dismissed = Marks.dismissed(state);
+        dismissed.addUpTo(latest);
+        dismissed.storeDismissed(state);
+        readStateRepository.save(state);
+        return unread;
+    }
+
+    public void deleteUser(Long userId) {
+        readStateRepository.deleteAllByIdInBatch(List.of(userId));
+    }
+
+    public int getBroadcastCount() {
+        return broadcasts.size();
+    }
+
+    /**
+     * A broadcast as an entry of a user's feed; userId may be null when it is sent to many users
+     */
+    public Notification toFeedEntry(BroadcastNotification broadcast, Long userId, boolean read) {
+        Notification entry = new Notification();
+        entry.setId(-broadcast.getId());
+        entry.setBroadcast(true);
+        entry.setBroadcastId(broadcast.getId());
+        entry.setUserId(userId);
+        entry.setTitle(broadcast.getTitle());
+        entry.setMessage(broadcast.getMessage());
+        entry.setType(broadcast.getType());
+        entry.setCategory(broadcast.getCategory());
+        entry.setActionUrl(broadcast.getActionUrl());
+        entry.setIsRead(read);
+        entry.setCreatedAt(broadcast.getCreatedAt());
+        return entry;
+    }
+
+    private static boolean isFor(BroadcastNotification broadcast, NotificationRecipient recipient) {
+        return broadcast.isFor(recipient.getRole(), recipient.getJoinedAt());
+    }
+
+    private BroadcastNotification getVisible(NotificationRecipient recipient, Long broadcastId) {
+        BroadcastNotification broadcast = broadcasts.get(broadcastId);
+        if (broadcast == null || !isFor(broadcast, recipient)) {
+            throw new RuntimeException("Notification not found");
+        }
+        return broadcast;
+    }
+
+    private List<Long> visibleIds(NotificationRecipient recipient) {
+        List<Long> ids = new ArrayList<>();
+        for (BroadcastNotification broadcast : broadcasts.values()) {
+            if (isFor(broadcast, recipient)) {
+                ids.add(broadcast.getId());
+            }
+        }
+        return ids;
+    }
+
+    private BroadcastReadState lockState(Long userId) {
+        // Created first, so two first marks of a user queue on the row instead of both inserting
+        readStateRepository.ensureState(userId);
+        return readStateRepository.lockByUserId(userId).orElseThrow();
+    }
+
+    /**
+     * A watermark and the bitmap above it, as stored in BroadcastReadState
+     */
+    private static final class Marks {
+        long upTo;
+        BitSet above;
+
+        Marks(Long upTo, byte[] above) {
+            this.upTo = upTo != null ? upTo : 0;
+            this.above = above != null ? BitSet.valueOf(above) : new BitSet();
+        }
+
+        static Marks read(BroadcastReadState state) {
+            return state != null ? new Marks(state.getReadUpTo(), state.getReadMarks()) : new Marks(0L, null);
+        }
+
+        static Marks dismissed(BroadcastReadState state) {
+            return state != null ? new Marks(state.getDismissedUpTo(), state.getDismissedMarks()) : new Marks(0L, null);
+        }
+
+        boolean contains(long id) {
+            return id <= upTo || above.get((int) (id - upTo - 1));
+        }
+
+        void add(long id) {
+            if (id > upTo) {
+                above.set((int) (id - upTo - 1));
+            }
+        }
+
+        void addUpTo(long id) {
+            if (id <= upTo) {
+                return;
+            }
+            int shift = (int) (id - upTo);
+            above = above.get(shift, Math.max(shift, above.length()));
+            upTo = id;
+        }
+
+        /**
+         * Raise the watermark over the leading run of marked broadcasts, skipping ones the
+         * user does not see; if every visible broadcast is marked it moves to the latest
+         * broadcast. A bitmap still too long drops its oldest marks' gaps, which then count as
+         * marked.
+         */
+        void compact(List<Long> visibleIds, long latestId) {
+            long target = upTo;
+            boolean allMarked = true;
+            for (Long id : visibleIds) {
+                if (id <= upTo) {
+                    continue;
+                }
+                if (!contains(id)) {
+                    allMarked = false;
+                    break;
+                }
+                target = id;
+            }
+            addUpTo(allMarked ? Math.max(target, latestId) : target);
+            if (above.length() > MAX_MARK_BITS) {
+                addUpTo(upTo + (above.length() - MAX_MARK_BITS));
+            }
+        }
+
+        void storeRead(BroadcastReadState state) {
+            state.setReadUpTo(upTo);
+            state.setReadMarks(above.isEmpty() ? null : above.toByteArray());
+        }
+
+        void storeDismissed(BroadcastReadState state) {
+            state.setDismissedUpTo(upTo);
+            state.setDismissedMarks(above.isEmpty() ? null : above.toByteArray());
+        }
+    }
+}
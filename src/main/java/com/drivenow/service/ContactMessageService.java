@@ -1,5 +1,6 @@
 package com.drivenow.service;
 
+import com.drivenow.entity.BroadcastNotification;
 import com.drivenow.entity.ContactMessage;
 import com.drivenow.entity.MessageReply;
 import com.drivenow.entity.Notification;
@@ -142,24 +143,18 @@ public class ContactMessageService {
      */
     private void createContactMessageNotificationForAdmins(ContactMessage message) {
         try {
-            // Get all admin users
-            List<User> admins = userRepository.findByRole(User.Role.ADMIN);
+            // One broadcast row for the ADMIN role instead of a row per admin
+            BroadcastNotification notification = new BroadcastNotification();
+            notification.setAudience(User.Role.ADMIN);
+            notification.setTitle("📩 New Contact Message");
+            notification.setMessage(String.format("New message from %s: %s", 
+                message.getName(), message.getSubject()));
+            notification.setType(Notification.NotificationType.INFO);
+            notification.setCategory(Notification.NotificationCategory.MESSAGE);
+            notification.setActionUrl("/dashboard/admin?tab=messages");
             
-            for (User admin : admins) {
-                Notification notification = new Notification();
-                notification.setUser(admin);
-                notification.setTitle("📩 New Contact Message");
-                notification.setMessage(String.format("New message from %s: %s", 
-                    message.getName(), message.getSubject()));
-                notification.setType(Notification.NotificationType.INFO);
-                notification.setCategory(Notification.NotificationCategory.MESSAGE);
-                notification.setIsRead(false);
-                notification.setActionUrl("/dashboard/admin?tab=messages");
-                
-                // Save without authentication check (system-generated notification)
-                notificationService.createSystemNotification(notification);
-                log.info("Created contact message notification for admin: {}", admin.getEmail());
-            }
+            notificationService.createBroadcast(notification);
+            log.info("Created contact message notification for admins");
         } catch (Exception e) {
             log.error("Error creating contact message notifications for admins", e);
         }
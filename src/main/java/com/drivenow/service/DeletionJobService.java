@@ -0,0 +1,394 @@
+package com.drivenow.service;
+
+import com.drivenow.entity.Booking;
+import com.drivenow.entity.DeletionJob;
+import com.drivenow.entity.User;
+import com.drivenow.entity.Vehicle;
+import com.drivenow.repository.BookingRepository;
+import com.drivenow.repository.DeletionJobRepository;
+import com.drivenow.repository.DriverReviewRepository;
+import com.drivenow.repository.NotificationRepository;
+import com.drivenow.repository.ReviewRepository;
+import com.drivenow.repository.UserRepository;
+import com.drivenow.repository.VehicleRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Deletes users and vehicles in the background.
+ *
+ * A deletion is a list of steps, each a loop of small transactions: select up to chunk-size
+ * ids of the rows still referencing the target, delete or detach them with one bulk statement,
+ * and record the progress on the job in the same transaction. Steps only ever select what is
+ * left, so a job interrupted anywhere resumes at its recorded step and simply finishes the
+ * work. The last step removes the target itself. Jobs run one at a time on a single thread,
+ * with a short pause between chunks to leave the database to live traffic.
+ *
+ * Every instance may pick up open jobs, so a job is claimed before it runs: a conditional
+ * update gives it to one instance with a lease, which each chunk renews in its own
+ * transaction. An instance that finds its lease taken stops, and its chunk rolls back. Jobs
+ * whose runner died are taken over by the periodic scan once their lease expires.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DeletionJobService {
+
+    private static final List<DeletionJob.Status> OPEN = List.of(DeletionJob.Status.PENDING, DeletionJob.Status.RUNNING);
+    private static final List<Booking.BookingStatus> ACTIVE_DRIVER_STATUSES = List.of(
+            Booking.BookingStatus.CONFIRMED, Booking.BookingStatus.ONGOING, Booking.BookingStatus.DRIVER_ASSIGNED);
+
+    private final DeletionJobRepository jobRepository;
+    private final UserRepository userRepository;
+    private final VehicleRepository vehicleRepository;
+    private final BookingRepository bookingRepository;
+    private final NotificationRepository notificationRepository;
+    private final ReviewRepository reviewRepository;
+    private final DriverReviewRepository driverReviewRepository;
+    private final TripTelemetryService tripTelemetryService;
+    private final StatsRollupService statsRollupService;
+    private final DriverDocumentService driverDocumentService;
+    private final DriverLocationService driverLocationService;
+    private final DriverScheduleService driverScheduleService;
+    private final ProfileImageService profileImageService;
+    private final UserSettingsCache userSettingsCache;
+    private final BroadcastNotificationService broadcastService;
+    private final TransactionTemplate transactionTemplate;
+
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "deletion-jobs");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Identifies this instance as a job's owner
+    private final String owner = UUID.randomUUID().toString();
+    // Jobs submitted to the runner and not finished yet
+    private final Set<Long> queued = ConcurrentHashMap.newKeySet();
+
+    @Value("${deletion.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${deletion.pause-ms:20}")
+    private long pauseMs;
+
+    @Value("${deletion.lease-seconds:120}")
+    private long leaseSeconds;
+
+    private record Step(String name, Supplier<Integer> chunk) {
+    }
+
+    // Another instance took over the job; this one stops without touching it
+    private static final class LeaseLostException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        runner.shutdownNow();
+    }
+
+    /**
+     * Check that a user can be deleted, take them out of service and queue the deletion.
+     * Asking again while a deletion is queued or running returns that job.
+     */
+    public DeletionJob deleteUser(Long userId) {
+        DeletionJob open = findOpen(DeletionJob.TargetType.USER, userId);
+        if (open != null) {
+            return open;
+        }
+        DeletionJob job = transactionTemplate.execute(status -> {
+            User user = userRepository.findById(userId)
+                    .orElseThrow(() -> new RuntimeException("User not found"));
+            if (user.getRole() == User.Role.DRIVER) {
+                if (bookingRepository.countByDriverIdAndStatusIn(userId, ACTIVE_DRIVER_STATUSES) > 0) {
+                    throw new RuntimeException("Cannot delete driver with active bookings. Please complete or cancel all active bookings first.");
+                }
+                user.setAvailable(false);
+            } else {
+                long userBookings = bookingRepository.countByUserId(userId);
+                if (userBookings > 0) {
+                    throw new RuntimeException("Cannot delete user with existing bookings. User has " + userBookings + " booking(s) in the system.");
+                }
+            }
+            // No logins or new work while the deletion runs
+            user.setStatus(User.Status.INACTIVE);
+            userRepository.save(user);
+            driverLocationService.setAvailableAfterCommit(userId, false);
+            return createJob(DeletionJob.TargetType.USER, userId);
+        });
+        submit(job);
+        return job;
+    }
+
+    /**
+     * Take a vehicle off the market and queue the deletion of it, its reviews and its bookings
+     */
+    public DeletionJob deleteVehicle(Long vehicleId) {
+        DeletionJob open = findOpen(DeletionJob.TargetType.VEHICLE, vehicleId);
+        if (open != null) {
+            return open;
+        }
+        DeletionJob job = transactionTemplate.execute(status -> {
+            Vehicle vehicle = vehicleRepository.findById(vehicleId)
+                    .orElseThrow(() -> new RuntimeException("Vehicle not found"));
+            vehicle.setAvailable(false);
+            vehicleRepository.save(vehicle);
+            return createJob(DeletionJob.TargetType.VEHICLE, vehicleId);
+        });
+        submit(job);
+        return job;
+    }
+
+    public DeletionJob getJob(Long jobId) {
+        return jobRepository.findById(jobId)
+                .orElseThrow(() -> new RuntimeException("Deletion job not found"));
+    }
+
+    public List<DeletionJob> getRecentJobs() {
+        return jobRepository.findTop50ByOrderByIdDesc();
+    }
+
+    /**
+     * Run a failed job again from the step it failed on
+     */
+    public DeletionJob retry(Long jobId) {
+        DeletionJob job = getJob(jobId);
+        if (job.getStatus() != DeletionJob.Status.FAILED) {
+            throw new RuntimeException("Only failed jobs can be retried");
+        }
+        job.setStatus(DeletionJob.Status.PENDING);
+        job.setError(null);
+        job = jobRepository.save(job);
+        submit(job);
+        return job;
+    }
+
+    private DeletionJob findOpen(DeletionJob.TargetType targetType, Long targetId) {
+        return jobRepository.findFirstByTargetTypeAndTargetIdAndStatusIn(targetType, targetId, OPEN).orElse(null);
+    }
+
+    private DeletionJob createJob(DeletionJob.TargetType targetType, Long targetId) {
+        DeletionJob job = new DeletionJob();
+        job.setTargetType(targetType);
+        job.setTargetId(targetId);
+        return jobRepository.save(job);
+    }
+
+    private void submit(DeletionJob job) {
+        Long jobId = job.getId();
+        if (queued.add(jobId)) {
+            runner.submit(() -> {
+                try {
+                    run(jobId);
+                } finally {
+                    queued.remove(jobId);
+                }
+            });
+        }
+    }
+
+    /**
+     * Pick up jobs that were queued or running when the application stopped
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeOpenJobs() {
+        List<DeletionJob> open = jobRepository.findByStatusInOrderByIdAsc(OPEN);
+        open.forEach(this::submit);
+        if (!open.isEmpty()) {
+            log.info("Resuming {} deletion jobs", open.size());
+        }
+    }
+
+    /**
+     * Take over queued jobs and jobs whose runner stopped renewing its lease
+     */
+    @Scheduled(fixedDelayString = "${deletion.resume-interval-ms:60000}",
+               initialDelayString = "${deletion.resume-interval-ms:60000}")
+    public void resumeAbandonedJobs() {
+        LocalDateTime now = LocalDateTime.now();
+        for (DeletionJob job : jobRepository.findByStatusInOrderByIdAsc(OPEN)) {
+            if (job.getStatus() == DeletionJob.Status.PENDING
+                    || job.getLeaseUntil() == null || job.getLeaseUntil().isBefore(now)) {
+                submit(job);
+            }
+        }
+    }
+
+    private void run(Long jobId) {
+        LocalDateTime now = LocalDateTime.now();
+        Integer claimed = transactionTemplate.execute(status ->
+                jobRepository.claim(jobId, owner, now, now.plusSeconds(leaseSeconds)));
+        if (claimed == null || claimed == 0) {
+            // Finished, failed, or running on another instance
+            return;
+        }
+        DeletionJob job = jobRepository.findById(jobId).orElse(null);
+        if (job == null) {
+            return;
+        }
+
+        List<Step> steps = job.getTargetType() == DeletionJob.TargetType.USER
+                ? userSteps(job.getTargetId())
+                : vehicleSteps(job.getTargetId());
+        try {
+            for (int i = job.getStepIndex(); i < steps.size(); i++) {
+                Step step = steps.get(i);
+                job.setStepIndex(i);
+                job.setStep(step.name());
+                job = saveLeased(job);
+                while (true) {
+                    DeletionJob current = job;
+                    job = transactionTemplate.execute(status -> {
+                        renewLease(current);
+                        int rows = step.chunk().get();
+                        if (rows == 0) {
+                            return null;
+                        }
+                        current.setProcessedRows(current.getProcessedRows() + rows);
+                        return jobRepository.save(current);
+                    });
+                    if (job == null) {
+                        job = current;
+                        break;
+                    }
+                    if (pauseMs > 0) {
+                        Thread.sleep(pauseMs);
+                    }
+                }
+            }
+            job.setStatus(DeletionJob.Status.COMPLETED);
+            job.setStep(null);
+            job.setFinishedAt(LocalDateTime.now());
+            saveLeased(job);
+            if (job.getTargetType() == DeletionJob.TargetType.USER) {
+                driverLocationService.removeDriver(job.getTargetId());
+            }
+            log.info("Deletion job {} finished: {} {} and {} related rows", job.getId(),
+                    job.getTargetType(), job.getTargetId(), job.getProcessedRows());
+        } catch (LeaseLostException e) {
+            log.warn("Deletion job {} was taken over by another instance", jobId);
+        } catch (InterruptedException e) {
+            // Shutting down; the job resumes on the next start
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Deletion job {} failed at {}: {}", job.getId(), job.getStep(), e.getMessage());
+            job.setStatus(DeletionJob.Status.FAILED);
+            job.setError(e.getMessage() != null && e.getMessage().length() > 1000
+                    ? e.getMessage().substring(0, 1000) : e.getMessage());
+            try {
+                saveLeased(job);
+            } catch (LeaseLostException lost) {
+                log.warn("Deletion job {} was taken over by another instance", jobId);
+            }
+        }
+    }
+
+    /**
+     * Extend this instance's lease on the job, in the caller's transaction
+     * @throws LeaseLostException if another instance holds the job now
+     */
+    private void renewLease(DeletionJob job) {
+        LocalDateTime leaseUntil = LocalDateTime.now().plusSeconds(leaseSeconds);
+        if (jobRepository.renewLease(job.getId(), owner, leaseUntil) == 0) {
+            throw new LeaseLostException();
+        }
+        job.setOwner(owner);
+        job.setLeaseUntil(leaseUntil);
+    }
+
+    private DeletionJob saveLeased(DeletionJob job) {
+        return transactionTemplate.execute(status -> {
+            renewLease(job);
+            return jobRepository.save(job);
+        });
+    }
+
+    private PageRequest nextChunk() {
+        return PageRequest.of(0, chunkSize);
+    }
+
+    private List<Step> userSteps(Long userId) {
+        return List.of(
+                new Step("driver-reviews", () -> {
+                    List<Long> ids = driverReviewRepository.findIdsByUserOrDriver(userId, nextChunk());
+                    driverReviewRepository.deleteAllByIdInBatch(ids);
+                    return ids.size();
+                }),
+                new Step("reviews", () -> {
+                    List<Long> ids = reviewRepository.findIdsByUserId(userId, nextChunk());
+                    reviewRepository.deleteAllByIdInBatch(ids);
+                    return ids.size();
+                }),
+                new Step("notifications", () -> {
+                    List<Long> ids = notificationRepository.findIdsByUserId(userId, nextChunk());
+                    notificationRepository.deleteAllByIdInBatch(ids);
+                    return ids.size();
+                }),
+                // Past trips keep their record without the driver
+                new Step("driver-bookings", () -> {
+                    List<Long> ids = bookingRepository.findIdsByDriverId(userId, nextChunk());
+                    return ids.isEmpty() ? 0 : bookingRepository.clearDriver(ids);
+                }),
+                new Step("account", () -> userRepository.findById(userId).map(user -> {
+                    // Anything created after its step ran
+                    notificationRepository.deleteByUserId(userId);
+                    broadcastService.deleteUser(userId);
+                    statsRollupService.deleteUser(userId);
+                    driverDocumentService.deleteAll(userId);
+                    profileImageService.releaseAfterCommit(user.getProfileImage());
+                    // Settings go with the user by cascade
+                    userRepository.delete(user);
+                    userSettingsCache.evictAfterCommit(userId);
+                    return 1;
+                }).orElse(0)));
+    }
+
+    private List<Step> vehicleSteps(Long vehicleId) {
+        return List.of(
+                new Step("reviews", () -> {
+                    List<Long> ids = reviewRepository.findIdsByVehicleId(vehicleId, nextChunk());
+                    reviewRepository.deleteAllByIdInBatch(ids);
+                    return ids.size();
+                }),
+                new Step("bookings", () -> {
+                    List<Long> ids = bookingRepository.findIdsByVehicleId(vehicleId, nextChunk());
+                    if (ids.isEmpty()) {
+                        return 0;
+                    }
+                    List<StatsRollupService.Snapshot> snapshots = new ArrayList<>(ids.size());
+                    for (Booking booking : bookingRepository.findAllById(ids)) {
+                        if (booking.getDriver() != null) {
+                            driverScheduleService.release(booking.getDriver().getId(), booking.getId());
+                        }
+                        snapshots.add(StatsRollupService.Snapshot.of(booking));
+                    }
+                    statsRollupService.recordDeleted(snapshots);
+                    driverReviewRepository.deleteByBookingIdIn(ids);
+                    tripTelemetryService.deleteTrips(ids);
+                    bookingRepository.deleteAllByIdInBatch(ids);
+                    return ids.size();
+                }),
+                new Step("vehicle", () -> vehicleRepository.findById(vehicleId).map(vehicle -> {
+                    vehicleRepository.delete(vehicle);
+                    return 1;
+                }).orElse(0)));
+    }
+}
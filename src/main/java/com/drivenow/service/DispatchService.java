@@ -0,0 +1,145 @@
+package com.drivenow.service;
+
+import com.drivenow.dto.NearbyDriver;
+import com.drivenow.entity.Booking;
+import com.drivenow.repository.BookingRepository;
+import com.drivenow.service.dispatch.AssignmentSolver;
+import com.drivenow.service.dispatch.CandidatePairs;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Batch dispatch: periodically matches every unassigned PENDING/CONFIRMED booking to an
+ * available driver so that the total pickup distance is minimal, instead of assigning
+ * bookings one at a time in arrival order.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DispatchService {
+
+    private final BookingRepository bookingRepository;
+    private final BookingService bookingService;
+    private final DriverLocationService driverLocationService;
+    private final DriverScheduleService driverScheduleService;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    @Value("${dispatch.enabled:false}")
+    private boolean enabled;
+
+    @Value("${dispatch.max-pickup-km:25}")
+    private double maxPickupKm;
+
+    @Value("${dispatch.hungarian-max-size:1500}")
+    private int hungarianMaxSize;
+
+    @Value("${dispatch.max-round-size:5000}")
+    private int maxRoundSize;
+
+    @Scheduled(fixedDelayString = "${dispatch.interval-ms:30000}", initialDelayString = "${dispatch.interval-ms:30000}")
+    public void scheduledDispatch() {
+        if (enabled) {
+            runDispatch();
+        }
+    }
+
+    /**
+     * Run one dispatch round over at most dispatch.max-round-size bookings, oldest first;
+     * the rest wait for the next round
+     * @return Summary of the round
+     */
+    public Map<String, Object> runDispatch() {
+        Map<String, Object> summary = new HashMap<>();
+        if (!running.compareAndSet(false, true)) {
+            summary.put("skipped", true);
+            summary.put("message", "A dispatch round is already running");
+            return summary;
+        }
+        try {
+            long start = System.nanoTime();
+            List<Booking> bookings = bookingRepository.findDispatchableBookings(PageRequest.of(0, maxRoundSize));
+            summary.put("pendingBookings", bookings.size());
+
+            List<Long> driverIds = new ArrayList<>();
+            CandidatePairs pairs = findCandidatePairs(bookings, driverIds);
+            summary.put("availableDrivers", driverIds.size());
+            summary.put("candidatePairs", pairs.size());
+
+            if (pairs.size() == 0) {
+                summary.put("assigned", 0);
+                return summary;
+            }
+
+            long solveStart = System.nanoTime();
+            int[] assignment = AssignmentSolver.solve(bookings.size(), driverIds.size(), pairs, hungarianMaxSize);
+            long solveMs = (System.nanoTime() - solveStart) / 1_000_000;
+
+            Map<Long, Long> driverByBookingId = new LinkedHashMap<>();
+            for (int i = 0; i < assignment.length; i++) {
+                if (assignment[i] >= 0) {
+                    driverByBookingId.put(bookings.get(i).getId(), driverIds.get(assignment[i]));
+                }
+            }
+            double totalPickupKm = 0;
+            for (int k = 0; k < pairs.size(); k++) {
+                if (assignment[pairs.row(k)] == pairs.column(k)) {
+                    totalPickupKm += pairs.cost(k);
+                }
+            }
+
+            int assigned = driverByBookingId.isEmpty() ? 0
+                    : bookingService.applyDispatchAssignments(driverByBookingId).size();
+            long totalMs = (System.nanoTime() - start) / 1_000_000;
+
+            summary.put("assigned", assigned);
+            summary.put("totalPickupKm", Math.round(totalPickupKm * 100.0) / 100.0);
+            summary.put("algorithm", Math.max(bookings.size(), driverIds.size()) <= hungarianMaxSize ? "hungarian" : "greedy");
+            summary.put("solveMs", solveMs);
+            summary.put("totalMs", totalMs);
+            log.info("Dispatch round: {} bookings, {} drivers, {} candidate pairs, {} assigned in {} ms (solve {} ms)",
+                    bookings.size(), driverIds.size(), pairs.size(), assigned, totalMs, solveMs);
+            return summary;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Pairs each booking with the drivers within dispatch.max-pickup-km of its pickup, read
+     * from the location grid, who are free for its dates. Drivers get a column the first time
+     * they appear; their ids are appended to driverIds in column order.
+     */
+    private CandidatePairs findCandidatePairs(List<Booking> bookings, List<Long> driverIds) {
+        Map<Long, Integer> columnByDriverId = new HashMap<>();
+        CandidatePairs pairs = new CandidatePairs();
+        for (int i = 0; i < bookings.size(); i++) {
+            Booking booking = bookings.get(i);
+            List<NearbyDriver> nearby = driverLocationService.findAvailableDriversWithin(
+                    booking.getPickupLatitude(), booking.getPickupLongitude(), maxPickupKm);
+            for (NearbyDriver driver : nearby) {
+                if (!driverScheduleService.isFree(driver.getDriverId(),
+                        booking.getStartDate(), booking.getEndDate(), booking.getId())) {
+                    continue;
+                }
+                int column = columnByDriverId.computeIfAbsent(driver.getDriverId(), id -> {
+                    driverIds.add(id);
+                    return driverIds.size() - 1;
+                });
+                pairs.add(i, column, driver.getDistanceKm());
+            }
+        }
+        return pairs;
+    }
+}
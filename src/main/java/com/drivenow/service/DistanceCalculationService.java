@@ -1,21 +1,98 @@
 package com.drivenow.service;
 
+import com.drivenow.dto.DistanceMatrixResponse;
+import com.drivenow.dto.GeoPoint;
+import com.drivenow.service.routing.CircuitBreaker;
+import com.drivenow.service.routing.DistanceCache;
+import com.drivenow.service.routing.GeoMath;
+import com.drivenow.service.routing.RoutingBackend;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.web.client.RestClientException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
+@Slf4j
 public class DistanceCalculationService {
     
-    private static final double EARTH_RADIUS_KM = 6371.0;
-    private final RestTemplate restTemplate = new RestTemplate();
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final RoutingBackend routingBackend;
+    private final CircuitBreaker circuitBreaker;
+    private final DistanceCache distanceCache;
+    private final ThreadPoolExecutor matrixExecutor;
+    private final Timer upstreamSuccessTimer;
+    private final Timer upstreamFailureTimer;
+    private final MeterRegistry meterRegistry;
+    
+    @Value("${routing.matrix.deadline-ms:5000}")
+    private long matrixDeadlineMs;
+    
+    @Value("${routing.matrix.max-table-coordinates:100}")
+    private int maxTableCoordinates;
+    
+    public DistanceCalculationService(RoutingBackend routingBackend,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${routing.circuit-breaker.failure-threshold:5}") int failureThreshold,
+                                      @Value("${routing.circuit-breaker.open-duration-ms:30000}") long openDurationMs,
+                                      @Value("${routing.cache.max-entries:50000}") int cacheMaxEntries,
+                                      @Value("${routing.matrix.parallelism:8}") int matrixParallelism,
+                                      @Value("${routing.matrix.queue-capacity:5000}") int matrixQueueCapacity,
+                                      @Value("${routing.matrix.max-pairs:2500}") int matrixMaxPairs) {
+        this.routingBackend = routingBackend;
+        this.meterRegistry = meterRegistry;
+        this.circuitBreaker = new CircuitBreaker(failureThreshold, openDurationMs);
+        this.distanceCache = new DistanceCache(cacheMaxEntries);
+        // The queue holds at least one full batch, so a single large matrix is never rejected
+        this.matrixExecutor = new ThreadPoolExecutor(matrixParallelism, matrixParallelism,
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(Math.max(matrixQueueCapacity, matrixMaxPairs)),
+                namedDaemonThreads("distance-matrix-"), new ThreadPoolExecutor.AbortPolicy());
+        this.upstreamSuccessTimer = upstreamTimer("success");
+        this.upstreamFailureTimer = upstreamTimer("failure");
+        meterRegistry.gauge("routing.circuit.open", circuitBreaker,
+                cb -> cb.getState() == CircuitBreaker.State.CLOSED ? 0 : 1);
+        meterRegistry.gauge("routing.cache.size", distanceCache, DistanceCache::size);
+    }
+    
+    private Timer upstreamTimer(String outcome) {
+        return Timer.builder("routing.upstream")
+                .description("Latency of road-distance calls to the routing backend")
+                .tag("backend", routingBackend.getName())
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+    
+    private static ThreadFactory namedDaemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        matrixExecutor.shutdownNow();
+    }
     
     /**
-     * Calculate real road distance between two coordinates using OSRM (OpenStreetMap Routing)
-     * Falls back to Haversine formula if OSRM service is unavailable
+     * Calculate real road distance between two coordinates using the configured routing backend
+     * (OSRM by default). Falls back to Haversine formula if the backend fails or its circuit is open.
      * @param lat1 Latitude of first point
      * @param lon1 Longitude of first point
      * @param lat2 Latitude of second point
@@ -23,84 +100,282 @@ public class DistanceCalculationService {
      * @return Distance in kilometers
      */
     public double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
-        System.out.println("📍 Distance calculation requested");
-        System.out.println("   From: (" + lat1 + ", " + lon1 + ")");
-        System.out.println("   To: (" + lat2 + ", " + lon2 + ")");
+        log.debug("Distance calculation requested from ({}, {}) to ({}, {})", lat1, lon1, lat2, lon2);
         
-        try {
-            // Try to get real road distance from OSRM (OpenStreetMap Routing Machine)
-            String osrmUrl = String.format(
-                "http://router.project-osrm.org/route/v1/driving/%f,%f;%f,%f?overview=false",
-                lon1, lat1, lon2, lat2
-            );
-            
-            System.out.println("🗺️ Requesting route from OSRM...");
-            System.out.println("   URL: " + osrmUrl);
-            
-            String response = restTemplate.getForObject(osrmUrl, String.class);
-            
-            if (response != null && !response.isEmpty()) {
-                JsonNode root = objectMapper.readTree(response);
-                
-                if (root.has("code") && "Ok".equals(root.get("code").asText())) {
-                    if (root.has("routes") && root.get("routes").size() > 0) {
-                        // Distance is in meters, convert to kilometers
-                        double distanceMeters = root.get("routes").get(0).get("distance").asDouble();
-                        double distanceKm = distanceMeters / 1000.0;
-                        double roundedDistance = Math.round(distanceKm * 100.0) / 100.0;
-                        
-                        System.out.println("✅ OSRM road distance: " + roundedDistance + " km");
-                        return roundedDistance;
-                    }
-                }
-                System.out.println("⚠️ OSRM returned invalid response, using fallback");
-            }
-        } catch (RestClientException e) {
-            System.err.println("⚠️ OSRM API connection failed: " + e.getMessage());
-            System.err.println("   Falling back to Haversine formula");
-        } catch (Exception e) {
-            System.err.println("⚠️ Error parsing OSRM response: " + e.getMessage());
-            System.err.println("   Falling back to Haversine formula");
+        Double cached = distanceCache.get(lat1, lon1, lat2, lon2);
+        if (cached != null) {
+            return cached;
+        }
+        
+        Double routed = routeWithBreaker(lat1, lon1, lat2, lon2);
+        if (routed != null) {
+            return routed;
         }
         
         // Fallback to Haversine formula (straight-line distance)
-        System.out.println("📏 Using Haversine formula (straight-line distance)");
         return calculateHaversineDistance(lat1, lon1, lat2, lon2);
     }
     
     /**
-     * Calculate straight-line distance using Haversine formula
-     * Used as fallback when OSRM is unavailable
+     * Non-blocking variant of calculateDistance. The returned future completes when the routing
+     * backend answers (or fails), so no request thread is held during the upstream round trip.
+     * It never completes exceptionally: failures and an open circuit resolve to the Haversine distance.
      */
-    private double calculateHaversineDistance(double lat1, double lon1, double lat2, double lon2) {
-        System.out.println("📏 Calculating distance using Haversine formula");
-        System.out.println("   From: (" + lat1 + ", " + lon1 + ")");
-        System.out.println("   To: (" + lat2 + ", " + lon2 + ")");
+    public CompletableFuture<Double> calculateDistanceAsync(double lat1, double lon1, double lat2, double lon2) {
+        Double cached = distanceCache.get(lat1, lon1, lat2, lon2);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
         
-        // Convert latitude and longitude from degrees to radians
-        double lat1Rad = Math.toRadians(lat1);
-        double lon1Rad = Math.toRadians(lon1);
-        double lat2Rad = Math.toRadians(lat2);
-        double lon2Rad = Math.toRadians(lon2);
+        if (!circuitBreaker.tryAcquire()) {
+            meterRegistry.counter("routing.circuit.rejected", "backend", routingBackend.getName()).increment();
+            return CompletableFuture.completedFuture(calculateHaversineDistance(lat1, lon1, lat2, lon2));
+        }
         
-        // Calculate differences
-        double deltaLat = lat2Rad - lat1Rad;
-        double deltaLon = lon2Rad - lon1Rad;
+        long start = System.nanoTime();
+        CompletableFuture<Double> upstream;
+        try {
+            upstream = routingBackend.routeDistanceKmAsync(lat1, lon1, lat2, lon2);
+        } catch (RuntimeException e) {
+            upstream = CompletableFuture.failedFuture(e);
+        }
         
-        // Haversine formula
-        double a = Math.sin(deltaLat / 2) * Math.sin(deltaLat / 2) +
-                   Math.cos(lat1Rad) * Math.cos(lat2Rad) *
-                   Math.sin(deltaLon / 2) * Math.sin(deltaLon / 2);
+        return upstream.handle((distanceKm, error) -> {
+            if (error == null && distanceKm != null) {
+                upstreamSuccessTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                circuitBreaker.recordSuccess();
+                double rounded = round(distanceKm);
+                distanceCache.put(lat1, lon1, lat2, lon2, rounded);
+                return rounded;
+            }
+            upstreamFailureTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            circuitBreaker.recordFailure();
+            log.warn("{} async routing failed ({}), falling back to Haversine formula",
+                    routingBackend.getName(), error != null ? error.getMessage() : "empty result");
+            return calculateHaversineDistance(lat1, lon1, lat2, lon2);
+        });
+    }
+    
+    /**
+     * Single routed call guarded by the circuit breaker. Successful results are cached.
+     * @return Rounded distance in kilometers, or null if the backend failed or the circuit is open
+     */
+    private Double routeWithBreaker(double lat1, double lon1, double lat2, double lon2) {
+        if (!circuitBreaker.tryAcquire()) {
+            meterRegistry.counter("routing.circuit.rejected", "backend", routingBackend.getName()).increment();
+            log.debug("Routing circuit is open, using Haversine fallback");
+            return null;
+        }
         
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        long start = System.nanoTime();
+        try {
+            double distanceKm = round(routingBackend.routeDistanceKm(lat1, lon1, lat2, lon2));
+            upstreamSuccessTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            circuitBreaker.recordSuccess();
+            distanceCache.put(lat1, lon1, lat2, lon2, distanceKm);
+            return distanceKm;
+        } catch (Exception e) {
+            upstreamFailureTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            circuitBreaker.recordFailure();
+            log.warn("{} routing failed ({}), falling back to Haversine formula",
+                    routingBackend.getName(), e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Distances for every origin/destination pair.
+     * Cached pairs are served from memory; the rest come from one backend matrix call
+     * (OSRM table service) when supported, otherwise from parallel single-pair calls on a
+     * bounded executor. The whole batch shares one deadline and any pair not routed by then
+     * is answered with the Haversine distance.
+     */
+    public DistanceMatrixResponse calculateMatrix(List<GeoPoint> origins, List<GeoPoint> destinations) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(matrixDeadlineMs);
+        int rows = origins.size();
+        int columns = destinations.size();
+        double[][] distances = new double[rows][columns];
+        boolean[][] resolved = new boolean[rows][columns];
+        int cachedPairs = 0;
+        int routedPairs = 0;
+        int pending = 0;
         
-        // Calculate distance
-        double distance = EARTH_RADIUS_KM * c;
+        for (int i = 0; i < rows; i++) {
+            GeoPoint origin = origins.get(i);
+            for (int j = 0; j < columns; j++) {
+                GeoPoint destination = destinations.get(j);
+                Double cached = distanceCache.get(origin.getLat(), origin.getLon(),
+                        destination.getLat(), destination.getLon());
+                if (cached != null) {
+                    distances[i][j] = cached;
+                    resolved[i][j] = true;
+                    cachedPairs++;
+                } else {
+                    pending++;
+                }
+            }
+        }
         
-        // Round to 2 decimal places
-        double roundedDistance = Math.round(distance * 100.0) / 100.0;
-        System.out.println("✅ Calculated distance: " + roundedDistance + " km");
+        String source = "cache";
+        if (pending > 0 && routingBackend.supportsMatrix() && rows + columns <= maxTableCoordinates) {
+            source = routingBackend.getName() + "-table";
+            int filled = fillFromMatrixCall(origins, destinations, distances, resolved, deadline);
+            routedPairs += filled;
+            pending -= filled;
+        }
         
-        return roundedDistance;
+        if (pending > 0 && deadline - System.nanoTime() > 0) {
+            source = routingBackend.getName() + "-parallel";
+            int filled = fillFromParallelCalls(origins, destinations, distances, resolved, deadline);
+            routedPairs += filled;
+            pending -= filled;
+        }
+        
+        if (pending > 0) {
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < columns; j++) {
+                    if (!resolved[i][j]) {
+                        GeoPoint origin = origins.get(i);
+                        GeoPoint destination = destinations.get(j);
+                        distances[i][j] = calculateHaversineDistance(origin.getLat(), origin.getLon(),
+                                destination.getLat(), destination.getLon());
+                    }
+                }
+            }
+        }
+        
+        return DistanceMatrixResponse.builder()
+                .distancesKm(distances)
+                .cachedPairs(cachedPairs)
+                .routedPairs(routedPairs)
+                .fallbackPairs(pending)
+                .source(source)
+                .build();
+    }
+    
+    /**
+     * One backend matrix call, run on the matrix executor so it is bounded by the batch deadline
+     */
+    private int fillFromMatrixCall(List<GeoPoint> origins, List<GeoPoint> destinations,
+                                   double[][] distances, boolean[][] resolved, long deadline) {
+        if (!circuitBreaker.tryAcquire()) {
+            meterRegistry.counter("routing.circuit.rejected", "backend", routingBackend.getName()).increment();
+            return 0;
+        }
+        
+        long start = System.nanoTime();
+        double[][] table;
+        Future<double[][]> call = null;
+        try {
+            call = matrixExecutor.submit(() -> routingBackend.distanceMatrixKm(
+                    origins.stream().mapToDouble(GeoPoint::getLat).toArray(),
+                    origins.stream().mapToDouble(GeoPoint::getLon).toArray(),
+                    destinations.stream().mapToDouble(GeoPoint::getLat).toArray(),
+                    destinations.stream().mapToDouble(GeoPoint::getLon).toArray()));
+            table = call.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            upstreamSuccessTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            circuitBreaker.recordSuccess();
+        } catch (RejectedExecutionException e) {
+            // Executor saturated: local load shedding says nothing about the upstream
+            circuitBreaker.release();
+            meterRegistry.counter("routing.matrix.rejected").increment();
+            return 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            call.cancel(true);
+            circuitBreaker.release();
+            return 0;
+        } catch (Exception e) {
+            if (call != null) {
+                call.cancel(true);
+            }
+            upstreamFailureTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            circuitBreaker.recordFailure();
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            log.warn("{} matrix routing failed ({}), falling back to per-pair calls",
+                    routingBackend.getName(), e instanceof TimeoutException ? "deadline exceeded" : cause.getMessage());
+            return 0;
+        }
+        
+        int filled = 0;
+        for (int i = 0; i < origins.size(); i++) {
+            GeoPoint origin = origins.get(i);
+            for (int j = 0; j < destinations.size(); j++) {
+                if (resolved[i][j] || Double.isNaN(table[i][j])) {
+                    continue;
+                }
+                GeoPoint destination = destinations.get(j);
+                double distanceKm = round(table[i][j]);
+                distanceCache.put(origin.getLat(), origin.getLon(), destination.getLat(), destination.getLon(), distanceKm);
+                distances[i][j] = distanceKm;
+                resolved[i][j] = true;
+                filled++;
+            }
+        }
+        return filled;
+    }
+    
+    private int fillFromParallelCalls(List<GeoPoint> origins, List<GeoPoint> destinations,
+                                      double[][] distances, boolean[][] resolved, long deadline) {
+        List<int[]> cells = new ArrayList<>();
+        List<Future<Double>> futures = new ArrayList<>();
+        submit:
+        for (int i = 0; i < origins.size(); i++) {
+            GeoPoint origin = origins.get(i);
+            for (int j = 0; j < destinations.size(); j++) {
+                if (resolved[i][j]) {
+                    continue;
+                }
+                GeoPoint destination = destinations.get(j);
+                try {
+                    futures.add(matrixExecutor.submit(() -> routeWithBreaker(origin.getLat(), origin.getLon(),
+                            destination.getLat(), destination.getLon())));
+                    cells.add(new int[]{i, j});
+                } catch (RejectedExecutionException e) {
+                    // Executor saturated: remaining pairs use the Haversine fallback
+                    meterRegistry.counter("routing.matrix.rejected").increment();
+                    break submit;
+                }
+            }
+        }
+        
+        int filled = 0;
+        for (int k = 0; k < futures.size(); k++) {
+            Future<Double> future = futures.get(k);
+            try {
+                Double distanceKm = future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (distanceKm != null) {
+                    int[] cell = cells.get(k);
+                    distances[cell[0]][cell[1]] = distanceKm;
+                    resolved[cell[0]][cell[1]] = true;
+                    filled++;
+                }
+            } catch (TimeoutException e) {
+                future.cancel(true);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+            } catch (ExecutionException e) {
+                log.debug("Matrix pair failed: {}", e.getCause().getMessage());
+            }
+        }
+        return filled;
+    }
+    
+    private static double round(double distanceKm) {
+        return Math.round(distanceKm * 100.0) / 100.0;
+    }
+    
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+    
+    /**
+     * Calculate straight-line distance using Haversine formula
+     * Used as fallback when OSRM is unavailable
+     */
+    private double calculateHaversineDistance(double lat1, double lon1, double lat2, double lon2) {
+        // Round to 2 decimal places
+        return round(GeoMath.haversineKm(lat1, lon1, lat2, lon2));
     }
 }
@@ -0,0 +1,227 @@
+package com.drivenow.service;
+
+import com.drivenow.entity.DriverDocument;
+import com.drivenow.entity.User;
+import com.drivenow.repository.DriverDocumentRepository;
+import com.drivenow.repository.UserRepository;
+import com.drivenow.service.storage.BlobStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Driver documents (license, registration, insurance) stored in the blob store, with one
+ * current document of each type per driver. Uploads and downloads are streamed; the users row
+ * no longer carries the files.
+ *
+ * Blobs are shared by identical uploads. One that loses its last document, or was written by
+ * an upload that rolled back, is queued and deleted by a periodic sweep once it is still
+ * unreferenced and has not been stored again within the grace period.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DriverDocumentService {
+
+    // Columns that held base64 documents inline before the blob store
+    private static final Map<String, DriverDocument.DocumentType> LEGACY_COLUMNS = Map.of(
+            "drivers_license", DriverDocument.DocumentType.DRIVERS_LICENSE,
+            "vehicle_registration", DriverDocument.DocumentType.VEHICLE_REGISTRATION,
+            "insurance_certificate", DriverDocument.DocumentType.INSURANCE_CERTIFICATE);
+
+    // Types a document is served as; anything else is served as application/octet-stream
+    private static final Set<String> SAFE_CONTENT_TYPES = Set.of(
+            "application/pdf", "image/jpeg", "image/png", "image/webp", "image/heic");
+
+    private final DriverDocumentRepository documentRepository;
+    private final UserRepository userRepository;
+    private final BlobStore blobStore;
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Set<String> releasedBlobs = ConcurrentHashMap.newKeySet();
+
+    @Value("${storage.documents.max-bytes:10485760}")
+    private long maxDocumentBytes;
+
+    @Value("${storage.blob.release-grace-seconds:600}")
+    private long releaseGraceSeconds;
+
+    public List<DriverDocument> getDocuments(Long userId) {
+        return documentRepository.findByUserId(userId);
+    }
+
+    public DriverDocument getDocument(Long userId, DriverDocument.DocumentType type) {
+        return documentRepository.findByUserIdAndType(userId, type)
+                .orElseThrow(() -> new RuntimeException("Document not found"));
+    }
+
+    public Resource openDocument(DriverDocument document) {
+        return new FileSystemResource(blobStore.path(document.getBlobHash()));
+    }
+
+    /**
+     * The declared content type if it is one documents may be served as, else octet-stream
+     */
+    public static String safeContentType(String contentType) {
+        if (contentType == null) {
+            return MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        }
+        try {
+            MediaType parsed = MediaType.parseMediaType(contentType);
+            String type = (parsed.getType() + "/" + parsed.getSubtype()).toLowerCase(Locale.ROOT);
+            return SAFE_CONTENT_TYPES.contains(type) ? type : MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        }
+    }
+
+    /**
+     * Store a document, replacing the driver's current one of the same type
+     */
+    @Transactional
+    public DriverDocument upload(Long userId, DriverDocument.DocumentType type, InputStream content,
+                                 String contentType, String filename) throws IOException {
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        if (user.getRole() != User.Role.DRIVER) {
+            throw new RuntimeException("Documents can only be uploaded for drivers");
+        }
+
+        BlobStore.StoredBlob blob = blobStore.put(content, maxDocumentBytes);
+        // If the upload (or the registration around it) rolls back, the new blob may be orphaned
+        TransactionCallbacks.onRollback(() -> releasedBlobs.add(blob.hash()));
+        DriverDocument document = documentRepository.findByUserIdAndType(userId, type).orElseGet(() -> {
+            DriverDocument created = new DriverDocument();
+            created.setUserId(userId);
+            created.setType(type);
+            return created;
+        });
+        String previousHash = document.getBlobHash();
+        document.setBlobHash(blob.hash());
+        document.setSize(blob.size());
+        document.setContentType(safeContentType(contentType));
+        document.setFilename(filename);
+        DriverDocument saved = documentRepository.save(document);
+
+        if (previousHash != null && !previousHash.equals(blob.hash())) {
+            releaseBlobAfterCommit(previousHash);
+        }
+        return saved;
+    }
+
+    @Transactional
+    public void delete(Long userId, DriverDocument.DocumentType type) {
+        DriverDocument document = getDocument(userId, type);
+        documentRepository.delete(document);
+        releaseBlobAfterCommit(document.getBlobHash());
+    }
+
+    @Transactional
+    public void deleteAll(Long userId) {
+        for (DriverDocument document : documentRepository.findByUserId(userId)) {
+            documentRepository.delete(document);
+            releaseBlobAfterCommit(document.getBlobHash());
+        }
+    }
+
+    /**
+     * Queue a blob for the sweep once the change commits
+     */
+    private void releaseBlobAfterCommit(String hash) {
+        TransactionCallbacks.afterCommit(() -> releasedBlobs.add(hash));
+    }
+
+    /**
+     * Delete released blobs that no document references and that were not stored again within
+     * the grace period; blobs still too recent are retried on the next run
+     */
+    @Scheduled(fixedDelayString = "${storage.blob.sweep-interval-ms:60000}")
+    public void sweepReleasedBlobs() {
+        Duration grace = Duration.ofSeconds(releaseGraceSeconds);
+        for (String hash : releasedBlobs) {
+            try {
+                if (documentRepository.countByBlobHash(hash) > 0 || blobStore.deleteIfIdle(hash, grace)) {
+                    releasedBlobs.remove(hash);
+                }
+            } catch (IOException e) {
+                log.warn("Failed to delete blob {}: {}", hash, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Move documents still held inline in the users table into the blob store, one user at a
+     * time, and clear the columns. Databases created after the move have no such columns.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateInlineDocuments() {
+        List<Long> userIds;
+        try {
+            userIds = jdbcTemplate.queryForList("SELECT id FROM users WHERE drivers_license IS NOT NULL " +
+                    "OR vehicle_registration IS NOT NULL OR insurance_certificate IS NOT NULL", Long.class);
+        } catch (DataAccessException e) {
+            return;
+        }
+        int migrated = 0;
+        for (Long userId : userIds) {
+            for (Map.Entry<String, DriverDocument.DocumentType> column : LEGACY_COLUMNS.entrySet()) {
+                String value = jdbcTemplate.queryForObject(
+                        "SELECT " + column.getKey() + " FROM users WHERE id = ?", String.class, userId);
+                if (value == null) {
+                    continue;
+                }
+                try {
+                    if (!value.isBlank()) {
+                        migrateInline(userId, column.getValue(), value);
+                        migrated++;
+                    }
+                    jdbcTemplate.update("UPDATE users SET " + column.getKey() + " = NULL WHERE id = ?", userId);
+                } catch (Exception e) {
+                    log.warn("Could not migrate {} of user {}: {}", column.getKey(), userId, e.getMessage());
+                }
+            }
+        }
+        if (migrated > 0) {
+            log.info("Moved {} inline driver documents to the blob store", migrated);
+        }
+    }
+
+    private void migrateInline(Long userId, DriverDocument.DocumentType type, String value) throws IOException {
+        // Stored as a data URL (data:image/png;base64,...) or bare base64
+        String contentType = null;
+        String payload = value;
+        if (value.startsWith("data:")) {
+            int comma = value.indexOf(',');
+            String header = value.substring(5, comma);
+            contentType = header.endsWith(";base64") ? header.substring(0, header.length() - 7) : header;
+            payload = value.substring(comma + 1);
+        }
+        try (InputStream decoded = Base64.getMimeDecoder().wrap(
+                new ByteArrayInputStream(payload.getBytes(StandardCharsets.ISO_8859_1)))) {
+            upload(userId, type, decoded, contentType, type.toPath());
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.drivenow.service;
+
+import com.drivenow.dto.NearbyDriver;
+import com.drivenow.entity.User;
+import com.drivenow.service.routing.HaversineKernel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+
+/**
+ * In-memory last-known driver positions with a lock-striped grid index for
+ * "k nearest available drivers" queries.
+ *
+ * Positions live in a concurrent map keyed by driver id. The grid maps ~1.1 km cells to the
+ * drivers currently inside them; cells are spread over a fixed set of stripes, each guarded by
+ * its own read/write lock, so updates in different parts of the map do not contend.
+ * Nearest queries scan rings of cells outward from the pickup and stop once the next ring
+ * cannot contain anything closer than the current k-th candidate.
+ */
+@Service
+public class DriverLocationService {
+
+    // Grid cell size in degrees (~1.1 km of latitude)
+    private static final double CELL_DEGREES = 0.01;
+    private static final double CELL_KM = 1.11;
+    private static final int STRIPES = 64;
+
+    private final Map<Long, DriverLocation> locations = new ConcurrentHashMap<>();
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    @Value("${driver-location.max-age-seconds:120}")
+    private long maxAgeSeconds;
+
+    @Value("${driver-location.max-search-km:50}")
+    private double maxSearchKm;
+
+    public DriverLocationService() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    private record DriverLocation(Long driverId, String name, double latitude, double longitude,
+                                  Instant updatedAt, boolean available, long cell) {
+    }
+
+    private static final class Stripe {
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        final Map<Long, Set<Long>> cells = new HashMap<>();
+    }
+
+    private static long cellOf(double latitude, double longitude) {
+        return cellKey((int) Math.floor(latitude / CELL_DEGREES), (int) Math.floor(longitude / CELL_DEGREES));
+    }
+
+    private static long cellKey(int cellLat, int cellLon) {
+        return ((long) cellLat << 32) | (cellLon & 0xFFFFFFFFL);
+    }
+
+    private Stripe stripeFor(long cell) {
+        return stripes[(int) ((cell ^ (cell >>> 29)) & (STRIPES - 1))];
+    }
+
+    /**
+     * Record a driver's current position
+     */
+    public void updateLocation(User driver, double latitude, double longitude) {
+        if (driver.getRole() != User.Role.DRIVER) {
+            throw new RuntimeException("User is not a driver");
+        }
+        long newCell = cellOf(latitude, longitude);
+        boolean available = Boolean.TRUE.equals(driver.getAvailable()) && driver.getStatus() == User.Status.ACTIVE;
+        DriverLocation updated = new DriverLocation(driver.getId(), driver.getName(), latitude, longitude,
+                Instant.now(), available, newCell);
+
+        // compute() serializes concurrent updates for the same driver, keeping map and grid consistent
+        locations.compute(driver.getId(), (id, previous) -> {
+            if (previous == null || previous.cell() != newCell) {
+                moveBetweenCells(id, previous != null ? previous.cell() : null, newCell);
+            }
+            return updated;
+        });
+    }
+
+    private void moveBetweenCells(Long driverId, Long oldCell, long newCell) {
+        // Stripe locks are taken one at a time, so no lock ordering is needed
+        if (oldCell != null) {
+            Stripe stripe = stripeFor(oldCell);
+            stripe.lock.writeLock().lock();
+            try {
+                Set<Long> members = stripe.cells.get(oldCell);
+                if (members != null && members.remove(driverId) && members.isEmpty()) {
+                    stripe.cells.remove(oldCell);
+                }
+            } finally {
+                stripe.lock.writeLock().unlock();
+            }
+        }
+        Stripe stripe = stripeFor(newCell);
+        stripe.lock.writeLock().lock();
+        try {
+            stripe.cells.computeIfAbsent(newCell, c -> new HashSet<>()).add(driverId);
+        } finally {
+            stripe.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Keep the availability flag in sync when bookings claim or release a driver
+     */
+    public void setAvailable(Long driverId, boolean available) {
+        locations.computeIfPresent(driverId, (id, location) -> location.available() == available ? location
+                : new DriverLocation(id, location.name(), location.latitude(), location.longitude(),
+                        location.updatedAt(), available, location.cell()));
+    }
+
+    /**
+     * setAvailable once the current transaction commits, so a rollback leaves the index as it was
+     */
+    public void setAvailableAfterCommit(Long driverId, boolean available) {
+        TransactionCallbacks.afterCommit(() -> setAvailable(driverId, available));
+    }
+
+    public void removeDriver(Long driverId) {
+        locations.computeIfPresent(driverId, (id, removed) -> {
+            Stripe stripe = stripeFor(removed.cell());
+            stripe.lock.writeLock().lock();
+            try {
+                Set<Long> members = stripe.cells.get(removed.cell());
+                if (members != null && members.remove(id) && members.isEmpty()) {
+                    stripe.cells.remove(removed.cell());
+                }
+            } finally {
+                stripe.lock.writeLock().unlock();
+            }
+            return null;
+        });
+    }
+
+    public NearbyDriver getLocation(Long driverId) {
+        DriverLocation location = locations.get(driverId);
+        return location != null ? toNearbyDriver(location, null) : null;
+    }
+
+    public int getTrackedDriverCount() {
+        return locations.size();
+    }
+
+    /**
+     * Every available driver with a fresh position within radiusKm of a point, in no particular
+     * order, for batch dispatch. Only the grid cells the radius can reach are scanned.
+     */
+    public List<NearbyDriver> findAvailableDriversWithin(double latitude, double longitude, double radiusKm) {
+        Instant freshAfter = Instant.now().minusSeconds(maxAgeSeconds);
+        int centerLat = (int) Math.floor(latitude / CELL_DEGREES);
+        int centerLon = (int) Math.floor(longitude / CELL_DEGREES);
+        double cellKm = CELL_KM * Math.max(0.1, Math.cos(Math.toRadians(latitude)));
+        int rings = (int) Math.ceil(radiusKm / cellKm);
+
+        List<DriverLocation> candidates = new ArrayList<>();
+        for (int ring = 0; ring <= rings; ring++) {
+            collectRing(centerLat, centerLon, ring, freshAfter, driverId -> true, candidates);
+        }
+        int n = candidates.size();
+        double[] lats = new double[n];
+        double[] lons = new double[n];
+        double[] distances = new double[n];
+        for (int i = 0; i < n; i++) {
+            lats[i] = candidates.get(i).latitude();
+            lons[i] = candidates.get(i).longitude();
+        }
+        HaversineKernel.distancesKm(latitude, longitude, lats, lons, n, distances);
+
+        List<NearbyDriver> result = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            if (distances[i] <= radiusKm) {
+                result.add(toNearbyDriver(candidates.get(i), Math.round(distances[i] * 100.0) / 100.0));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * k nearest available drivers with a fresh position, closest first
+     */
+    public List<NearbyDriver> findNearestAvailableDrivers(double latitude, double longitude, int k) {
+        return findNearestAvailableDrivers(latitude, longitude, k, driverId -> true);
+    }
+
+    /**
+     * k nearest available drivers accepted by the filter, closest first
+     */
+    public List<NearbyDriver> findNearestAvailableDrivers(double latitude, double longitude, int k, LongPredicate filter) {
+        if (k <= 0) {
+            return List.of();
+        }
+        Instant freshAfter = Instant.now().minusSeconds(maxAgeSeconds);
+        int centerLat = (int) Math.floor(latitude / CELL_DEGREES);
+        int centerLon = (int) Math.floor(longitude / CELL_DEGREES);
+        // Longitude cells shrink with latitude; size rings by the narrower dimension
+        double cellKm = CELL_KM * Math.max(0.1, Math.cos(Math.toRadians(latitude)));
+        int maxRings = (int) Math.ceil(maxSearchKm / cellKm);
+
+        List<DriverLocation> candidates = new ArrayList<>();
+        double[] lats = new double[16];
+        double[] lons = new double[16];
+        double[] distances = new double[16];
+        int[] order = new int[k];
+        double[] orderKm = new double[k];
+        int found = 0;
+
+        for (int ring = 0; ring <= maxRings; ring++) {
+            int before = candidates.size();
+            collectRing(centerLat, centerLon, ring, freshAfter, filter, candidates);
+
+            if (candidates.size() != before) {
+                if (candidates.size() > lats.length) {
+                    int capacity = Math.max(candidates.size(), lats.length * 2);
+                    lats = new double[capacity];
+                    lons = new double[capacity];
+                    distances = new double[capacity];
+                }
+                for (int i = 0; i < candidates.size(); i++) {
+                    lats[i] = candidates.get(i).latitude();
+                    lons[i] = candidates.get(i).longitude();
+                }
+                found = HaversineKernel.nearestK(latitude, longitude, lats, lons, candidates.size(), k,
+                        distances, order, orderKm);
+            }
+
+            // Everything outside ring r is at least r cells away from the query point
+            if (found == k && orderKm[k - 1] <= ring * cellKm) {
+                break;
+            }
+        }
+
+        List<NearbyDriver> result = new ArrayList<>(found);
+        for (int i = 0; i < found; i++) {
+            result.add(toNearbyDriver(candidates.get(order[i]), Math.round(orderKm[i] * 100.0) / 100.0));
+        }
+        return result;
+    }
+
+    private void collectRing(int centerLat, int centerLon, int ring, Instant freshAfter, LongPredicate filter,
+                             List<DriverLocation> out) {
+        for (int dLat = -ring; dLat <= ring; dLat++) {
+            for (int dLon = -ring; dLon <= ring; dLon++) {
+                if (Math.abs(dLat) != ring && Math.abs(dLon) != ring) {
+                    continue;
+                }
+                long cell = cellKey(centerLat + dLat, centerLon + dLon);
+                Stripe stripe = stripeFor(cell);
+                int before = out.size();
+                stripe.lock.readLock().lock();
+                try {
+                    Set<Long> members = stripe.cells.get(cell);
+                    if (members == null) {
+                        continue;
+                    }
+                    for (Long driverId : members) {
+                        DriverLocation location = locations.get(driverId);
+                        if (location != null && location.available() && location.updatedAt().isAfter(freshAfter)) {
+                            out.add(location);
+                        }
+                    }
+                } finally {
+                    stripe.lock.readLock().unlock();
+                }
+                // Filters may be slow (e.g. load a schedule), so run them outside the stripe lock
+                for (int i = out.size() - 1; i >= before; i--) {
+                    if (!filter.test(out.get(i).driverId())) {
+                        out.remove(i);
+                    }
+                }
+            }
+        }
+    }
+
+    private NearbyDriver toNearbyDriver(DriverLocation location, Double distanceKm) {
+        return NearbyDriver.builder()
+                .driverId(location.driverId())
+                .name(location.name())
+                .latitude(location.latitude())
+                .longitude(location.longitude())
+                .distanceKm(distanceKm)
+                .updatedAt(location.updatedAt())
+                .build();
+    }
+}
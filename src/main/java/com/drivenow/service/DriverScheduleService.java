@@ -0,0 +1,139 @@
+package com.drivenow.service;
+
+import com.drivenow.entity.Booking;
+import com.drivenow.repository.BookingRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-driver calendar of booking commitments, so a driver booked for next week can still take
+ * a trip today. Each driver's active bookings are loaded lazily from the database on first use
+ * and kept as non-overlapping date intervals ordered by start date, which makes
+ * "is this driver free for [start, end]" a single floor lookup.
+ *
+ * The cache is per instance and advisory: it answers "who could take this trip" for driver
+ * search, while assignments enforce non-overlap against the bookings table (see
+ * BookingService.claimDriver). Changes made inside a transaction are applied only once it
+ * commits, so a rolled-back assignment never leaves a phantom commitment.
+ */
+@Service
+@RequiredArgsConstructor
+public class DriverScheduleService {
+
+    private static final Comparator<Commitment> BY_START =
+            Comparator.comparing(Commitment::startDate).thenComparing(Commitment::bookingId);
+
+    private final BookingRepository bookingRepository;
+    private final Map<Long, DriverSchedule> schedules = new ConcurrentHashMap<>();
+
+    public record Commitment(Long bookingId, LocalDate startDate, LocalDate endDate) {
+    }
+
+    private static final class DriverSchedule {
+        final TreeSet<Commitment> byStart = new TreeSet<>(BY_START);
+        final Map<Long, Commitment> byBooking = new HashMap<>();
+
+        void add(Commitment commitment) {
+            byStart.add(commitment);
+            byBooking.put(commitment.bookingId(), commitment);
+        }
+
+        Commitment remove(Long bookingId) {
+            Commitment removed = byBooking.remove(bookingId);
+            if (removed != null) {
+                byStart.remove(removed);
+            }
+            return removed;
+        }
+
+        boolean isFree(LocalDate start, LocalDate end, Long excludeBookingId) {
+            // Commitments don't overlap, so only the last one starting on or before `end` can
+            // reach into the range (or the one before it, if that one is being excluded)
+            Commitment probe = new Commitment(Long.MAX_VALUE, end, end);
+            for (Commitment c : byStart.headSet(probe, true).descendingSet()) {
+                if (c.bookingId().equals(excludeBookingId)) {
+                    continue;
+                }
+                return c.endDate().isBefore(start);
+            }
+            return true;
+        }
+    }
+
+    public static boolean isActive(Booking.BookingStatus status) {
+        return status != Booking.BookingStatus.CANCELLED && status != Booking.BookingStatus.COMPLETED;
+    }
+
+    private DriverSchedule scheduleFor(Long driverId) {
+        return schedules.computeIfAbsent(driverId, this::load);
+    }
+
+    private DriverSchedule load(Long driverId) {
+        DriverSchedule schedule = new DriverSchedule();
+        for (Booking booking : bookingRepository.findActiveByDriverId(driverId)) {
+            schedule.add(new Commitment(booking.getId(), booking.getStartDate(), booking.getEndDate()));
+        }
+        return schedule;
+    }
+
+    /**
+     * Whether the driver has no active booking overlapping [start, end] (inclusive)
+     * @param excludeBookingId booking to ignore, e.g. the one being reassigned (may be null)
+     */
+    public boolean isFree(Long driverId, LocalDate start, LocalDate end, Long excludeBookingId) {
+        DriverSchedule schedule = scheduleFor(driverId);
+        synchronized (schedule) {
+            return schedule.isFree(start, end, excludeBookingId);
+        }
+    }
+
+    /**
+     * The driver's current commitments, ordered by start date
+     */
+    public List<Commitment> getCommitments(Long driverId) {
+        DriverSchedule schedule = scheduleFor(driverId);
+        synchronized (schedule) {
+            return new ArrayList<>(schedule.byStart);
+        }
+    }
+
+    /**
+     * Record a commitment once the current transaction commits
+     */
+    public void reserve(Long driverId, Long bookingId, LocalDate start, LocalDate end) {
+        Commitment commitment = new Commitment(bookingId, start, end);
+        TransactionCallbacks.afterCommit(() -> {
+            // A schedule not loaded yet will read the committed booking when it is
+            DriverSchedule schedule = schedules.get(driverId);
+            if (schedule != null) {
+                synchronized (schedule) {
+                    schedule.remove(bookingId);
+                    schedule.add(commitment);
+                }
+            }
+        });
+    }
+
+    /**
+     * Drop a commitment once the current transaction commits
+     */
+    public void release(Long driverId, Long bookingId) {
+        TransactionCallbacks.afterCommit(() -> {
+            DriverSchedule schedule = schedules.get(driverId);
+            if (schedule != null) {
+                synchronized (schedule) {
+                    schedule.remove(bookingId);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,13 @@
+package com.drivenow.service;
+
+/**
+ * A driver cannot take a booking: they are off duty or already booked for its dates
+ */
+public class DriverUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public DriverUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,269 @@
+package com.drivenow.service;
+
+import com.drivenow.entity.Booking;
+import com.drivenow.entity.CommissionRate;
+import com.drivenow.entity.DriverBalanceSnapshot;
+import com.drivenow.entity.DriverEarningsEntry;
+import com.drivenow.repository.BookingRepository;
+import com.drivenow.repository.CommissionRateRepository;
+import com.drivenow.repository.DriverBalanceSnapshotRepository;
+import com.drivenow.repository.DriverEarningsEntryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Driver earnings ledger.
+ *
+ * Each paid trip appends one EARNING entry (trip price times the commission rate in force
+ * when it was paid) and each payout appends a negative PAYOUT entry. Appends for a driver are
+ * serialized on the driver's account row, which holds the lifetime totals and current balance;
+ * a row per month holds that month's totals and closing balance. Reading a balance is a lookup
+ * of those rows, never a scan of trips or entries.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EarningsLedgerService {
+
+    private static final int MAX_LEDGER_PAGE_SIZE = 100;
+    private static final LocalDateTime BEGINNING = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final DriverEarningsEntryRepository entryRepository;
+    private final DriverBalanceSnapshotRepository snapshotRepository;
+    private final CommissionRateRepository commissionRateRepository;
+    private final BookingRepository bookingRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${earnings.default-commission-rate:0.15}")
+    private BigDecimal defaultCommissionRate;
+
+    /**
+     * A driver's account row and the monthly rows a dashboard needs; missing rows read as zeros
+     */
+    public record EarningsSummary(DriverBalanceSnapshot account, DriverBalanceSnapshot thisMonth,
+                                  DriverBalanceSnapshot lastMonth, DriverBalanceSnapshot previousMonth) {
+    }
+
+    public CommissionRate getRateAt(LocalDateTime time) {
+        return commissionRateRepository.findFirstByEffectiveFromLessThanEqualOrderByEffectiveFromDescIdDesc(time)
+                .orElseGet(() -> new CommissionRate(null, defaultCommissionRate, BEGINNING, null));
+    }
+
+    public CommissionRate getCurrentRate() {
+        return getRateAt(LocalDateTime.now());
+    }
+
+    public List<CommissionRate> getRateHistory() {
+        return commissionRateRepository.findAllByOrderByEffectiveFromDescIdDesc();
+    }
+
+    /**
+     * Schedule a new commission rate. Past rates are kept so earnings can be traced to the
+     * rate they were computed with.
+     * @param effectiveFrom When the rate takes effect; null for now
+     */
+    @Transactional
+    public CommissionRate addRate(BigDecimal rate, LocalDateTime effectiveFrom) {
+        if (rate == null || rate.signum() < 0 || rate.compareTo(BigDecimal.ONE) > 0) {
+            throw new RuntimeException("Commission rate must be between 0 and 1");
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (effectiveFrom == null) {
+            effectiveFrom = now;
+        } else if (effectiveFrom.isBefore(now)) {
+            throw new RuntimeException("Commission rate cannot take effect in the past");
+        }
+        CommissionRate commissionRate = new CommissionRate();
+        commissionRate.setRate(rate);
+        commissionRate.setEffectiveFrom(effectiveFrom);
+        return commissionRateRepository.save(commissionRate);
+    }
+
+    /**
+     * Record the driver's earning for a trip whose payment was just confirmed. Does nothing
+     * if the trip has no driver or was already recorded.
+     */
+    @Transactional
+    public DriverEarningsEntry recordTripEarning(Booking booking) {
+        return recordTripEarning(booking, LocalDateTime.now());
+    }
+
+    private DriverEarningsEntry recordTripEarning(Booking booking, LocalDateTime paidAt) {
+        if (booking.getDriver() == null
+                || entryRepository.existsByBookingIdAndType(booking.getId(), DriverEarningsEntry.EntryType.EARNING)) {
+            return null;
+        }
+        CommissionRate rate = getRateAt(paidAt);
+        DriverEarningsEntry entry = new DriverEarningsEntry();
+        entry.setDriverId(booking.getDriver().getId());
+        entry.setType(DriverEarningsEntry.EntryType.EARNING);
+        entry.setBookingId(booking.getId());
+        entry.setGrossAmount(booking.getTotalPrice());
+        entry.setCommissionRate(rate.getRate());
+        entry.setCommissionRateId(rate.getId());
+        entry.setAmount(booking.getTotalPrice().multiply(rate.getRate()).setScale(2, RoundingMode.HALF_UP));
+        entry.setReference(booking.getBookingNumber());
+        entry.setCreatedAt(paidAt);
+        return append(entry);
+    }
+
+    /**
+     * Pay out part of a driver's balance
+     */
+    @Transactional
+    public DriverEarningsEntry recordPayout(Long driverId, BigDecimal amount, String reference) {
+        if (amount == null || amount.signum() <= 0) {
+            throw new RuntimeException("Payout amount must be positive");
+        }
+        DriverEarningsEntry entry = new DriverEarningsEntry();
+        entry.setDriverId(driverId);
+        entry.setType(DriverEarningsEntry.EntryType.PAYOUT);
+        entry.setAmount(amount.setScale(2, RoundingMode.HALF_UP).negate());
+        entry.setReference(reference);
+        entry.setCreatedAt(LocalDateTime.now());
+        return append(entry);
+    }
+
+    private DriverEarningsEntry append(DriverEarningsEntry entry) {
+        Long driverId = entry.getDriverId();
+        snapshotRepository.ensureAccount(driverId);
+        DriverBalanceSnapshot account = snapshotRepository.lockAccount(driverId)
+                .orElseThrow(() -> new RuntimeException("Driver account not found"));
+
+        BigDecimal balance = account.getClosingBalance().add(entry.getAmount());
+        if (balance.signum() < 0) {
+            throw new RuntimeException("Payout exceeds the driver's balance of " + account.getClosingBalance());
+        }
+        entry.setBalanceAfter(balance);
+        entry.setPeriod(StatsRollupService.periodOf(entry.getCreatedAt()));
+        DriverEarningsEntry saved = entryRepository.save(entry);
+
+        // The account lock also serializes creation of the month row
+        DriverBalanceSnapshot month = snapshotRepository.findByDriverIdAndPeriod(driverId, entry.getPeriod())
+                .orElseGet(() -> emptySnapshot(driverId, entry.getPeriod()));
+        applyEntry(account, saved);
+        applyEntry(month, saved);
+        snapshotRepository.save(account);
+        snapshotRepository.save(month);
+        return saved;
+    }
+
+    private static void applyEntry(DriverBalanceSnapshot snapshot, DriverEarningsEntry entry) {
+        if (entry.getType() == DriverEarningsEntry.EntryType.EARNING) {
+            snapshot.setEarned(snapshot.getEarned().add(entry.getAmount()));
+        } else {
+            snapshot.setPaidOut(snapshot.getPaidOut().subtract(entry.getAmount()));
+        }
+        snapshot.setClosingBalance(entry.getBalanceAfter());
+        snapshot.setUpdatedAt(entry.getCreatedAt());
+    }
+
+    private static DriverBalanceSnapshot emptySnapshot(Long driverId, int period) {
+        DriverBalanceSnapshot snapshot = new DriverBalanceSnapshot();
+        snapshot.setDriverId(driverId);
+        snapshot.setPeriod(period);
+        return snapshot;
+    }
+
+    public EarningsSummary getSummary(Long driverId) {
+        LocalDateTime now = LocalDateTime.now();
+        int thisMonth = StatsRollupService.periodOf(now);
+        int lastMonth = StatsRollupService.periodOf(now.minusMonths(1));
+        int previousMonth = StatsRollupService.periodOf(now.minusMonths(2));
+
+        Map<Integer, DriverBalanceSnapshot> byPeriod = new HashMap<>();
+        snapshotRepository.findByDriverIdAndPeriodIn(driverId,
+                        List.of(DriverBalanceSnapshot.ACCOUNT, thisMonth, lastMonth, previousMonth))
+                .forEach(snapshot -> byPeriod.put(snapshot.getPeriod(), snapshot));
+        return new EarningsSummary(
+                byPeriod.getOrDefault(DriverBalanceSnapshot.ACCOUNT, emptySnapshot(driverId, DriverBalanceSnapshot.ACCOUNT)),
+                byPeriod.getOrDefault(thisMonth, emptySnapshot(driverId, thisMonth)),
+                byPeriod.getOrDefault(lastMonth, emptySnapshot(driverId, lastMonth)),
+                byPeriod.getOrDefault(previousMonth, emptySnapshot(driverId, previousMonth)));
+    }
+
+    /**
+     * Balance and totals for the payout screen
+     */
+    public Map<String, Object> getBalance(Long driverId) {
+        EarningsSummary summary = getSummary(driverId);
+        Map<String, Object> balance = new HashMap<>();
+        balance.put("driverId", driverId);
+        balance.put("balance", summary.account().getClosingBalance());
+        balance.put("totalEarned", summary.account().getEarned());
+        balance.put("totalPaidOut", summary.account().getPaidOut());
+        balance.put("earnedThisMonth", summary.thisMonth().getEarned());
+        balance.put("earnedLastMonth", summary.lastMonth().getEarned());
+        balance.put("commissionRate", getCurrentRate().getRate());
+        balance.put("updatedAt", summary.account().getUpdatedAt());
+        return balance;
+    }
+
+    /**
+     * One page of a driver's ledger, newest first
+     * @param before nextCursor from the previous page, or null for the first page
+     */
+    public Map<String, Object> getLedger(Long driverId, Long before, int limit) {
+        if (limit < 1 || limit > MAX_LEDGER_PAGE_SIZE) {
+            throw new RuntimeException("limit must be between 1 and " + MAX_LEDGER_PAGE_SIZE);
+        }
+        PageRequest pageable = PageRequest.of(0, limit + 1);
+        List<DriverEarningsEntry> entries = before == null
+                ? entryRepository.findByDriverIdOrderByIdDesc(driverId, pageable)
+                : entryRepository.findByDriverIdAndIdLessThanOrderByIdDesc(driverId, before, pageable);
+
+        boolean hasMore = entries.size() > limit;
+        if (hasMore) {
+            entries = entries.subList(0, limit);
+        }
+        Map<String, Object> page = new HashMap<>();
+        page.put("entries", entries);
+        page.put("hasMore", hasMore);
+        page.put("nextCursor", hasMore ? entries.get(entries.size() - 1).getId() : null);
+        return page;
+    }
+
+    /**
+     * Seed the default rate and record earnings for paid trips missing from the ledger (all of
+     * them on the first start with it). Each trip is recorded in its own transaction, and one
+     * that another instance starting at the same time records first is skipped, so concurrent
+     * starts neither fail nor record a trip twice; an interrupted backfill resumes on the next start.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (commissionRateRepository.count() == 0) {
+                commissionRateRepository.save(new CommissionRate(null, defaultCommissionRate, BEGINNING, null));
+            }
+        });
+        int recorded = 0;
+        for (Booking booking : bookingRepository.findPaidTripsWithoutEarning()) {
+            LocalDateTime paidAt = booking.getUpdatedAt() != null ? booking.getUpdatedAt() : booking.getCreatedAt();
+            try {
+                if (transactionTemplate.execute(status -> recordTripEarning(booking, paidAt)) != null) {
+                    recorded++;
+                }
+            } catch (DataIntegrityViolationException e) {
+                // Recorded by another instance after the existence check
+            }
+        }
+        if (recorded > 0) {
+            log.info("Backfilled earnings ledger with {} paid trips", recorded);
+        }
+    }
+}
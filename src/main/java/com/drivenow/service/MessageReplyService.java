@@ -1,5 +1,6 @@
 package com.drivenow.service;
 
+import com.drivenow.entity.BroadcastNotification;
 import com.drivenow.entity.ContactMessage;
 import com.drivenow.entity.MessageReply;
 import com.drivenow.entity.Notification;
@@ -97,21 +98,17 @@ public class MessageReplyService {
 
     private void createNotificationForAdmins(ContactMessage message, String userName, String replyText) {
         try {
-            List<User> admins = userRepository.findByRole(User.Role.ADMIN);
-            
-            for (User admin : admins) {
-                Notification notification = new Notification();
-                notification.setUser(admin);
-                notification.setTitle("💬 New User Reply");
-                notification.setMessage(String.format("%s replied to: %s", userName, message.getSubject()));
-                notification.setType(Notification.NotificationType.INFO);
-                notification.setCategory(Notification.NotificationCategory.SYSTEM);
-                notification.setIsRead(false);
-                notification.setActionUrl("/admin/dashboard?tab=messages");
+            // One broadcast row for the ADMIN role instead of a row per admin
+            BroadcastNotification notification = new BroadcastNotification();
+            notification.setAudience(User.Role.ADMIN);
+            notification.setTitle("💬 New User Reply");
+            notification.setMessage(String.format("%s replied to: %s", userName, message.getSubject()));
+            notification.setType(Notification.NotificationType.INFO);
+            notification.setCategory(Notification.NotificationCategory.SYSTEM);
+            notification.setActionUrl("/admin/dashboard?tab=messages");
 
-                notificationService.createSystemNotification(notification);
-                log.info("Created reply notification for admin: {}", admin.getEmail());
-            }
+            notificationService.createBroadcast(notification);
+            log.info("Created reply notification for admins");
         } catch (Exception e) {
             log.error("Error creating notifications for admins", e);
         }
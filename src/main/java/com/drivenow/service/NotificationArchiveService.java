@@ -0,0 +1,305 @@
+package com.drivenow.service;
+
+import com.drivenow.entity.BroadcastNotification;
+import com.drivenow.entity.Notification;
+import com.drivenow.repository.BroadcastNotificationRepository;
+import com.drivenow.repository.NotificationRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Notification retention.
+ *
+ * Each category keeps its notifications for a configured number of days. A nightly job moves
+ * older ones out of the table in chunks: a chunk is written as gzipped JSON lines, one file per
+ * creation day ({yyyy}/{MM}/{dd}/{firstId}.jsonl.gz), and deleted in the same transaction once
+ * its files are on disk. Chunks are taken oldest first, so a chunk interrupted after writing
+ * starts with the same rows on the next run and overwrites its files; nothing is lost or
+ * archived twice.
+ *
+ * Broadcasts follow the same retention by category and are archived the same way, in their own
+ * tree (broadcasts/{yyyy}/{MM}/{dd}). Instances drop them from memory on their own (see
+ * BroadcastNotificationService.prune).
+ */
+@Service
+@Slf4j
+public class NotificationArchiveService {
+
+    private static final DateTimeFormatter DAY_PATH = DateTimeFormatter.ofPattern("yyyy/MM/dd");
+    private static final String ARCHIVE_SUFFIX = ".jsonl.gz";
+    private static final String BROADCASTS_DIR = "broadcasts";
+    private static final int MAX_READ_DAYS = 366;
+
+    private final NotificationRepository notificationRepository;
+    private final BroadcastNotificationRepository broadcastRepository;
+    private final UnreadCountService unreadCountService;
+    private final NotificationRetention retention;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Path root;
+    private final Path broadcastRoot;
+    private final int chunkSize;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public NotificationArchiveService(NotificationRepository notificationRepository,
+                                      BroadcastNotificationRepository broadcastRepository,
+                                      UnreadCountService unreadCountService,
+                                      NotificationRetention retention,
+                                      TransactionTemplate transactionTemplate,
+                                      ObjectMapper objectMapper,
+                                      @Value("${storage.notification-archive.path:./data/notification-archive}") String path,
+                                      @Value("${notifications.retention.chunk-size:1000}") int chunkSize) throws IOException {
+        this.notificationRepository = notificationRepository;
+        this.broadcastRepository = broadcastRepository;
+        this.unreadCountService = unreadCountService;
+        this.retention = retention;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.root = Paths.get(path).toAbsolutePath().normalize();
+        this.broadcastRoot = root.resolve(BROADCASTS_DIR);
+        Files.createDirectories(broadcastRoot);
+        this.chunkSize = chunkSize;
+    }
+
+    public Map<String, Integer> getRetentionDays() {
+        return retention.getRetentionDays();
+    }
+
+    @Scheduled(cron = "${notifications.retention.cron:0 0 4 * * *}")
+    public void scheduledCompaction() {
+        Map<String, Object> summary = compact();
+        if ((Integer) summary.get("archived") > 0 || (Integer) summary.get("broadcastsArchived") > 0) {
+            log.info("Archived {} expired notifications and {} broadcasts in {} ms", summary.get("archived"),
+                    summary.get("broadcastsArchived"), summary.get("durationMs"));
+        }
+    }
+
+    /**
+     * Archive and delete every notification and broadcast past its category's retention
+     */
+    public Map<String, Object> compact() {
+        if (!running.compareAndSet(false, true)) {
+            throw new RuntimeException("Notification compaction is already running");
+        }
+        try {
+            long start = System.nanoTime();
+            LocalDateTime now = LocalDateTime.now();
+            Map<String, Integer> archivedByCategory = new LinkedHashMap<>();
+            int archived = 0;
+            int broadcastsArchived = 0;
+            List<Notification.NotificationCategory> categories = new ArrayList<>(List.of(Notification.NotificationCategory.values()));
+            categories.add(null);
+            for (Notification.NotificationCategory category : categories) {
+                LocalDateTime cutoff = retention.getCutoff(category, now);
+                if (cutoff == null) {
+                    continue;
+                }
+                int count = 0;
+                int moved;
+                do {
+                    moved = transactionTemplate.execute(status -> archiveChunk(category, cutoff));
+                    count += moved;
+                } while (moved == chunkSize);
+                if (count > 0) {
+                    archivedByCategory.put(category != null ? category.name() : "UNCATEGORIZED", count);
+                    archived += count;
+                }
+                do {
+                    moved = transactionTemplate.execute(status -> archiveBroadcastChunk(category, cutoff));
+                    broadcastsArchived += moved;
+                } while (moved == chunkSize);
+            }
+            Map<String, Object> summary = new HashMap<>();
+            summary.put("archived", archived);
+            summary.put("byCategory", archivedByCategory);
+            summary.put("broadcastsArchived", broadcastsArchived);
+            summary.put("durationMs", (System.nanoTime() - start) / 1_000_000);
+            return summary;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private int archiveChunk(Notification.NotificationCategory category, LocalDateTime cutoff) {
+        PageRequest chunk = PageRequest.of(0, chunkSize);
+        List<Notification> expired = category != null
+                ? notificationRepository.findExpired(category, cutoff, chunk)
+                : notificationRepository.findExpiredUncategorized(cutoff, chunk);
+        if (expired.isEmpty()) {
+            return 0;
+        }
+
+        Map<LocalDate, List<Notification>> byDay = new TreeMap<>();
+        Map<Long, Long> unreadByUser = new HashMap<>();
+        List<Long> ids = new ArrayList<>(expired.size());
+        for (Notification notification : expired) {
+            byDay.computeIfAbsent(notification.getCreatedAt().toLocalDate(), day -> new ArrayList<>()).add(notification);
+            if (!Boolean.TRUE.equals(notification.getIsRead())) {
+                unreadByUser.merge(notification.getUserId(), 1L, Long::sum);
+            }
+            ids.add(notification.getId());
+        }
+        try {
+            for (Map.Entry<LocalDate, List<Notification>> day : byDay.entrySet()) {
+                writeDayFile(root, day.getKey(), day.getValue().get(0).getId(), day.getValue());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write notification archive", e);
+        }
+        notificationRepository.deleteAllByIdInBatch(ids);
+        unreadByUser.forEach((userId, unread) -> unreadCountService.adjustAfterCommit(userId, -unread));
+        return expired.size();
+    }
+
+    /**
+     * As archiveChunk, for broadcasts. Loaded unread counts that included them catch up on their
+     * next reconcile.
+     */
+    private int archiveBroadcastChunk(Notification.NotificationCategory category, LocalDateTime cutoff) {
+        PageRequest chunk = PageRequest.of(0, chunkSize);
+        List<BroadcastNotification> expired = category != null
+                ? broadcastRepository.findExpired(category, cutoff, chunk)
+                : broadcastRepository.findExpiredUncategorized(cutoff, chunk);
+        if (expired.isEmpty()) {
+            return 0;
+        }
+
+        Map<LocalDate, List<BroadcastNotification>> byDay = new TreeMap<>();
+        for (BroadcastNotification broadcast : expired) {
+            byDay.computeIfAbsent(broadcast.getCreatedAt().toLocalDate(), day -> new ArrayList<>()).add(broadcast);
+        }
+        try {
+            for (Map.Entry<LocalDate, List<BroadcastNotification>> day : byDay.entrySet()) {
+                writeDayFile(broadcastRoot, day.getKey(), day.getValue().get(0).getId(), day.getValue());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write broadcast archive", e);
+        }
+        broadcastRepository.deleteAllInBatch(expired);
+        return expired.size();
+    }
+
+    private void writeDayFile(Path base, LocalDate day, long firstId, List<?> rows) throws IOException {
+        Path dir = base.resolve(day.format(DAY_PATH));
+        Files.createDirectories(dir);
+        Path target = dir.resolve(firstId + ARCHIVE_SUFFIX);
+        Path temp = Files.createTempFile(dir, "archive-", ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp);
+                 Writer writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(out), StandardCharsets.UTF_8))) {
+                for (Object row : rows) {
+                    writer.write(objectMapper.writeValueAsString(row));
+                    writer.write('\n');
+                }
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Archived notifications created between two days (inclusive) as JSON lines. The range is
+     * checked here; files are read one at a time while the response is written.
+     * @param userId Only this user's notifications, or null for all, followed on each day by
+     *               that day's archived broadcasts (which have an audience instead of a userId)
+     */
+    public StreamingResponseBody readArchive(LocalDate from, LocalDate to, Long userId) {
+        if (from.isAfter(to)) {
+            throw new RuntimeException("from must not be after to");
+        }
+        if (from.plusDays(MAX_READ_DAYS).isBefore(to)) {
+            throw new RuntimeException("At most " + MAX_READ_DAYS + " days can be read at once");
+        }
+        return out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+                copyDay(root.resolve(day.format(DAY_PATH)), userId, writer);
+                if (userId == null) {
+                    copyDay(broadcastRoot.resolve(day.format(DAY_PATH)), null, writer);
+                }
+                // Flushed per day so large ranges reach the client as they are read
+                writer.flush();
+            }
+            writer.flush();
+        };
+    }
+
+    private void copyDay(Path dir, Long userId, Writer writer) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(dir)) {
+            files = listing.filter(file -> file.getFileName().toString().endsWith(ARCHIVE_SUFFIX))
+                    .sorted(Comparator.comparingLong(NotificationArchiveService::firstId))
+                    .toList();
+        }
+        for (Path file : files) {
+            copyLines(file, userId, writer);
+        }
+    }
+
+    private static long firstId(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - ARCHIVE_SUFFIX.length()));
+    }
+
+    private void copyLines(Path file, Long userId, Writer writer) throws IOException {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file));
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (userId != null) {
+                    JsonNode owner = objectMapper.readTree(line).get("userId");
+                    if (owner == null || owner.asLong() != userId) {
+                        continue;
+                    }
+                }
+                writer.write(line);
+                writer.write('\n');
+            }
+        }
+    }
+}
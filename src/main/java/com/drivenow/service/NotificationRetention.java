@@ -0,0 +1,75 @@
+package com.drivenow.service;
+
+import com.drivenow.entity.Notification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * How long notifications, and the broadcasts shown alongside them, are kept per category
+ * before they are archived
+ */
+@Component
+public class NotificationRetention {
+
+    private final Map<Notification.NotificationCategory, Integer> retentionDays;
+    private final int defaultRetentionDays;
+
+    public NotificationRetention(@Value("${notifications.retention.days:}") String retentionDays,
+                                 @Value("${notifications.retention.default-days:90}") int defaultRetentionDays) {
+        this.retentionDays = parseRetention(retentionDays);
+        this.defaultRetentionDays = defaultRetentionDays;
+    }
+
+    /**
+     * Parse "BOOKING:365,SYSTEM:30"; 0 keeps a category forever
+     */
+    private static Map<Notification.NotificationCategory, Integer> parseRetention(String value) {
+        Map<Notification.NotificationCategory, Integer> days = new EnumMap<>(Notification.NotificationCategory.class);
+        for (String entry : value.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid retention entry: " + entry);
+            }
+            days.put(Notification.NotificationCategory.valueOf(parts[0].trim().toUpperCase()),
+                    Integer.parseInt(parts[1].trim()));
+        }
+        return days;
+    }
+
+    /**
+     * Days a category is kept; null is the uncategorized default, 0 is forever
+     */
+    public int getDays(Notification.NotificationCategory category) {
+        return category != null ? retentionDays.getOrDefault(category, defaultRetentionDays) : defaultRetentionDays;
+    }
+
+    /**
+     * Entries of the category created before this are expired, or null if it is kept forever
+     */
+    public LocalDateTime getCutoff(Notification.NotificationCategory category, LocalDateTime now) {
+        int days = getDays(category);
+        return days > 0 ? now.minusDays(days) : null;
+    }
+
+    public boolean isExpired(Notification.NotificationCategory category, LocalDateTime createdAt, LocalDateTime now) {
+        LocalDateTime cutoff = getCutoff(category, now);
+        return cutoff != null && createdAt.isBefore(cutoff);
+    }
+
+    public Map<String, Integer> getRetentionDays() {
+        Map<String, Integer> days = new LinkedHashMap<>();
+        for (Notification.NotificationCategory category : Notification.NotificationCategory.values()) {
+            days.put(category.name(), getDays(category));
+        }
+        days.put("UNCATEGORIZED", defaultRetentionDays);
+        return days;
+    }
+}
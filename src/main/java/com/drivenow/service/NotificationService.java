@@ -1,34 +1,99 @@
 package com.drivenow.service;
 
+import com.drivenow.dto.NotificationRecipient;
+import com.drivenow.entity.BroadcastNotification;
 import com.drivenow.entity.Notification;
 import com.drivenow.entity.User;
 import com.drivenow.repository.NotificationRepository;
 import com.drivenow.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.util.HtmlUtils;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
 @SuppressWarnings("null")
 public class NotificationService {
     
+    private static final int MAX_BULK_IDS = 1000;
+    private static final int MAX_FEED_PAGE_SIZE = 100;
+    private static final int MAX_SINCE_IDS = 100;
+    private static final Comparator<Notification> FEED_ORDER =
+            Comparator.comparing(Notification::getCreatedAt).thenComparing(Notification::getId);
+    // Bound that sorts after every notification, so no separate first-page query is needed
+    private static final FeedCursor FEED_NEWEST = new FeedCursor(LocalDateTime.of(9999, 12, 31, 0, 0), Long.MAX_VALUE);
+    
     private final NotificationRepository notificationRepository;
     private final UserRepository userRepository;
+    private final NotificationStreamService notificationStreamService;
+    private final UnreadCountService unreadCountService;
+    private final BroadcastNotificationService broadcastService;
+    
+    // How late an entry can appear after its createdAt: commit delay, broadcast sync and clock skew
+    @Value("${notifications.feed.since-overlap-ms:10000}")
+    private long sinceOverlapMs;
     
     /**
      * Verify that the authenticated user has access to the specified user's data
      * Users can only access their own data unless they are ADMIN
+     * @return The authenticated user
      */
-    private void verifyUserAccess(Long requestedUserId, String authenticatedEmail) {
+    private User verifyUserAccess(Long requestedUserId, String authenticatedEmail) {
         User authenticatedUser = userRepository.findByEmail(authenticatedEmail)
                 .orElseThrow(() -> new SecurityException("Authenticated user not found"));
-        
+        verifyUserAccess(requestedUserId, authenticatedUser);
+        return authenticatedUser;
+    }
+    
+    /**
+     * Broadcast read state is personal: admins see other users' broadcasts but cannot mark or
+     * dismiss them, since one admin would otherwise clear an alert for every other admin
+     * @return Whether the authenticated user is the requested user
+     */
+    private boolean isSelf(Long requestedUserId, String authenticatedEmail) {
+        return Objects.equals(verifyUserAccess(requestedUserId, authenticatedEmail).getId(), requestedUserId);
+    }
+    
+    private void verifySelf(Long requestedUserId, String authenticatedEmail) {
+        if (!isSelf(requestedUserId, authenticatedEmail)) {
+            throw new SecurityException("Access denied: Broadcasts can only be marked by their recipient");
+        }
+    }
+    
+    /**
+     * Feed entries of broadcasts carry negative ids; those go through the broadcast endpoints
+     */
+    private static void rejectBroadcastId(Long id) {
+        if (id != null && id < 0) {
+            throw new IllegalArgumentException("Broadcast " + -id + " is read and dismissed through /user/{userId}/broadcasts/" + -id);
+        }
+    }
+    
+    /**
+     * Same check against an already loaded user, such as the request's principal
+     */
+    private void verifyUserAccess(Long requestedUserId, User authenticatedUser) {
         // Admins can access all notifications
         if (User.Role.ADMIN.equals(authenticatedUser.getRole())) {
             return;
@@ -59,21 +124,26 @@ public class NotificationService {
      * Validate notification input
      */
     private void validateNotification(Notification notification) {
-        if (notification.getTitle() == null || notification.getTitle().trim().isEmpty()) {
+        validateContent(notification.getTitle(), notification.getMessage());
+    }
+    
+    private void validateContent(String title, String message) {
+        if (title == null || title.trim().isEmpty()) {
             throw new IllegalArgumentException("Notification title is required");
         }
-        if (notification.getMessage() == null || notification.getMessage().trim().isEmpty()) {
+        if (message == null || message.trim().isEmpty()) {
             throw new IllegalArgumentException("Notification message is required");
         }
-        if (notification.getTitle().length() > 255) {
+        if (title.length() > 255) {
             throw new IllegalArgumentException("Notification title is too long (max 255 characters)");
         }
-        if (notification.getMessage().length() > 1000) {
+        if (message.length() > 1000) {
             throw new IllegalArgumentException("Notification message is too long (max 1000 characters)");
         }
     }
     
     public Notification getNotificationById(Long id, String authenticatedEmail) {
+        rejectBroadcastId(id);
         Notification notification = notificationRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Notification not found"));
         
@@ -87,14 +157,213 @@ public class NotificationService {
         return notificationRepository.findAll();
     }
     
+    /**
+     * The user's own notifications and the broadcasts meant for them, newest first
+     */
     public List<Notification> getNotificationsByUserId(Long userId, String authenticatedEmail) {
         verifyUserAccess(userId, authenticatedEmail);
-        return notificationRepository.findByUserIdOrderByCreatedAtDesc(userId);
+        List<Notification> notifications = new ArrayList<>(notificationRepository.findByUserIdOrderByCreatedAtDesc(userId));
+        List<Notification> broadcasts = broadcastService.getFeed(broadcastService.getRecipient(userId));
+        if (!broadcasts.isEmpty()) {
+            notifications.addAll(broadcasts);
+            notifications.sort(Comparator.comparing(Notification::getCreatedAt).reversed());
+        }
+        return notifications;
     }
     
-    public Long getUnreadCount(Long userId, String authenticatedEmail) {
+    /**
+     * Position in the feed order (createdAt, id), passed to clients as an opaque string. Ids of
+     * broadcast entries are negative, so a position names one entry even when a notification
+     * and a broadcast share a createdAt.
+     */
+    record FeedCursor(LocalDateTime createdAt, Long id) {
+        
+        static FeedCursor of(Notification notification) {
+            return new FeedCursor(notification.getCreatedAt(), notification.getId());
+        }
+        
+        static FeedCursor decode(String value) {
+            try {
+                String decoded = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+                int separator = decoded.indexOf(',');
+                return new FeedCursor(LocalDateTime.parse(decoded.substring(0, separator)),
+                        Long.parseLong(decoded.substring(separator + 1)));
+            } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+        
+        String encode() {
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((createdAt + "," + id).getBytes(StandardCharsets.UTF_8));
+        }
+        
+        int compareTo(Notification notification) {
+            int byTime = createdAt.compareTo(notification.getCreatedAt());
+            return byTime != 0 ? byTime : id.compareTo(notification.getId());
+        }
+    }
+    
+    /**
+     * Where a since request resumes: entries created at or after from, except the ones the
+     * client already has. Passed to clients as an opaque string.
+     */
+    private record SinceCursor(LocalDateTime from, Set<Long> seen) {
+        
+        static SinceCursor decode(String value) {
+            try {
+                String decoded = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+                int separator = decoded.indexOf(';');
+                Set<Long> seen = new LinkedHashSet<>();
+                for (String id : decoded.substring(separator + 1).split(",")) {
+                    if (!id.isEmpty()) {
+                        seen.add(Long.parseLong(id));
+                    }
+                }
+                return new SinceCursor(LocalDateTime.parse(decoded.substring(0, separator)), seen);
+            } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+        
+        String encode() {
+            StringBuilder value = new StringBuilder().append(from).append(';');
+            seen.forEach(id -> value.append(id).append(','));
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(value.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        
+        /**
+         * The client's position once it has the known entries: from stays where it is, and the
+         * known entries created since then are listed. Past MAX_SINCE_IDS, from moves up to the
+         * newest of them instead, but never above ceiling.
+         * @param carried Ids to keep listed without looking at them
+         */
+        static SinceCursor of(LocalDateTime from, LocalDateTime ceiling, List<Notification> known, Collection<Long> carried) {
+            List<Notification> recent = known.stream()
+                    .filter(entry -> !entry.getCreatedAt().isBefore(from))
+                    .sorted(FEED_ORDER.reversed())
+                    .toList();
+            LocalDateTime floor = from;
+            if (recent.size() > MAX_SINCE_IDS) {
+                floor = recent.get(MAX_SINCE_IDS - 1).getCreatedAt();
+                if (ceiling != null && floor.isAfter(ceiling)) {
+                    floor = ceiling;
+                }
+            }
+            Set<Long> seen = new LinkedHashSet<>(carried);
+            for (Notification entry : recent) {
+                if (!entry.getCreatedAt().isBefore(floor)) {
+                    seen.add(entry.getId());
+                }
+            }
+            return new SinceCursor(floor, seen);
+        }
+    }
+    
+    /**
+     * One page of the user's notifications and broadcasts, newest first, by keyset on
+     * (createdAt, id). The first page also returns latestCursor; passing it back as since
+     * returns only what was added after it, oldest first, for as many calls as hasMore says.
+     *
+     * Entries become visible after their createdAt: a transaction commits late, or a broadcast
+     * from another instance is picked up on the next sync. So a since cursor does not stop at
+     * the newest entry the client has; it goes back sinceOverlapMs from the time of the request
+     * and lists the entries from that window the client already has, which are skipped.
+     * @param cursor nextCursor from the previous page, or null for the first page
+     * @param since latestCursor from an earlier response, or null for a page
+     * @param isRead Only read or unread notifications, or null for both
+     * @param category Only this category, or null for all
+     */
+    public Map<String, Object> getFeed(Long userId, String cursor, String since, int limit, Boolean isRead,
+                                       Notification.NotificationCategory category, String authenticatedEmail) {
         verifyUserAccess(userId, authenticatedEmail);
-        return notificationRepository.countUnreadByUserId(userId);
+        if (limit < 1 || limit > MAX_FEED_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_FEED_PAGE_SIZE);
+        }
+        if (cursor != null && since != null) {
+            throw new IllegalArgumentException("cursor and since cannot be combined");
+        }
+        // Taken before reading, so whatever commits during the request is inside the next window
+        LocalDateTime settledBefore = LocalDateTime.now().minusNanos(sinceOverlapMs * 1_000_000);
+        List<Notification> broadcasts = broadcastService.getFeed(broadcastService.getRecipient(userId)).stream()
+                .filter(entry -> isRead == null || isRead.equals(entry.getIsRead()))
+                .filter(entry -> category == null || category == entry.getCategory())
+                .toList();
+        
+        Map<String, Object> page = new HashMap<>();
+        if (since != null) {
+            SinceCursor after = SinceCursor.decode(since);
+            // Enough rows to fill the page even if every entry the client has is among them
+            List<Notification> window = new ArrayList<>(notificationRepository.findFeedSince(
+                    userId, isRead, category, after.from(), PageRequest.of(0, limit + after.seen().size() + 1)));
+            broadcasts.stream().filter(entry -> !entry.getCreatedAt().isBefore(after.from())).forEach(window::add);
+            window.sort(FEED_ORDER);
+            List<Notification> entries = window.stream()
+                    .filter(entry -> !after.seen().contains(entry.getId()))
+                    .toList();
+            boolean hasMore = entries.size() > limit;
+            if (hasMore) {
+                entries = entries.subList(0, limit);
+            }
+            
+            List<Notification> known = new ArrayList<>(entries);
+            window.stream().filter(entry -> after.seen().contains(entry.getId())).forEach(known::add);
+            LocalDateTime from = settledBefore.isAfter(after.from()) ? settledBefore : after.from();
+            LocalDateTime ceiling = null;
+            List<Long> carried = List.of();
+            if (hasMore) {
+                // The rest of the window comes next, and may hold entries the client had
+                ceiling = entries.get(entries.size() - 1).getCreatedAt();
+                from = from.isAfter(ceiling) ? ceiling : from;
+                Set<Long> inWindow = new HashSet<>();
+                window.forEach(entry -> inWindow.add(entry.getId()));
+                carried = after.seen().stream().filter(id -> !inWindow.contains(id)).toList();
+            }
+            page.put("notifications", entries);
+            page.put("hasMore", hasMore);
+            page.put("latestCursor", SinceCursor.of(from, ceiling, known, carried).encode());
+            return page;
+        }
+        
+        FeedCursor before = cursor != null ? FeedCursor.decode(cursor) : FEED_NEWEST;
+        List<Notification> entries = new ArrayList<>(notificationRepository.findFeedBefore(
+                userId, isRead, category, before.createdAt(), before.id(), PageRequest.of(0, limit + 1)));
+        broadcasts.stream().filter(entry -> before.compareTo(entry) > 0).forEach(entries::add);
+        entries.sort(FEED_ORDER.reversed());
+        boolean hasMore = entries.size() > limit;
+        if (hasMore) {
+            entries = entries.subList(0, limit);
+        }
+        page.put("notifications", entries);
+        page.put("hasMore", hasMore);
+        page.put("nextCursor", hasMore ? FeedCursor.of(entries.get(entries.size() - 1)).encode() : null);
+        if (cursor == null) {
+            LocalDateTime from = settledBefore;
+            if (hasMore && entries.get(entries.size() - 1).getCreatedAt().isAfter(from)) {
+                // Older entries of the window are on the next pages, not in the client's hands
+                from = entries.get(entries.size() - 1).getCreatedAt();
+            }
+            page.put("latestCursor", SinceCursor.of(from, null, entries, List.of()).encode());
+        }
+        return page;
+    }
+    
+    /**
+     * Open the user's notification stream
+     * @param lastEventId Last notification id the client received, or null
+     */
+    public SseEmitter streamNotifications(Long userId, Long lastEventId, String authenticatedEmail) {
+        verifyUserAccess(userId, authenticatedEmail);
+        return notificationStreamService.subscribe(userId, lastEventId);
+    }
+    
+    /**
+     * Served from memory; checked against the request's principal, so no query is made
+     */
+    public Long getUnreadCount(Long userId, User authenticatedUser) {
+        verifyUserAccess(userId, authenticatedUser);
+        return unreadCountService.get(userId);
     }
     
     @Transactional
@@ -123,31 +392,102 @@ public class NotificationService {
         notification.setUser(user);
         notification.setIsRead(false);
         
-        return notificationRepository.save(notification);
+        Notification saved = notificationRepository.save(notification);
+        saved.setUserId(user.getId());
+        unreadCountService.adjustAfterCommit(saved.getUserId(), 1);
+        notificationStreamService.publishCreated(saved);
+        return saved;
     }
     
     @Transactional
     public Notification markAsRead(Long id, String authenticatedEmail) {
+        rejectBroadcastId(id);
         Notification notification = notificationRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Notification not found"));
         
         // Verify user has access to this notification
         verifyUserAccess(notification.getUser().getId(), authenticatedEmail);
         
+        if (!Boolean.TRUE.equals(notification.getIsRead())) {
+            unreadCountService.adjustAfterCommit(notification.getUser().getId(), -1);
+        }
         notification.setIsRead(true);
-        return notificationRepository.save(notification);
+        Notification saved = notificationRepository.save(notification);
+        notificationStreamService.publishUnreadCount(saved.getUser().getId());
+        return saved;
+    }
+    
+    /**
+     * Mark every unread notification of the user as read with a single UPDATE, and every
+     * broadcast by moving their read watermark. An admin acting for another user leaves that
+     * user's broadcasts alone.
+     * @return Number of notifications marked
+     */
+    @Transactional
+    public int markAllAsRead(Long userId, String authenticatedEmail) {
+        boolean self = isSelf(userId, authenticatedEmail);
+        int updated = notificationRepository.markAllReadByUserId(userId)
+                + (self ? broadcastService.markAllRead(broadcastService.getRecipient(userId)) : 0);
+        unreadCountService.adjustAfterCommit(userId, -updated);
+        notificationStreamService.publishUnreadCount(userId);
+        return updated;
+    }
+    
+    /**
+     * Mark the given notifications of the user as read with a single UPDATE; ids that are not
+     * the user's or already read are ignored
+     * @return Number of notifications marked
+     */
+    @Transactional
+    public int markAsRead(Long userId, Collection<Long> ids, String authenticatedEmail) {
+        verifyUserAccess(userId, authenticatedEmail);
+        if (ids == null || ids.isEmpty()) {
+            return 0;
+        }
+        if (ids.size() > MAX_BULK_IDS) {
+            throw new IllegalArgumentException("At most " + MAX_BULK_IDS + " notifications can be marked at once");
+        }
+        int updated = notificationRepository.markReadByUserIdAndIdIn(userId, ids);
+        unreadCountService.adjustAfterCommit(userId, -updated);
+        notificationStreamService.publishUnreadCount(userId);
+        return updated;
     }
     
+    /**
+     * Delete the user's notifications created before the given time with a single DELETE
+     * @return Number of notifications deleted
+     */
     @Transactional
-    public void markAllAsRead(Long userId, String authenticatedEmail) {
+    public int deleteOlderThan(Long userId, LocalDateTime before, String authenticatedEmail) {
         verifyUserAccess(userId, authenticatedEmail);
-        List<Notification> notifications = notificationRepository.findByUserIdAndIsRead(userId, false);
-        notifications.forEach(n -> n.setIsRead(true));
-        notificationRepository.saveAll(notifications);
+        if (before == null) {
+            throw new IllegalArgumentException("before is required");
+        }
+        return afterBulkDelete(userId, notificationRepository.deleteByUserIdCreatedBefore(userId, before));
+    }
+    
+    /**
+     * Delete the user's notifications of one category with a single DELETE
+     * @return Number of notifications deleted
+     */
+    @Transactional
+    public int deleteByCategory(Long userId, Notification.NotificationCategory category, String authenticatedEmail) {
+        verifyUserAccess(userId, authenticatedEmail);
+        return afterBulkDelete(userId, notificationRepository.deleteByUserIdAndCategory(userId, category));
+    }
+    
+    private int afterBulkDelete(Long userId, int deleted) {
+        if (deleted > 0) {
+            // How many of them were unread is unknown; the next read recounts
+            unreadCountService.evictAfterCommit(userId);
+            notificationStreamService.publishUnreadCount(userId);
+        }
+        return deleted;
     }
     
     @Transactional
     public void deleteNotification(Long id, String authenticatedEmail) {
+        rejectBroadcastId(id);
         Notification notification = notificationRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Notification not found"));
         
@@ -155,12 +495,88 @@ public class NotificationService {
         verifyUserAccess(notification.getUser().getId(), authenticatedEmail);
         
         notificationRepository.delete(notification);
+        if (!Boolean.TRUE.equals(notification.getIsRead())) {
+            unreadCountService.adjustAfterCommit(notification.getUser().getId(), -1);
+        }
+        notificationStreamService.publishUnreadCount(notification.getUser().getId());
     }
     
+    /**
+     * Delete the user's notifications and dismiss their broadcasts; an admin acting for another
+     * user leaves that user's broadcasts alone
+     */
     @Transactional
     public void clearAllNotifications(Long userId, String authenticatedEmail) {
-        verifyUserAccess(userId, authenticatedEmail);
+        boolean self = isSelf(userId, authenticatedEmail);
         notificationRepository.deleteByUserId(userId);
+        if (self) {
+            broadcastService.dismissAll(broadcastService.getRecipient(userId));
+            unreadCountService.resetAfterCommit(userId);
+        } else {
+            unreadCountService.evictAfterCommit(userId);
+        }
+        notificationStreamService.publishUnreadCount(userId);
+    }
+    
+    @Transactional
+    public void markBroadcastAsRead(Long userId, Long broadcastId, String authenticatedEmail) {
+        verifySelf(userId, authenticatedEmail);
+        if (broadcastService.markRead(broadcastService.getRecipient(userId), broadcastId)) {
+            unreadCountService.adjustAfterCommit(userId, -1);
+            notificationStreamService.publishUnreadCount(userId);
+        }
+    }
+    
+    /**
+     * Remove a broadcast from the user's feed; it stays for everyone else
+     */
+    @Transactional
+    public void dismissBroadcast(Long userId, Long broadcastId, String authenticatedEmail) {
+        verifySelf(userId, authenticatedEmail);
+        if (broadcastService.dismiss(broadcastService.getRecipient(userId), broadcastId)) {
+            unreadCountService.adjustAfterCommit(userId, -1);
+            notificationStreamService.publishUnreadCount(userId);
+        }
+    }
+    
+    /**
+     * Send a notification to every user of the broadcast's audience (everyone when it is null)
+     * with a single insert. Users who join later do not see it.
+     */
+    @Transactional
+    public BroadcastNotification createBroadcast(BroadcastNotification broadcast) {
+        validateContent(broadcast.getTitle(), broadcast.getMessage());
+        broadcast.setTitle(HtmlUtils.htmlEscape(broadcast.getTitle().trim()));
+        broadcast.setMessage(HtmlUtils.htmlEscape(broadcast.getMessage().trim()));
+        if (broadcast.getActionUrl() != null) {
+            broadcast.setActionUrl(HtmlUtils.htmlEscape(broadcast.getActionUrl().trim()));
+        }
+        if (broadcast.getType() == null) {
+            broadcast.setType(Notification.NotificationType.INFO);
+        }
+        broadcast.setId(null);
+        BroadcastNotification saved = broadcastService.save(broadcast);
+        TransactionCallbacks.afterCommit(() -> announce(saved));
+        return saved;
+    }
+    
+    /**
+     * Announce broadcasts created on other instances
+     */
+    @Scheduled(fixedDelayString = "${notifications.broadcast.sync-interval-ms:5000}")
+    public void syncBroadcasts() {
+        broadcastService.poll().forEach(this::publishBroadcast);
+    }
+    
+    private void announce(BroadcastNotification broadcast) {
+        if (broadcastService.register(broadcast)) {
+            publishBroadcast(broadcast);
+        }
+    }
+    
+    private void publishBroadcast(BroadcastNotification broadcast) {
+        unreadCountService.addBroadcast(broadcast);
+        notificationStreamService.publishBroadcast(broadcast);
     }
     
     /**
@@ -182,7 +598,11 @@ public class NotificationService {
         
         notification.setIsRead(false);
         
-        return notificationRepository.save(notification);
+        Notification saved = notificationRepository.save(notification);
+        saved.setUserId(saved.getUser().getId());
+        unreadCountService.adjustAfterCommit(saved.getUserId(), 1);
+        notificationStreamService.publishCreated(saved);
+        return saved;
     }
     
     // ==================== BOOKING NOTIFICATIONS ====================
@@ -0,0 +1,326 @@
+package com.drivenow.service;
+
+import com.drivenow.dto.NotificationRecipient;
+import com.drivenow.entity.BroadcastNotification;
+import com.drivenow.entity.Notification;
+import com.drivenow.repository.NotificationRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Server-sent event streams of a user's notifications, so open tabs do not poll.
+ *
+ * Each new notification is sent as a "notification" event whose id is the notification id,
+ * and every change to the user's notifications is followed by an "unread" event with the
+ * current unread count. A reconnecting client sends the last id it saw (the browser does this
+ * with Last-Event-ID) and first receives what it missed. Broadcasts arrive as "broadcast" events
+ * without an id and are not replayed; the list and the unread count include them. Delivery
+ * works as for trip tracking: one serialization per event, a bounded buffer per connection, a
+ * small sender pool, and slow connections are dropped.
+ */
+@Service
+@Slf4j
+public class NotificationStreamService {
+
+    private final NotificationRepository notificationRepository;
+    private final UnreadCountService unreadCountService;
+    private final BroadcastNotificationService broadcastService;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService sender;
+    private final Map<Long, Set<Subscriber>> subscribersByUser = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final Counter droppedSubscribers;
+
+    private final int bufferSize;
+    private final long emitterTimeoutMs;
+    private final int replayLimit;
+
+    public NotificationStreamService(NotificationRepository notificationRepository,
+                                     UnreadCountService unreadCountService,
+                                     BroadcastNotificationService broadcastService,
+                                     ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                                     @Value("${notifications.stream.sender-threads:4}") int senderThreads,
+                                     @Value("${notifications.stream.buffer-size:64}") int bufferSize,
+                                     @Value("${notifications.stream.emitter-timeout-ms:1800000}") long emitterTimeoutMs,
+                                     @Value("${notifications.stream.replay-limit:100}") int replayLimit) {
+        this.notificationRepository = notificationRepository;
+        this.unreadCountService = unreadCountService;
+        this.broadcastService = broadcastService;
+        this.objectMapper = objectMapper;
+        this.bufferSize = bufferSize;
+        this.emitterTimeoutMs = emitterTimeoutMs;
+        this.replayLimit = replayLimit;
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.sender = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "notification-stream-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.droppedSubscribers = meterRegistry.counter("notifications.stream.subscribers.dropped");
+        meterRegistry.gauge("notifications.stream.subscribers", subscriberCount);
+    }
+
+    /**
+     * An event ready to send; notificationId is set for "notification" events only
+     */
+    private record Event(Set<ResponseBodyEmitter.DataWithMediaType> data, Long notificationId) {
+    }
+
+    private final class Subscriber {
+        final Long userId;
+        final NotificationRecipient recipient;
+        final SseEmitter emitter;
+        final Queue<Event> buffer = new ArrayBlockingQueue<>(bufferSize);
+        final AtomicBoolean draining = new AtomicBoolean();
+        final AtomicBoolean closed = new AtomicBoolean();
+        // Live events arriving while the replay is read are held, then sent after it
+        private List<Event> held = new ArrayList<>();
+
+        Subscriber(NotificationRecipient recipient, SseEmitter emitter) {
+            this.userId = recipient.getId();
+            this.recipient = recipient;
+            this.emitter = emitter;
+        }
+
+        void publish(Event event) {
+            synchronized (this) {
+                if (held != null) {
+                    held.add(event);
+                    return;
+                }
+            }
+            enqueue(event);
+        }
+
+        /**
+         * Send the held events that the replay did not already cover and go live
+         */
+        void finishReplay(long lastReplayedId) {
+            List<Event> pending;
+            synchronized (this) {
+                pending = held;
+                held = null;
+            }
+            for (Event event : pending) {
+                if (event.notificationId() == null || event.notificationId() > lastReplayedId) {
+                    enqueue(event);
+                }
+            }
+        }
+
+        void enqueue(Event event) {
+            if (closed.get()) {
+                return;
+            }
+            if (!buffer.offer(event)) {
+                // Slow consumer; completed from the drain loop, as in TripTrackingService
+                droppedSubscribers.increment();
+                close();
+            }
+            if (draining.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            do {
+                Event event;
+                while (!closed.get() && (event = buffer.poll()) != null) {
+                    try {
+                        emitter.send(event.data());
+                    } catch (IOException | IllegalStateException e) {
+                        close();
+                        return;
+                    }
+                }
+                if (closed.get()) {
+                    emitter.complete();
+                    return;
+                }
+                draining.set(false);
+            } while (!buffer.isEmpty() && draining.compareAndSet(false, true));
+        }
+
+        void close() {
+            if (closed.compareAndSet(false, true)) {
+                buffer.clear();
+                unsubscribe(this);
+            }
+        }
+    }
+
+    /**
+     * Open a user's stream. Access must already have been checked.
+     * @param lastEventId Id of the last notification the client received, or null on a first
+     *                    connect. Up to the replay limit of newer notifications are sent first,
+     *                    oldest first; if more were missed, only a "resync" event is sent, telling
+     *                    the client to reload its list, and live events follow from the newest one.
+     */
+    public SseEmitter subscribe(Long userId, Long lastEventId) {
+        NotificationRecipient recipient = broadcastService.getRecipient(userId);
+        SseEmitter emitter = createEmitter(emitterTimeoutMs);
+        Subscriber subscriber = new Subscriber(recipient, emitter);
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(e -> subscriber.close());
+
+        // Registered before reading the replay, so nothing created in between is lost
+        subscribersByUser.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        subscriberCount.incrementAndGet();
+
+        // On a first connect the client loads its list itself; only later events are sent
+        long lastReplayedId = lastEventId != null ? lastEventId : 0;
+        try {
+            if (lastEventId != null) {
+                List<Notification> missed = notificationRepository.findByUserIdAfterNewestFirst(userId, lastEventId,
+                        PageRequest.of(0, replayLimit + 1));
+                if (missed.size() > replayLimit) {
+                    // Too many to replay: the client reloads its list, which already has everything
+                    // up to the newest one, and live events continue from there. The id moves the
+                    // client's Last-Event-ID past the skipped notifications.
+                    lastReplayedId = missed.get(0).getId();
+                    subscriber.enqueue(new Event(SseEmitter.event().name("resync").id(String.valueOf(lastReplayedId))
+                            .data("{}").build(), null));
+                } else {
+                    Collections.reverse(missed);
+                    for (Notification notification : missed) {
+                        subscriber.enqueue(notificationEvent(notification));
+                        lastReplayedId = notification.getId();
+                    }
+                }
+            }
+            subscriber.enqueue(unreadEvent(unreadCountService.get(userId)));
+        } catch (RuntimeException e) {
+            subscriber.close();
+            throw e;
+        }
+        subscriber.finishReplay(lastReplayedId);
+        return emitter;
+    }
+
+    // Overridden in tests to stand in for a client connection
+    SseEmitter createEmitter(long timeoutMs) {
+        return new SseEmitter(timeoutMs);
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        subscribersByUser.computeIfPresent(subscriber.userId, (id, subscribers) -> {
+            if (subscribers.remove(subscriber)) {
+                subscriberCount.decrementAndGet();
+            }
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+    }
+
+    /**
+     * Push a new notification and the user's unread count once the surrounding transaction commits
+     */
+    public void publishCreated(Notification notification) {
+        Long userId = notification.getUser().getId();
+        TransactionCallbacks.afterCommit(() -> {
+            if (!hasSubscribers(userId)) {
+                return;
+            }
+            broadcast(userId, notificationEvent(notification));
+            broadcast(userId, unreadEvent(unreadCountService.get(userId)));
+        });
+    }
+
+    /**
+     * Push the user's unread count after notifications were read or deleted
+     */
+    public void publishUnreadCount(Long userId) {
+        TransactionCallbacks.afterCommit(() -> {
+            if (hasSubscribers(userId)) {
+                broadcast(userId, unreadEvent(unreadCountService.get(userId)));
+            }
+        });
+    }
+
+    /**
+     * Push a committed broadcast, and the new unread count, to every connected user it is for
+     */
+    public void publishBroadcast(BroadcastNotification broadcast) {
+        Event event;
+        try {
+            String data = objectMapper.writeValueAsString(broadcastService.toFeedEntry(broadcast, null, false));
+            event = new Event(SseEmitter.event().name("broadcast").data(data).build(), null);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize broadcast event", e);
+        }
+        subscribersByUser.forEach((userId, subscribers) -> {
+            List<Subscriber> recipients = subscribers.stream()
+                    .filter(subscriber -> broadcast.isFor(subscriber.recipient.getRole(), subscriber.recipient.getJoinedAt()))
+                    .toList();
+            if (!recipients.isEmpty()) {
+                Event unread = unreadEvent(unreadCountService.get(userId));
+                recipients.forEach(subscriber -> {
+                    subscriber.publish(event);
+                    subscriber.publish(unread);
+                });
+            }
+        });
+    }
+
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    /**
+     * Comment-only keep-alive so proxies keep idle streams open and dead clients are detected
+     */
+    @Scheduled(fixedDelayString = "${notifications.stream.heartbeat-ms:15000}")
+    public void heartbeat() {
+        Event ping = new Event(SseEmitter.event().comment("ping").build(), null);
+        subscribersByUser.values().forEach(subscribers -> subscribers.forEach(subscriber -> subscriber.publish(ping)));
+    }
+
+    private boolean hasSubscribers(Long userId) {
+        return subscribersByUser.containsKey(userId);
+    }
+
+    private void broadcast(Long userId, Event event) {
+        Set<Subscriber> subscribers = subscribersByUser.get(userId);
+        if (subscribers != null) {
+            subscribers.forEach(subscriber -> subscriber.publish(event));
+        }
+    }
+
+    private Event notificationEvent(Notification notification) {
+        try {
+            // Serialize once; every tab of the user gets the same bytes
+            String data = objectMapper.writeValueAsString(notification);
+            return new Event(SseEmitter.event().id(String.valueOf(notification.getId()))
+                    .name("notification").data(data).build(), notification.getId());
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize notification event", e);
+        }
+    }
+
+    private static Event unreadEvent(long count) {
+        return new Event(SseEmitter.event().name("unread").data("{\"count\":" + count + "}").build(), null);
+    }
+}
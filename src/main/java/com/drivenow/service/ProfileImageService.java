@@ -0,0 +1,387 @@
+package com.drivenow.service;
+
+import com.drivenow.repository.UserRepository;
+import com.drivenow.service.storage.BlobStore;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Profile image pipeline.
+ *
+ * An upload is stored once, content-addressed, and checked to be a decodable image of sane
+ * dimensions. Square JPEG thumbnails in the configured sizes are then rendered on a small
+ * background pool. Users keep only a URL (/api/images/{hash}/{size}); since the hash names
+ * the content, those URLs never change and can be cached indefinitely. A thumbnail requested
+ * before it has been rendered is rendered on demand.
+ *
+ * An image no user points at any more (replaced, or left by an upload that rolled back) is
+ * deleted by a periodic sweep, and only if the same content has not been uploaded again
+ * within the grace period, so a concurrent upload that is not committed yet keeps it.
+ */
+@Service
+@Slf4j
+public class ProfileImageService {
+
+    private static final String URL_PREFIX = "/api/images/";
+    private static final Pattern IMAGE_URL = Pattern.compile("^/api/images/([0-9a-f]{64})/\\d+$");
+    private static final int DEFAULT_SIZE = 128;
+    private static final long RENDER_WAIT_SECONDS = 10;
+
+    private final UserRepository userRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final BlobStore originals;
+    private final Path variants;
+    private final List<Integer> sizes;
+    private final long maxBytes;
+    private final long maxPixels;
+    private final ThreadPoolExecutor renderer;
+    private final ConcurrentHashMap<String, CompletableFuture<Void>> rendering = new ConcurrentHashMap<>();
+    private final Set<String> releasedImages = ConcurrentHashMap.newKeySet();
+    private final Duration releaseGrace;
+
+    public ProfileImageService(UserRepository userRepository,
+                               JdbcTemplate jdbcTemplate,
+                               @Value("${storage.images.path:./data/images}") String path,
+                               @Value("${images.profile.sizes:48,128,512}") List<Integer> sizes,
+                               @Value("${images.profile.max-bytes:10485760}") long maxBytes,
+                               @Value("${images.profile.max-pixels:40000000}") long maxPixels,
+                               @Value("${images.profile.render-threads:2}") int renderThreads,
+                               @Value("${storage.blob.release-grace-seconds:600}") long releaseGraceSeconds) throws IOException {
+        this.userRepository = userRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        Path root = Paths.get(path).toAbsolutePath().normalize();
+        this.originals = new BlobStore(root.resolve("originals").toString());
+        this.variants = root.resolve("variants");
+        Files.createDirectories(variants);
+        // Largest first, so each thumbnail is scaled down from the previous one
+        this.sizes = sizes.stream().sorted((a, b) -> b - a).toList();
+        this.maxBytes = maxBytes;
+        this.maxPixels = maxPixels;
+        this.releaseGrace = Duration.ofSeconds(releaseGraceSeconds);
+        this.renderer = new ThreadPoolExecutor(renderThreads, renderThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(1000), namedDaemonThreads("image-render-"), new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    private static ThreadFactory namedDaemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        renderer.shutdownNow();
+    }
+
+    /**
+     * Store an uploaded image and start rendering its thumbnails
+     * @return URL of the default thumbnail, to keep on the user
+     */
+    public String store(InputStream content) {
+        BlobStore.StoredBlob blob;
+        try {
+            blob = originals.put(content, maxBytes);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to store image: " + e.getMessage());
+        }
+        try {
+            checkImage(originals.path(blob.hash()));
+        } catch (RuntimeException e) {
+            if (!isReferenced(blob.hash())) {
+                deleteImage(blob.hash());
+            }
+            throw e;
+        }
+        // If the caller's transaction rolls back, nothing may end up pointing at the image
+        TransactionCallbacks.onRollback(() -> releasedImages.add(blob.hash()));
+        try {
+            renderAsync(blob.hash());
+        } catch (RejectedExecutionException e) {
+            // Rendered on first request instead
+            log.warn("Thumbnail queue full; {} will be rendered on demand", blob.hash());
+        }
+        return url(blob.hash(), DEFAULT_SIZE);
+    }
+
+    /**
+     * Turn a profile image value from a client into what is kept on the user: data URLs go
+     * through the pipeline, anything else (an external URL, one of ours) is kept as is
+     */
+    public String resolve(String value) {
+        if (value == null || !value.startsWith("data:")) {
+            return value;
+        }
+        int comma = value.indexOf(',');
+        if (comma < 0 || !value.substring(0, comma).endsWith(";base64")) {
+            throw new RuntimeException("Profile image must be a base64 data URL or a URL");
+        }
+        byte[] encoded = value.substring(comma + 1).getBytes(StandardCharsets.ISO_8859_1);
+        try (InputStream decoded = Base64.getMimeDecoder().wrap(new ByteArrayInputStream(encoded))) {
+            return store(decoded);
+        } catch (IOException e) {
+            throw new RuntimeException("Invalid profile image: " + e.getMessage());
+        }
+    }
+
+    public static String url(String hash, int size) {
+        return URL_PREFIX + hash + "/" + size;
+    }
+
+    /**
+     * A thumbnail file, rendering it first if needed
+     */
+    public Path getVariant(String hash, int size) {
+        if (!sizes.contains(size)) {
+            throw new RuntimeException("Unsupported image size: " + size);
+        }
+        Path file = variantPath(hash, size);
+        if (Files.exists(file)) {
+            return file;
+        }
+        if (!Files.exists(originals.path(hash))) {
+            throw new RuntimeException("Image not found");
+        }
+        try {
+            renderAsync(hash).get(RENDER_WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (RejectedExecutionException e) {
+            renderVariants(hash);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while rendering image");
+        } catch (ExecutionException | TimeoutException e) {
+            throw new RuntimeException("Image could not be rendered");
+        }
+        if (!Files.exists(file)) {
+            throw new RuntimeException("Image not found");
+        }
+        return file;
+    }
+
+    // One render per image at a time; later requests for it wait on the same future
+    private CompletableFuture<Void> renderAsync(String hash) {
+        return rendering.computeIfAbsent(hash, h -> {
+            CompletableFuture<Void> future = CompletableFuture.runAsync(() -> renderVariants(h), renderer);
+            future.whenComplete((result, error) -> rendering.remove(h));
+            return future;
+        });
+    }
+
+    private void renderVariants(String hash) {
+        BufferedImage image;
+        try {
+            image = ImageIO.read(originals.path(hash).toFile());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to decode image " + hash, e);
+        }
+        if (image == null) {
+            throw new RuntimeException("Failed to decode image " + hash);
+        }
+        // Center square crop
+        int side = Math.min(image.getWidth(), image.getHeight());
+        image = image.getSubimage((image.getWidth() - side) / 2, (image.getHeight() - side) / 2, side, side);
+        for (int size : sizes) {
+            image = scale(image, size);
+            Path target = variantPath(hash, size);
+            if (!Files.exists(target)) {
+                try {
+                    writeJpeg(image, target);
+                } catch (IOException e) {
+                    throw new RuntimeException("Failed to write thumbnail " + target, e);
+                }
+            }
+        }
+    }
+
+    // Halve repeatedly, then land on the target; a single bilinear step from a large image aliases badly
+    private static BufferedImage scale(BufferedImage source, int size) {
+        BufferedImage current = source;
+        int width = source.getWidth();
+        do {
+            width = Math.max(size, width / 2);
+            BufferedImage next = new BufferedImage(width, width, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = next.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, width);
+            g.drawImage(current, 0, 0, width, width, null);
+            g.dispose();
+            current = next;
+        } while (width > size);
+        return current;
+    }
+
+    private static void writeJpeg(BufferedImage image, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), "render-", ".tmp");
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try {
+            try (ImageOutputStream out = ImageIO.createImageOutputStream(temp.toFile())) {
+                writer.setOutput(out);
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(0.85f);
+                writer.write(null, new IIOImage(image, null, null), param);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            writer.dispose();
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Reads only the header, so oversized images are refused before anything is decoded
+     */
+    private void checkImage(Path file) {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new RuntimeException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > maxPixels) {
+                    throw new RuntimeException("Image dimensions are too large");
+                }
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unreadable image");
+        }
+    }
+
+    private Path variantPath(String hash, int size) {
+        // Validates the hash
+        originals.path(hash);
+        return variants.resolve(hash).resolve(size + ".jpg");
+    }
+
+    /**
+     * Queue a replaced image for the sweep once the change commits
+     */
+    public void releaseAfterCommit(String previousUrl) {
+        Matcher matcher = previousUrl != null ? IMAGE_URL.matcher(previousUrl) : null;
+        if (matcher == null || !matcher.matches()) {
+            return;
+        }
+        String hash = matcher.group(1);
+        TransactionCallbacks.afterCommit(() -> releasedImages.add(hash));
+    }
+
+    /**
+     * Delete released images that no user points at and that were not uploaded again within
+     * the grace period; images still too recent are retried on the next run
+     */
+    @Scheduled(fixedDelayString = "${storage.blob.sweep-interval-ms:60000}")
+    public void sweepReleasedImages() {
+        for (String hash : releasedImages) {
+            try {
+                if (isReferenced(hash)) {
+                    releasedImages.remove(hash);
+                } else if (originals.deleteIfIdle(hash, releaseGrace)) {
+                    deleteImage(hash);
+                    releasedImages.remove(hash);
+                }
+            } catch (IOException e) {
+                log.warn("Failed to delete image {}: {}", hash, e.getMessage());
+            }
+        }
+    }
+
+    private boolean isReferenced(String hash) {
+        return userRepository.existsByProfileImageStartingWith(URL_PREFIX + hash + "/");
+    }
+
+    private void deleteImage(String hash) {
+        try {
+            originals.delete(hash);
+            Path dir = variants.resolve(hash);
+            if (Files.isDirectory(dir)) {
+                try (var files = Files.list(dir)) {
+                    for (Path file : files.toList()) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+                Files.deleteIfExists(dir);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to delete image {}: {}", hash, e.getMessage());
+        }
+    }
+
+    /**
+     * Replace base64 profile images still stored on users with thumbnail URLs, one user at a time
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateInlineImages() {
+        List<Long> userIds = jdbcTemplate.queryForList(
+                "SELECT id FROM users WHERE profile_image LIKE 'data:%'", Long.class);
+        int migrated = 0;
+        for (Long userId : userIds) {
+            String value = jdbcTemplate.queryForObject("SELECT profile_image FROM users WHERE id = ?", String.class, userId);
+            try {
+                jdbcTemplate.update("UPDATE users SET profile_image = ? WHERE id = ?", resolve(value), userId);
+                migrated++;
+            } catch (Exception e) {
+                log.warn("Could not migrate profile image of user {}: {}", userId, e.getMessage());
+            }
+        }
+        if (migrated > 0) {
+            log.info("Moved {} inline profile images to the image store", migrated);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.drivenow.service;
+
+import com.drivenow.entity.Booking;
+import com.drivenow.entity.UserStatsRollup;
+import com.drivenow.repository.BookingRepository;
+import com.drivenow.repository.UserStatsRollupRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-user monthly booking counters behind the customer and driver dashboards.
+ *
+ * Every booking transition moves the booking's contribution from its old state to its new
+ * one in the same transaction, so a dashboard reads three rows (all-time, last month, the
+ * month before) instead of scanning the user's whole history. The nightly repair job
+ * rebuilds everything from the bookings table (see rebuild); it also runs on startup when the
+ * table is empty.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StatsRollupService {
+
+    private final UserStatsRollupRepository rollupRepository;
+    private final BookingRepository bookingRepository;
+
+    /**
+     * The parts of a booking that feed the rollups, captured before a change
+     */
+    public record Snapshot(Long customerId, Long driverId, int period, Booking.BookingStatus status,
+                           Booking.PaymentStatus paymentStatus, BigDecimal totalPrice) {
+
+        public static Snapshot of(Booking booking) {
+            return new Snapshot(
+                    booking.getUser() != null ? booking.getUser().getId() : null,
+                    booking.getDriver() != null ? booking.getDriver().getId() : null,
+                    periodOf(booking.getCreatedAt()),
+                    booking.getStatus(),
+                    booking.getPaymentStatus(),
+                    booking.getTotalPrice() != null ? booking.getTotalPrice() : BigDecimal.ZERO);
+        }
+    }
+
+    /**
+     * The rows a dashboard needs
+     */
+    public record UserRollups(UserStatsRollup allTime, UserStatsRollup lastMonth, UserStatsRollup previousMonth) {
+    }
+
+    private record Key(UserStatsRollup.Side side, Long userId, int period) {
+    }
+
+    private static final class Delta {
+        long bookings;
+        long active;
+        long completed;
+        BigDecimal paidAmount = BigDecimal.ZERO;
+
+        boolean isZero() {
+            return bookings == 0 && active == 0 && completed == 0 && paidAmount.signum() == 0;
+        }
+    }
+
+    public static int periodOf(LocalDateTime time) {
+        return time.getYear() * 100 + time.getMonthValue();
+    }
+
+    private static int periodOf(LocalDate date) {
+        return date.getYear() * 100 + date.getMonthValue();
+    }
+
+    private static boolean isActive(UserStatsRollup.Side side, Booking.BookingStatus status) {
+        if (side == UserStatsRollup.Side.CUSTOMER) {
+            return status == Booking.BookingStatus.PENDING || status == Booking.BookingStatus.CONFIRMED;
+        }
+        return status == Booking.BookingStatus.CONFIRMED || status == Booking.BookingStatus.DRIVER_ASSIGNED
+                || status == Booking.BookingStatus.ONGOING;
+    }
+
+    /**
+     * Move a booking's contribution from its previous state to its current one, in the
+     * caller's transaction
+     * @param before Snapshot taken before the change, or null for a new booking
+     * @param after The booking after the change, or null if it was deleted
+     */
+    public void record(Snapshot before, Booking after) {
+        Map<Key, Delta> deltas = new LinkedHashMap<>();
+        if (before != null) {
+            accumulate(deltas, before, -1);
+        }
+        if (after != null) {
+            accumulate(deltas, Snapshot.of(after), 1);
+        }
+        apply(deltas);
+    }
+
+    /**
+     * Take out the contribution of bookings about to be deleted together, with one update per
+     * affected row rather than per booking
+     */
+    public void recordDeleted(List<Snapshot> deleted) {
+        Map<Key, Delta> deltas = new LinkedHashMap<>();
+        deleted.forEach(snapshot -> accumulate(deltas, snapshot, -1));
+        apply(deltas);
+    }
+
+    private void apply(Map<Key, Delta> deltas) {
+        deltas.forEach((key, delta) -> {
+            if (delta.isZero()) {
+                return;
+            }
+            for (int period : new int[]{key.period(), UserStatsRollup.ALL_TIME}) {
+                rollupRepository.increment(key.userId(), key.side().name(), period,
+                        delta.bookings, delta.active, delta.completed, delta.paidAmount);
+            }
+        });
+    }
+
+    private static void accumulate(Map<Key, Delta> deltas, Snapshot snapshot, int sign) {
+        addTo(deltas, UserStatsRollup.Side.CUSTOMER, snapshot.customerId(), snapshot, sign);
+        addTo(deltas, UserStatsRollup.Side.DRIVER, snapshot.driverId(), snapshot, sign);
+    }
+
+    private static void addTo(Map<Key, Delta> deltas, UserStatsRollup.Side side, Long userId, Snapshot snapshot, int sign) {
+        if (userId == null) {
+            return;
+        }
+        Delta delta = deltas.computeIfAbsent(new Key(side, userId, snapshot.period()), k -> new Delta());
+        delta.bookings += sign;
+        if (isActive(side, snapshot.status())) {
+            delta.active += sign;
+        }
+        if (snapshot.status() == Booking.BookingStatus.COMPLETED) {
+            delta.completed += sign;
+        }
+        if (snapshot.paymentStatus() == Booking.PaymentStatus.COMPLETED) {
+            BigDecimal amount = snapshot.totalPrice();
+            delta.paidAmount = sign > 0 ? delta.paidAmount.add(amount) : delta.paidAmount.subtract(amount);
+        }
+    }
+
+    /**
+     * All-time, last month and the month before for a user; missing rows read as zeros
+     */
+    public UserRollups getRollups(Long userId, UserStatsRollup.Side side) {
+        LocalDate now = LocalDate.now();
+        int lastMonth = periodOf(now.minusMonths(1));
+        int previousMonth = periodOf(now.minusMonths(2));
+
+        Map<Integer, UserStatsRollup> byPeriod = new HashMap<>();
+        rollupRepository.findByUserIdAndSideAndPeriodIn(userId, side,
+                        List.of(UserStatsRollup.ALL_TIME, lastMonth, previousMonth))
+                .forEach(rollup -> byPeriod.put(rollup.getPeriod(), rollup));
+        return new UserRollups(
+                byPeriod.getOrDefault(UserStatsRollup.ALL_TIME, empty(userId, side, UserStatsRollup.ALL_TIME)),
+                byPeriod.getOrDefault(lastMonth, empty(userId, side, lastMonth)),
+                byPeriod.getOrDefault(previousMonth, empty(userId, side, previousMonth)));
+    }
+
+    private static UserStatsRollup empty(Long userId, UserStatsRollup.Side side, int period) {
+        UserStatsRollup rollup = new UserStatsRollup();
+        rollup.setUserId(userId);
+        rollup.setSide(side);
+        rollup.setPeriod(period);
+        return rollup;
+    }
+
+    @Transactional
+    public void deleteUser(Long userId) {
+        rollupRepository.deleteByUserId(userId);
+    }
+
+    /**
+     * Rebuild every rollup from the bookings table, in place: existing rows are zeroed, then every
+     * row is set to its rebuilt totals with an upsert, so a rebuild running on another instance at
+     * the same time, or a booking transition creating a row, cannot make it fail on the unique key.
+     * Transitions that touch an existing row wait for the rebuild and apply on top of it; one that
+     * creates a row while the rebuild runs may be overwritten, and is corrected by the next rebuild.
+     * Meant for off-peak hours.
+     * @return Summary of the rebuild
+     */
+    @Transactional
+    public Map<String, Object> rebuild() {
+        long start = System.nanoTime();
+        // Locks the existing rows first, so concurrent rebuilds queue up instead of interleaving
+        rollupRepository.zeroAllRollups();
+
+        Map<Key, UserStatsRollup> rollups = new LinkedHashMap<>();
+        addAggregates(rollups, UserStatsRollup.Side.CUSTOMER, rollupRepository.aggregateByCustomerAndMonth());
+        addAggregates(rollups, UserStatsRollup.Side.DRIVER, rollupRepository.aggregateByDriverAndMonth());
+        rollups.values().forEach(rollup -> rollupRepository.setTotals(rollup.getUserId(), rollup.getSide().name(),
+                rollup.getPeriod(), rollup.getBookings(), rollup.getActive(), rollup.getCompleted(), rollup.getPaidAmount()));
+        rollupRepository.deleteEmptyRollups();
+
+        long ms = (System.nanoTime() - start) / 1_000_000;
+        log.info("Rebuilt {} stats rollup rows in {} ms", rollups.size(), ms);
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("rows", rollups.size());
+        summary.put("durationMs", ms);
+        return summary;
+    }
+
+    private static void addAggregates(Map<Key, UserStatsRollup> rollups, UserStatsRollup.Side side, List<Object[]> rows) {
+        for (Object[] row : rows) {
+            Long userId = ((Number) row[0]).longValue();
+            int period = ((Number) row[1]).intValue() * 100 + ((Number) row[2]).intValue();
+            long bookings = ((Number) row[3]).longValue();
+            long active = ((Number) (side == UserStatsRollup.Side.CUSTOMER ? row[4] : row[5])).longValue();
+            long completed = ((Number) row[6]).longValue();
+            BigDecimal paid = row[7] instanceof BigDecimal amount ? amount : new BigDecimal(String.valueOf(row[7]));
+
+            for (int p : new int[]{period, UserStatsRollup.ALL_TIME}) {
+                UserStatsRollup rollup = rollups.computeIfAbsent(new Key(side, userId, p), k -> empty(userId, side, p));
+                rollup.setBookings(rollup.getBookings() + bookings);
+                rollup.setActive(rollup.getActive() + active);
+                rollup.setCompleted(rollup.getCompleted() + completed);
+                rollup.setPaidAmount(rollup.getPaidAmount().add(paid));
+            }
+        }
+    }
+
+    @Scheduled(cron = "${stats.rollup.repair-cron:0 30 3 * * *}")
+    @Transactional
+    public void scheduledRebuild() {
+        rebuild();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void rebuildIfEmpty() {
+        if (rollupRepository.count() == 0 && bookingRepository.count() > 0) {
+            rebuild();
+        }
+    }
+}
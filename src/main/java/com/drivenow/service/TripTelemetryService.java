@@ -0,0 +1,298 @@
+package com.drivenow.service;
+
+import com.drivenow.dto.TelemetryPoint;
+import com.drivenow.entity.Booking;
+import com.drivenow.entity.TripTelemetryChunk;
+import com.drivenow.repository.TripTelemetryChunkRepository;
+import com.drivenow.service.routing.GeoMath;
+import com.drivenow.service.telemetry.BreadcrumbCodec;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * GPS breadcrumbs for ongoing trips.
+ *
+ * Points are buffered in memory per trip and written periodically as compact encoded chunks
+ * (see BreadcrumbCodec) rather than one row per point. The driven distance is accumulated as
+ * points arrive, so completing a trip does not need to re-read the track. If the buffer was
+ * lost (restart), it is rebuilt from the stored chunks on next use.
+ *
+ * A chunk whose write fails goes back to its trip's buffer with its sequence number and is
+ * retried on the next flush, so a database hiccup delays breadcrumbs instead of losing them.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TripTelemetryService {
+
+    private final TripTelemetryChunkRepository chunkRepository;
+    private final Map<Long, TripBuffer> buffers = new ConcurrentHashMap<>();
+
+    @Value("${telemetry.max-chunk-points:1000}")
+    private int maxChunkPoints;
+
+    @Value("${telemetry.max-speed-kmh:250}")
+    private double maxSpeedKmh;
+
+    /**
+     * Per-trip state. Guarded by its own monitor.
+     */
+    private static final class TripBuffer {
+        int[] lats = new int[64];
+        int[] lons = new int[64];
+        long[] times = new long[64];
+        int pending;
+        int nextSequence;
+        boolean hasLast;
+        int lastLat;
+        int lastLon;
+        long lastTime;
+        double distanceKm;
+        long acceptedPoints;
+        final List<TripTelemetryChunk> unsaved = new ArrayList<>();
+
+        void append(int lat, int lon, long time) {
+            if (pending == lats.length) {
+                lats = Arrays.copyOf(lats, pending * 2);
+                lons = Arrays.copyOf(lons, pending * 2);
+                times = Arrays.copyOf(times, pending * 2);
+            }
+            lats[pending] = lat;
+            lons[pending] = lon;
+            times[pending] = time;
+            pending++;
+        }
+    }
+
+    /**
+     * Add a batch of breadcrumbs to an ongoing trip. Points older than the last accepted one
+     * and jumps implying an impossible speed (GPS glitches) are dropped.
+     * @return Number of points accepted
+     */
+    public int ingest(Booking trip, List<TelemetryPoint> points) {
+        if (trip.getStatus() != Booking.BookingStatus.ONGOING) {
+            throw new RuntimeException("Trip is not ongoing");
+        }
+        TripBuffer buffer = bufferFor(trip.getId());
+        List<TripTelemetryChunk> chunks = List.of();
+        int accepted = 0;
+        synchronized (buffer) {
+            for (TelemetryPoint point : points) {
+                if (point.getLatitude() == null || point.getLongitude() == null || point.getTimestamp() == null
+                        || Math.abs(point.getLatitude()) > 90 || Math.abs(point.getLongitude()) > 180) {
+                    continue;
+                }
+                int lat = BreadcrumbCodec.toFixed(point.getLatitude());
+                int lon = BreadcrumbCodec.toFixed(point.getLongitude());
+                long time = point.getTimestamp();
+                if (buffer.hasLast) {
+                    if (time <= buffer.lastTime) {
+                        continue;
+                    }
+                    double stepKm = stepKm(buffer.lastLat, buffer.lastLon, lat, lon);
+                    double hours = (time - buffer.lastTime) / 3_600_000.0;
+                    if (stepKm / hours > maxSpeedKmh) {
+                        continue;
+                    }
+                    buffer.distanceKm += stepKm;
+                }
+                buffer.append(lat, lon, time);
+                buffer.hasLast = true;
+                buffer.lastLat = lat;
+                buffer.lastLon = lon;
+                buffer.lastTime = time;
+                buffer.acceptedPoints++;
+                accepted++;
+            }
+            if (buffer.pending >= maxChunkPoints) {
+                chunks = takeChunks(trip.getId(), buffer);
+            }
+        }
+        if (!chunks.isEmpty()) {
+            try {
+                chunkRepository.saveAll(chunks);
+            } catch (RuntimeException e) {
+                // The points are accepted; the next flush writes them
+                requeue(buffer, chunks);
+                log.warn("Could not write telemetry for trip {}, will retry: {}", trip.getId(), e.getMessage());
+            }
+        }
+        return accepted;
+    }
+
+    private static double stepKm(int lat1, int lon1, int lat2, int lon2) {
+        return GeoMath.haversineKm(BreadcrumbCodec.toDegrees(lat1), BreadcrumbCodec.toDegrees(lon1),
+                BreadcrumbCodec.toDegrees(lat2), BreadcrumbCodec.toDegrees(lon2));
+    }
+
+    /**
+     * Take the pending points out of the buffer as an unsaved chunk; caller holds the monitor
+     */
+    private TripTelemetryChunk drain(Long bookingId, TripBuffer buffer) {
+        if (buffer.pending == 0) {
+            return null;
+        }
+        TripTelemetryChunk chunk = new TripTelemetryChunk();
+        chunk.setBookingId(bookingId);
+        chunk.setSequence(buffer.nextSequence++);
+        chunk.setPointCount(buffer.pending);
+        chunk.setFirstTimestamp(buffer.times[0]);
+        chunk.setLastTimestamp(buffer.times[buffer.pending - 1]);
+        chunk.setData(BreadcrumbCodec.encode(buffer.lats, buffer.lons, buffer.times, buffer.pending));
+        buffer.pending = 0;
+        return chunk;
+    }
+
+    /**
+     * Chunks that failed to save earlier, followed by the pending points as a new chunk;
+     * caller holds the monitor
+     */
+    private List<TripTelemetryChunk> takeChunks(Long bookingId, TripBuffer buffer) {
+        List<TripTelemetryChunk> chunks = new ArrayList<>(buffer.unsaved);
+        buffer.unsaved.clear();
+        TripTelemetryChunk chunk = drain(bookingId, buffer);
+        if (chunk != null) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    /**
+     * Put chunks whose write failed back in front of the buffer's unsaved ones
+     */
+    private static void requeue(TripBuffer buffer, List<TripTelemetryChunk> chunks) {
+        // Ids assigned by the failed insert belong to rolled-back rows
+        chunks.forEach(chunk -> chunk.setId(null));
+        synchronized (buffer) {
+            buffer.unsaved.addAll(0, chunks);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${telemetry.flush-interval-ms:10000}")
+    public void flushAll() {
+        Map<TripBuffer, List<TripTelemetryChunk>> chunksByBuffer = new HashMap<>();
+        List<TripTelemetryChunk> chunks = new ArrayList<>();
+        buffers.forEach((bookingId, buffer) -> {
+            synchronized (buffer) {
+                List<TripTelemetryChunk> taken = takeChunks(bookingId, buffer);
+                if (!taken.isEmpty()) {
+                    chunksByBuffer.put(buffer, taken);
+                    chunks.addAll(taken);
+                }
+            }
+        });
+        if (chunks.isEmpty()) {
+            return;
+        }
+        try {
+            chunkRepository.saveAll(chunks);
+            log.debug("Flushed {} telemetry chunks", chunks.size());
+        } catch (RuntimeException e) {
+            chunksByBuffer.forEach(TripTelemetryService::requeue);
+            log.warn("Could not flush {} telemetry chunks, will retry: {}", chunks.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * Flush and forget a trip's buffer, in the caller's transaction. If that transaction rolls
+     * back, the buffer and its unwritten chunks are put back.
+     * @return Driven distance in km, or null if the trip has no telemetry
+     */
+    public Double finishTrip(Long bookingId) {
+        TripBuffer removed = buffers.remove(bookingId);
+        TripBuffer buffer = removed != null ? removed : restore(bookingId);
+        List<TripTelemetryChunk> chunks;
+        synchronized (buffer) {
+            chunks = takeChunks(bookingId, buffer);
+        }
+        if (removed != null) {
+            TransactionCallbacks.onRollback(() -> {
+                requeue(buffer, chunks);
+                buffers.putIfAbsent(bookingId, buffer);
+            });
+        }
+        if (!chunks.isEmpty()) {
+            chunkRepository.saveAll(chunks);
+        }
+        synchronized (buffer) {
+            if (buffer.acceptedPoints == 0) {
+                return null;
+            }
+            return Math.round(buffer.distanceKm * 1000.0) / 1000.0;
+        }
+    }
+
+    /**
+     * Running distance of an ongoing or stored trip
+     */
+    public Map<String, Object> getTripSummary(Long bookingId) {
+        TripBuffer buffer = buffers.get(bookingId);
+        if (buffer == null) {
+            buffer = restore(bookingId);
+        }
+        synchronized (buffer) {
+            return Map.of(
+                    "tripId", bookingId,
+                    "points", buffer.acceptedPoints,
+                    "distanceKm", Math.round(buffer.distanceKm * 1000.0) / 1000.0);
+        }
+    }
+
+    /**
+     * Drop a trip's breadcrumbs in the caller's transaction; the buffer goes once it commits
+     */
+    public void deleteTrip(Long bookingId) {
+        chunkRepository.deleteByBookingId(bookingId);
+        TransactionCallbacks.afterCommit(() -> buffers.remove(bookingId));
+    }
+
+    /**
+     * Drop the breadcrumbs of many trips at once, in the caller's transaction
+     */
+    public void deleteTrips(Collection<Long> bookingIds) {
+        chunkRepository.deleteByBookingIdIn(bookingIds);
+        List<Long> ids = List.copyOf(bookingIds);
+        TransactionCallbacks.afterCommit(() -> ids.forEach(buffers::remove));
+    }
+
+    private TripBuffer bufferFor(Long bookingId) {
+        TripBuffer buffer = buffers.get(bookingId);
+        if (buffer != null) {
+            return buffer;
+        }
+        return buffers.computeIfAbsent(bookingId, this::restore);
+    }
+
+    /**
+     * Rebuild distance, last point and next sequence from stored chunks
+     */
+    private TripBuffer restore(Long bookingId) {
+        TripBuffer buffer = new TripBuffer();
+        for (TripTelemetryChunk chunk : chunkRepository.findByBookingIdOrderBySequenceAsc(bookingId)) {
+            BreadcrumbCodec.Points points = BreadcrumbCodec.decode(chunk.getData());
+            for (int i = 0; i < points.count(); i++) {
+                if (buffer.hasLast) {
+                    buffer.distanceKm += stepKm(buffer.lastLat, buffer.lastLon, points.lats()[i], points.lons()[i]);
+                }
+                buffer.hasLast = true;
+                buffer.lastLat = points.lats()[i];
+                buffer.lastLon = points.lons()[i];
+                buffer.lastTime = points.times()[i];
+            }
+            buffer.acceptedPoints += points.count();
+            buffer.nextSequence = chunk.getSequence() + 1;
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,313 @@
+package com.drivenow.service;
+
+import com.drivenow.dto.NearbyDriver;
+import com.drivenow.entity.Booking;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Server-sent event channels that push a booking's driver position and status changes to
+ * the customer watching it.
+ *
+ * Subscribers are registered per booking in memory. Every event is serialized once and
+ * queued on each subscriber's bounded buffer; a small sender pool drains the buffers, so a
+ * publisher never blocks on a socket. A subscriber whose buffer is full is too slow to keep
+ * up and is disconnected; clients reconnect and receive a fresh snapshot.
+ *
+ * The driver's position is shared only while the trip is live (see isLive): before that day
+ * and after the trip ends, subscribers get status events only.
+ */
+@Service
+@Slf4j
+public class TripTrackingService {
+
+    private final ObjectMapper objectMapper;
+    private final ExecutorService sender;
+    private final Map<Long, Channel> channels = new ConcurrentHashMap<>();
+    // Reverse index so a driver position update finds the bookings being watched
+    private final Map<Long, Set<Long>> watchedBookingsByDriver = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final Counter droppedSubscribers;
+
+    private final int bufferSize;
+    private final long emitterTimeoutMs;
+
+    public TripTrackingService(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                               @Value("${tracking.sender-threads:8}") int senderThreads,
+                               @Value("${tracking.buffer-size:32}") int bufferSize,
+                               @Value("${tracking.emitter-timeout-ms:1800000}") long emitterTimeoutMs) {
+        this.objectMapper = objectMapper;
+        this.bufferSize = bufferSize;
+        this.emitterTimeoutMs = emitterTimeoutMs;
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.sender = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "trip-tracking-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.droppedSubscribers = meterRegistry.counter("tracking.subscribers.dropped");
+        meterRegistry.gauge("tracking.subscribers", subscriberCount);
+    }
+
+    private static final class Channel {
+        final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+        volatile Long driverId;
+    }
+
+    private final class Subscriber {
+        final Long bookingId;
+        final SseEmitter emitter;
+        final Queue<Set<ResponseBodyEmitter.DataWithMediaType>> buffer = new ArrayBlockingQueue<>(bufferSize);
+        // Held until the snapshot is written on the request thread (see start)
+        final AtomicBoolean draining = new AtomicBoolean(true);
+        final AtomicBoolean closed = new AtomicBoolean();
+
+        Subscriber(Long bookingId, SseEmitter emitter) {
+            this.bookingId = bookingId;
+            this.emitter = emitter;
+        }
+
+        void enqueue(Set<ResponseBodyEmitter.DataWithMediaType> event) {
+            if (closed.get()) {
+                return;
+            }
+            if (!buffer.offer(event)) {
+                // Slow consumer. The sender may be blocked writing to this connection, so the
+                // emitter is completed from the drain loop rather than from the publisher.
+                droppedSubscribers.increment();
+                close();
+            }
+            if (draining.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            do {
+                Set<ResponseBodyEmitter.DataWithMediaType> event;
+                while (!closed.get() && (event = buffer.poll()) != null) {
+                    try {
+                        emitter.send(event);
+                    } catch (IOException | IllegalStateException e) {
+                        // Finish the response too: a stream left open here would hang its client
+                        close();
+                        emitter.completeWithError(e);
+                        return;
+                    }
+                }
+                if (closed.get()) {
+                    emitter.complete();
+                    return;
+                }
+                draining.set(false);
+                // Re-check: an event may have been queued after the last poll but before the reset
+            } while (!buffer.isEmpty() && draining.compareAndSet(false, true));
+        }
+
+        /**
+         * Hand the stream to the sender pool, with whatever was published since it was registered
+         */
+        void start() {
+            draining.set(false);
+            if ((closed.get() || !buffer.isEmpty()) && draining.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+
+        void close() {
+            if (closed.compareAndSet(false, true)) {
+                buffer.clear();
+                unsubscribe(this);
+            }
+        }
+    }
+
+    /**
+     * Whether a booking's driver position may be shown to its customer: the trip is under way,
+     * or a driver is assigned and the booking's dates include today
+     */
+    public static boolean isLive(Booking booking) {
+        if (booking.getDriver() == null) {
+            return false;
+        }
+        return switch (booking.getStatus()) {
+            case ONGOING -> true;
+            case CONFIRMED, DRIVER_ASSIGNED -> {
+                LocalDate today = LocalDate.now();
+                yield !booking.getStartDate().isAfter(today) && !booking.getEndDate().isBefore(today);
+            }
+            default -> false;
+        };
+    }
+
+    /**
+     * Open a stream for a booking, starting with a snapshot of its status and, while the trip
+     * is live, the driver's position
+     */
+    public SseEmitter subscribe(Booking booking, NearbyDriver driverPosition) {
+        SseEmitter emitter = createEmitter(emitterTimeoutMs);
+        Subscriber subscriber = new Subscriber(booking.getId(), emitter);
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(e -> subscriber.close());
+
+        Long driverId = booking.getDriver() != null ? booking.getDriver().getId() : null;
+        boolean live = isLive(booking);
+        channels.compute(booking.getId(), (id, channel) -> {
+            if (channel == null) {
+                channel = new Channel();
+            }
+            channel.subscribers.add(subscriber);
+            watchDriver(id, channel, live ? driverId : null);
+            return channel;
+        });
+        subscriberCount.incrementAndGet();
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("bookingId", booking.getId());
+        snapshot.put("status", booking.getStatus());
+        snapshot.put("driverId", driverId);
+        snapshot.put("driverPosition", live ? driverPosition : null);
+        // Sent before the emitter is returned, so the request thread itself writes it along with
+        // the response headers. A first write from the sender pool could race the request thread
+        // still finishing the response, and the lost stream would never get its headers.
+        try {
+            emitter.send(buildEvent("snapshot", snapshot));
+        } catch (IOException e) {
+            subscriber.close();
+            emitter.completeWithError(e);
+            return emitter;
+        }
+        subscriber.start();
+        return emitter;
+    }
+
+    // Overridden in tests to stand in for a client connection
+    SseEmitter createEmitter(long timeoutMs) {
+        return new SseEmitter(timeoutMs);
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        channels.computeIfPresent(subscriber.bookingId, (id, channel) -> {
+            if (channel.subscribers.remove(subscriber)) {
+                subscriberCount.decrementAndGet();
+            }
+            if (channel.subscribers.isEmpty()) {
+                watchDriver(id, channel, null);
+                return null;
+            }
+            return channel;
+        });
+    }
+
+    private void watchDriver(Long bookingId, Channel channel, Long driverId) {
+        Long previous = channel.driverId;
+        if (previous != null && !previous.equals(driverId)) {
+            watchedBookingsByDriver.computeIfPresent(previous, (id, bookings) -> {
+                bookings.remove(bookingId);
+                return bookings.isEmpty() ? null : bookings;
+            });
+        }
+        channel.driverId = driverId;
+        if (driverId != null) {
+            watchedBookingsByDriver.computeIfAbsent(driverId, id -> ConcurrentHashMap.newKeySet()).add(bookingId);
+        }
+    }
+
+    /**
+     * Push a booking's new status (and driver) once the surrounding transaction commits. Position
+     * updates follow the driver only while the trip is live and stop once it ends.
+     */
+    public void publishStatus(Booking booking) {
+        Long bookingId = booking.getId();
+        Booking.BookingStatus status = booking.getStatus();
+        Long driverId = booking.getDriver() != null ? booking.getDriver().getId() : null;
+        boolean live = isLive(booking);
+        TransactionCallbacks.afterCommit(() -> {
+            Channel channel = channels.computeIfPresent(bookingId, (id, existing) -> {
+                watchDriver(id, existing, live ? driverId : null);
+                return existing;
+            });
+            if (channel == null) {
+                return;
+            }
+            Map<String, Object> data = new LinkedHashMap<>();
+            data.put("bookingId", bookingId);
+            data.put("status", status);
+            data.put("driverId", driverId);
+            broadcast(channel, buildEvent("status", data));
+        });
+    }
+
+    /**
+     * Push a driver's position to every watched booking they are assigned to
+     */
+    public void publishDriverPosition(Long driverId, double latitude, double longitude) {
+        Set<Long> bookingIds = watchedBookingsByDriver.get(driverId);
+        if (bookingIds == null || bookingIds.isEmpty()) {
+            return;
+        }
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("driverId", driverId);
+        data.put("latitude", latitude);
+        data.put("longitude", longitude);
+        data.put("updatedAt", Instant.now());
+        Set<ResponseBodyEmitter.DataWithMediaType> event = buildEvent("position", data);
+        for (Long bookingId : bookingIds) {
+            Channel channel = channels.get(bookingId);
+            if (channel != null) {
+                broadcast(channel, event);
+            }
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    /**
+     * Comment-only keep-alive so proxies keep idle streams open and dead clients are detected
+     */
+    @Scheduled(fixedDelayString = "${tracking.heartbeat-ms:15000}")
+    public void heartbeat() {
+        Set<ResponseBodyEmitter.DataWithMediaType> ping = SseEmitter.event().comment("ping").build();
+        channels.values().forEach(channel -> broadcast(channel, ping));
+    }
+
+    private void broadcast(Channel channel, Set<ResponseBodyEmitter.DataWithMediaType> event) {
+        for (Subscriber subscriber : channel.subscribers) {
+            subscriber.enqueue(event);
+        }
+    }
+
+    private Set<ResponseBodyEmitter.DataWithMediaType> buildEvent(String name, Map<String, Object> data) {
+        try {
+            // Serialize once; every subscriber gets the same bytes
+            return SseEmitter.event().name(name).data(objectMapper.writeValueAsString(data)).build();
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize tracking event", e);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.drivenow.service;
+
+import com.drivenow.dto.NotificationRecipient;
+import com.drivenow.entity.BroadcastNotification;
+import com.drivenow.repository.NotificationRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-user unread notification counts held in memory.
+ *
+ * A user's count is loaded from the database on first access and then moved by the
+ * notification writes once they commit, so reading it is a map lookup. Concurrent loads and
+ * writes can leave a count off by a few, and writes that bypass NotificationService are not
+ * seen at all; a periodic job recounts the loaded users in batches and corrects them, and drops
+ * users nobody has asked about for a while. Counts include the broadcasts meant for the user,
+ * so each counter remembers the user's role and join time to pick up new broadcasts.
+ */
+@Service
+@Slf4j
+public class UnreadCountService {
+
+    private static final int RECONCILE_BATCH_SIZE = 500;
+
+    private final NotificationRepository notificationRepository;
+    private final BroadcastNotificationService broadcastService;
+    private final Map<Long, Counter> counters = new ConcurrentHashMap<>();
+    private final long idleEvictMs;
+
+    public UnreadCountService(NotificationRepository notificationRepository,
+                              BroadcastNotificationService broadcastService, MeterRegistry meterRegistry,
+                              @Value("${notifications.unread.idle-evict-minutes:30}") long idleEvictMinutes) {
+        this.notificationRepository = notificationRepository;
+        this.broadcastService = broadcastService;
+        this.idleEvictMs = idleEvictMinutes * 60_000;
+        meterRegistry.gauge("notifications.unread.counters", counters, Map::size);
+    }
+
+    private static final class Counter {
+        final NotificationRecipient recipient;
+        final AtomicLong value;
+        // Bumped by every write, so a recount that raced with one is not applied
+        final AtomicLong version = new AtomicLong();
+        volatile long lastReadAt = System.currentTimeMillis();
+
+        Counter(NotificationRecipient recipient, long value) {
+            this.recipient = recipient;
+            this.value = new AtomicLong(value);
+        }
+    }
+
+    public long get(Long userId) {
+        Counter counter = counters.get(userId);
+        if (counter == null) {
+            // Loaded outside the map so a slow count does not block other users' entries
+            NotificationRecipient recipient = broadcastService.getRecipient(userId);
+            Counter loaded = new Counter(recipient,
+                    notificationRepository.countUnreadByUserId(userId) + broadcastService.countUnread(recipient));
+            counter = counters.putIfAbsent(userId, loaded);
+            if (counter == null) {
+                counter = loaded;
+            }
+        }
+        counter.lastReadAt = System.currentTimeMillis();
+        return Math.max(0, counter.value.get());
+    }
+
+    /**
+     * Move a user's count once the current transaction commits. Users whose count is not
+     * loaded are skipped; their first read counts from the database.
+     */
+    public void adjustAfterCommit(Long userId, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        TransactionCallbacks.afterCommit(() -> {
+            Counter counter = counters.get(userId);
+            if (counter != null) {
+                counter.version.incrementAndGet();
+                counter.value.addAndGet(delta);
+            }
+        });
+    }
+
+    /**
+     * Zero a user's count once the current transaction commits
+     */
+    public void resetAfterCommit(Long userId) {
+        TransactionCallbacks.afterCommit(() -> {
+            Counter counter = counters.get(userId);
+            if (counter != null) {
+                counter.version.incrementAndGet();
+                counter.value.set(0);
+            }
+        });
+    }
+
+    /**
+     * Forget a user's count, so the next read loads it from the database
+     */
+    public void evictAfterCommit(Long userId) {
+        TransactionCallbacks.afterCommit(() -> counters.remove(userId));
+    }
+
+    /**
+     * Count a committed broadcast for the loaded users it is meant for
+     */
+    public void addBroadcast(BroadcastNotification broadcast) {
+        for (Counter counter : counters.values()) {
+            if (broadcast.isFor(counter.recipient.getRole(), counter.recipient.getJoinedAt())) {
+                counter.version.incrementAndGet();
+                counter.value.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Recount every loaded user against the database and drop idle ones
+     */
+    @Scheduled(fixedDelayString = "${notifications.unread.reconcile-interval-ms:60000}")
+    public void reconcile() {
+        long idleBefore = System.currentTimeMillis() - idleEvictMs;
+        counters.entrySet().removeIf(entry -> entry.getValue().lastReadAt < idleBefore);
+
+        List<Long> userIds = new ArrayList<>(counters.keySet());
+        int corrected = 0;
+        for (int from = 0; from < userIds.size(); from += RECONCILE_BATCH_SIZE) {
+            List<Long> batch = userIds.subList(from, Math.min(from + RECONCILE_BATCH_SIZE, userIds.size()));
+            Map<Long, Long> versions = new HashMap<>();
+            for (Long userId : batch) {
+                Counter counter = counters.get(userId);
+                if (counter != null) {
+                    versions.put(userId, counter.version.get());
+                }
+            }
+            Map<Long, Long> actual = new HashMap<>();
+            for (Object[] row : notificationRepository.countUnreadByUserIdIn(versions.keySet())) {
+                actual.put((Long) row[0], (Long) row[1]);
+            }
+            broadcastService.countUnread(versions.keySet()).forEach((userId, unread) -> actual.merge(userId, unread, Long::sum));
+            for (Map.Entry<Long, Long> entry : versions.entrySet()) {
+                Counter counter = counters.get(entry.getKey());
+                long count = actual.getOrDefault(entry.getKey(), 0L);
+                if (counter != null && counter.version.get() == entry.getValue() && counter.value.get() != count) {
+                    counter.value.set(count);
+                    corrected++;
+                }
+            }
+        }
+        if (corrected > 0) {
+            log.info("Corrected {} of {} unread notification counts", corrected, userIds.size());
+        }
+    }
+}
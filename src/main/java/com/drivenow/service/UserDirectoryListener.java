@@ -0,0 +1,32 @@
+package com.drivenow.service;
+
+import com.drivenow.entity.User;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the user directory index in step with every User insert, update and delete,
+ * whichever service made it
+ */
+@Component
+@RequiredArgsConstructor
+public class UserDirectoryListener {
+
+    // Looked up lazily: entity listeners are created while the persistence unit starts
+    private final ObjectProvider<UserDirectoryService> userDirectoryService;
+
+    @PostPersist
+    @PostUpdate
+    public void onSave(User user) {
+        userDirectoryService.getObject().userChanged(user);
+    }
+
+    @PostRemove
+    public void onRemove(User user) {
+        userDirectoryService.getObject().userRemoved(user.getId());
+    }
+}
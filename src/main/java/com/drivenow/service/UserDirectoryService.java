@@ -0,0 +1,254 @@
+package com.drivenow.service;
+
+import com.drivenow.dto.UserSummary;
+import com.drivenow.entity.User;
+import com.drivenow.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Admin user directory: keyset-paginated summaries and name/email prefix search.
+ *
+ * Search runs against an in-memory sorted index of lowercase terms (the full name, each later
+ * word of the name, the email), so a prefix is a range scan over the matching keys. The index
+ * holds ids only; the page itself is loaded as summaries. It is built on startup and kept
+ * current by {@link UserDirectoryListener} as users are saved and deleted.
+ *
+ * The index is per instance, and the listener only sees entity changes made here: users saved
+ * by other instances or changed by bulk JPQL updates reach it when it is periodically
+ * reconciled with the users table. Hits are re-checked against the loaded summaries, so a
+ * stale entry can delay a match but never returns a user who no longer matches.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UserDirectoryService {
+
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int BUILD_BATCH_SIZE = 5000;
+    // Separates term and id in an index key; sorts before any character a term can contain
+    private static final char SEPARATOR = '\u0000';
+
+    private final UserRepository userRepository;
+
+    // "term\0id" -> id
+    private final ConcurrentSkipListMap<String, Long> index = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<Long, Indexed> indexedUsers = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+
+    private record Indexed(User.Role role, List<String> keys) {
+    }
+
+    /**
+     * One page of users in id order
+     * @param after nextCursor from the previous page, or null for the first page
+     * @param role Only users with this role, or null for all
+     */
+    public Map<String, Object> getUsers(User.Role role, Long after, int limit) {
+        checkLimit(limit);
+        List<UserSummary> users = userRepository.findSummaries(role, after != null ? after : 0L,
+                PageRequest.of(0, limit + 1));
+        boolean hasMore = users.size() > limit;
+        if (hasMore) {
+            users = users.subList(0, limit);
+        }
+        Map<String, Object> page = new HashMap<>();
+        page.put("users", users);
+        page.put("hasMore", hasMore);
+        page.put("nextCursor", hasMore ? users.get(users.size() - 1).getId() : null);
+        return page;
+    }
+
+    /**
+     * Users whose name, any word of their name, or email starts with the query, in term order
+     */
+    public List<UserSummary> search(String query, User.Role role, int limit) {
+        checkLimit(limit);
+        String prefix = normalize(query);
+        if (prefix.isEmpty()) {
+            throw new RuntimeException("Search query is required");
+        }
+        if (!ready) {
+            String escaped = prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+            return userRepository.searchSummaries(escaped, role, PageRequest.of(0, limit));
+        }
+
+        Set<Long> ids = new LinkedHashSet<>();
+        ConcurrentNavigableMap<String, Long> matches = index.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+        for (Long id : matches.values()) {
+            Indexed indexed = indexedUsers.get(id);
+            if (indexed != null && (role == null || indexed.role() == role)) {
+                ids.add(id);
+                if (ids.size() == limit) {
+                    break;
+                }
+            }
+        }
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Long, UserSummary> byId = new HashMap<>();
+        userRepository.findSummariesByIdIn(ids).forEach(summary -> byId.put(summary.getId(), summary));
+        List<UserSummary> results = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            UserSummary summary = byId.get(id);
+            if (summary != null && matches(summary, prefix, role)) {
+                results.add(summary);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Whether the user as stored still matches a search, whatever the index says
+     */
+    private static boolean matches(UserSummary user, String prefix, User.Role role) {
+        if (role != null && user.getRole() != role) {
+            return false;
+        }
+        String name = normalize(user.getName());
+        if (name.startsWith(prefix) || normalize(user.getEmail()).startsWith(prefix)) {
+            return true;
+        }
+        for (String word : name.split(" ")) {
+            if (word.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void checkLimit(int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new RuntimeException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+    }
+
+    /**
+     * Reindex a saved user once its transaction commits
+     */
+    public void userChanged(User user) {
+        Long id = user.getId();
+        String name = user.getName();
+        String email = user.getEmail();
+        User.Role role = user.getRole();
+        TransactionCallbacks.afterCommit(() -> put(id, name, email, role));
+    }
+
+    public void userRemoved(Long id) {
+        TransactionCallbacks.afterCommit(() -> remove(id));
+    }
+
+    private void put(Long id, String name, String email, User.Role role) {
+        List<String> keys = new ArrayList<>();
+        String normalizedName = normalize(name);
+        if (!normalizedName.isEmpty()) {
+            keys.add(normalizedName + SEPARATOR + id);
+            String[] words = normalizedName.split(" ");
+            // The first word is already covered by the full name
+            for (int i = 1; i < words.length; i++) {
+                keys.add(words[i] + SEPARATOR + id);
+            }
+        }
+        String normalizedEmail = normalize(email);
+        if (!normalizedEmail.isEmpty()) {
+            keys.add(normalizedEmail + SEPARATOR + id);
+        }
+
+        // Updates to one user are serialized by the map entry
+        indexedUsers.compute(id, (key, previous) -> {
+            if (previous != null) {
+                previous.keys().forEach(index::remove);
+            }
+            keys.forEach(k -> index.put(k, id));
+            return new Indexed(role, keys);
+        });
+    }
+
+    private void remove(Long id) {
+        indexedUsers.computeIfPresent(id, (key, previous) -> {
+            previous.keys().forEach(index::remove);
+            return null;
+        });
+    }
+
+    /**
+     * Load the index in id-ordered batches, so memory stays bounded by the index itself
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildIndex() {
+        long start = System.nanoTime();
+        scan(null);
+        ready = true;
+        log.info("User directory indexed {} users in {} ms", indexedUsers.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Bring the index in line with the users table: reindex every row and drop users that are
+     * gone, picking up changes this instance's listener never saw
+     */
+    @Scheduled(fixedDelayString = "${directory.reconcile-interval-ms:300000}",
+               initialDelayString = "${directory.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        if (!ready) {
+            return;
+        }
+        long start = System.nanoTime();
+        int before = indexedUsers.size();
+        Set<Long> seen = new HashSet<>();
+        long lastId = scan(seen);
+        // Users created after the scan passed their id are not dropped
+        int removed = 0;
+        for (Long id : indexedUsers.keySet()) {
+            if (id <= lastId && !seen.contains(id)) {
+                remove(id);
+                removed++;
+            }
+        }
+        log.debug("User directory reconciled: {} users ({} before, {} removed) in {} ms",
+                indexedUsers.size(), before, removed, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Index every user in id order
+     * @param seen Collects the ids read, if not null
+     * @return The last id read
+     */
+    private long scan(Set<Long> seen) {
+        long after = 0;
+        List<UserSummary> batch;
+        do {
+            batch = userRepository.findSummaries(null, after, PageRequest.of(0, BUILD_BATCH_SIZE));
+            for (UserSummary user : batch) {
+                put(user.getId(), user.getName(), user.getEmail(), user.getRole());
+                if (seen != null) {
+                    seen.add(user.getId());
+                }
+                after = user.getId();
+            }
+        } while (batch.size() == BUILD_BATCH_SIZE);
+        return after;
+    }
+}
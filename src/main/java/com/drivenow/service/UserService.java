@@ -1,10 +1,8 @@
 package com.drivenow.service;
 
-import com.drivenow.entity.Booking;
 import com.drivenow.entity.User;
 import com.drivenow.entity.UserSettings;
-import com.drivenow.repository.BookingRepository;
-import com.drivenow.repository.NotificationRepository;
+import com.drivenow.entity.UserStatsRollup;
 import com.drivenow.repository.ReviewRepository;
 import com.drivenow.repository.UserRepository;
 import com.drivenow.repository.UserSettingsRepository;
@@ -13,6 +11,7 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.InputStream;
 import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.List;
@@ -25,10 +24,15 @@ public class UserService {
     
     private final UserRepository userRepository;
     private final UserSettingsRepository userSettingsRepository;
-    private final BookingRepository bookingRepository;
-    private final NotificationRepository notificationRepository;
+    private final UserSettingsCache userSettingsCache;
     private final ReviewRepository reviewRepository;
     private final PasswordEncoder passwordEncoder;
+    private final DriverLocationService driverLocationService;
+    private final DriverScheduleService driverScheduleService;
+    private final StatsRollupService statsRollupService;
+    private final EarningsLedgerService earningsLedgerService;
+    private final DriverDocumentService driverDocumentService;
+    private final ProfileImageService profileImageService;
     
     public User getUserById(Long id) {
         return userRepository.findById(id)
@@ -57,7 +61,20 @@ public class UserService {
     }
     
     public List<User> getAvailableDrivers() {
-        return userRepository.findAvailableDrivers();
+        LocalDate today = LocalDate.now();
+        return getAvailableDrivers(today, today);
+    }
+    
+    /**
+     * On-duty drivers with no booking overlapping [startDate, endDate]
+     */
+    public List<User> getAvailableDrivers(LocalDate startDate, LocalDate endDate) {
+        if (endDate.isBefore(startDate)) {
+            throw new RuntimeException("End date must not be before start date");
+        }
+        return userRepository.findAvailableDrivers().stream()
+                .filter(driver -> driverScheduleService.isFree(driver.getId(), startDate, endDate, null))
+                .toList();
     }
     
     @Transactional
@@ -74,24 +91,14 @@ public class UserService {
             user.setAddress(userDetails.getAddress());
         }
         if (userDetails.getProfileImage() != null) {
-            user.setProfileImage(userDetails.getProfileImage());
+            replaceProfileImage(user, userDetails.getProfileImage());
         }
         if (userDetails.getLicenseNumber() != null) {
             user.setLicenseNumber(userDetails.getLicenseNumber());
         }
         if (userDetails.getAvailable() != null) {
             user.setAvailable(userDetails.getAvailable());
-        }
-        
-        // Update driver documents
-        if (userDetails.getDriversLicense() != null) {
-            user.setDriversLicense(userDetails.getDriversLicense());
-        }
-        if (userDetails.getVehicleRegistration() != null) {
-            user.setVehicleRegistration(userDetails.getVehicleRegistration());
-        }
-        if (userDetails.getInsuranceCertificate() != null) {
-            user.setInsuranceCertificate(userDetails.getInsuranceCertificate());
+            syncDispatchAvailability(user);
         }
         
         return userRepository.save(user);
@@ -101,57 +108,11 @@ public class UserService {
     public User updateUserStatus(Long id, String status) {
         User user = getUserById(id);
         user.setStatus(User.Status.valueOf(status.toUpperCase()));
+        // Inactive or suspended drivers must not be offered for dispatch; reactivated ones are again
+        syncDispatchAvailability(user);
         return userRepository.save(user);
     }
     
-    @Transactional
-    public void deleteUser(Long id) {
-        User user = getUserById(id);
-        
-        // Check if user is a driver with active bookings
-        if (user.getRole() == User.Role.DRIVER) {
-            long activeBookings = bookingRepository.findByDriverId(id).stream()
-                .filter(booking -> 
-                    booking.getStatus() == com.drivenow.entity.Booking.BookingStatus.CONFIRMED ||
-                    booking.getStatus() == com.drivenow.entity.Booking.BookingStatus.ONGOING ||
-                    booking.getStatus() == com.drivenow.entity.Booking.BookingStatus.DRIVER_ASSIGNED
-                )
-                .count();
-            
-            if (activeBookings > 0) {
-                throw new RuntimeException("Cannot delete driver with active bookings. Please complete or cancel all active bookings first.");
-            }
-            
-            // Set driver to null in all bookings before deletion (completed or cancelled bookings)
-            bookingRepository.findByDriverId(id).forEach(booking -> {
-                booking.setDriver(null);
-                bookingRepository.save(booking);
-            });
-        } else {
-            // Only check for customer bookings if user is not a driver
-            // Check if user has bookings (as a customer)
-            long userBookings = bookingRepository.findByUserId(id).size();
-            if (userBookings > 0) {
-                throw new RuntimeException("Cannot delete user with existing bookings. User has " + userBookings + " booking(s) in the system.");
-            }
-        }
-        
-        // Delete all related entities manually
-        // 1. Delete user notifications
-        notificationRepository.deleteByUserId(id);
-        
-        // 2. Delete user reviews
-        reviewRepository.deleteByUserId(id);
-        
-        // 3. Delete user settings
-        userSettingsRepository.findByUserId(id).ifPresent(userSettings -> {
-            userSettingsRepository.delete(userSettings);
-        });
-        
-        // 4. Finally delete the user
-        userRepository.delete(user);
-    }
-    
     @Transactional
     public User updateDriverAvailability(Long driverId, Boolean available) {
         User driver = getUserById(driverId);
@@ -159,22 +120,33 @@ public class UserService {
             throw new RuntimeException("User is not a driver");
         }
         driver.setAvailable(available);
+        syncDispatchAvailability(driver);
         return userRepository.save(driver);
     }
     
+    /**
+     * Offer a driver to dispatch only while active and on duty, once the change commits
+     */
+    private void syncDispatchAvailability(User user) {
+        if (user.getRole() == User.Role.DRIVER) {
+            driverLocationService.setAvailableAfterCommit(user.getId(),
+                    user.getStatus() == User.Status.ACTIVE && Boolean.TRUE.equals(user.getAvailable()));
+        }
+    }
+    
     public Map<String, Object> getUserStats(Long userId) {
         User user = getUserById(userId);
         Map<String, Object> stats = new HashMap<>();
         
-        Long totalBookings = bookingRepository.countBookingsByUserId(userId);
-        Double totalSpent = bookingRepository.getTotalSpentByUserId(userId);
-        Long activeBookings = getActiveBookingsCount(userId);
+        StatsRollupService.UserRollups rollups = statsRollupService.getRollups(userId, UserStatsRollup.Side.CUSTOMER);
+        UserStatsRollup total = rollups.allTime();
         Long reviews = reviewRepository.countReviewsByUserId(userId);
         
-        // Calculate percentage changes
-        String bookingsChange = calculatePercentageChange(userId, "bookings", false);
-        String activeBookingsChange = calculatePercentageChange(userId, "activeBookings", false);
-        String spentChange = calculatePercentageChange(userId, "spent", false);
+        // Calculate percentage changes (last month vs the month before)
+        String bookingsChange = calculatePercentage(rollups.lastMonth().getBookings(), rollups.previousMonth().getBookings());
+        String activeBookingsChange = calculatePercentage(rollups.lastMonth().getActive(), rollups.previousMonth().getActive());
+        String spentChange = calculatePercentage(rollups.lastMonth().getPaidAmount().longValue(),
+                rollups.previousMonth().getPaidAmount().longValue());
         Long reviewsLastMonth = reviewRepository.countReviewsByUserIdLastMonth(userId);
         String reviewsChange = reviewsLastMonth > 0 ? "+" + reviewsLastMonth : "0";
         
@@ -189,9 +161,9 @@ public class UserService {
         stats.put("licenseNumber", user.getLicenseNumber());
         stats.put("available", user.getAvailable());
         stats.put("joinDate", user.getCreatedAt());
-        stats.put("totalBookings", totalBookings);
-        stats.put("activeBookings", activeBookings);
-        stats.put("totalSpent", totalSpent);
+        stats.put("totalBookings", total.getBookings());
+        stats.put("activeBookings", total.getActive());
+        stats.put("totalSpent", total.getPaidAmount().doubleValue());
         stats.put("reviews", reviews);
         
         // Percentage changes
@@ -200,75 +172,12 @@ public class UserService {
         stats.put("spentChange", spentChange);
         stats.put("reviewsChange", reviewsChange);
         
-        // Include driver documents
-        stats.put("driversLicense", user.getDriversLicense());
-        stats.put("vehicleRegistration", user.getVehicleRegistration());
-        stats.put("insuranceCertificate", user.getInsuranceCertificate());
+        // Document metadata only; files are downloaded from their url
+        stats.put("documents", driverDocumentService.getDocuments(userId));
         
         return stats;
     }
     
-    private Long getActiveBookingsCount(Long userId) {
-        List<Booking> bookings = bookingRepository.findByUserId(userId);
-        return bookings.stream()
-            .filter(b -> b.getStatus() == Booking.BookingStatus.PENDING || 
-                        b.getStatus() == Booking.BookingStatus.CONFIRMED)
-            .count();
-    }
-    
-    private String calculatePercentageChange(Long userId, String type, boolean isDriver) {
-        LocalDate now = LocalDate.now();
-        LocalDate lastMonthStart = now.minusMonths(1).withDayOfMonth(1);
-        LocalDate lastMonthEnd = now.withDayOfMonth(1).minusDays(1);
-        LocalDate prevMonthStart = lastMonthStart.minusMonths(1);
-        LocalDate prevMonthEnd = lastMonthStart.minusDays(1);
-        
-        List<Booking> allBookings = isDriver ? 
-            bookingRepository.findByDriverId(userId) : 
-            bookingRepository.findByUserId(userId);
-        
-        if (type.equals("bookings")) {
-            long lastMonth = allBookings.stream()
-                .filter(b -> !b.getCreatedAt().toLocalDate().isBefore(lastMonthStart) && 
-                            !b.getCreatedAt().toLocalDate().isAfter(lastMonthEnd))
-                .count();
-            long prevMonth = allBookings.stream()
-                .filter(b -> !b.getCreatedAt().toLocalDate().isBefore(prevMonthStart) && 
-                            !b.getCreatedAt().toLocalDate().isAfter(prevMonthEnd))
-                .count();
-            return calculatePercentage(lastMonth, prevMonth);
-        } else if (type.equals("activeBookings")) {
-            long lastMonth = allBookings.stream()
-                .filter(b -> (b.getStatus() == Booking.BookingStatus.PENDING || 
-                             b.getStatus() == Booking.BookingStatus.CONFIRMED) &&
-                            !b.getCreatedAt().toLocalDate().isBefore(lastMonthStart) && 
-                            !b.getCreatedAt().toLocalDate().isAfter(lastMonthEnd))
-                .count();
-            long prevMonth = allBookings.stream()
-                .filter(b -> (b.getStatus() == Booking.BookingStatus.PENDING || 
-                             b.getStatus() == Booking.BookingStatus.CONFIRMED) &&
-                            !b.getCreatedAt().toLocalDate().isBefore(prevMonthStart) && 
-                            !b.getCreatedAt().toLocalDate().isAfter(prevMonthEnd))
-                .count();
-            return calculatePercentage(lastMonth, prevMonth);
-        } else if (type.equals("spent") || type.equals("earnings")) {
-            double lastMonth = allBookings.stream()
-                .filter(b -> b.getPaymentStatus() == Booking.PaymentStatus.COMPLETED &&
-                            !b.getCreatedAt().toLocalDate().isBefore(lastMonthStart) && 
-                            !b.getCreatedAt().toLocalDate().isAfter(lastMonthEnd))
-                .mapToDouble(b -> isDriver ? b.getTotalPrice().doubleValue() * 0.15 : b.getTotalPrice().doubleValue())
-                .sum();
-            double prevMonth = allBookings.stream()
-                .filter(b -> b.getPaymentStatus() == Booking.PaymentStatus.COMPLETED &&
-                            !b.getCreatedAt().toLocalDate().isBefore(prevMonthStart) && 
-                            !b.getCreatedAt().toLocalDate().isAfter(prevMonthEnd))
-                .mapToDouble(b -> isDriver ? b.getTotalPrice().doubleValue() * 0.15 : b.getTotalPrice().doubleValue())
-                .sum();
-            return calculatePercentage((long)lastMonth, (long)prevMonth);
-        }
-        return "+0%";
-    }
-    
     private String calculatePercentage(long current, long previous) {
         if (previous == 0) {
             return current > 0 ? "+100%" : "0%";
@@ -286,38 +195,27 @@ public class UserService {
         User driver = getUserById(driverId);
         Map<String, Object> stats = new HashMap<>();
         
-        List<Booking> trips = bookingRepository.findByDriverId(driverId);
-        
-        long totalTrips = trips.size();
-        long completedTrips = trips.stream()
-                .filter(t -> t.getStatus() == Booking.BookingStatus.COMPLETED)
-                .count();
-        long activeTrips = trips.stream()
-                .filter(t -> t.getStatus() == Booking.BookingStatus.CONFIRMED || 
-                           t.getStatus() == Booking.BookingStatus.ONGOING ||
-                           t.getStatus() == Booking.BookingStatus.DRIVER_ASSIGNED)
-                .count();
-        double totalEarnings = trips.stream()
-                .filter(t -> t.getStatus() == Booking.BookingStatus.COMPLETED &&
-                           t.getPaymentStatus() == Booking.PaymentStatus.COMPLETED)
-                .mapToDouble(t -> t.getTotalPrice().doubleValue() * 0.15)
-                .sum();
+        StatsRollupService.UserRollups rollups = statsRollupService.getRollups(driverId, UserStatsRollup.Side.DRIVER);
+        UserStatsRollup total = rollups.allTime();
+        EarningsLedgerService.EarningsSummary earnings = earningsLedgerService.getSummary(driverId);
         Double averageRating = reviewRepository.getAverageRatingForDriver(driverId);
         
-        // Calculate percentage changes
-        String tripsChange = calculatePercentageChange(driverId, "bookings", true);
-        String activeTripsChange = calculatePercentageChange(driverId, "activeBookings", true);
-        String earningsChange = calculatePercentageChange(driverId, "earnings", true);
+        // Calculate percentage changes (last month vs the month before)
+        String tripsChange = calculatePercentage(rollups.lastMonth().getBookings(), rollups.previousMonth().getBookings());
+        String activeTripsChange = calculatePercentage(rollups.lastMonth().getActive(), rollups.previousMonth().getActive());
+        String earningsChange = calculatePercentage(earnings.lastMonth().getEarned().longValue(),
+                earnings.previousMonth().getEarned().longValue());
         
         stats.put("userId", driver.getId());
         stats.put("name", driver.getName());
         stats.put("email", driver.getEmail());
-        stats.put("totalTrips", totalTrips);
-        stats.put("completedTrips", completedTrips);
-        stats.put("activeTrips", activeTrips);
-        stats.put("totalEarnings", totalEarnings);
+        stats.put("totalTrips", total.getBookings());
+        stats.put("completedTrips", total.getCompleted());
+        stats.put("activeTrips", total.getActive());
+        stats.put("totalEarnings", earnings.account().getEarned().doubleValue());
+        stats.put("balance", earnings.account().getClosingBalance());
         stats.put("averageRating", averageRating != null ? averageRating : 0.0);
-        stats.put("commissionRate", 0.15);
+        stats.put("commissionRate", earningsLedgerService.getCurrentRate().getRate());
         
         // Percentage changes
         stats.put("tripsChange", tripsChange);
@@ -329,7 +227,7 @@ public class UserService {
     }
     
     public UserSettings getUserSettings(Long userId) {
-        return userSettingsRepository.findByUserId(userId)
+        return userSettingsCache.get(userId)
                 .orElseThrow(() -> new RuntimeException("Settings not found"));
     }
     
@@ -370,7 +268,9 @@ public class UserService {
             settings.setTheme(newSettings.getTheme());
         }
         
-        return userSettingsRepository.save(settings);
+        UserSettings saved = userSettingsRepository.save(settings);
+        userSettingsCache.evictAfterCommit(userId);
+        return saved;
     }
     
     @Transactional
@@ -390,7 +290,27 @@ public class UserService {
     @Transactional
     public User updateProfileImage(Long userId, String imageUrl) {
         User user = getUserById(userId);
-        user.setProfileImage(imageUrl);
+        replaceProfileImage(user, imageUrl);
         return userRepository.save(user);
     }
+    
+    /**
+     * Store an uploaded profile image and point the user at its thumbnails
+     */
+    @Transactional
+    public User uploadProfileImage(Long userId, InputStream content) {
+        User user = getUserById(userId);
+        String previous = user.getProfileImage();
+        user.setProfileImage(profileImageService.store(content));
+        profileImageService.releaseAfterCommit(previous);
+        return userRepository.save(user);
+    }
+    
+    private void replaceProfileImage(User user, String value) {
+        String previous = user.getProfileImage();
+        user.setProfileImage(profileImageService.resolve(value));
+        if (previous != null && !previous.equals(user.getProfileImage())) {
+            profileImageService.releaseAfterCommit(previous);
+        }
+    }
 }
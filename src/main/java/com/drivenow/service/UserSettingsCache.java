@@ -0,0 +1,124 @@
+package com.drivenow.service;
+
+import com.drivenow.entity.UserSettings;
+import com.drivenow.repository.UserSettingsRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU read-through cache of user settings, keyed by user id.
+ *
+ * Writes on this instance evict the user's entry once their transaction commits. Other
+ * instances learn about writes by polling for settings rows modified since their last poll,
+ * which needs nothing beyond the shared database; entries also expire after a maximum age,
+ * which bounds staleness for rows removed with their user.
+ */
+@Service
+@Slf4j
+public class UserSettingsCache {
+
+    private final UserSettingsRepository settingsRepository;
+    private final Map<Long, Entry> entries;
+    private final long maxAgeMs;
+    private final long syncOverlapMs;
+    // Bumped on every eviction, so a load that raced with a write is not cached
+    private final AtomicLong invalidations = new AtomicLong();
+    private final Counter hits;
+    private final Counter misses;
+    private volatile LocalDateTime syncedUpTo = LocalDateTime.now();
+
+    private record Entry(UserSettings settings, long loadedAt) {
+    }
+
+    public UserSettingsCache(UserSettingsRepository settingsRepository,
+                             MeterRegistry meterRegistry,
+                             @Value("${settings.cache.max-entries:10000}") int maxEntries,
+                             @Value("${settings.cache.max-age-seconds:300}") long maxAgeSeconds,
+                             @Value("${settings.cache.sync-overlap-ms:2000}") long syncOverlapMs) {
+        this.settingsRepository = settingsRepository;
+        this.maxAgeMs = maxAgeSeconds * 1000;
+        this.syncOverlapMs = syncOverlapMs;
+        int capacity = Math.max(1, maxEntries);
+        this.entries = new LinkedHashMap<>(Math.min(capacity, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+        this.hits = meterRegistry.counter("settings.cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("settings.cache.requests", "result", "miss");
+        meterRegistry.gauge("settings.cache.size", this, UserSettingsCache::size);
+    }
+
+    /**
+     * The user's settings, from the cache or loaded on a miss. The instance is shared between
+     * callers and must not be modified.
+     */
+    public Optional<UserSettings> get(Long userId) {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry entry = entries.get(userId);
+            if (entry != null && now - entry.loadedAt() < maxAgeMs) {
+                hits.increment();
+                return Optional.of(entry.settings());
+            }
+        }
+        misses.increment();
+        long stamp = invalidations.get();
+        Optional<UserSettings> settings = settingsRepository.findByUserId(userId);
+        settings.ifPresent(loaded -> {
+            synchronized (entries) {
+                if (invalidations.get() == stamp) {
+                    entries.put(userId, new Entry(loaded, now));
+                }
+            }
+        });
+        return settings;
+    }
+
+    /**
+     * Drop the user's entry once the current transaction commits, or now outside one
+     */
+    public void evictAfterCommit(Long userId) {
+        TransactionCallbacks.afterCommit(() -> evict(userId));
+    }
+
+    public void evict(Long userId) {
+        synchronized (entries) {
+            invalidations.incrementAndGet();
+            entries.remove(userId);
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Evict settings changed by any instance since the last poll. The window is widened by
+     * the overlap to cover clock skew between instances and transactions committing late.
+     */
+    @Scheduled(fixedDelayString = "${settings.cache.sync-interval-ms:5000}")
+    public void syncChanges() {
+        LocalDateTime pollStart = LocalDateTime.now();
+        List<Long> changed = settingsRepository.findUserIdsModifiedSince(syncedUpTo.minusNanos(syncOverlapMs * 1_000_000));
+        changed.forEach(this::evict);
+        syncedUpTo = pollStart;
+        if (!changed.isEmpty()) {
+            log.debug("Evicted {} changed user settings", changed.size());
+        }
+    }
+}
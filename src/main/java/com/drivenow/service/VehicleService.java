@@ -113,12 +113,6 @@ public class VehicleService {
         return vehicleRepository.save(vehicle);
     }
     
-    @Transactional
-    public void deleteVehicle(Long id) {
-        Vehicle vehicle = getVehicleById(id);
-        vehicleRepository.delete(vehicle);
-    }
-    
     @Transactional
     public Vehicle updateVehicleAvailability(Long id, Boolean available) {
         Vehicle vehicle = getVehicleById(id);
@@ -0,0 +1,45 @@
+package com.drivenow.service.dispatch;
+
+import java.util.Arrays;
+
+/**
+ * The allowed (row, column, cost) pairs of an assignment problem; pairs not listed are forbidden.
+ * Dispatch rounds are sparse (each booking sees only the drivers near its pickup), so this keeps
+ * memory proportional to the candidates instead of rows x columns.
+ */
+public final class CandidatePairs {
+
+    private int[] rows = new int[64];
+    private int[] columns = new int[64];
+    private double[] costs = new double[64];
+    private int size;
+
+    public void add(int row, int column, double cost) {
+        if (size == rows.length) {
+            int capacity = size * 2;
+            rows = Arrays.copyOf(rows, capacity);
+            columns = Arrays.copyOf(columns, capacity);
+            costs = Arrays.copyOf(costs, capacity);
+        }
+        rows[size] = row;
+        columns[size] = column;
+        costs[size] = cost;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int row(int k) {
+        return rows[k];
+    }
+
+    public int column(int k) {
+        return columns[k];
+    }
+
+    public double cost(int k) {
+        return costs[k];
+    }
+}
@@ -0,0 +1,71 @@
+package com.drivenow.service.routing;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Minimal lock-free circuit breaker for upstream routing calls.
+ * CLOSED: calls pass through and consecutive failures are counted.
+ * OPEN: calls are rejected until the cool-down elapses.
+ * HALF_OPEN: a single trial call is let through; success closes, failure re-opens.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openDurationMillis;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong openedAt = new AtomicLong();
+
+    public CircuitBreaker(int failureThreshold, long openDurationMillis) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openDurationMillis = Math.max(0, openDurationMillis);
+    }
+
+    /**
+     * @return true if the caller may attempt the upstream call
+     */
+    public boolean tryAcquire() {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return true;
+        }
+        if (current == State.OPEN && System.currentTimeMillis() - openedAt.get() >= openDurationMillis) {
+            // Only one caller wins the transition and performs the trial call
+            return state.compareAndSet(State.OPEN, State.HALF_OPEN);
+        }
+        return false;
+    }
+
+    public void recordSuccess() {
+        consecutiveFailures.set(0);
+        state.set(State.CLOSED);
+    }
+
+    public void recordFailure() {
+        if (state.get() == State.HALF_OPEN
+                || consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            openedAt.set(System.currentTimeMillis());
+            state.set(State.OPEN);
+        }
+    }
+
+    /**
+     * Gives back a permit from tryAcquire when the call ended without an upstream outcome,
+     * e.g. it was interrupted or never submitted. An abandoned trial returns the breaker to OPEN
+     * without restarting the cool-down, so the next caller makes the trial instead.
+     */
+    public void release() {
+        state.compareAndSet(State.HALF_OPEN, State.OPEN);
+    }
+
+    public State getState() {
+        return state.get();
+    }
+}
@@ -0,0 +1,56 @@
+package com.drivenow.service.routing;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of routed pair distances.
+ * Coordinates are quantized to 5 decimal places (~1 m) so the same pickup/dropoff
+ * pair sent by different clients hits the same entry.
+ */
+public class DistanceCache {
+
+    private static final double QUANTUM = 1e5;
+
+    private final Map<PairKey, Double> entries;
+
+    public DistanceCache(int maxEntries) {
+        int capacity = Math.max(1, maxEntries);
+        this.entries = new LinkedHashMap<>(Math.min(capacity, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<PairKey, Double> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @return Cached distance in kilometers, or null on a miss
+     */
+    public Double get(double lat1, double lon1, double lat2, double lon2) {
+        PairKey key = PairKey.of(lat1, lon1, lat2, lon2);
+        synchronized (entries) {
+            return entries.get(key);
+        }
+    }
+
+    public void put(double lat1, double lon1, double lat2, double lon2, double distanceKm) {
+        PairKey key = PairKey.of(lat1, lon1, lat2, lon2);
+        synchronized (entries) {
+            entries.put(key, distanceKm);
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private record PairKey(long lat1, long lon1, long lat2, long lon2) {
+        static PairKey of(double lat1, double lon1, double lat2, double lon2) {
+            return new PairKey(Math.round(lat1 * QUANTUM), Math.round(lon1 * QUANTUM),
+                    Math.round(lat2 * QUANTUM), Math.round(lon2 * QUANTUM));
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.drivenow.service.routing;
+
+/**
+ * Allocation-free great-circle helpers shared by the routing backends
+ */
+public final class GeoMath {
+
+    public static final double EARTH_RADIUS_KM = 6371.0;
+
+    private GeoMath() {
+    }
+
+    /**
+     * Great-circle distance using the Haversine formula
+     */
+    public static double haversineKm(double lat1, double lon1, double lat2, double lon2) {
+        double lat1Rad = Math.toRadians(lat1);
+        double lat2Rad = Math.toRadians(lat2);
+        double sinDeltaLat = Math.sin((lat2Rad - lat1Rad) / 2);
+        double sinDeltaLon = Math.sin(Math.toRadians(lon2 - lon1) / 2);
+        double a = sinDeltaLat * sinDeltaLat
+                + Math.cos(lat1Rad) * Math.cos(lat2Rad) * sinDeltaLon * sinDeltaLon;
+        return EARTH_RADIUS_KM * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    /**
+     * Equirectangular approximation: cheap and accurate to well under 1% at city scale,
+     * good enough for nearest-node snapping and ranking
+     */
+    public static double equirectangularKm(double lat1, double lon1, double lat2, double lon2) {
+        double x = Math.toRadians(lon2 - lon1) * Math.cos(Math.toRadians((lat1 + lat2) / 2));
+        double y = Math.toRadians(lat2 - lat1);
+        return EARTH_RADIUS_KM * Math.sqrt(x * x + y * y);
+    }
+}
@@ -0,0 +1,132 @@
+package com.drivenow.service.routing;
+
+/**
+ * Batch one-to-many great-circle distances over primitive coordinate arrays, for ranking
+ * candidates (drivers to a pickup, branches to a customer).
+ *
+ * All methods are allocation-free: callers own the input and output arrays and can reuse
+ * them between calls. The loops are kept branch-free over structure-of-arrays input so the
+ * JIT can unroll them; the per-candidate cos(lat) can be precomputed once with
+ * {@link #precomputeCosLat} when the same candidate set is ranked repeatedly.
+ */
+public final class HaversineKernel {
+
+    private static final double DIAMETER_KM = 2 * GeoMath.EARTH_RADIUS_KM;
+    private static final double DEG_TO_RAD = Math.PI / 180.0;
+
+    private HaversineKernel() {
+    }
+
+    /**
+     * out[i] = distance in km from (lat, lon) to (lats[i], lons[i]) for i in [0, count)
+     */
+    public static void distancesKm(double lat, double lon, double[] lats, double[] lons, int count, double[] out) {
+        double lat0 = lat * DEG_TO_RAD;
+        double lon0 = lon * DEG_TO_RAD;
+        double cosLat0 = Math.cos(lat0);
+        for (int i = 0; i < count; i++) {
+            double lat1 = lats[i] * DEG_TO_RAD;
+            double sinHalfDLat = Math.sin((lat1 - lat0) * 0.5);
+            double sinHalfDLon = Math.sin((lons[i] * DEG_TO_RAD - lon0) * 0.5);
+            double a = sinHalfDLat * sinHalfDLat + cosLat0 * Math.cos(lat1) * sinHalfDLon * sinHalfDLon;
+            out[i] = DIAMETER_KM * Math.asin(Math.sqrt(Math.min(1.0, a)));
+        }
+    }
+
+    /**
+     * Same as {@link #distancesKm} but with cos(lats[i]) supplied, saving one cos per candidate
+     */
+    public static void distancesKm(double lat, double lon, double[] lats, double[] lons, double[] cosLats,
+                                   int count, double[] out) {
+        double lat0 = lat * DEG_TO_RAD;
+        double lon0 = lon * DEG_TO_RAD;
+        double cosLat0 = Math.cos(lat0);
+        for (int i = 0; i < count; i++) {
+            double sinHalfDLat = Math.sin((lats[i] * DEG_TO_RAD - lat0) * 0.5);
+            double sinHalfDLon = Math.sin((lons[i] * DEG_TO_RAD - lon0) * 0.5);
+            double a = sinHalfDLat * sinHalfDLat + cosLat0 * cosLats[i] * sinHalfDLon * sinHalfDLon;
+            out[i] = DIAMETER_KM * Math.asin(Math.sqrt(Math.min(1.0, a)));
+        }
+    }
+
+    public static void precomputeCosLat(double[] lats, int count, double[] cosLats) {
+        for (int i = 0; i < count; i++) {
+            cosLats[i] = Math.cos(lats[i] * DEG_TO_RAD);
+        }
+    }
+
+    /**
+     * Indices of the k nearest candidates, closest first.
+     * @param scratch  buffer of at least count doubles used for the distances
+     * @param outIndex receives up to k candidate indices
+     * @param outKm    receives the matching distances (may be null)
+     * @return Number of results written (min(k, count))
+     */
+    public static int nearestK(double lat, double lon, double[] lats, double[] lons, int count, int k,
+                               double[] scratch, int[] outIndex, double[] outKm) {
+        distancesKm(lat, lon, lats, lons, count, scratch);
+        return selectSmallest(scratch, count, k, outIndex, outKm);
+    }
+
+    /**
+     * Top-k selection with a bounded max-heap kept in outIndex: O(count log k), no allocation
+     */
+    public static int selectSmallest(double[] values, int count, int k, int[] outIndex, double[] outValues) {
+        int size = 0;
+        k = Math.min(k, count);
+        if (k <= 0) {
+            return 0;
+        }
+        for (int i = 0; i < count; i++) {
+            double value = values[i];
+            if (size < k) {
+                // Sift up
+                int pos = size++;
+                while (pos > 0) {
+                    int parent = (pos - 1) >>> 1;
+                    if (values[outIndex[parent]] >= value) {
+                        break;
+                    }
+                    outIndex[pos] = outIndex[parent];
+                    pos = parent;
+                }
+                outIndex[pos] = i;
+            } else if (value < values[outIndex[0]]) {
+                siftDown(values, outIndex, size, i);
+            }
+        }
+
+        // Heap-sort the k survivors in place so the result is ascending
+        for (int end = size - 1; end > 0; end--) {
+            int largest = outIndex[0];
+            siftDown(values, outIndex, end, outIndex[end]);
+            outIndex[end] = largest;
+        }
+        if (outValues != null) {
+            for (int j = 0; j < size; j++) {
+                outValues[j] = values[outIndex[j]];
+            }
+        }
+        return size;
+    }
+
+    private static void siftDown(double[] values, int[] heap, int size, int index) {
+        double value = values[index];
+        int pos = 0;
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && values[heap[child + 1]] > values[heap[child]]) {
+                child++;
+            }
+            if (values[heap[child]] <= value) {
+                break;
+            }
+            heap[pos] = heap[child];
+            pos = child;
+        }
+        heap[pos] = index;
+    }
+}
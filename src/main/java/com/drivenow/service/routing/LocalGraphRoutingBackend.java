@@ -0,0 +1,249 @@
+package com.drivenow.service.routing;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Offline road distances from a preprocessed regional graph (see RoadGraphWriter).
+ * Coordinates are snapped to the nearest graph node and the shortest path is found with
+ * A* using the great-circle distance as an admissible lower bound, which settles far fewer
+ * nodes than plain Dijkstra on road networks. Search buffers are sized to the graph (12 bytes
+ * per node), so they come from a small pool rather than one per request thread; a query
+ * allocates nothing once the pool is warm, and waits briefly for a buffer when all are in use.
+ */
+@Component
+@ConditionalOnProperty(name = "routing.backend", havingValue = "local-graph")
+@Slf4j
+public class LocalGraphRoutingBackend implements RoutingBackend {
+
+    private final RoadGraph graph;
+    private final double maxSnapKm;
+    private final int snapRings;
+    private final BlockingDeque<SearchState> idleStates = new LinkedBlockingDeque<>();
+    private final AtomicInteger createdStates = new AtomicInteger();
+    private final int maxSearchStates;
+    private final long searchWaitMs;
+
+    public LocalGraphRoutingBackend(ResourceLoader resourceLoader,
+                                    @Value("${routing.graph.path:classpath:routing/sample-region.graph}") String graphPath,
+                                    @Value("${routing.graph.max-snap-km:2.0}") double maxSnapKm,
+                                    @Value("${routing.graph.search-states:0}") int searchStates,
+                                    @Value("${routing.graph.search-wait-ms:500}") long searchWaitMs) throws IOException {
+        long start = System.nanoTime();
+        this.graph = loadGraph(resourceLoader.getResource(graphPath));
+        this.maxSnapKm = maxSnapKm;
+        // Grid cells are ~1.1 km, so search enough rings to cover the snap radius
+        this.snapRings = Math.max(1, (int) Math.ceil(maxSnapKm / 1.1));
+        // 0 means one buffer per core: searches are CPU-bound, more would only queue on the CPU
+        this.maxSearchStates = searchStates > 0 ? searchStates : Runtime.getRuntime().availableProcessors();
+        this.searchWaitMs = searchWaitMs;
+        log.info("Loaded road graph {} ({} nodes, {} edges) in {} ms", graphPath,
+                graph.getNodeCount(), graph.getEdgeCount(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static RoadGraph loadGraph(Resource resource) throws IOException {
+        if (resource.isFile()) {
+            return RoadGraph.load(resource.getFile().toPath());
+        }
+        // Resources packaged inside the jar cannot be memory-mapped
+        try (InputStream in = resource.getInputStream()) {
+            return RoadGraph.fromBytes(in.readAllBytes());
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "local-graph";
+    }
+
+    @Override
+    public double routeDistanceKm(double lat1, double lon1, double lat2, double lon2) {
+        int source = snap(lat1, lon1);
+        int target = snap(lat2, lon2);
+
+        double snapLegsKm = GeoMath.haversineKm(lat1, lon1, graph.latitude(source), graph.longitude(source))
+                + GeoMath.haversineKm(lat2, lon2, graph.latitude(target), graph.longitude(target));
+
+        long meters = shortestPathMeters(source, target);
+        if (meters < 0) {
+            throw new RoutingException("No road path between the given points");
+        }
+        return meters / 1000.0 + snapLegsKm;
+    }
+
+    private int snap(double lat, double lon) {
+        int node = graph.nearestNode(lat, lon, snapRings);
+        if (node < 0 || GeoMath.haversineKm(lat, lon, graph.latitude(node), graph.longitude(node)) > maxSnapKm) {
+            throw new RoutingException("Point (" + lat + ", " + lon + ") is outside the road graph");
+        }
+        return node;
+    }
+
+    /**
+     * A* over the graph
+     * @return Path length in meters, or -1 if the target is unreachable
+     */
+    long shortestPathMeters(int source, int target) {
+        if (source == target) {
+            return 0;
+        }
+        SearchState state = acquireState();
+        try {
+            return search(state, source, target);
+        } finally {
+            // Most recently used first, so the warm buffers keep being picked
+            idleStates.offerFirst(state);
+        }
+    }
+
+    private long search(SearchState state, int source, int target) {
+        state.reset();
+
+        double targetLat = graph.latitude(target);
+        double targetLon = graph.longitude(target);
+
+        state.setDistance(source, 0);
+        state.push(heuristic(source, targetLat, targetLon), source);
+
+        while (!state.isEmpty()) {
+            long entry = state.pop();
+            int node = (int) entry;
+            long estimate = entry >>> 32;
+            long distance = state.distance(node);
+            // Skip stale heap entries superseded by a shorter path
+            if (estimate > distance + heuristic(node, targetLat, targetLon)) {
+                continue;
+            }
+            if (node == target) {
+                return distance;
+            }
+            for (int edge = graph.firstEdge(node), end = graph.firstEdge(node + 1); edge < end; edge++) {
+                int next = graph.edgeTarget(edge);
+                long candidate = distance + graph.edgeLengthMeters(edge);
+                if (candidate < state.distance(next)) {
+                    state.setDistance(next, candidate);
+                    state.push(candidate + heuristic(next, targetLat, targetLon), next);
+                }
+            }
+        }
+        return -1;
+    }
+
+    private SearchState acquireState() {
+        SearchState state = idleStates.pollFirst();
+        if (state != null) {
+            return state;
+        }
+        if (createdStates.getAndUpdate(n -> n < maxSearchStates ? n + 1 : n) < maxSearchStates) {
+            return new SearchState(graph.getNodeCount());
+        }
+        try {
+            state = idleStates.pollFirst(searchWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (state == null) {
+            throw new RoutingException("No road graph search buffer free");
+        }
+        return state;
+    }
+
+    int getSearchStateCount() {
+        return createdStates.get();
+    }
+
+    private long heuristic(int node, double targetLat, double targetLon) {
+        // Floor keeps the bound admissible against integer edge lengths
+        return (long) (1000 * GeoMath.haversineKm(graph.latitude(node), graph.longitude(node), targetLat, targetLon));
+    }
+
+    /**
+     * Search buffers for one query at a time. Distances are invalidated in O(1) between queries by bumping
+     * a generation stamp instead of clearing the array.
+     */
+    private static final class SearchState {
+        private final long[] distance;
+        private final int[] stamp;
+        private int generation;
+        private long[] heap = new long[1024];
+        private int heapSize;
+
+        SearchState(int nodeCount) {
+            this.distance = new long[nodeCount];
+            this.stamp = new int[nodeCount];
+        }
+
+        void reset() {
+            heapSize = 0;
+            if (++generation == Integer.MAX_VALUE) {
+                Arrays.fill(stamp, 0);
+                generation = 1;
+            }
+        }
+
+        long distance(int node) {
+            return stamp[node] == generation ? distance[node] : Long.MAX_VALUE;
+        }
+
+        void setDistance(int node, long value) {
+            stamp[node] = generation;
+            distance[node] = value;
+        }
+
+        boolean isEmpty() {
+            return heapSize == 0;
+        }
+
+        // Heap entries pack (estimate << 32 | node) so ordering by the long orders by estimate
+        void push(long estimate, int node) {
+            if (heapSize == heap.length) {
+                heap = Arrays.copyOf(heap, heapSize * 2);
+            }
+            long entry = (Math.min(estimate, 0x7FFFFFFFL) << 32) | (node & 0xFFFFFFFFL);
+            int i = heapSize++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heap[parent] <= entry) {
+                    break;
+                }
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = entry;
+        }
+
+        long pop() {
+            long top = heap[0];
+            long last = heap[--heapSize];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= heapSize) {
+                    break;
+                }
+                if (child + 1 < heapSize && heap[child + 1] < heap[child]) {
+                    child++;
+                }
+                if (heap[child] >= last) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = last;
+            return top;
+        }
+    }
+}
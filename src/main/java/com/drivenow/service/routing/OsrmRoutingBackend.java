@@ -0,0 +1,190 @@
+package com.drivenow.service.routing;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Road distances from an OSRM server (public demo server or a local instance/stub)
+ */
+@Component
+@ConditionalOnProperty(name = "routing.backend", havingValue = "osrm", matchIfMissing = true)
+public class OsrmRoutingBackend implements RoutingBackend {
+
+    private final RestTemplate restTemplate;
+    private final HttpClient httpClient;
+    private final Duration readTimeout;
+    private final ObjectMapper objectMapper;
+    private final String baseUrl;
+    private final String profile;
+
+    public OsrmRoutingBackend(RestTemplateBuilder restTemplateBuilder,
+                              ObjectMapper objectMapper,
+                              @Value("${routing.osrm.base-url:http://router.project-osrm.org}") String baseUrl,
+                              @Value("${routing.osrm.profile:driving}") String profile,
+                              @Value("${routing.osrm.connect-timeout-ms:1000}") long connectTimeoutMs,
+                              @Value("${routing.osrm.read-timeout-ms:2500}") long readTimeoutMs) {
+        this.restTemplate = restTemplateBuilder
+                .setConnectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .setReadTimeout(Duration.ofMillis(readTimeoutMs))
+                .build();
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+        this.readTimeout = Duration.ofMillis(readTimeoutMs);
+        this.objectMapper = objectMapper;
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.profile = profile;
+    }
+
+    @Override
+    public String getName() {
+        return "osrm";
+    }
+
+    @Override
+    public double routeDistanceKm(double lat1, double lon1, double lat2, double lon2) {
+        String response;
+        try {
+            response = restTemplate.getForObject(routeUrl(lat1, lon1, lat2, lon2), String.class);
+        } catch (RestClientException e) {
+            throw new RoutingException("OSRM request failed: " + e.getMessage(), e);
+        }
+        return parseRouteResponse(response);
+    }
+
+    /**
+     * Non-blocking variant on the JDK HttpClient: no thread waits on the socket while
+     * OSRM is responding, and the request timeout bounds the whole exchange.
+     */
+    @Override
+    public CompletableFuture<Double> routeDistanceKmAsync(double lat1, double lon1, double lat2, double lon2) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(routeUrl(lat1, lon1, lat2, lon2)))
+                .timeout(readTimeout)
+                .GET()
+                .build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> {
+                    if (response.statusCode() != 200) {
+                        throw new RoutingException("OSRM returned HTTP " + response.statusCode());
+                    }
+                    return parseRouteResponse(response.body());
+                });
+    }
+
+    private String routeUrl(double lat1, double lon1, double lat2, double lon2) {
+        // OSRM expects lon,lat order
+        return String.format(Locale.ROOT, "%s/route/v1/%s/%f,%f;%f,%f?overview=false",
+                baseUrl, profile, lon1, lat1, lon2, lat2);
+    }
+
+    private double parseRouteResponse(String response) {
+        if (response == null || response.isEmpty()) {
+            throw new RoutingException("OSRM returned an empty response");
+        }
+
+        try {
+            JsonNode root = objectMapper.readTree(response);
+            if (!"Ok".equals(root.path("code").asText())) {
+                throw new RoutingException("OSRM returned code " + root.path("code").asText());
+            }
+            JsonNode routes = root.path("routes");
+            if (routes.size() == 0) {
+                throw new RoutingException("OSRM returned no routes");
+            }
+            // Distance is in meters, convert to kilometers
+            return routes.get(0).path("distance").asDouble() / 1000.0;
+        } catch (RoutingException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RoutingException("Error parsing OSRM response: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public boolean supportsMatrix() {
+        return true;
+    }
+
+    /**
+     * Uses the OSRM table service: all origins and destinations go into one coordinate
+     * list and the sources/destinations parameters select the rows and columns.
+     */
+    @Override
+    public double[][] distanceMatrixKm(double[] originLats, double[] originLons,
+                                       double[] destinationLats, double[] destinationLons) {
+        int origins = originLats.length;
+        int destinations = destinationLats.length;
+
+        StringBuilder coordinates = new StringBuilder();
+        StringBuilder sources = new StringBuilder();
+        StringBuilder targets = new StringBuilder();
+        for (int i = 0; i < origins; i++) {
+            appendCoordinate(coordinates, originLats[i], originLons[i]);
+            sources.append(i == 0 ? "" : ";").append(i);
+        }
+        for (int j = 0; j < destinations; j++) {
+            appendCoordinate(coordinates, destinationLats[j], destinationLons[j]);
+            targets.append(j == 0 ? "" : ";").append(origins + j);
+        }
+
+        String url = String.format(Locale.ROOT, "%s/table/v1/%s/%s?sources=%s&destinations=%s&annotations=distance",
+                baseUrl, profile, coordinates, sources, targets);
+
+        String response;
+        try {
+            response = restTemplate.getForObject(url, String.class);
+        } catch (RestClientException e) {
+            throw new RoutingException("OSRM table request failed: " + e.getMessage(), e);
+        }
+
+        if (response == null || response.isEmpty()) {
+            throw new RoutingException("OSRM returned an empty response");
+        }
+
+        try {
+            JsonNode root = objectMapper.readTree(response);
+            if (!"Ok".equals(root.path("code").asText())) {
+                throw new RoutingException("OSRM returned code " + root.path("code").asText());
+            }
+            JsonNode rows = root.path("distances");
+            if (rows.size() != origins) {
+                throw new RoutingException("OSRM table returned " + rows.size() + " rows, expected " + origins);
+            }
+            double[][] result = new double[origins][destinations];
+            for (int i = 0; i < origins; i++) {
+                JsonNode row = rows.get(i);
+                for (int j = 0; j < destinations; j++) {
+                    JsonNode cell = row.get(j);
+                    // OSRM reports unreachable pairs as null
+                    result[i][j] = cell == null || cell.isNull() ? Double.NaN : cell.asDouble() / 1000.0;
+                }
+            }
+            return result;
+        } catch (RoutingException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RoutingException("Error parsing OSRM table response: " + e.getMessage(), e);
+        }
+    }
+
+    private static void appendCoordinate(StringBuilder coordinates, double lat, double lon) {
+        if (coordinates.length() > 0) {
+            coordinates.append(';');
+        }
+        coordinates.append(String.format(Locale.ROOT, "%f,%f", lon, lat));
+    }
+}
@@ -0,0 +1,188 @@
+package com.drivenow.service.routing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Read-only road graph in compressed sparse row form, memory-mapped from a file written by
+ * RoadGraphWriter. Node coordinates, adjacency offsets, edge targets and edge lengths are
+ * int views over the mapped file, so loading does not copy the edge arrays onto the heap.
+ *
+ * File layout (little-endian ints):
+ * magic, version, nodeCount, edgeCount,
+ * latE6[nodeCount], lonE6[nodeCount], firstEdge[nodeCount + 1],
+ * edgeTarget[edgeCount], edgeLengthMeters[edgeCount]
+ */
+public final class RoadGraph {
+
+    static final int MAGIC = 0x47524E44; // "DNRG"
+    static final int VERSION = 1;
+    static final int HEADER_INTS = 4;
+
+    // Grid cell size for the snapping index, in microdegrees (~1.1 km of latitude)
+    private static final int CELL_E6 = 10_000;
+
+    private final int nodeCount;
+    private final int edgeCount;
+    private final IntBuffer latE6;
+    private final IntBuffer lonE6;
+    private final IntBuffer firstEdge;
+    private final IntBuffer edgeTarget;
+    private final IntBuffer edgeLength;
+
+    // Snapping index: node ids sorted by grid cell, with sorted cell keys and start offsets
+    private final long[] cellKeys;
+    private final int[] cellStart;
+    private final int[] cellNodes;
+
+    private RoadGraph(IntBuffer ints) {
+        if (ints.get(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a road graph file (bad magic)");
+        }
+        if (ints.get(1) != VERSION) {
+            throw new IllegalArgumentException("Unsupported road graph version " + ints.get(1));
+        }
+        this.nodeCount = ints.get(2);
+        this.edgeCount = ints.get(3);
+
+        long expectedInts = HEADER_INTS + 3L * nodeCount + 1 + 2L * edgeCount;
+        if (ints.limit() < expectedInts) {
+            throw new IllegalArgumentException("Truncated road graph file");
+        }
+
+        int position = HEADER_INTS;
+        this.latE6 = slice(ints, position, nodeCount);
+        position += nodeCount;
+        this.lonE6 = slice(ints, position, nodeCount);
+        position += nodeCount;
+        this.firstEdge = slice(ints, position, nodeCount + 1);
+        position += nodeCount + 1;
+        this.edgeTarget = slice(ints, position, edgeCount);
+        position += edgeCount;
+        this.edgeLength = slice(ints, position, edgeCount);
+
+        // Build the grid index
+        long[] nodeCell = new long[nodeCount];
+        Integer[] order = new Integer[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            nodeCell[node] = cellKey(Math.floorDiv(latE6.get(node), CELL_E6), Math.floorDiv(lonE6.get(node), CELL_E6));
+            order[node] = node;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(nodeCell[a], nodeCell[b]));
+
+        this.cellNodes = new int[nodeCount];
+        long[] keys = new long[nodeCount];
+        int[] starts = new int[nodeCount + 1];
+        int cells = 0;
+        for (int i = 0; i < nodeCount; i++) {
+            int node = order[i];
+            cellNodes[i] = node;
+            if (cells == 0 || keys[cells - 1] != nodeCell[node]) {
+                keys[cells] = nodeCell[node];
+                starts[cells] = i;
+                cells++;
+            }
+        }
+        starts[cells] = nodeCount;
+        this.cellKeys = Arrays.copyOf(keys, cells);
+        this.cellStart = Arrays.copyOf(starts, cells + 1);
+    }
+
+    /**
+     * Memory-map a graph file
+     */
+    public static RoadGraph load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new RoadGraph(mapped.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer());
+        }
+    }
+
+    /**
+     * Wrap an in-memory graph image (used for classpath resources that cannot be mapped)
+     */
+    public static RoadGraph fromBytes(byte[] bytes) {
+        return new RoadGraph(ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer());
+    }
+
+    private static IntBuffer slice(IntBuffer ints, int offset, int length) {
+        return ints.slice(offset, length);
+    }
+
+    private static long cellKey(int cellLat, int cellLon) {
+        return ((long) cellLat << 32) | (cellLon & 0xFFFFFFFFL);
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    public double latitude(int node) {
+        return latE6.get(node) / 1e6;
+    }
+
+    public double longitude(int node) {
+        return lonE6.get(node) / 1e6;
+    }
+
+    public int firstEdge(int node) {
+        return firstEdge.get(node);
+    }
+
+    public int edgeTarget(int edge) {
+        return edgeTarget.get(edge);
+    }
+
+    public int edgeLengthMeters(int edge) {
+        return edgeLength.get(edge);
+    }
+
+    /**
+     * Nearest node to a coordinate, searching grid rings outward up to maxRings cells
+     * @return Node id, or -1 if no node is within the searched rings
+     */
+    public int nearestNode(double lat, double lon, int maxRings) {
+        int cellLat = Math.floorDiv((int) Math.round(lat * 1e6), CELL_E6);
+        int cellLon = Math.floorDiv((int) Math.round(lon * 1e6), CELL_E6);
+        int best = -1;
+        double bestDistance = Double.MAX_VALUE;
+
+        for (int ring = 0; ring <= maxRings; ring++) {
+            for (int dLat = -ring; dLat <= ring; dLat++) {
+                for (int dLon = -ring; dLon <= ring; dLon++) {
+                    if (Math.abs(dLat) != ring && Math.abs(dLon) != ring) {
+                        continue; // interior cells were visited by earlier rings
+                    }
+                    int index = Arrays.binarySearch(cellKeys, cellKey(cellLat + dLat, cellLon + dLon));
+                    if (index < 0) {
+                        continue;
+                    }
+                    for (int i = cellStart[index]; i < cellStart[index + 1]; i++) {
+                        int node = cellNodes[i];
+                        double distance = GeoMath.equirectangularKm(lat, lon, latitude(node), longitude(node));
+                        if (distance < bestDistance) {
+                            bestDistance = distance;
+                            best = node;
+                        }
+                    }
+                }
+            }
+            // A hit in ring r can still be beaten by a node in ring r + 1, so search one more ring
+            if (best >= 0 && ring < maxRings) {
+                maxRings = ring + 1;
+            }
+        }
+        return best;
+    }
+}
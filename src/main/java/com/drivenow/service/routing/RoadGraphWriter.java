@@ -0,0 +1,162 @@
+package com.drivenow.service.routing;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Builds the binary graph file read by RoadGraph.
+ *
+ * Usage as a preprocessing tool, from a region extract already reduced to CSV:
+ * <pre>
+ * java -cp app.jar com.drivenow.service.routing.RoadGraphWriter nodes.csv edges.csv region.graph
+ * </pre>
+ * nodes.csv: {@code id,lat,lon} with ids 0..n-1;
+ * edges.csv: {@code from,to,meters[,oneway]} where oneway is 1 for one-way roads.
+ */
+public class RoadGraphWriter {
+
+    private int[] latE6 = new int[1024];
+    private int[] lonE6 = new int[1024];
+    private int nodeCount;
+
+    private int[] edgeFrom = new int[4096];
+    private int[] edgeTo = new int[4096];
+    private int[] edgeLength = new int[4096];
+    private int edgeCount;
+
+    public int addNode(double lat, double lon) {
+        if (nodeCount == latE6.length) {
+            latE6 = Arrays.copyOf(latE6, nodeCount * 2);
+            lonE6 = Arrays.copyOf(lonE6, nodeCount * 2);
+        }
+        latE6[nodeCount] = (int) Math.round(lat * 1e6);
+        lonE6[nodeCount] = (int) Math.round(lon * 1e6);
+        return nodeCount++;
+    }
+
+    /**
+     * Directed edge. Lengths shorter than the straight-line distance are raised to it so the
+     * great-circle heuristic used by LocalGraphRoutingBackend stays admissible.
+     */
+    public void addEdge(int from, int to, int lengthMeters) {
+        if (from < 0 || from >= nodeCount || to < 0 || to >= nodeCount) {
+            throw new IllegalArgumentException("Edge references unknown node: " + from + " -> " + to);
+        }
+        if (edgeCount == edgeFrom.length) {
+            edgeFrom = Arrays.copyOf(edgeFrom, edgeCount * 2);
+            edgeTo = Arrays.copyOf(edgeTo, edgeCount * 2);
+            edgeLength = Arrays.copyOf(edgeLength, edgeCount * 2);
+        }
+        int straightLine = (int) Math.ceil(1000 * GeoMath.haversineKm(
+                latE6[from] / 1e6, lonE6[from] / 1e6, latE6[to] / 1e6, lonE6[to] / 1e6));
+        edgeFrom[edgeCount] = from;
+        edgeTo[edgeCount] = to;
+        edgeLength[edgeCount] = Math.max(lengthMeters, straightLine);
+        edgeCount++;
+    }
+
+    /**
+     * Two-way road
+     */
+    public void addRoad(int a, int b, int lengthMeters) {
+        addEdge(a, b, lengthMeters);
+        addEdge(b, a, lengthMeters);
+    }
+
+    public void write(Path path) throws IOException {
+        // Counting sort of edges by source node into CSR form
+        int[] firstEdge = new int[nodeCount + 1];
+        for (int e = 0; e < edgeCount; e++) {
+            firstEdge[edgeFrom[e] + 1]++;
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            firstEdge[node + 1] += firstEdge[node];
+        }
+        int[] cursor = Arrays.copyOf(firstEdge, nodeCount);
+        int[] targets = new int[edgeCount];
+        int[] lengths = new int[edgeCount];
+        for (int e = 0; e < edgeCount; e++) {
+            int slot = cursor[edgeFrom[e]]++;
+            targets[slot] = edgeTo[e];
+            lengths[slot] = edgeLength[e];
+        }
+
+        ByteBuffer buffer = ByteBuffer
+                .allocate(4 * (RoadGraph.HEADER_INTS + 3 * nodeCount + 1 + 2 * edgeCount))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(RoadGraph.MAGIC).putInt(RoadGraph.VERSION).putInt(nodeCount).putInt(edgeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            buffer.putInt(latE6[i]);
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            buffer.putInt(lonE6[i]);
+        }
+        for (int value : firstEdge) {
+            buffer.putInt(value);
+        }
+        for (int value : targets) {
+            buffer.putInt(value);
+        }
+        for (int value : lengths) {
+            buffer.putInt(value);
+        }
+
+        try (OutputStream out = Files.newOutputStream(path)) {
+            out.write(buffer.array());
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Usage: RoadGraphWriter nodes.csv edges.csv output.graph");
+            System.exit(1);
+        }
+
+        RoadGraphWriter writer = new RoadGraphWriter();
+        try (BufferedReader reader = Files.newBufferedReader(Path.of(args[0]))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(",");
+                if (!isDataRow(parts)) {
+                    continue; // header or blank line
+                }
+                int id = writer.addNode(Double.parseDouble(parts[1].trim()), Double.parseDouble(parts[2].trim()));
+                if (id != Integer.parseInt(parts[0].trim())) {
+                    throw new IllegalArgumentException("Node ids must be dense and in order, got " + parts[0]);
+                }
+            }
+        }
+        try (BufferedReader reader = Files.newBufferedReader(Path.of(args[1]))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(",");
+                if (!isDataRow(parts)) {
+                    continue;
+                }
+                int from = Integer.parseInt(parts[0].trim());
+                int to = Integer.parseInt(parts[1].trim());
+                int meters = (int) Math.round(Double.parseDouble(parts[2].trim()));
+                boolean oneWay = parts.length > 3 && "1".equals(parts[3].trim());
+                if (oneWay) {
+                    writer.addEdge(from, to, meters);
+                } else {
+                    writer.addRoad(from, to, meters);
+                }
+            }
+        }
+
+        writer.write(Path.of(args[2]));
+        System.out.println("Wrote " + writer.nodeCount + " nodes and " + writer.edgeCount + " edges to " + args[2]);
+    }
+
+    private static boolean isDataRow(String[] parts) {
+        String first = parts[0].trim();
+        return parts.length >= 3 && !first.isEmpty() && Character.isDigit(first.charAt(0));
+    }
+}
@@ -0,0 +1,51 @@
+package com.drivenow.service.routing;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Pluggable road-distance provider used by DistanceCalculationService.
+ * Implementations throw RoutingException when they cannot produce a route,
+ * so the caller can fall back to the Haversine distance.
+ */
+public interface RoutingBackend {
+
+    /**
+     * Short identifier used in logs and metric tags (e.g. "osrm")
+     */
+    String getName();
+
+    /**
+     * Road distance between two coordinates
+     * @return Distance in kilometers (unrounded)
+     */
+    double routeDistanceKm(double lat1, double lon1, double lat2, double lon2);
+
+    /**
+     * Asynchronous road distance. Backends with a non-blocking client should override this;
+     * the default simply completes with the blocking result on the calling thread.
+     * @return Future completing with the distance in kilometers, or exceptionally on failure
+     */
+    default CompletableFuture<Double> routeDistanceKmAsync(double lat1, double lon1, double lat2, double lon2) {
+        try {
+            return CompletableFuture.completedFuture(routeDistanceKm(lat1, lon1, lat2, lon2));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Whether this backend can answer a whole origin/destination matrix in one call
+     */
+    default boolean supportsMatrix() {
+        return false;
+    }
+
+    /**
+     * Road distances for every origin/destination pair in one call
+     * @return Matrix in kilometers where result[i][j] is origin i to destination j
+     */
+    default double[][] distanceMatrixKm(double[] originLats, double[] originLons,
+                                        double[] destinationLats, double[] destinationLons) {
+        throw new UnsupportedOperationException(getName() + " does not support distance matrices");
+    }
+}
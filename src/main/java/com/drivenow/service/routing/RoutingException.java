@@ -0,0 +1,14 @@
+package com.drivenow.service.routing;
+
+public class RoutingException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public RoutingException(String message) {
+        super(message);
+    }
+
+    public RoutingException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
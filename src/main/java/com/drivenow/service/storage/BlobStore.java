@@ -0,0 +1,157 @@
+package com.drivenow.service.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed files on local disk. A blob is stored once under the SHA-256 of its
+ * bytes (root/ab/cd/abcd...), so identical uploads share a file and a stored blob never
+ * changes. Uploads are streamed to a temporary file while hashing and then moved into place.
+ *
+ * Storing content that is already present refreshes the file's modification time, and
+ * deleteIfIdle only removes blobs untouched for a grace period. Owners release a blob some
+ * time after its last reference is gone, so an upload of the same content whose reference
+ * is not committed yet keeps the file alive.
+ */
+@Component
+@Slf4j
+public class BlobStore {
+
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final Path root;
+    private final Path incoming;
+    // Serializes placing and deleting the same hash
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    public record StoredBlob(String hash, long size) {
+    }
+
+    public BlobStore(@Value("${storage.blob.path:./data/blobs}") String path) throws IOException {
+        this.root = Paths.get(path).toAbsolutePath().normalize();
+        this.incoming = root.resolve("incoming");
+        Files.createDirectories(incoming);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        log.info("Blob store at {}", root);
+    }
+
+    /**
+     * Store a stream, returning its hash and size
+     * @param maxBytes Reject streams longer than this
+     */
+    public StoredBlob put(InputStream in, long maxBytes) throws IOException {
+        MessageDigest digest = sha256();
+        Path temp = Files.createTempFile(incoming, "upload-", ".tmp");
+        try {
+            long size = 0;
+            byte[] buffer = new byte[64 * 1024];
+            try (OutputStream out = new DigestOutputStream(Files.newOutputStream(temp), digest)) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    size += read;
+                    if (size > maxBytes) {
+                        throw new IOException("Blob exceeds " + maxBytes + " bytes");
+                    }
+                    out.write(buffer, 0, read);
+                }
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+            Path target = path(hash);
+            synchronized (lockFor(hash)) {
+                if (Files.exists(target)) {
+                    // Restart the grace period of a blob that may be awaiting deletion
+                    Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+                } else {
+                    Files.createDirectories(target.getParent());
+                    try {
+                        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                    } catch (AtomicMoveNotSupportedException e) {
+                        Files.move(temp, target);
+                    } catch (FileAlreadyExistsException e) {
+                        // Same content stored concurrently
+                    }
+                }
+            }
+            return new StoredBlob(hash, size);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public boolean exists(String hash) {
+        return Files.exists(path(hash));
+    }
+
+    public long size(String hash) throws IOException {
+        return Files.size(path(hash));
+    }
+
+    public void delete(String hash) throws IOException {
+        synchronized (lockFor(hash)) {
+            Files.deleteIfExists(path(hash));
+        }
+    }
+
+    /**
+     * Delete a blob unless it was stored within the grace period
+     * @return false if the blob is too recent and was kept
+     */
+    public boolean deleteIfIdle(String hash, Duration grace) throws IOException {
+        Path target = path(hash);
+        synchronized (lockFor(hash)) {
+            if (!Files.exists(target)) {
+                return true;
+            }
+            if (Files.getLastModifiedTime(target).toInstant().isAfter(Instant.now().minus(grace))) {
+                return false;
+            }
+            Files.delete(target);
+            return true;
+        }
+    }
+
+    /**
+     * File holding a blob. Hashes are validated, so a path can never leave the store.
+     */
+    public Path path(String hash) {
+        if (hash == null || !HASH.matcher(hash).matches()) {
+            throw new IllegalArgumentException("Invalid blob hash");
+        }
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    private Object lockFor(String hash) {
+        return locks[Math.floorMod(hash.hashCode(), LOCK_STRIPES)];
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.drivenow.service.telemetry;
+
+import java.util.Arrays;
+
+/**
+ * Compact binary encoding for GPS breadcrumbs.
+ *
+ * Coordinates are fixed-point degrees at 1e-5 (~1.1 m) and timestamps are epoch millis.
+ * Each point is stored as the zig-zag varint delta from the previous one (the first point
+ * from zero), so consecutive points a second apart usually take 3-5 bytes instead of 24.
+ *
+ * Layout: varint count, then count x (lat delta, lon delta, time delta).
+ */
+public final class BreadcrumbCodec {
+
+    public static final double SCALE = 1e5;
+
+    // Worst case per point: two 32-bit and one 64-bit zig-zag varint
+    private static final int MAX_BYTES_PER_POINT = 5 + 5 + 10;
+
+    private BreadcrumbCodec() {
+    }
+
+    public static int toFixed(double degrees) {
+        return (int) Math.round(degrees * SCALE);
+    }
+
+    public static double toDegrees(int fixed) {
+        return fixed / SCALE;
+    }
+
+    public static byte[] encode(int[] lats, int[] lons, long[] times, int count) {
+        byte[] out = new byte[5 + count * MAX_BYTES_PER_POINT];
+        int pos = writeVarint(out, 0, count);
+        int prevLat = 0;
+        int prevLon = 0;
+        long prevTime = 0;
+        for (int i = 0; i < count; i++) {
+            pos = writeVarint(out, pos, zigZag((long) lats[i] - prevLat));
+            pos = writeVarint(out, pos, zigZag((long) lons[i] - prevLon));
+            pos = writeVarint(out, pos, zigZag(times[i] - prevTime));
+            prevLat = lats[i];
+            prevLon = lons[i];
+            prevTime = times[i];
+        }
+        return Arrays.copyOf(out, pos);
+    }
+
+    /**
+     * Decoded points; arrays are exactly count long
+     */
+    public record Points(int[] lats, int[] lons, long[] times) {
+        public int count() {
+            return lats.length;
+        }
+    }
+
+    public static Points decode(byte[] data) {
+        int[] cursor = {0};
+        int count = (int) readVarint(data, cursor);
+        int[] lats = new int[count];
+        int[] lons = new int[count];
+        long[] times = new long[count];
+        int lat = 0;
+        int lon = 0;
+        long time = 0;
+        for (int i = 0; i < count; i++) {
+            lat += (int) unZigZag(readVarint(data, cursor));
+            lon += (int) unZigZag(readVarint(data, cursor));
+            time += unZigZag(readVarint(data, cursor));
+            lats[i] = lat;
+            lons[i] = lon;
+            times[i] = time;
+        }
+        return new Points(lats, lons, times);
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int writeVarint(byte[] out, int pos, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[pos++] = (byte) value;
+        return pos;
+    }
+
+    private static long readVarint(byte[] data, int[] cursor) {
+        long result = 0;
+        int shift = 0;
+        while (true) {
+            if (cursor[0] >= data.length || shift > 63) {
+                throw new IllegalArgumentException("Truncated or corrupt breadcrumb data");
+            }
+            byte b = data[cursor[0]++];
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+            shift += 7;
+        }
+    }
+}
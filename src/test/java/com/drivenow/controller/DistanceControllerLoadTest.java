@@ -0,0 +1,128 @@
+package com.drivenow.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Load test for the asynchronous distance endpoint: many concurrent requests against a
+ * deliberately slow OSRM stub, with Tomcat limited to a handful of request threads. A blocking
+ * controller would serve them in waves of TOMCAT_THREADS; the async path keeps all of them in
+ * flight upstream at once.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "server.tomcat.threads.max=" + DistanceControllerLoadTest.TOMCAT_THREADS,
+        "server.tomcat.threads.min-spare=" + DistanceControllerLoadTest.TOMCAT_THREADS,
+        "routing.osrm.connect-timeout-ms=5000",
+        "routing.osrm.read-timeout-ms=5000"
+})
+@ActiveProfiles("test")
+class DistanceControllerLoadTest {
+
+    static final int TOMCAT_THREADS = 10;
+    private static final int CONCURRENT_REQUESTS = 200;
+    private static final long STUB_LATENCY_MS = 1000;
+
+    private static final AtomicInteger inFlight = new AtomicInteger();
+    private static final AtomicInteger maxInFlight = new AtomicInteger();
+    private static HttpServer osrmStub;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @DynamicPropertySource
+    static void osrmStub(DynamicPropertyRegistry registry) throws IOException {
+        osrmStub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), CONCURRENT_REQUESTS);
+        osrmStub.setExecutor(Executors.newFixedThreadPool(CONCURRENT_REQUESTS));
+        osrmStub.createContext("/route/", exchange -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(STUB_LATENCY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            byte[] body = "{\"code\":\"Ok\",\"routes\":[{\"distance\":12345.0}]}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        osrmStub.start();
+        registry.add("routing.osrm.base-url", () -> "http://127.0.0.1:" + osrmStub.getAddress().getPort());
+    }
+
+    @AfterAll
+    static void stopStub() {
+        osrmStub.stop(0);
+    }
+
+    @Test
+    void slowUpstreamDoesNotHoldRequestThreads() throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newFixedThreadPool(16))
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        URI uri = URI.create("http://127.0.0.1:" + port + "/api/distance/calculate");
+
+        long start = System.nanoTime();
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+            // Distinct origins so no request is answered from the distance cache
+            String body = String.format(Locale.ROOT,
+                    "{\"lat1\":%f,\"lon1\":79.86,\"lat2\":7.29,\"lon2\":80.63}", 6.90 + i * 0.001);
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                    .header("Content-Type", "application/json")
+                    .timeout(Duration.ofSeconds(30))
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+        }
+        CompletableFuture.allOf(responses.toArray(CompletableFuture[]::new)).get(60, TimeUnit.SECONDS);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        for (CompletableFuture<HttpResponse<String>> response : responses) {
+            assertThat(response.get().statusCode()).isEqualTo(200);
+            JsonNode json = objectMapper.readTree(response.get().body());
+            // 12.35 is the stub's routed distance; the Haversine fallback would be about 90 km
+            assertThat(json.path("distanceKm").asDouble()).isEqualTo(12.35);
+        }
+
+        // Blocking, the requests would take CONCURRENT_REQUESTS / TOMCAT_THREADS stub round trips
+        long blockingMs = CONCURRENT_REQUESTS / TOMCAT_THREADS * STUB_LATENCY_MS;
+        assertThat(maxInFlight.get()).isGreaterThan(TOMCAT_THREADS * 5);
+        assertThat(elapsedMs).isLessThan(blockingMs / 3);
+    }
+}
@@ -0,0 +1,194 @@
+package com.drivenow.controller;
+
+import com.drivenow.entity.Booking;
+import com.drivenow.entity.User;
+import com.drivenow.entity.Vehicle;
+import com.drivenow.repository.BookingRepository;
+import com.drivenow.repository.UserRepository;
+import com.drivenow.repository.VehicleRepository;
+import com.drivenow.security.JwtUtil;
+import com.drivenow.service.TripTrackingService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Load test for trip tracking streams: SUBSCRIBERS clients follow one live trip over HTTP, every
+ * position published reaches all of them, and once they disconnect the subscriber gauge returns
+ * to zero. Defaults to 1000 streams; for the 10k run, pass -Dtracking.load.subscribers=10000.
+ * Client and server share this JVM, so that needs an open file limit above 20k
+ * (ulimit -n) on top of what the JVM itself holds.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class TripTrackingLoadTest {
+
+    private static final int SUBSCRIBERS = Integer.getInteger("tracking.load.subscribers", 1000);
+    private static final int POSITIONS = 5;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TripTrackingService tripTrackingService;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private VehicleRepository vehicleRepository;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Test
+    void everySubscriberGetsEveryPositionAndTheGaugeReturnsToZero() throws Exception {
+        User customer = userRepository.findByEmail("user@drivenow.com").orElseThrow();
+        User driver = createDriver();
+        Booking trip = createLiveTrip(customer, driver);
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newFixedThreadPool(16))
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/api/bookings/" + trip.getId() + "/track"))
+                .header("Authorization", "Bearer " + jwtUtil.generateToken(customer.getEmail()))
+                .header("Accept", "text/event-stream")
+                .GET()
+                .build();
+
+        // The response futures complete when a stream ends, so connect failures are counted as they happen
+        List<EventCounter> streams = new ArrayList<>();
+        AtomicInteger failedConnects = new AtomicInteger();
+        for (int i = 0; i < SUBSCRIBERS; i++) {
+            EventCounter stream = new EventCounter();
+            streams.add(stream);
+            client.sendAsync(request, info -> {
+                if (info.statusCode() != 200) {
+                    failedConnects.incrementAndGet();
+                }
+                return HttpResponse.BodySubscribers.fromLineSubscriber(stream);
+            }).exceptionally(e -> {
+                if (stream.snapshots.get() == 0) {
+                    failedConnects.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        // Every connect authenticates its token, which takes this JVM about 50 a second
+        awaitTrue(Duration.ofSeconds(60 + SUBSCRIBERS / 20), () -> failedConnects.get() > 0
+                || streams.stream().allMatch(stream -> stream.snapshots.get() == 1));
+        assertThat(failedConnects).hasValue(0);
+        assertThat(tripTrackingService.getSubscriberCount()).isEqualTo(SUBSCRIBERS);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < POSITIONS; i++) {
+            tripTrackingService.publishDriverPosition(driver.getId(), 6.90 + i * 0.001, 79.86);
+            int published = i + 1;
+            awaitTrue(Duration.ofSeconds(60), () -> streams.stream().allMatch(stream -> stream.positions.get() == published));
+        }
+        long deliveryMs = (System.nanoTime() - start) / 1_000_000;
+        System.out.printf("%d subscribers: %d positions delivered to all in %d ms%n", SUBSCRIBERS, POSITIONS, deliveryMs);
+
+        // Closed connections are noticed on the next write, so keep the heartbeat going
+        streams.forEach(EventCounter::disconnect);
+        awaitTrue(Duration.ofSeconds(60), () -> {
+            tripTrackingService.heartbeat();
+            return tripTrackingService.getSubscriberCount() == 0;
+        });
+    }
+
+    /**
+     * Counts the named events on one stream
+     */
+    private static final class EventCounter implements Flow.Subscriber<String> {
+        final AtomicInteger snapshots = new AtomicInteger();
+        final AtomicInteger positions = new AtomicInteger();
+        private volatile Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(String line) {
+            if (line.equals("event:snapshot")) {
+                snapshots.incrementAndGet();
+            } else if (line.equals("event:position")) {
+                positions.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+
+        void disconnect() {
+            subscription.cancel();
+        }
+    }
+
+    private User createDriver() {
+        User driver = new User();
+        driver.setName("Load Driver");
+        driver.setEmail("load-driver-" + UUID.randomUUID() + "@test.local");
+        driver.setPassword("unused");
+        driver.setRole(User.Role.DRIVER);
+        driver.setStatus(User.Status.ACTIVE);
+        driver.setAvailable(true);
+        return userRepository.save(driver);
+    }
+
+    private Booking createLiveTrip(User customer, User driver) {
+        Vehicle vehicle = vehicleRepository.findAll().get(0);
+        Booking booking = new Booking();
+        booking.setBookingNumber("T-" + UUID.randomUUID());
+        booking.setUser(customer);
+        booking.setVehicle(vehicle);
+        booking.setDriver(driver);
+        booking.setStatus(Booking.BookingStatus.ONGOING);
+        booking.setStartDate(LocalDate.now());
+        booking.setEndDate(LocalDate.now());
+        booking.setTotalPrice(BigDecimal.valueOf(100));
+        booking.setPickupLocation("Colombo");
+        booking.setDropoffLocation("Kandy");
+        return bookingRepository.save(booking);
+    }
+
+    private static void awaitTrue(Duration timeout, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition not met in time").isLessThan(deadline);
+            Thread.sleep(50);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.drivenow.repository;
+
+import com.drivenow.entity.DeletionJob;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class DeletionJobRepositoryTest {
+
+    @Autowired
+    private DeletionJobRepository jobRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void oneInstanceHoldsAJobUntilItsLeaseRunsOut() {
+        DeletionJob job = new DeletionJob();
+        job.setTargetType(DeletionJob.TargetType.VEHICLE);
+        job.setTargetId(-1L);
+        Long id = jobRepository.save(job).getId();
+        LocalDateTime now = LocalDateTime.now();
+
+        assertThat(claim(id, "a", now, now.plusMinutes(2))).isEqualTo(1);
+        assertThat(claim(id, "b", now, now.plusMinutes(2))).isZero();
+        assertThat(renew(id, "b", now.plusMinutes(2))).isZero();
+        assertThat(renew(id, "a", now.plusMinutes(2))).isEqualTo(1);
+
+        // a stopped renewing
+        LocalDateTime later = now.plusMinutes(3);
+        assertThat(claim(id, "b", later, later.plusMinutes(2))).isEqualTo(1);
+        assertThat(renew(id, "a", later.plusMinutes(2))).isZero();
+
+        jobRepository.deleteById(id);
+    }
+
+    private int claim(Long id, String owner, LocalDateTime now, LocalDateTime leaseUntil) {
+        return transactionTemplate.execute(status -> jobRepository.claim(id, owner, now, leaseUntil));
+    }
+
+    private int renew(Long id, String owner, LocalDateTime leaseUntil) {
+        return transactionTemplate.execute(status -> jobRepository.renewLease(id, owner, leaseUntil));
+    }
+}
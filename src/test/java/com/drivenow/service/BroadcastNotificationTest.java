@@ -0,0 +1,179 @@
+package com.drivenow.service;
+
+import com.drivenow.dto.NotificationRecipient;
+import com.drivenow.entity.BroadcastNotification;
+import com.drivenow.entity.Notification;
+import com.drivenow.entity.User;
+import com.drivenow.repository.BroadcastNotificationRepository;
+import com.drivenow.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class BroadcastNotificationTest {
+
+    private static final int CONTENDERS = 8;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private BroadcastNotificationService broadcastService;
+
+    @Autowired
+    private BroadcastNotificationRepository broadcastRepository;
+
+    @Autowired
+    private NotificationArchiveService notificationArchiveService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void concurrentFirstMarksOfAUserAllApply() throws Exception {
+        User user = createUser();
+        List<Long> broadcastIds = new ArrayList<>();
+        for (int i = 0; i < CONTENDERS; i++) {
+            broadcastIds.add(createBroadcast("Race " + i).getId());
+        }
+
+        // The user has no read state row yet; every thread tries to create it
+        ExecutorService threads = Executors.newFixedThreadPool(CONTENDERS);
+        try {
+            CountDownLatch go = new CountDownLatch(1);
+            List<Future<?>> marks = new ArrayList<>();
+            for (Long broadcastId : broadcastIds) {
+                marks.add(threads.submit(() -> {
+                    go.await();
+                    notificationService.markBroadcastAsRead(user.getId(), broadcastId, user.getEmail());
+                    return null;
+                }));
+            }
+            go.countDown();
+            for (Future<?> mark : marks) {
+                mark.get();
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+
+        List<Notification> feed = broadcastService.getFeed(broadcastService.getRecipient(user.getId()));
+        assertThat(feed).filteredOn(entry -> broadcastIds.contains(entry.getBroadcastId()))
+                .hasSize(CONTENDERS)
+                .allMatch(Notification::getIsRead);
+    }
+
+    @Test
+    void broadcastFeedEntriesNeverShareANotificationId() {
+        User user = createUser();
+        BroadcastNotification broadcast = createBroadcast("Feed id");
+
+        Notification entry = broadcastService.getFeed(broadcastService.getRecipient(user.getId())).stream()
+                .filter(candidate -> broadcast.getId().equals(candidate.getBroadcastId()))
+                .findFirst().orElseThrow();
+
+        assertThat(entry.isBroadcast()).isTrue();
+        assertThat(entry.getId()).isEqualTo(-broadcast.getId());
+        assertThatThrownBy(() -> notificationService.markAsRead(entry.getId(), user.getEmail()))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> notificationService.deleteNotification(entry.getId(), user.getEmail()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void adminsCannotMarkAnotherUsersBroadcasts() {
+        User user = createUser();
+        BroadcastNotification broadcast = createBroadcast("Admin");
+        String admin = userRepository.findByRole(User.Role.ADMIN).get(0).getEmail();
+
+        assertThatThrownBy(() -> notificationService.markBroadcastAsRead(user.getId(), broadcast.getId(), admin))
+                .isInstanceOf(SecurityException.class);
+        assertThatThrownBy(() -> notificationService.dismissBroadcast(user.getId(), broadcast.getId(), admin))
+                .isInstanceOf(SecurityException.class);
+
+        // Read-all on the user's behalf covers their own notifications only
+        notificationService.markAllAsRead(user.getId(), admin);
+        assertThat(broadcastService.countUnread(broadcastService.getRecipient(user.getId()))).isPositive();
+    }
+
+    @Test
+    void broadcastsPastTheirCategoryRetentionAreArchived() throws Exception {
+        // SYSTEM is kept for 30 days and PAYMENT for 730
+        BroadcastNotification expired = createBroadcast("Expired", Notification.NotificationCategory.SYSTEM);
+        BroadcastNotification keptByCategory = createBroadcast("Kept by category", Notification.NotificationCategory.PAYMENT);
+        BroadcastNotification kept = createBroadcast("Kept", Notification.NotificationCategory.SYSTEM);
+        LocalDateTime longAgo = LocalDateTime.now().minusYears(1);
+        for (BroadcastNotification old : List.of(expired, keptByCategory)) {
+            // The registered instance is the one returned, so memory and table agree on the age
+            old.setCreatedAt(longAgo);
+            jdbcTemplate.update("UPDATE broadcast_notifications SET created_at = ? WHERE id = ?", longAgo, old.getId());
+        }
+
+        // Feeds stop showing it on the next prune, before the nightly archive run
+        broadcastService.prune();
+        // A user who joined before the old broadcasts were sent
+        NotificationRecipient longStanding = new NotificationRecipient(createUser().getId(), User.Role.USER, longAgo.minusYears(1));
+        assertThat(broadcastService.getFeed(longStanding))
+                .extracting(Notification::getBroadcastId)
+                .contains(kept.getId(), keptByCategory.getId())
+                .doesNotContain(expired.getId());
+
+        Map<String, Object> summary = notificationArchiveService.compact();
+
+        assertThat((Integer) summary.get("broadcastsArchived")).isPositive();
+        assertThat(broadcastRepository.existsById(expired.getId())).isFalse();
+        assertThat(broadcastRepository.existsById(keptByCategory.getId())).isTrue();
+        assertThat(broadcastRepository.existsById(kept.getId())).isTrue();
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        notificationArchiveService.readArchive(longAgo.toLocalDate(), longAgo.toLocalDate(), null).writeTo(archive);
+        assertThat(archive.toString(StandardCharsets.UTF_8))
+                .contains("\"id\":" + expired.getId() + ",")
+                .contains("Expired")
+                .doesNotContain("Kept by category");
+    }
+
+    private User createUser() {
+        User user = new User();
+        user.setName("Broadcast User");
+        user.setEmail("broadcast-" + UUID.randomUUID() + "@test.local");
+        user.setPassword("unused");
+        user.setRole(User.Role.USER);
+        user.setStatus(User.Status.ACTIVE);
+        return userRepository.save(user);
+    }
+
+    private BroadcastNotification createBroadcast(String title) {
+        return createBroadcast(title, null);
+    }
+
+    private BroadcastNotification createBroadcast(String title, Notification.NotificationCategory category) {
+        BroadcastNotification broadcast = new BroadcastNotification();
+        broadcast.setAudience(User.Role.USER);
+        broadcast.setTitle(title);
+        broadcast.setCategory(category);
+        broadcast.setMessage("Test broadcast");
+        return notificationService.createBroadcast(broadcast);
+    }
+}
@@ -0,0 +1,156 @@
+package com.drivenow.service;
+
+import com.drivenow.entity.Booking;
+import com.drivenow.entity.User;
+import com.drivenow.entity.Vehicle;
+import com.drivenow.repository.BookingRepository;
+import com.drivenow.repository.UserRepository;
+import com.drivenow.repository.VehicleRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Stress test for driver claims: many threads assign one driver to bookings on the same
+ * dates at once, round after round, and exactly one assignment per round may win; bookings
+ * on separate dates must all be assigned.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class DriverClaimConcurrencyTest {
+
+    private static final int ROUNDS = 20;
+    private static final int CONTENDERS = 16;
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private VehicleRepository vehicleRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void concurrentAssignmentsOfOneDriverToOverlappingBookingsHaveOneWinner() throws Exception {
+        User customer = userRepository.findByEmail("user@drivenow.com").orElseThrow();
+        Vehicle vehicle = vehicleRepository.findAll().get(0);
+        double wonBefore = meterRegistry.counter("driver.claims", "outcome", "won").count();
+
+        ExecutorService threads = Executors.newFixedThreadPool(CONTENDERS);
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                User driver = createDriver();
+                LocalDate start = LocalDate.now().plusDays(10 + round);
+                List<Long> bookingIds = new ArrayList<>();
+                for (int i = 0; i < CONTENDERS; i++) {
+                    // Same start day, different lengths: every pair overlaps
+                    bookingIds.add(createBooking(customer, vehicle, start, start.plusDays(i % 3)).getId());
+                }
+
+                CountDownLatch go = new CountDownLatch(1);
+                List<Future<Boolean>> attempts = new ArrayList<>();
+                for (Long bookingId : bookingIds) {
+                    attempts.add(threads.submit(() -> {
+                        go.await();
+                        try {
+                            bookingService.assignDriver(bookingId, driver.getId());
+                            return true;
+                        } catch (RuntimeException e) {
+                            return false;
+                        }
+                    }));
+                }
+                go.countDown();
+
+                int winners = 0;
+                for (Future<Boolean> attempt : attempts) {
+                    winners += attempt.get() ? 1 : 0;
+                }
+                assertThat(winners).as("winners in round %d", round).isEqualTo(1);
+                assertThat(bookingRepository.findActiveByDriverId(driver.getId())).hasSize(1);
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+
+        assertThat(meterRegistry.counter("driver.claims", "outcome", "won").count() - wonBefore).isEqualTo(ROUNDS);
+    }
+
+    @Test
+    void concurrentAssignmentsOfOneDriverToSeparateDatesAllSucceed() throws Exception {
+        User customer = userRepository.findByEmail("user@drivenow.com").orElseThrow();
+        Vehicle vehicle = vehicleRepository.findAll().get(0);
+        User driver = createDriver();
+        LocalDate start = LocalDate.now().plusDays(100);
+        List<Long> bookingIds = new ArrayList<>();
+        for (int i = 0; i < CONTENDERS; i++) {
+            LocalDate day = start.plusDays(2L * i);
+            bookingIds.add(createBooking(customer, vehicle, day, day).getId());
+        }
+
+        ExecutorService threads = Executors.newFixedThreadPool(CONTENDERS);
+        try {
+            CountDownLatch go = new CountDownLatch(1);
+            List<Future<?>> attempts = new ArrayList<>();
+            for (Long bookingId : bookingIds) {
+                attempts.add(threads.submit(() -> {
+                    go.await();
+                    return bookingService.assignDriver(bookingId, driver.getId());
+                }));
+            }
+            go.countDown();
+            for (Future<?> attempt : attempts) {
+                attempt.get();
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+
+        assertThat(bookingRepository.findActiveByDriverId(driver.getId())).hasSize(CONTENDERS);
+    }
+
+    private User createDriver() {
+        User driver = new User();
+        driver.setName("Stress Driver");
+        driver.setEmail("driver-" + UUID.randomUUID() + "@test.local");
+        driver.setPassword("unused");
+        driver.setRole(User.Role.DRIVER);
+        driver.setStatus(User.Status.ACTIVE);
+        driver.setAvailable(true);
+        return userRepository.save(driver);
+    }
+
+    private Booking createBooking(User customer, Vehicle vehicle, LocalDate start, LocalDate end) {
+        Booking booking = new Booking();
+        booking.setBookingNumber("T-" + UUID.randomUUID());
+        booking.setUser(customer);
+        booking.setVehicle(vehicle);
+        booking.setStartDate(start);
+        booking.setEndDate(end);
+        booking.setTotalPrice(BigDecimal.valueOf(100));
+        booking.setPickupLocation("Colombo");
+        booking.setDropoffLocation("Kandy");
+        return bookingRepository.save(booking);
+    }
+}
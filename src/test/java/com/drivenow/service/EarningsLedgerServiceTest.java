@@ -0,0 +1,181 @@
+package com.drivenow.service;
+
+import com.drivenow.entity.Booking;
+import com.drivenow.entity.CommissionRate;
+import com.drivenow.entity.DriverEarningsEntry;
+import com.drivenow.entity.User;
+import com.drivenow.entity.Vehicle;
+import com.drivenow.repository.BookingRepository;
+import com.drivenow.repository.DriverEarningsEntryRepository;
+import com.drivenow.repository.UserRepository;
+import com.drivenow.repository.VehicleRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class EarningsLedgerServiceTest {
+
+    private static final int STARTING_INSTANCES = 4;
+
+    @Autowired
+    private EarningsLedgerService earningsLedgerService;
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private DriverEarningsEntryRepository entryRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private VehicleRepository vehicleRepository;
+
+    @Test
+    void concurrentBackfillsRecordOneEarningPerPaidTrip() throws Exception {
+        User driver = createDriver();
+        List<Booking> paid = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            paid.add(createTrip(driver, Booking.PaymentStatus.COMPLETED, 1000 + i * 100));
+        }
+        Booking unpaid = createTrip(driver, Booking.PaymentStatus.PENDING, 500);
+
+        // Instances starting together all find the same trips missing from the ledger
+        ExecutorService instances = Executors.newFixedThreadPool(STARTING_INSTANCES);
+        try {
+            CountDownLatch go = new CountDownLatch(1);
+            List<Future<?>> starts = new ArrayList<>();
+            for (int i = 0; i < STARTING_INSTANCES; i++) {
+                starts.add(instances.submit(() -> {
+                    go.await();
+                    earningsLedgerService.initialize();
+                    return null;
+                }));
+            }
+            go.countDown();
+            for (Future<?> start : starts) {
+                start.get();
+            }
+        } finally {
+            instances.shutdown();
+        }
+        earningsLedgerService.initialize();
+
+        List<DriverEarningsEntry> entries = ledger(driver.getId());
+        assertThat(entries).extracting(DriverEarningsEntry::getBookingId)
+                .containsExactlyInAnyOrderElementsOf(paid.stream().map(Booking::getId).toList())
+                .doesNotContain(unpaid.getId());
+        BigDecimal earned = entries.stream().map(DriverEarningsEntry::getAmount).reduce(BigDecimal.ZERO, BigDecimal::add);
+        assertThat((BigDecimal) earningsLedgerService.getBalance(driver.getId()).get("balance")).isEqualByComparingTo(earned);
+
+        // Confirming the payment later records it once, and the next start leaves it alone
+        bookingService.confirmPayment(unpaid.getId());
+        earningsLedgerService.initialize();
+        assertThat(entryRepository.existsByBookingIdAndType(unpaid.getId(), DriverEarningsEntry.EntryType.EARNING)).isTrue();
+        assertThat(ledger(driver.getId())).hasSize(paid.size() + 1);
+    }
+
+    @Test
+    void payoutReducesTheBalance() {
+        User driver = createDriver();
+        Booking first = createTrip(driver, Booking.PaymentStatus.COMPLETED, 1000);
+        Booking second = createTrip(driver, Booking.PaymentStatus.COMPLETED, 3000);
+        DriverEarningsEntry firstEarning = earningsLedgerService.recordTripEarning(first);
+        DriverEarningsEntry secondEarning = earningsLedgerService.recordTripEarning(second);
+        assertThat(earningsLedgerService.recordTripEarning(first)).isNull();
+
+        BigDecimal rate = earningsLedgerService.getCurrentRate().getRate();
+        assertThat(firstEarning.getAmount()).isEqualByComparingTo(BigDecimal.valueOf(1000).multiply(rate));
+        BigDecimal earned = firstEarning.getAmount().add(secondEarning.getAmount());
+
+        DriverEarningsEntry payout = earningsLedgerService.recordPayout(driver.getId(), new BigDecimal("100.00"), "PAYOUT-1");
+        assertThat(payout.getAmount()).isEqualByComparingTo("-100.00");
+        assertThat(payout.getBalanceAfter()).isEqualByComparingTo(earned.subtract(new BigDecimal("100.00")));
+
+        Map<String, Object> balance = earningsLedgerService.getBalance(driver.getId());
+        assertThat((BigDecimal) balance.get("balance")).isEqualByComparingTo(earned.subtract(new BigDecimal("100.00")));
+        assertThat((BigDecimal) balance.get("totalEarned")).isEqualByComparingTo(earned);
+        assertThat((BigDecimal) balance.get("totalPaidOut")).isEqualByComparingTo("100.00");
+
+        assertThatThrownBy(() -> earningsLedgerService.recordPayout(driver.getId(), earned, "PAYOUT-2"))
+                .hasMessageStartingWith("Payout exceeds the driver's balance");
+    }
+
+    @Test
+    void rateAtATimeIsTheLatestVersionInForce() {
+        // Far enough ahead that no other rate in the test database applies
+        LocalDateTime first = LocalDateTime.of(2200, 1, 1, 0, 0);
+        LocalDateTime second = first.plusMonths(6);
+        BigDecimal before = earningsLedgerService.getRateAt(first.minusSeconds(1)).getRate();
+        CommissionRate january = earningsLedgerService.addRate(new BigDecimal("0.2000"), first);
+        CommissionRate july = earningsLedgerService.addRate(new BigDecimal("0.2500"), second);
+        // Same effective time: the one added last wins
+        CommissionRate julyCorrection = earningsLedgerService.addRate(new BigDecimal("0.2200"), second);
+
+        assertThat(earningsLedgerService.getRateAt(first.minusSeconds(1)).getRate()).isEqualByComparingTo(before);
+        assertThat(earningsLedgerService.getRateAt(first).getId()).isEqualTo(january.getId());
+        assertThat(earningsLedgerService.getRateAt(second.minusSeconds(1)).getId()).isEqualTo(january.getId());
+        assertThat(earningsLedgerService.getRateAt(second).getId()).isEqualTo(julyCorrection.getId());
+        assertThat(earningsLedgerService.getRateAt(second.plusYears(1)).getRate()).isEqualByComparingTo("0.2200");
+        assertThat(earningsLedgerService.getRateHistory()).extracting(CommissionRate::getId)
+                .containsSubsequence(julyCorrection.getId(), july.getId(), january.getId());
+
+        assertThatThrownBy(() -> earningsLedgerService.addRate(new BigDecimal("0.1"), LocalDateTime.now().minusDays(1)))
+                .hasMessage("Commission rate cannot take effect in the past");
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<DriverEarningsEntry> ledger(Long driverId) {
+        return (List<DriverEarningsEntry>) earningsLedgerService.getLedger(driverId, null, 100).get("entries");
+    }
+
+    private User createDriver() {
+        User driver = new User();
+        driver.setName("Ledger Driver");
+        driver.setEmail("ledger-driver-" + UUID.randomUUID() + "@test.local");
+        driver.setPassword("unused");
+        driver.setRole(User.Role.DRIVER);
+        driver.setStatus(User.Status.ACTIVE);
+        return userRepository.save(driver);
+    }
+
+    private Booking createTrip(User driver, Booking.PaymentStatus paymentStatus, long price) {
+        User customer = userRepository.findByEmail("user@drivenow.com").orElseThrow();
+        Vehicle vehicle = vehicleRepository.findAll().get(0);
+        Booking booking = new Booking();
+        booking.setBookingNumber("E-" + UUID.randomUUID());
+        booking.setUser(customer);
+        booking.setVehicle(vehicle);
+        booking.setDriver(driver);
+        booking.setStatus(Booking.BookingStatus.COMPLETED);
+        booking.setPaymentStatus(paymentStatus);
+        booking.setStartDate(LocalDate.now().minusDays(3));
+        booking.setEndDate(LocalDate.now().minusDays(2));
+        booking.setTotalPrice(BigDecimal.valueOf(price));
+        booking.setPickupLocation("Colombo");
+        booking.setDropoffLocation("Negombo");
+        return bookingRepository.save(booking);
+    }
+}
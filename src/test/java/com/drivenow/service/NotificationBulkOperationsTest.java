@@ -0,0 +1,167 @@
+package com.drivenow.service;
+
+import com.drivenow.entity.Notification;
+import com.drivenow.entity.User;
+import com.drivenow.repository.NotificationRepository;
+import com.drivenow.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+
+/**
+ * Bulk notification operations against a user with 100k notifications. Each one is a single
+ * statement, so it has to finish well within a request timeout, touch exactly the matching
+ * rows and leave the in-memory unread count equal to the table.
+ *
+ * Notification n (1..100k) is unread when n is odd, is in category BOOKING, PAYMENT or SYSTEM
+ * by n % 3, and was created n minutes before the test started.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class NotificationBulkOperationsTest {
+
+    private static final int NOTIFICATIONS = 100_000;
+    private static final Duration LIMIT = Duration.ofSeconds(10);
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private UnreadCountService unreadCountService;
+
+    @Autowired
+    private BroadcastNotificationService broadcastService;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User user;
+    private LocalDateTime seededAt;
+
+    @BeforeEach
+    void seed() {
+        user = new User();
+        user.setName("Bulk User");
+        user.setEmail("bulk-" + UUID.randomUUID() + "@test.local");
+        user.setPassword("unused");
+        user.setRole(User.Role.USER);
+        user.setStatus(User.Status.ACTIVE);
+        user = userRepository.save(user);
+
+        seededAt = LocalDateTime.now().withNano(0);
+        // One statement generating the rows in the database; the test profile runs on H2
+        jdbcTemplate.update("""
+                INSERT INTO notifications (user_id, title, message, type, category, is_read, created_at)
+                SELECT ?, 'Bulk ' || x, 'Message ' || x, 'INFO',
+                       CASE MOD(x, 3) WHEN 0 THEN 'BOOKING' WHEN 1 THEN 'PAYMENT' ELSE 'SYSTEM' END,
+                       MOD(x, 2) = 0, DATEADD('MINUTE', -x, CAST(? AS TIMESTAMP))
+                FROM SYSTEM_RANGE(1, ?) AS r (x)
+                """, user.getId(), seededAt, NOTIFICATIONS);
+
+        // Load the counter, so the operations have to keep it right rather than recount
+        assertThat(unreadCountService.get(user.getId())).isEqualTo(NOTIFICATIONS / 2);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM notifications WHERE user_id = ?", user.getId());
+        userRepository.deleteById(user.getId());
+    }
+
+    @Test
+    void markAllAsReadMarksEveryUnreadNotification() {
+        int updated = timed(() -> notificationService.markAllAsRead(user.getId(), user.getEmail()));
+
+        assertThat(updated).isEqualTo(NOTIFICATIONS / 2);
+        assertThat(countWhere("is_read = FALSE")).isZero();
+        assertThat(countWhere("TRUE")).isEqualTo(NOTIFICATIONS);
+        assertUnreadCountMatchesTable();
+
+        // Nothing left to mark
+        assertThat(notificationService.markAllAsRead(user.getId(), user.getEmail())).isZero();
+    }
+
+    @Test
+    void markAsReadByIdsMarksOnlyTheUsersUnreadSelection() {
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT id FROM notifications WHERE user_id = ? ORDER BY id LIMIT 999", Long.class, user.getId());
+        long unreadSelected = countWhere("is_read = FALSE AND id <= " + ids.get(ids.size() - 1));
+        User other = userRepository.findByEmail("user@drivenow.com").orElseThrow();
+        Long foreignId = jdbcTemplate.queryForObject(
+                "SELECT MIN(id) FROM notifications WHERE user_id = ?", Long.class, other.getId());
+        List<Long> selection = new ArrayList<>(ids);
+        if (foreignId != null) {
+            selection.add(foreignId);
+        }
+
+        int updated = timed(() -> notificationService.markAsRead(user.getId(), selection, user.getEmail()));
+
+        assertThat(updated).isEqualTo(unreadSelected);
+        assertThat(countWhere("is_read = FALSE")).isEqualTo(NOTIFICATIONS / 2 - unreadSelected);
+        assertUnreadCountMatchesTable();
+
+        // Already read, or not the user's
+        assertThat(notificationService.markAsRead(user.getId(), selection, user.getEmail())).isZero();
+    }
+
+    @Test
+    void deleteOlderThanRemovesOnlyOlderNotifications() {
+        LocalDateTime before = seededAt.minusMinutes(NOTIFICATIONS / 2);
+
+        int deleted = timed(() -> notificationService.deleteOlderThan(user.getId(), before, user.getEmail()));
+
+        // Rows n > 50k are older than the cut-off
+        assertThat(deleted).isEqualTo(NOTIFICATIONS / 2);
+        assertThat(countWhere("TRUE")).isEqualTo(NOTIFICATIONS / 2);
+        assertThat(notificationRepository.countUnreadByUserId(user.getId())).isEqualTo(NOTIFICATIONS / 4);
+        assertUnreadCountMatchesTable();
+    }
+
+    @Test
+    void deleteByCategoryRemovesOnlyThatCategory() {
+        long payments = countWhere("category = 'PAYMENT'");
+
+        int deleted = timed(() -> notificationService.deleteByCategory(
+                user.getId(), Notification.NotificationCategory.PAYMENT, user.getEmail()));
+
+        assertThat(deleted).isEqualTo(payments);
+        assertThat(countWhere("category = 'PAYMENT'")).isZero();
+        assertThat(countWhere("TRUE")).isEqualTo(NOTIFICATIONS - payments);
+        assertUnreadCountMatchesTable();
+    }
+
+    private int timed(Supplier<Integer> operation) {
+        return assertTimeout(LIMIT, operation::get);
+    }
+
+    private long countWhere(String condition) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM notifications WHERE user_id = ? AND " + condition, Long.class, user.getId());
+    }
+
+    private void assertUnreadCountMatchesTable() {
+        long expected = notificationRepository.countUnreadByUserId(user.getId())
+                + broadcastService.countUnread(broadcastService.getRecipient(user.getId()));
+        assertThat(unreadCountService.get(user.getId())).isEqualTo(expected);
+    }
+}
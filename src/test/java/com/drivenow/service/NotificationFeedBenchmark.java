@@ -0,0 +1,131 @@
+package com.drivenow.service;
+
+import com.drivenow.DriveNowApplication;
+import com.drivenow.entity.Notification;
+import com.drivenow.entity.User;
+import com.drivenow.repository.UserRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feed requests of a user with 1M notifications, against the test profile's in-memory H2:
+ * first pages with and without filters, a page about 900k rows deep, and an empty delta.
+ * The application starts once per fork; seeding takes about a minute.
+ *
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark=NotificationFeedBenchmark
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NotificationFeedBenchmark {
+
+    private static final int NOTIFICATIONS = 1_000_000;
+    private static final int DEEP_OFFSET = 900_000;
+
+    private ConfigurableApplicationContext context;
+    private NotificationService notificationService;
+    private Long userId;
+    private String email;
+    private String deepCursor;
+    private String latestCursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(DriveNowApplication.class)
+                .profiles("test")
+                .properties("server.port=0", "logging.level.root=WARN", "logging.level.com.drivenow=WARN")
+                .run();
+        notificationService = context.getBean(NotificationService.class);
+
+        User user = new User();
+        user.setName("Benchmark User");
+        user.setEmail("feed-benchmark@test.local");
+        user.setPassword("unused");
+        user.setRole(User.Role.USER);
+        user.setStatus(User.Status.ACTIVE);
+        user = context.getBean(UserRepository.class).save(user);
+        userId = user.getId();
+        email = user.getEmail();
+
+        // Half unread, categories in turn, one a minute going back about two years
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        jdbcTemplate.update("""
+                INSERT INTO notifications (user_id, title, message, type, category, is_read, created_at)
+                SELECT ?, 'Benchmark ' || x, 'Message ' || x, 'INFO',
+                       CASE MOD(x, 4) WHEN 0 THEN 'BOOKING' WHEN 1 THEN 'PAYMENT' WHEN 2 THEN 'TRIP' ELSE 'SYSTEM' END,
+                       MOD(x, 2) = 0, DATEADD('MINUTE', -x, CAST(? AS TIMESTAMP))
+                FROM SYSTEM_RANGE(1, ?) AS r (x)
+                """, userId, LocalDateTime.now().withNano(0), NOTIFICATIONS);
+
+        Map<String, Object> deep = jdbcTemplate.queryForMap(
+                "SELECT created_at, id FROM notifications WHERE user_id = ? " +
+                "ORDER BY created_at DESC, id DESC LIMIT 1 OFFSET ?", userId, DEEP_OFFSET);
+        deepCursor = new NotificationService.FeedCursor(
+                ((Timestamp) deep.get("created_at")).toLocalDateTime(), (Long) deep.get("id")).encode();
+        latestCursor = (String) feed(null, null, 20, null, null).get("latestCursor");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Map<String, Object> firstPage() {
+        return feed(null, null, 20, null, null);
+    }
+
+    @Benchmark
+    public Map<String, Object> firstPageOf100() {
+        return feed(null, null, 100, null, null);
+    }
+
+    @Benchmark
+    public Map<String, Object> firstPageUnread() {
+        return feed(null, null, 20, false, null);
+    }
+
+    @Benchmark
+    public Map<String, Object> firstPageOfCategory() {
+        return feed(null, null, 20, null, Notification.NotificationCategory.PAYMENT);
+    }
+
+    @Benchmark
+    public Map<String, Object> deepPage() {
+        return feed(deepCursor, null, 20, null, null);
+    }
+
+    /**
+     * A client polling for what is new, when nothing is
+     */
+    @Benchmark
+    public Map<String, Object> emptyDelta() {
+        return feed(null, latestCursor, 20, null, null);
+    }
+
+    private Map<String, Object> feed(String cursor, String since, int limit, Boolean isRead,
+                                     Notification.NotificationCategory category) {
+        return notificationService.getFeed(userId, cursor, since, limit, isRead, category, email);
+    }
+}
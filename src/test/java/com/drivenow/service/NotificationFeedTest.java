@@ -0,0 +1,141 @@
+package com.drivenow.service;
+
+import com.drivenow.entity.Notification;
+import com.drivenow.entity.User;
+import com.drivenow.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class NotificationFeedTest {
+
+    private static final long SHARED_ID = 900_000_001L;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private BroadcastNotificationService broadcastService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User user;
+
+    @BeforeEach
+    void createUser() {
+        user = new User();
+        user.setName("Feed User");
+        user.setEmail("feed-" + UUID.randomUUID() + "@test.local");
+        user.setPassword("unused");
+        user.setRole(User.Role.DRIVER);
+        user.setStatus(User.Status.ACTIVE);
+        user = userRepository.save(user);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM notifications WHERE user_id = ?", user.getId());
+        jdbcTemplate.update("DELETE FROM broadcast_notifications WHERE id = ?", SHARED_ID);
+        userRepository.deleteById(user.getId());
+    }
+
+    @Test
+    void sinceReturnsRowsThatCommitAfterNewerOnes() {
+        LocalDateTime now = LocalDateTime.now();
+        insert(null, "Seen", now.minusSeconds(1));
+        Map<String, Object> first = feed(null, null);
+        assertThat(titles(first)).containsExactly("Seen");
+
+        // Created before the newest entry the client has, but committed after it fetched
+        insert(null, "Late", now.minusSeconds(2));
+        Map<String, Object> delta = feed(null, (String) first.get("latestCursor"));
+        assertThat(titles(delta)).containsExactly("Late");
+
+        Map<String, Object> again = feed(null, (String) delta.get("latestCursor"));
+        assertThat(titles(again)).isEmpty();
+    }
+
+    @Test
+    void sinceWalksABurstInPagesWithoutRepeats() {
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, Object> first = feed(null, null);
+        for (int i = 0; i < 25; i++) {
+            insert(null, "Burst " + i, now.minusSeconds(3).plusNanos(i * 1_000_000L));
+        }
+
+        List<String> received = new ArrayList<>();
+        String since = (String) first.get("latestCursor");
+        Map<String, Object> delta;
+        do {
+            delta = feed(null, since);
+            received.addAll(titles(delta));
+            since = (String) delta.get("latestCursor");
+        } while ((Boolean) delta.get("hasMore"));
+
+        assertThat(received).hasSize(25).doesNotHaveDuplicates();
+        assertThat(titles(feed(null, since))).isEmpty();
+    }
+
+    @Test
+    void pagesTellANotificationFromABroadcastWithTheSameIdAndTime() {
+        LocalDateTime createdAt = LocalDateTime.now().withNano(0);
+        // Broadcasts reach users who joined before them
+        jdbcTemplate.update("UPDATE users SET created_at = ? WHERE id = ?", createdAt.minusMinutes(1), user.getId());
+        insert(SHARED_ID, "Notification", createdAt);
+        jdbcTemplate.update("INSERT INTO broadcast_notifications (id, audience, title, message, type, created_at) " +
+                "VALUES (?, 'DRIVER', 'Broadcast', 'Test broadcast', 'INFO', ?)", SHARED_ID, createdAt);
+        broadcastService.poll();
+
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        Map<String, Object> page;
+        do {
+            page = notificationService.getFeed(user.getId(), cursor, null, 1, null, null, user.getEmail());
+            entries(page).forEach(entry -> ids.add(entry.getId()));
+            cursor = (String) page.get("nextCursor");
+        } while ((Boolean) page.get("hasMore"));
+
+        assertThat(ids).containsExactly(SHARED_ID, -SHARED_ID);
+    }
+
+    private void insert(Long id, String title, LocalDateTime createdAt) {
+        if (id == null) {
+            jdbcTemplate.update("INSERT INTO notifications (user_id, title, message, type, is_read, created_at) " +
+                    "VALUES (?, ?, 'Test', 'INFO', FALSE, ?)", user.getId(), title, createdAt);
+        } else {
+            jdbcTemplate.update("INSERT INTO notifications (id, user_id, title, message, type, is_read, created_at) " +
+                    "VALUES (?, ?, ?, 'Test', 'INFO', FALSE, ?)", id, user.getId(), title, createdAt);
+        }
+    }
+
+    private Map<String, Object> feed(String cursor, String since) {
+        return notificationService.getFeed(user.getId(), cursor, since, 10, null, null, user.getEmail());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Notification> entries(Map<String, Object> page) {
+        return (List<Notification>) page.get("notifications");
+    }
+
+    private static List<String> titles(Map<String, Object> page) {
+        return entries(page).stream().map(Notification::getTitle).toList();
+    }
+}
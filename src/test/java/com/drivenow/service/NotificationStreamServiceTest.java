@@ -0,0 +1,138 @@
+package com.drivenow.service;
+
+import com.drivenow.dto.NotificationRecipient;
+import com.drivenow.entity.Notification;
+import com.drivenow.entity.User;
+import com.drivenow.repository.NotificationRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class NotificationStreamServiceTest {
+
+    private static final long USER_ID = 7L;
+    private static final int REPLAY_LIMIT = 3;
+
+    private final NotificationRepository notificationRepository = mock(NotificationRepository.class);
+    private final UnreadCountService unreadCountService = mock(UnreadCountService.class);
+    private final BroadcastNotificationService broadcastService = mock(BroadcastNotificationService.class);
+    private final ClientEmitter client = new ClientEmitter();
+    private NotificationStreamService service;
+
+    @BeforeEach
+    void setUp() {
+        when(broadcastService.getRecipient(USER_ID))
+                .thenReturn(new NotificationRecipient(USER_ID, User.Role.USER, LocalDateTime.now().minusYears(1)));
+        when(unreadCountService.get(USER_ID)).thenReturn(4L);
+        service = new NotificationStreamService(notificationRepository, unreadCountService, broadcastService,
+                new ObjectMapper().findAndRegisterModules(), new SimpleMeterRegistry(), 1, 64, 60_000, REPLAY_LIMIT) {
+            @Override
+            SseEmitter createEmitter(long timeoutMs) {
+                return client;
+            }
+        };
+    }
+
+    @Test
+    void missedNotificationsAreReplayedOldestFirst() throws Exception {
+        missed(10, 13, 12, 11);
+
+        service.subscribe(USER_ID, 10L);
+
+        awaitTrue(() -> client.events.size() == 4);
+        assertThat(client.events).containsExactly("notification 11", "notification 12", "notification 13", "unread");
+    }
+
+    @Test
+    void tooManyMissedSendsOnlyResyncAndGoesLiveFromTheNewest() throws Exception {
+        // Newest first, one more than the limit; 19 and 21 are created while the replay is read
+        when(notificationRepository.findByUserIdAfterNewestFirst(USER_ID, 10L, PageRequest.of(0, REPLAY_LIMIT + 1)))
+                .thenAnswer(invocation -> {
+                    service.publishCreated(notification(19));
+                    service.publishCreated(notification(21));
+                    return notifications(20, 19, 18, 17);
+                });
+
+        service.subscribe(USER_ID, 10L);
+
+        awaitTrue(() -> client.events.size() == 5);
+        assertThat(client.events).containsExactly("resync 20", "unread", "unread", "notification 21", "unread");
+    }
+
+    @Test
+    void firstConnectSendsOnlyTheUnreadCount() throws Exception {
+        service.subscribe(USER_ID, null);
+        service.publishCreated(notification(30));
+
+        awaitTrue(() -> client.events.size() == 3);
+        assertThat(client.events).containsExactly("unread", "notification 30", "unread");
+    }
+
+    private void missed(long after, long... newestFirst) {
+        when(notificationRepository.findByUserIdAfterNewestFirst(USER_ID, after, PageRequest.of(0, REPLAY_LIMIT + 1)))
+                .thenReturn(notifications(newestFirst));
+    }
+
+    private static List<Notification> notifications(long... ids) {
+        return new ArrayList<>(LongStream.of(ids).mapToObj(NotificationStreamServiceTest::notification).toList());
+    }
+
+    private static Notification notification(long id) {
+        User user = new User();
+        user.setId(USER_ID);
+        Notification notification = new Notification();
+        notification.setId(id);
+        notification.setUser(user);
+        notification.setUserId(USER_ID);
+        notification.setTitle("Notification " + id);
+        notification.setMessage("Message " + id);
+        return notification;
+    }
+
+    /**
+     * Stands in for a client connection, recording each event as "name id" (or "name" without an id)
+     */
+    private static final class ClientEmitter extends SseEmitter {
+        final List<String> events = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void send(Set<DataWithMediaType> event) {
+            String text = event.stream().map(part -> String.valueOf(part.getData())).collect(Collectors.joining());
+            String name = null;
+            String id = null;
+            for (String line : text.split("\n")) {
+                if (line.startsWith("event:")) {
+                    name = line.substring("event:".length());
+                } else if (line.startsWith("id:")) {
+                    id = line.substring("id:".length());
+                }
+            }
+            events.add(id != null ? name + " " + id : name);
+        }
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition not met in time").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+}
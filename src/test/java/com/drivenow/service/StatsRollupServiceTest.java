@@ -0,0 +1,194 @@
+package com.drivenow.service;
+
+import com.drivenow.entity.Booking;
+import com.drivenow.entity.User;
+import com.drivenow.entity.UserStatsRollup;
+import com.drivenow.entity.Vehicle;
+import com.drivenow.repository.BookingRepository;
+import com.drivenow.repository.UserRepository;
+import com.drivenow.repository.UserStatsRollupRepository;
+import com.drivenow.repository.VehicleRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The rollups kept up by record and recordDeleted must match what rebuild computes from the
+ * bookings. Runs in a rolled-back transaction, since rebuild rewrites the whole table.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+class StatsRollupServiceTest {
+
+    @Autowired
+    private StatsRollupService statsRollupService;
+
+    @Autowired
+    private UserStatsRollupRepository rollupRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private VehicleRepository vehicleRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private record Row(Long userId, UserStatsRollup.Side side, int period, long bookings, long active,
+                       long completed, BigDecimal paidAmount) {
+    }
+
+    @Test
+    void incrementalRollupsMatchTheRebuild() {
+        User customer = createUser(User.Role.USER);
+        User driver = createUser(User.Role.DRIVER);
+        Vehicle vehicle = vehicleRepository.findAll().get(0);
+
+        // Completed and paid, two months ago
+        Booking completed = createBooking(customer, vehicle, 2);
+        transition(completed, booking -> booking.setStatus(Booking.BookingStatus.CONFIRMED));
+        transition(completed, booking -> {
+            booking.setDriver(driver);
+            booking.setStatus(Booking.BookingStatus.DRIVER_ASSIGNED);
+        });
+        transition(completed, booking -> booking.setStatus(Booking.BookingStatus.ONGOING));
+        transition(completed, booking -> booking.setStatus(Booking.BookingStatus.COMPLETED));
+        transition(completed, booking -> booking.setPaymentStatus(Booking.PaymentStatus.COMPLETED));
+
+        // Paid, then cancelled and refunded, last month
+        Booking refunded = createBooking(customer, vehicle, 1);
+        transition(refunded, booking -> booking.setPaymentStatus(Booking.PaymentStatus.COMPLETED));
+        transition(refunded, booking -> booking.setStatus(Booking.BookingStatus.CANCELLED));
+        transition(refunded, booking -> booking.setPaymentStatus(Booking.PaymentStatus.REFUNDED));
+
+        // Still under way this month, with a driver
+        Booking ongoing = createBooking(customer, vehicle, 0);
+        transition(ongoing, booking -> {
+            booking.setDriver(driver);
+            booking.setStatus(Booking.BookingStatus.DRIVER_ASSIGNED);
+        });
+        transition(ongoing, booking -> booking.setPaymentStatus(Booking.PaymentStatus.COMPLETED));
+        transition(ongoing, booking -> booking.setStatus(Booking.BookingStatus.ONGOING));
+
+        // A driver reassignment moves the booking between drivers
+        User otherDriver = createUser(User.Role.DRIVER);
+        Booking reassigned = createBooking(customer, vehicle, 0);
+        transition(reassigned, booking -> {
+            booking.setDriver(driver);
+            booking.setStatus(Booking.BookingStatus.DRIVER_ASSIGNED);
+        });
+        transition(reassigned, booking -> booking.setDriver(otherDriver));
+
+        // Deleted together, as account deletion does
+        Booking deletedPending = createBooking(customer, vehicle, 1);
+        Booking deletedPaid = createBooking(customer, vehicle, 2);
+        transition(deletedPaid, booking -> {
+            booking.setDriver(driver);
+            booking.setStatus(Booking.BookingStatus.COMPLETED);
+            booking.setPaymentStatus(Booking.PaymentStatus.COMPLETED);
+        });
+        statsRollupService.recordDeleted(List.of(
+                StatsRollupService.Snapshot.of(deletedPending), StatsRollupService.Snapshot.of(deletedPaid)));
+        bookingRepository.deleteAll(List.of(deletedPending, deletedPaid));
+        bookingRepository.flush();
+
+        Set<Long> userIds = Set.of(customer.getId(), driver.getId(), otherDriver.getId());
+        List<Row> incremental = rows(userIds);
+        assertThat(incremental).isNotEmpty();
+
+        statsRollupService.rebuild();
+
+        assertThat(rows(userIds)).containsExactlyInAnyOrderElementsOf(incremental);
+    }
+
+    @Test
+    void rebuildOverExistingRowsSetsTheirTotals() {
+        User customer = createUser(User.Role.USER);
+        Booking booking = createBooking(customer, vehicleRepository.findAll().get(0), 0);
+        // A stale row the rebuild must overwrite rather than insert next to
+        int period = StatsRollupService.periodOf(booking.getCreatedAt());
+        rollupRepository.increment(customer.getId(), UserStatsRollup.Side.CUSTOMER.name(), period, 5, 5, 5, BigDecimal.TEN);
+
+        statsRollupService.rebuild();
+        statsRollupService.rebuild();
+
+        assertThat(rows(Set.of(customer.getId()))).containsExactlyInAnyOrder(
+                new Row(customer.getId(), UserStatsRollup.Side.CUSTOMER, UserStatsRollup.ALL_TIME, 1, 1, 0, BigDecimal.ZERO.setScale(2)),
+                new Row(customer.getId(), UserStatsRollup.Side.CUSTOMER, period, 1, 1, 0, BigDecimal.ZERO.setScale(2)));
+    }
+
+    private void transition(Booking booking, Consumer<Booking> change) {
+        StatsRollupService.Snapshot before = StatsRollupService.Snapshot.of(booking);
+        change.accept(booking);
+        statsRollupService.record(before, bookingRepository.saveAndFlush(booking));
+    }
+
+    /**
+     * A new pending booking created monthsAgo, recorded as BookingService does
+     */
+    private Booking createBooking(User customer, Vehicle vehicle, int monthsAgo) {
+        Booking booking = new Booking();
+        booking.setBookingNumber("R-" + UUID.randomUUID());
+        booking.setUser(customer);
+        booking.setVehicle(vehicle);
+        booking.setStatus(Booking.BookingStatus.PENDING);
+        booking.setStartDate(LocalDate.now().plusDays(5));
+        booking.setEndDate(LocalDate.now().plusDays(6));
+        booking.setTotalPrice(BigDecimal.valueOf(1000 + monthsAgo * 250L));
+        booking.setPickupLocation("Colombo");
+        booking.setDropoffLocation("Galle");
+        booking = bookingRepository.saveAndFlush(booking);
+
+        // created_at is set on insert and not updatable through the entity
+        LocalDateTime createdAt = LocalDateTime.now().minusMonths(monthsAgo);
+        jdbcTemplate.update("UPDATE bookings SET created_at = ? WHERE id = ?", createdAt, booking.getId());
+        booking.setCreatedAt(createdAt);
+        statsRollupService.record(null, booking);
+        return booking;
+    }
+
+    private User createUser(User.Role role) {
+        User user = new User();
+        user.setName("Rollup " + role);
+        user.setEmail("rollup-" + UUID.randomUUID() + "@test.local");
+        user.setPassword("unused");
+        user.setRole(role);
+        user.setStatus(User.Status.ACTIVE);
+        return userRepository.save(user);
+    }
+
+    /**
+     * The users' non-empty rollup rows, read past the persistence context (the writes are native)
+     */
+    private List<Row> rows(Set<Long> userIds) {
+        entityManager.clear();
+        return rollupRepository.findAll().stream()
+                .filter(rollup -> userIds.contains(rollup.getUserId()))
+                .map(rollup -> new Row(rollup.getUserId(), rollup.getSide(), rollup.getPeriod(), rollup.getBookings(),
+                        rollup.getActive(), rollup.getCompleted(), rollup.getPaidAmount().setScale(2)))
+                .filter(row -> row.bookings() != 0 || row.active() != 0 || row.completed() != 0 || row.paidAmount().signum() != 0)
+                .toList();
+    }
+}
@@ -0,0 +1,123 @@
+package com.drivenow.service;
+
+import com.drivenow.dto.TelemetryPoint;
+import com.drivenow.entity.Booking;
+import com.drivenow.repository.TripTelemetryChunkRepository;
+import com.drivenow.service.telemetry.BreadcrumbCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Breadcrumb storage and ingest on a simulated 1 h trip at 1 Hz with GPS noise: encode and
+ * decode of the whole trip, and service ingest in batches of 100 (chunks written to a stub
+ * repository, the trip finished and a new one started every hour of points). Scores are points
+ * per second; the encoded size per point is printed at setup.
+ *
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark=TripTelemetryBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TripTelemetryBenchmark {
+
+    private static final int TRIP_POINTS = 3_600;
+    private static final int BATCH = 100;
+
+    private final int[] lats = new int[TRIP_POINTS];
+    private final int[] lons = new int[TRIP_POINTS];
+    private final long[] times = new long[TRIP_POINTS];
+    private byte[] encoded;
+    private final List<List<TelemetryPoint>> batches = new ArrayList<>();
+
+    private TripTelemetryService service;
+    private Booking trip;
+    private long nextTripId;
+    private int nextBatch;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // About 30 km/h out of Colombo with gentle turns, plus ~3 m of fix noise
+        Random random = new Random(42);
+        double latitude = 6.9271;
+        double longitude = 79.8612;
+        double heading = random.nextDouble() * 2 * Math.PI;
+        long start = 1_700_000_000_000L;
+        List<TelemetryPoint> points = new ArrayList<>();
+        for (int i = 0; i < TRIP_POINTS; i++) {
+            heading += random.nextGaussian() * 0.05;
+            latitude += Math.cos(heading) * 7.5e-5;
+            longitude += Math.sin(heading) * 7.5e-5;
+            double noisyLat = latitude + random.nextGaussian() * 2.7e-5;
+            double noisyLon = longitude + random.nextGaussian() * 2.7e-5;
+            long time = start + i * 1000L + random.nextInt(20);
+            lats[i] = BreadcrumbCodec.toFixed(noisyLat);
+            lons[i] = BreadcrumbCodec.toFixed(noisyLon);
+            times[i] = time;
+            points.add(new TelemetryPoint(noisyLat, noisyLon, time));
+        }
+        for (int i = 0; i < TRIP_POINTS; i += BATCH) {
+            batches.add(points.subList(i, Math.min(TRIP_POINTS, i + BATCH)));
+        }
+        encoded = BreadcrumbCodec.encode(lats, lons, times, TRIP_POINTS);
+        System.out.printf("%n%d points encode to %d bytes: %.2f bytes per point (24 raw)%n",
+                TRIP_POINTS, encoded.length, (double) encoded.length / TRIP_POINTS);
+
+        // Stub only: a recording mock would keep every saved chunk
+        service = new TripTelemetryService(mock(TripTelemetryChunkRepository.class, withSettings().stubOnly()));
+        ReflectionTestUtils.setField(service, "maxChunkPoints", 1000);
+        ReflectionTestUtils.setField(service, "maxSpeedKmh", 250.0);
+        startTrip();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRIP_POINTS)
+    public byte[] encode() {
+        return BreadcrumbCodec.encode(lats, lons, times, TRIP_POINTS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRIP_POINTS)
+    public BreadcrumbCodec.Points decode() {
+        return BreadcrumbCodec.decode(encoded);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int ingest() {
+        int accepted = service.ingest(trip, batches.get(nextBatch++));
+        if (nextBatch == batches.size()) {
+            service.finishTrip(trip.getId());
+            startTrip();
+        }
+        return accepted;
+    }
+
+    private void startTrip() {
+        trip = new Booking();
+        trip.setId(++nextTripId);
+        trip.setStatus(Booking.BookingStatus.ONGOING);
+        nextBatch = 0;
+    }
+}
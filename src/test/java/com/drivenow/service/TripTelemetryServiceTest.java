@@ -0,0 +1,52 @@
+package com.drivenow.service;
+
+import com.drivenow.dto.TelemetryPoint;
+import com.drivenow.entity.Booking;
+import com.drivenow.entity.TripTelemetryChunk;
+import com.drivenow.repository.TripTelemetryChunkRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TripTelemetryServiceTest {
+
+    @Test
+    void failedFlushKeepsTheChunkForTheNextFlush() {
+        TripTelemetryChunkRepository repository = mock(TripTelemetryChunkRepository.class);
+        List<TripTelemetryChunk> saved = new ArrayList<>();
+        when(repository.saveAll(anyList()))
+                .thenThrow(new DataAccessResourceFailureException("database down"))
+                .thenAnswer(call -> {
+                    List<TripTelemetryChunk> chunks = call.getArgument(0);
+                    saved.addAll(chunks);
+                    return chunks;
+                });
+        TripTelemetryService service = new TripTelemetryService(repository);
+        ReflectionTestUtils.setField(service, "maxChunkPoints", 1000);
+        ReflectionTestUtils.setField(service, "maxSpeedKmh", 250.0);
+
+        Booking trip = new Booking();
+        trip.setId(7L);
+        trip.setStatus(Booking.BookingStatus.ONGOING);
+        service.ingest(trip, List.of(point(6.900, 0), point(6.901, 10_000)));
+        service.flushAll();
+        service.ingest(trip, List.of(point(6.902, 20_000)));
+        service.flushAll();
+
+        // The failed chunk keeps its sequence and goes out ahead of the newer points
+        assertThat(saved).extracting(TripTelemetryChunk::getSequence).containsExactly(0, 1);
+        assertThat(saved).extracting(TripTelemetryChunk::getPointCount).containsExactly(2, 1);
+    }
+
+    private static TelemetryPoint point(double latitude, long timestamp) {
+        return new TelemetryPoint(latitude, 79.86, timestamp);
+    }
+}
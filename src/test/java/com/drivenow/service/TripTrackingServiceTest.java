@@ -0,0 +1,176 @@
+package com.drivenow.service;
+
+import com.drivenow.entity.Booking;
+import com.drivenow.entity.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TripTrackingServiceTest {
+
+    private static final int BUFFER_SIZE = 4;
+    private static final long DRIVER_ID = 5L;
+
+    @Test
+    void driverPositionIsSharedOnlyWhileTheTripIsLive() {
+        LocalDate today = LocalDate.now();
+
+        assertThat(TripTrackingService.isLive(booking(Booking.BookingStatus.ONGOING, today.minusDays(3)))).isTrue();
+        assertThat(TripTrackingService.isLive(booking(Booking.BookingStatus.DRIVER_ASSIGNED, today))).isTrue();
+
+        assertThat(TripTrackingService.isLive(booking(Booking.BookingStatus.DRIVER_ASSIGNED, today.plusDays(1)))).isFalse();
+        assertThat(TripTrackingService.isLive(booking(Booking.BookingStatus.COMPLETED, today))).isFalse();
+        assertThat(TripTrackingService.isLive(booking(Booking.BookingStatus.CANCELLED, today))).isFalse();
+    }
+
+    @Test
+    void slowSubscriberIsDroppedWhileOthersKeepReceiving() throws Exception {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        List<ClientEmitter> clients = new CopyOnWriteArrayList<>();
+        TripTrackingService service = service(meterRegistry, clients);
+        Booking trip = liveTrip();
+
+        CountDownLatch stalled = new CountDownLatch(1);
+        clients.add(new ClientEmitter(stalled));
+        service.subscribe(trip, null);
+        ClientEmitter slow = clients.get(0);
+        clients.add(new ClientEmitter(null));
+        service.subscribe(trip, null);
+        ClientEmitter fast = clients.get(1);
+        assertThat(gauge(meterRegistry)).isEqualTo(2);
+        service.publishDriverPosition(DRIVER_ID, 6.9, 79.86);
+        awaitTrue(() -> slow.writing && fast.events.size() == 2);
+
+        // The slow client's sender is stuck on the first position, so its buffer fills and then
+        // overflows; the fast client takes each event before the next one is published
+        int positions = BUFFER_SIZE + 6;
+        for (int i = 1; i < positions; i++) {
+            service.publishDriverPosition(DRIVER_ID, 6.9 + i * 0.001, 79.86);
+            int received = 2 + i;
+            awaitTrue(() -> fast.events.size() == received);
+        }
+
+        assertThat(meterRegistry.counter("tracking.subscribers.dropped").count()).isEqualTo(1);
+        assertThat(gauge(meterRegistry)).isEqualTo(1);
+
+        // Once the stuck write returns, the dropped stream is completed without sending the backlog
+        stalled.countDown();
+        awaitTrue(() -> slow.completed);
+        assertThat(slow.events).hasSize(2);
+        assertThat(fast.completed).isFalse();
+    }
+
+    @Test
+    void subscriberGaugeReturnsToZeroWhenClientsGo() throws Exception {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        List<ClientEmitter> clients = new CopyOnWriteArrayList<>();
+        TripTrackingService service = service(meterRegistry, clients);
+        Booking trip = liveTrip();
+        for (int i = 0; i < 20; i++) {
+            clients.add(new ClientEmitter(null));
+            service.subscribe(trip, null);
+        }
+        assertThat(gauge(meterRegistry)).isEqualTo(20);
+
+        // Closed connections surface as failed writes on the next event
+        clients.forEach(client -> client.disconnected = true);
+        service.heartbeat();
+
+        awaitTrue(() -> gauge(meterRegistry) == 0);
+        assertThat(service.getSubscriberCount()).isZero();
+        assertThat(meterRegistry.counter("tracking.subscribers.dropped").count()).isZero();
+    }
+
+    /**
+     * Stands in for a client connection: records what is sent, optionally stalls the writes after
+     * the snapshot until released, and fails writes once disconnected
+     */
+    private static final class ClientEmitter extends SseEmitter {
+        final List<Set<DataWithMediaType>> events = new CopyOnWriteArrayList<>();
+        final CountDownLatch stall;
+        volatile boolean writing;
+        volatile boolean disconnected;
+        volatile boolean completed;
+
+        ClientEmitter(CountDownLatch stall) {
+            this.stall = stall;
+        }
+
+        @Override
+        public void send(Set<DataWithMediaType> event) throws IOException {
+            if (stall != null && !events.isEmpty()) {
+                writing = true;
+                try {
+                    stall.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+            }
+            if (disconnected) {
+                throw new IOException("Broken pipe");
+            }
+            events.add(event);
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+        }
+    }
+
+    /**
+     * A service whose n-th subscription uses clients.get(n)
+     */
+    private static TripTrackingService service(MeterRegistry meterRegistry, List<ClientEmitter> clients) {
+        return new TripTrackingService(new ObjectMapper().findAndRegisterModules(), meterRegistry, 2, BUFFER_SIZE, 60_000) {
+            private int subscribed;
+
+            @Override
+            SseEmitter createEmitter(long timeoutMs) {
+                return clients.get(subscribed++);
+            }
+        };
+    }
+
+    private static Booking liveTrip() {
+        Booking trip = booking(Booking.BookingStatus.ONGOING, LocalDate.now());
+        trip.setId(1L);
+        trip.getDriver().setId(DRIVER_ID);
+        return trip;
+    }
+
+    private static double gauge(MeterRegistry meterRegistry) {
+        return meterRegistry.get("tracking.subscribers").gauge().value();
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition not met in time").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static Booking booking(Booking.BookingStatus status, LocalDate start) {
+        Booking booking = new Booking();
+        booking.setStatus(status);
+        booking.setStartDate(start);
+        booking.setEndDate(start);
+        booking.setDriver(new User());
+        return booking;
+    }
+}
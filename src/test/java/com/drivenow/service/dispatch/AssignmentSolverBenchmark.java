@@ -0,0 +1,107 @@
+package com.drivenow.service.dispatch;
+
+import com.drivenow.service.routing.HaversineKernel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dispatch round solves: 1k bookings x 1k drivers around Colombo, exact and greedy, from the
+ * dense matrix and from the candidate pairs within the 25 km pickup limit; and 10k x 10k spread
+ * over Sri Lanka, which only the sparse greedy pass handles.
+ *
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark=AssignmentSolverBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AssignmentSolverBenchmark {
+
+    private static final int ROUND = 1_000;
+    private static final int LARGE_ROUND = 10_000;
+    private static final double MAX_PICKUP_KM = 25;
+
+    private double[][] cost;
+    private CandidatePairs pairs;
+    private CandidatePairs largePairs;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        // About 30 x 30 km: most pairs are within the pickup limit
+        cost = new double[ROUND][];
+        pairs = candidates(random, ROUND, 6.80, 0.27, 79.80, 0.27, cost);
+        // About 440 x 240 km: a few percent are
+        largePairs = candidates(random, LARGE_ROUND, 5.9, 4.0, 79.7, 2.2, null);
+    }
+
+    @Benchmark
+    public int[] hungarian1k() {
+        return AssignmentSolver.solve(cost, Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public int[] hungarianSparse1k() {
+        return AssignmentSolver.solve(ROUND, ROUND, pairs, Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public int[] greedy1k() {
+        return AssignmentSolver.solve(cost, 0);
+    }
+
+    @Benchmark
+    public int[] greedySparse1k() {
+        return AssignmentSolver.solve(ROUND, ROUND, pairs, 0);
+    }
+
+    @Benchmark
+    public int[] greedySparse10k() {
+        return AssignmentSolver.solve(LARGE_ROUND, LARGE_ROUND, largePairs, 0);
+    }
+
+    /**
+     * Random pickups and drivers in the box; pairs beyond the pickup limit are left out (and
+     * FORBIDDEN in the dense rows, when given)
+     */
+    private static CandidatePairs candidates(Random random, int n, double minLat, double latSpan,
+                                             double minLon, double lonSpan, double[][] denseRows) {
+        double[] driverLats = new double[n];
+        double[] driverLons = new double[n];
+        for (int j = 0; j < n; j++) {
+            driverLats[j] = minLat + random.nextDouble() * latSpan;
+            driverLons[j] = minLon + random.nextDouble() * lonSpan;
+        }
+        CandidatePairs result = new CandidatePairs();
+        double[] row = new double[n];
+        for (int i = 0; i < n; i++) {
+            HaversineKernel.distancesKm(minLat + random.nextDouble() * latSpan, minLon + random.nextDouble() * lonSpan,
+                    driverLats, driverLons, n, row);
+            for (int j = 0; j < n; j++) {
+                if (row[j] <= MAX_PICKUP_KM) {
+                    result.add(i, j, row[j]);
+                } else {
+                    row[j] = AssignmentSolver.FORBIDDEN;
+                }
+            }
+            if (denseRows != null) {
+                denseRows[i] = row.clone();
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,128 @@
+package com.drivenow.service.dispatch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class AssignmentSolverTest {
+
+    private static final int CASES = 500;
+
+    @Test
+    void hungarianMatchesBruteForceOnSmallProblems() {
+        Random random = new Random(1);
+        for (int n = 0; n < CASES; n++) {
+            int rows = 1 + random.nextInt(6);
+            int columns = 1 + random.nextInt(6);
+            double[][] cost = randomCost(random, rows, columns, random.nextDouble() * 0.6);
+
+            int[] result = AssignmentSolver.hungarian(cost, rows, columns);
+
+            assertValid(cost, result, columns);
+            double[] best = bruteForce(cost, 0, new boolean[columns]);
+            // As many pairs as possible, and the cheapest way to make that many
+            assertThat(assignedCount(result)).as("case %d (%dx%d)", n, rows, columns).isEqualTo((int) best[0]);
+            assertThat(totalCost(cost, result)).as("case %d (%dx%d)", n, rows, columns).isCloseTo(best[1], within(1e-9));
+        }
+    }
+
+    @Test
+    void sparseSolveMatchesTheDenseMatrix() {
+        Random random = new Random(2);
+        for (int n = 0; n < CASES; n++) {
+            int rows = 1 + random.nextInt(30);
+            int columns = 1 + random.nextInt(30);
+            double[][] cost = randomCost(random, rows, columns, 0.8);
+            CandidatePairs pairs = new CandidatePairs();
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < columns; j++) {
+                    if (cost[i][j] != AssignmentSolver.FORBIDDEN) {
+                        pairs.add(i, j, cost[i][j]);
+                    }
+                }
+            }
+
+            int[] exact = AssignmentSolver.solve(rows, columns, pairs, Integer.MAX_VALUE);
+            assertValid(cost, exact, columns);
+            assertThat(totalCost(cost, exact)).isCloseTo(totalCost(cost, AssignmentSolver.hungarian(cost, rows, columns)), within(1e-9));
+
+            int[] greedy = AssignmentSolver.solve(rows, columns, pairs, 0);
+            assertValid(cost, greedy, columns);
+            assertThat(greedy).containsExactly(AssignmentSolver.greedy(cost, rows, columns));
+        }
+    }
+
+    @Test
+    void emptyCandidatesLeaveEveryRowUnassigned() {
+        assertThat(AssignmentSolver.solve(3, 2, new CandidatePairs(), 10)).containsExactly(-1, -1, -1);
+    }
+
+    private static double[][] randomCost(Random random, int rows, int columns, double forbiddenShare) {
+        double[][] cost = new double[rows][columns];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                cost[i][j] = random.nextDouble() < forbiddenShare ? AssignmentSolver.FORBIDDEN : random.nextInt(2500) / 100.0;
+            }
+        }
+        return cost;
+    }
+
+    /**
+     * {best assigned count, lowest cost for that count} over every assignment of rows from row on
+     */
+    private static double[] bruteForce(double[][] cost, int row, boolean[] taken) {
+        if (row == cost.length) {
+            return new double[]{0, 0};
+        }
+        double[] best = bruteForce(cost, row + 1, taken);
+        for (int j = 0; j < taken.length; j++) {
+            if (taken[j] || cost[row][j] == AssignmentSolver.FORBIDDEN) {
+                continue;
+            }
+            taken[j] = true;
+            double[] rest = bruteForce(cost, row + 1, taken);
+            taken[j] = false;
+            double count = rest[0] + 1;
+            double total = rest[1] + cost[row][j];
+            if (count > best[0] || (count == best[0] && total < best[1])) {
+                best = new double[]{count, total};
+            }
+        }
+        return best;
+    }
+
+    private static void assertValid(double[][] cost, int[] result, int columns) {
+        assertThat(result).hasSize(cost.length);
+        boolean[] used = new boolean[columns];
+        for (int i = 0; i < result.length; i++) {
+            if (result[i] >= 0) {
+                assertThat(cost[i][result[i]]).isNotEqualTo(AssignmentSolver.FORBIDDEN);
+                assertThat(used[result[i]]).isFalse();
+                used[result[i]] = true;
+            }
+        }
+    }
+
+    private static int assignedCount(int[] result) {
+        int count = 0;
+        for (int column : result) {
+            if (column >= 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static double totalCost(double[][] cost, int[] result) {
+        double total = 0;
+        for (int i = 0; i < result.length; i++) {
+            if (result[i] >= 0) {
+                total += cost[i][result[i]];
+            }
+        }
+        return total;
+    }
+}
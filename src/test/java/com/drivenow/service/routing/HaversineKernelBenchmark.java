@@ -0,0 +1,88 @@
+package com.drivenow.service.routing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One-to-many distances over 1M candidate points: the per-pair GeoMath call the kernel
+ * replaces, the kernel with and without precomputed cos(lat), and top-10 selection.
+ *
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark=HaversineKernelBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class HaversineKernelBenchmark {
+
+    private static final int POINTS = 1_000_000;
+    private static final int K = 10;
+
+    private final double[] lats = new double[POINTS];
+    private final double[] lons = new double[POINTS];
+    private final double[] cosLats = new double[POINTS];
+    private final double[] out = new double[POINTS];
+    private final int[] nearest = new int[K];
+    private final double[] nearestKm = new double[K];
+    private double pickupLat;
+    private double pickupLon;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Candidates spread over Sri Lanka
+        Random random = new Random(42);
+        for (int i = 0; i < POINTS; i++) {
+            lats[i] = 5.9 + random.nextDouble() * 4.0;
+            lons[i] = 79.7 + random.nextDouble() * 2.2;
+        }
+        HaversineKernel.precomputeCosLat(lats, POINTS, cosLats);
+        pickupLat = 6.9271;
+        pickupLon = 79.8612;
+    }
+
+    @Benchmark
+    public double[] perPairGeoMath() {
+        for (int i = 0; i < POINTS; i++) {
+            out[i] = GeoMath.haversineKm(pickupLat, pickupLon, lats[i], lons[i]);
+        }
+        return out;
+    }
+
+    @Benchmark
+    public double[] kernel() {
+        HaversineKernel.distancesKm(pickupLat, pickupLon, lats, lons, POINTS, out);
+        return out;
+    }
+
+    @Benchmark
+    public double[] kernelPrecomputedCosLat() {
+        HaversineKernel.distancesKm(pickupLat, pickupLon, lats, lons, cosLats, POINTS, out);
+        return out;
+    }
+
+    @Benchmark
+    public void nearestK(Blackhole blackhole) {
+        blackhole.consume(HaversineKernel.nearestK(pickupLat, pickupLon, lats, lons, POINTS, K, out, nearest, nearestKm));
+        blackhole.consume(nearest);
+    }
+
+    @Benchmark
+    public int selectOnly() {
+        return HaversineKernel.selectSmallest(out, POINTS, K, nearest, nearestKm);
+    }
+}
@@ -0,0 +1,59 @@
+package com.drivenow.service.routing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class HaversineKernelTest {
+
+    private static final int POINTS = 10_000;
+
+    @Test
+    void batchDistancesMatchPerPairHaversine() {
+        Random random = new Random(1);
+        double[] lats = new double[POINTS];
+        double[] lons = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            lats[i] = -80 + random.nextDouble() * 160;
+            lons[i] = -180 + random.nextDouble() * 360;
+        }
+        double[] cosLats = new double[POINTS];
+        HaversineKernel.precomputeCosLat(lats, POINTS, cosLats);
+
+        double[] plain = new double[POINTS];
+        double[] precomputed = new double[POINTS];
+        HaversineKernel.distancesKm(6.93, 79.86, lats, lons, POINTS, plain);
+        HaversineKernel.distancesKm(6.93, 79.86, lats, lons, cosLats, POINTS, precomputed);
+        for (int i = 0; i < POINTS; i++) {
+            double expected = GeoMath.haversineKm(6.93, 79.86, lats[i], lons[i]);
+            assertThat(plain[i]).isCloseTo(expected, within(1e-6));
+            assertThat(precomputed[i]).isCloseTo(expected, within(1e-6));
+        }
+    }
+
+    @Test
+    void selectSmallestReturnsTheKSmallestInOrder() {
+        Random random = new Random(2);
+        double[] values = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            values[i] = random.nextDouble() * 1000;
+        }
+        int[] index = new int[25];
+        double[] selected = new double[25];
+
+        int found = HaversineKernel.selectSmallest(values, POINTS, 25, index, selected);
+
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        assertThat(found).isEqualTo(25);
+        assertThat(selected).containsExactly(Arrays.copyOf(sorted, 25));
+        for (int j = 0; j < found; j++) {
+            assertThat(values[index[j]]).isEqualTo(selected[j]);
+        }
+        assertThat(HaversineKernel.selectSmallest(values, 3, 25, index, selected)).isEqualTo(3);
+    }
+}
@@ -0,0 +1,166 @@
+package com.drivenow.service.routing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load time and per-query latency of the offline routing backend, on the bundled sample graph
+ * and on a generated 250k-node grid (about the size of a city extract).
+ *
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark=LocalGraphRoutingBackendBenchmark
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LocalGraphRoutingBackendBenchmark {
+
+    private static final int GRID_SIDE = 500;
+    private static final double GRID_STEP_DEGREES = 0.0009;
+    private static final int QUERY_PAIRS = 1024;
+
+    @Param({"sample", "grid"})
+    public String graph;
+
+    private Path graphFile;
+    private String graphPath;
+    private LocalGraphRoutingBackend backend;
+    private double[][] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        if ("grid".equals(graph)) {
+            graphFile = Files.createTempFile("benchmark-grid-", ".graph");
+            writeGrid(graphFile);
+            graphPath = graphFile.toUri().toString();
+        } else {
+            graphPath = "classpath:routing/sample-region.graph";
+        }
+        backend = load();
+
+        // Random pairs of graph nodes, so every point snaps; pairs with no path are skipped
+        RoadGraph roads = load(graphPath);
+        Random random = new Random(42);
+        queries = new double[QUERY_PAIRS][];
+        for (int i = 0; i < QUERY_PAIRS; ) {
+            int a = random.nextInt(roads.getNodeCount());
+            int b = random.nextInt(roads.getNodeCount());
+            double[] query = {roads.latitude(a), roads.longitude(a), roads.latitude(b), roads.longitude(b)};
+            try {
+                backend.routeDistanceKm(query[0], query[1], query[2], query[3]);
+                queries[i++] = query;
+            } catch (RoutingException e) {
+                // Different components of the sample extract
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (graphFile != null) {
+            Files.deleteIfExists(graphFile);
+        }
+    }
+
+    /**
+     * Start-up cost: reading or mapping the file and building the snap index
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3, batchSize = 1)
+    @Measurement(iterations = 10, batchSize = 1)
+    public LocalGraphRoutingBackend loadGraph() throws IOException {
+        return load();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public double query() {
+        double[] q = queries[next++ & (QUERY_PAIRS - 1)];
+        return backend.routeDistanceKm(q[0], q[1], q[2], q[3]);
+    }
+
+    /**
+     * Eight request threads sharing the search buffer pool (one buffer per core)
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Threads(8)
+    public double queryConcurrent(ThreadCursor cursor) {
+        double[] q = queries[cursor.next++ & (QUERY_PAIRS - 1)];
+        return backend.routeDistanceKm(q[0], q[1], q[2], q[3]);
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadCursor {
+        int next = new Random().nextInt(QUERY_PAIRS);
+    }
+
+    private LocalGraphRoutingBackend load() throws IOException {
+        // Threads waiting for a buffer time out only well past the slowest query
+        return new LocalGraphRoutingBackend(new DefaultResourceLoader(), graphPath, 2.0, 0, 10_000);
+    }
+
+    private static RoadGraph load(String path) throws IOException {
+        Resource resource = new DefaultResourceLoader().getResource(path);
+        try (InputStream in = resource.getInputStream()) {
+            return RoadGraph.fromBytes(in.readAllBytes());
+        }
+    }
+
+    /**
+     * Square grid of two-way roads about 100 m apart, 45 km across
+     */
+    private static void writeGrid(Path path) throws IOException {
+        RoadGraphWriter writer = new RoadGraphWriter();
+        for (int row = 0; row < GRID_SIDE; row++) {
+            for (int column = 0; column < GRID_SIDE; column++) {
+                writer.addNode(6.70 + row * GRID_STEP_DEGREES, 79.80 + column * GRID_STEP_DEGREES);
+            }
+        }
+        for (int row = 0; row < GRID_SIDE; row++) {
+            for (int column = 0; column < GRID_SIDE; column++) {
+                int node = row * GRID_SIDE + column;
+                if (column + 1 < GRID_SIDE) {
+                    writer.addRoad(node, node + 1, meters(row, column, row, column + 1));
+                }
+                if (row + 1 < GRID_SIDE) {
+                    writer.addRoad(node, node + GRID_SIDE, meters(row, column, row + 1, column));
+                }
+            }
+        }
+        writer.write(path);
+    }
+
+    private static int meters(int row1, int column1, int row2, int column2) {
+        // Rounded up so edge lengths never undercut the A* great-circle bound
+        return (int) Math.ceil(1000 * GeoMath.haversineKm(
+                6.70 + row1 * GRID_STEP_DEGREES, 79.80 + column1 * GRID_STEP_DEGREES,
+                6.70 + row2 * GRID_STEP_DEGREES, 79.80 + column2 * GRID_STEP_DEGREES));
+    }
+}
@@ -0,0 +1,50 @@
+package com.drivenow.service.routing;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocalGraphRoutingBackendTest {
+
+    private static final String SAMPLE_GRAPH = "classpath:routing/sample-region.graph";
+
+    @Test
+    void concurrentQueriesShareABoundedSetOfSearchBuffers() throws Exception {
+        LocalGraphRoutingBackend backend = new LocalGraphRoutingBackend(new DefaultResourceLoader(), SAMPLE_GRAPH, 2.0, 2, 5000);
+        RoadGraph graph;
+        try (InputStream in = new DefaultResourceLoader().getResource(SAMPLE_GRAPH).getInputStream()) {
+            graph = RoadGraph.fromBytes(in.readAllBytes());
+        }
+
+        Random random = new Random(7);
+        int[][] pairs = new int[400][];
+        long[] expected = new long[pairs.length];
+        for (int i = 0; i < pairs.length; i++) {
+            pairs[i] = new int[]{random.nextInt(graph.getNodeCount()), random.nextInt(graph.getNodeCount())};
+            expected[i] = backend.shortestPathMeters(pairs[i][0], pairs[i][1]);
+        }
+
+        ExecutorService threads = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (int[] pair : pairs) {
+                results.add(threads.submit(() -> backend.shortestPathMeters(pair[0], pair[1])));
+            }
+            for (int i = 0; i < pairs.length; i++) {
+                assertThat(results.get(i).get()).isEqualTo(expected[i]);
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+        assertThat(backend.getSearchStateCount()).isEqualTo(2);
+    }
+}
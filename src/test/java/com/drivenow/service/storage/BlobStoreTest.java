@@ -0,0 +1,55 @@
+package com.drivenow.service.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BlobStoreTest {
+
+    private static final Duration GRACE = Duration.ofMinutes(10);
+
+    @TempDir
+    Path root;
+
+    @Test
+    void blobStoredAgainWithinTheGracePeriodIsKept() throws Exception {
+        BlobStore store = new BlobStore(root.toString());
+        String hash = store.put(content(), 1024).hash();
+        age(store, hash);
+
+        // An upload of the same content whose reference is not committed yet
+        store.put(content(), 1024);
+
+        assertThat(store.deleteIfIdle(hash, GRACE)).isFalse();
+        assertThat(store.exists(hash)).isTrue();
+    }
+
+    @Test
+    void idleBlobIsDeleted() throws Exception {
+        BlobStore store = new BlobStore(root.toString());
+        String hash = store.put(content(), 1024).hash();
+        assertThat(store.deleteIfIdle(hash, GRACE)).isFalse();
+
+        age(store, hash);
+
+        assertThat(store.deleteIfIdle(hash, GRACE)).isTrue();
+        assertThat(store.exists(hash)).isFalse();
+    }
+
+    private static void age(BlobStore store, String hash) throws Exception {
+        Files.setLastModifiedTime(store.path(hash), FileTime.from(Instant.now().minus(GRACE).minusSeconds(60)));
+    }
+
+    private static ByteArrayInputStream content() {
+        return new ByteArrayInputStream("license scan".getBytes(StandardCharsets.UTF_8));
+    }
+}